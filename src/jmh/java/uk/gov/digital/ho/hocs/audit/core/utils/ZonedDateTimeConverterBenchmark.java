@@ -0,0 +1,77 @@
+package uk.gov.digital.ho.hocs.audit.core.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ZonedDateTimeConverter#convert(LocalDateTime)} over a day of audit timestamps in time order, as
+ * exports read them, against the zone rules and formatter used for every value before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZonedDateTimeConverterBenchmark {
+
+    private static final int VALUES = 4096;
+
+    @Param({ "", "dd/MM/yyyy HH:mm" })
+    private String format;
+
+    private ZonedDateTimeConverter converter;
+
+    private DateTimeFormatter formatter;
+
+    private LocalDateTime[] timestamps;
+
+    @Setup
+    public void setup() {
+        converter = new ZonedDateTimeConverter(format, "Europe/London", ZoneId.of("UTC"));
+        formatter = DateTimeFormatter.ofPattern(format.isEmpty() ? "yyyy-MM-dd'T'HH:mm:ss.SSSSSS" : format);
+
+        var random = new Random(42);
+        var timestamp = LocalDateTime.of(2023, 3, 25, 12, 0);
+        timestamps = new LocalDateTime[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            timestamp = timestamp.plusNanos(random.nextInt(42_000_000) * 1000L);
+            timestamps[i] = timestamp;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void convert(Blackhole blackhole) {
+        for (LocalDateTime timestamp : timestamps) {
+            blackhole.consume(converter.convert(timestamp));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void convertWithZoneRules(Blackhole blackhole) {
+        for (LocalDateTime timestamp : timestamps) {
+            blackhole.consume(timestamp.atZone(ZoneId.of("UTC")).withZoneSameInstant(ZoneId.of("Europe/London"))
+                .toLocalDateTime().format(formatter));
+        }
+    }
+
+}
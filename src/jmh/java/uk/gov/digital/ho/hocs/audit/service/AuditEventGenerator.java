@@ -0,0 +1,248 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates audit events shaped like those each export reads, with payloads of a realistic size: case data carrying a
+ * few dozen fields of dates, users, entity list items and free text, some dates zero padded as older clients sent
+ * them, and case notes of up to a few kilobytes. The users, teams, entity list items and case references used are
+ * exposed so a converter can resolve them.
+ */
+final class AuditEventGenerator {
+
+    static final String CASE_TYPE_SHORT_CODE = "a1";
+
+    private static final String[] WORDS = { "the", "case", "was", "reviewed", "by", "team", "and", "forwarded", "to",
+        "correspondent", "Home", "Office", "response", "draft", "approved", "minister", "urgent", "please", "note",
+        "deadline", "extended", "café", "naïve", "résumé", "\"quoted\"", "comma,separated" };
+
+    private final Random random;
+
+    private final ObjectMapper objectMapper;
+
+    private final String[] userUuids;
+
+    private final String[] teamUuids;
+
+    private final String[] entityListItems;
+
+    private final UUID[] caseUuids;
+
+    private final String[] caseDataFields;
+
+    private LocalDateTime timestamp = LocalDateTime.of(2023, 3, 1, 8, 0);
+
+    AuditEventGenerator(long seed, ObjectMapper objectMapper, int caseDataFieldCount) {
+        this.random = new Random(seed);
+        this.objectMapper = objectMapper;
+
+        userUuids = randomUuids(500);
+        teamUuids = randomUuids(100);
+
+        entityListItems = new String[200];
+        for (int i = 0; i < entityListItems.length; i++) {
+            entityListItems[i] = "ENTITY_ITEM_" + i;
+        }
+
+        caseUuids = new UUID[5000];
+        for (int i = 0; i < caseUuids.length; i++) {
+            String uuid = new UUID(random.nextLong(), random.nextLong()).toString();
+            caseUuids[i] = UUID.fromString(uuid.substring(0, 34) + CASE_TYPE_SHORT_CODE);
+        }
+
+        caseDataFields = new String[caseDataFieldCount];
+        for (int i = 0; i < caseDataFieldCount; i++) {
+            caseDataFields[i] = "Field" + i;
+        }
+    }
+
+    AuditEvent[] generate(ExportType exportType, int count) throws JsonProcessingException {
+        var events = new AuditEvent[count];
+        for (int i = 0; i < count; i++) {
+            timestamp = timestamp.plusNanos(random.nextInt(20_000_000) * 1000L);
+            events[i] = new AuditEvent(pick(caseUuids), UUID.randomUUID(), UUID.randomUUID().toString(),
+                "hocs-casework", objectMapper.writeValueAsString(payload(exportType)), "namespace", timestamp,
+                eventType(exportType), pick(userUuids));
+        }
+        return events;
+    }
+
+    Map<String, String> getUuidToName() {
+        Map<String, String> uuidToName = new HashMap<>();
+        for (int i = 0; i < userUuids.length; i++) {
+            uuidToName.put(userUuids[i], "user.name" + i + "@example.gov.uk");
+        }
+        for (int i = 0; i < teamUuids.length; i++) {
+            uuidToName.put(teamUuids[i], "Team number " + i);
+        }
+        return uuidToName;
+    }
+
+    Map<String, String> getEntityListItemToName() {
+        Map<String, String> entityListItemToName = new HashMap<>();
+        for (int i = 0; i < entityListItems.length; i++) {
+            entityListItemToName.put(entityListItems[i], "Entity item, number " + i);
+        }
+        return entityListItemToName;
+    }
+
+    UUID[] getCaseUuids() {
+        return caseUuids;
+    }
+
+    String[] getCaseDataFields() {
+        return caseDataFields;
+    }
+
+    private String eventType(ExportType exportType) {
+        return switch (exportType) {
+            case ALLOCATIONS -> pick("STAGE_ALLOCATED_TO_TEAM", "STAGE_ALLOCATED_TO_USER", "STAGE_CREATED");
+            case APPEALS -> pick("APPEAL_CREATED", "APPEAL_UPDATED");
+            case CASE_DATA, CASE_DATA_V2 -> pick("CASE_CREATED", "CASE_UPDATED", "CASE_UPDATED", "CASE_COMPLETED");
+            case CASE_NOTES -> pick("CASE_NOTE_CREATED", "CASE_NOTE_UPDATED");
+            case CORRESPONDENTS -> pick("CORRESPONDENT_CREATED", "CORRESPONDENT_UPDATED");
+            case DOCUMENTS -> "DOCUMENT_CREATED";
+            case EXTENSIONS -> "EXTENSION_APPLIED";
+            case INTERESTS -> pick("EXTERNAL_INTEREST_CREATED", "EXTERNAL_INTEREST_UPDATED");
+            case TOPICS -> pick("CASE_TOPIC_CREATED", "CASE_TOPIC_DELETED");
+            case SUSPENSIONS -> pick("CASE_SUSPENSION_APPLIED", "CASE_SUSPENSION_REMOVED");
+        };
+    }
+
+    private Map<String, Object> payload(ExportType exportType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        switch (exportType) {
+            case ALLOCATIONS -> {
+                payload.put("stageUUID", UUID.randomUUID());
+                payload.put("allocatedToUUID", random.nextBoolean() ? pick(teamUuids) : pick(userUuids));
+                payload.put("stage", "DCU_MIN_DRAFT");
+                payload.put("deadline", date());
+            }
+            case APPEALS -> {
+                payload.put("type", pick(teamUuids));
+                payload.put("status", pick("Pending", "Complete"));
+                payload.put("dateSentRMS", date());
+                payload.put("outcome", pick("Upheld", "Not upheld", null));
+                payload.put("complexCase", pick("Yes", "No"));
+                payload.put("note", text(5, 60));
+                payload.put("officerType", "Caseworker");
+                payload.put("officerName", pick(userUuids));
+                payload.put("officerDirectorate", "Directorate " + random.nextInt(10));
+                payload.put("created", timestamp);
+            }
+            case CASE_DATA, CASE_DATA_V2 -> {
+                payload.put("uuid", UUID.randomUUID());
+                payload.put("created", timestamp);
+                payload.put("type", "MIN");
+                payload.put("reference", "MIN/" + (1000000 + random.nextInt(9000000)) + "/23");
+                payload.put("data", caseData());
+                payload.put("primaryTopic", pick(teamUuids));
+                payload.put("primaryCorrespondent", UUID.randomUUID());
+                payload.put("caseDeadline", date());
+                payload.put("dateReceived", date());
+                payload.put("migratedReference", random.nextInt(10) == 0 ? "LEGACY-" + random.nextInt(100000) : null);
+            }
+            case CASE_NOTES -> {
+                payload.put("caseNoteType", pick("MANUAL", "ALLOCATE", "CLOSE"));
+                payload.put("text", text(10, 400));
+            }
+            case CORRESPONDENTS -> {
+                payload.put("uuid", UUID.randomUUID());
+                payload.put("created", timestamp);
+                payload.put("type", "MEMBER");
+                payload.put("fullname", "Correspondent " + random.nextInt(100000));
+                payload.put("organisation", pick("Organisation, Ltd", "", null));
+                payload.put("address", Map.of("address1", random.nextInt(200) + " High Street", "address2", "Town",
+                    "address3", "County", "country", "United Kingdom", "postcode", "SW1A 2AA"));
+                payload.put("telephone", "0207 " + (100000 + random.nextInt(900000)));
+                payload.put("email", "correspondent" + random.nextInt(100000) + "@example.com");
+                payload.put("reference", "REF-" + random.nextInt(100000));
+                payload.put("externalKey", pick("", "EXT-" + random.nextInt(1000)));
+            }
+            case DOCUMENTS -> {
+                payload.put("documentUUID", UUID.randomUUID());
+                payload.put("documentType", pick("ORIGINAL", "DRAFT", "FINAL"));
+                payload.put("documentTitle", text(2, 8) + ".docx");
+            }
+            case EXTENSIONS -> {
+                payload.put("caseId", UUID.randomUUID());
+                payload.put("created", timestamp);
+                payload.put("type", pick(teamUuids));
+                payload.put("note", text(5, 80));
+            }
+            case INTERESTS -> {
+                payload.put("partyType", pick(entityListItems));
+                payload.put("interestDetails", text(5, 80));
+            }
+            case TOPICS -> {
+                payload.put("topicUuid", pick(teamUuids));
+                payload.put("topicName", text(2, 6));
+            }
+            case SUSPENSIONS -> {
+                payload.put("dateSuspensionApplied", date());
+                payload.put("dateSuspensionRemoved", random.nextBoolean() ? date() : null);
+            }
+        }
+        return payload;
+    }
+
+    private Map<String, String> caseData() {
+        Map<String, String> data = new LinkedHashMap<>();
+        for (int i = 0; i < caseDataFields.length; i++) {
+            // cases only carry the fields their stages have reached
+            if (random.nextInt(4) == 0) {
+                continue;
+            }
+            data.put(caseDataFields[i], switch (i % 6) {
+                case 0 -> random.nextInt(20) == 0 ? "0" + date() : date().toString();
+                case 1 -> pick(userUuids);
+                case 2 -> pick(entityListItems);
+                case 3 -> pick("Yes", "No", "");
+                case 4 -> text(1, 30);
+                default -> Integer.toString(random.nextInt(100000));
+            });
+        }
+        return data;
+    }
+
+    private LocalDate date() {
+        return LocalDate.of(2023, 1, 1).plusDays(random.nextInt(365));
+    }
+
+    private String text(int minWords, int maxWords) {
+        int words = minWords + random.nextInt(maxWords - minWords + 1);
+        var text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(20) == 0 ? "\n" : " ");
+            }
+            text.append(pick(WORDS));
+        }
+        return text.toString();
+    }
+
+    private String[] randomUuids(int count) {
+        var uuids = new String[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+        }
+        return uuids;
+    }
+
+    @SafeVarargs
+    private <T> T pick(T... values) {
+        return values[random.nextInt(values.length)];
+    }
+
+}
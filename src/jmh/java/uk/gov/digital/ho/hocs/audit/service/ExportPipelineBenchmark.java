@@ -0,0 +1,344 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.config.SpringConfiguration;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
+import uk.gov.digital.ho.hocs.audit.repository.config.CaseDataFieldReader;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceIndex;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.CsvExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the per row work of each export, over audit events from {@link AuditEventGenerator}, one phase at a time
+ * and as a whole: decoding the payload, converting the values of its row as they are handed to a writer, correcting
+ * malformed dates and encoding the row as CSV. Case data events carry the projection made when they are audited, and events of exports
+ * that declare their payload fields carry those fields as their query projects them, which the rows are parsed from.
+ * Reading the events from the database is left out.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=ExportPipelineBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportPipelineBenchmark {
+
+    private static final int ROWS = 2048;
+
+    private static final int CASE_DATA_FIELDS = 60;
+
+    @Param
+    private ExportType exportType;
+
+    private ObjectMapper objectMapper;
+
+    private AuditEvent[] events;
+
+    private Class<?> payloadType;
+
+    private DynamicExportService.DataWriter dataWriter;
+
+    private ZonedDateTimeConverter zonedDateTimeConverter;
+
+    private ExportDataConverter exportDataConverter;
+
+    private MalformedDateConverter malformedDateConverter;
+
+    private String[] headers;
+
+    private String[][] parsedRows;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new SpringConfiguration().initialiseObjectMapper();
+
+        var generator = new AuditEventGenerator(42, objectMapper, CASE_DATA_FIELDS);
+        events = generator.generate(exportType, ROWS);
+
+        var caseReferences = new CaseReferenceIndex();
+        int reference = 0;
+        for (var caseUuid : generator.getCaseUuids()) {
+            caseReferences.put(caseUuid, "MIN/" + (1000000 + reference++) + "/23");
+        }
+        exportDataConverter = new ExportDataConverter(generator.getUuidToName(),
+            generator.getEntityListItemToName(), caseReferences);
+        zonedDateTimeConverter = new ZonedDateTimeConverter();
+        malformedDateConverter = new MalformedDateConverter();
+
+        var caseDataProjectionService = caseDataProjectionService(generator);
+        var service = service(exportType, caseDataProjectionService);
+        String[] additionalHeaders = new String[0];
+        if (service instanceof CaseDataExportService caseDataService) {
+            for (AuditEvent event : events) {
+                event.setCaseData(caseDataProjectionService.project(event));
+            }
+            String[] caseDataFields = generator.getCaseDataFields();
+            additionalHeaders = caseDataFields;
+            dataWriter = (audit, writer) -> caseDataService.writeData(audit, exportDataConverter, writer,
+                caseDataFields);
+        } else {
+            String[] payloadFields = service.getPayloadFields();
+            if (payloadFields != null) {
+                for (AuditEvent event : events) {
+                    event.setPayloadFields(projectPayloadFields(event.getAuditPayload(), payloadFields));
+                }
+            }
+            dataWriter = (audit, writer) -> service.writeData(audit, exportDataConverter, writer);
+        }
+
+        headers = Stream.concat(Arrays.stream(service.getHeaders()), Arrays.stream(additionalHeaders)).toArray(
+            String[]::new);
+        payloadType = payloadType(exportType);
+
+        parsedRows = new String[ROWS][];
+        var textWriter = new TextRowWriter();
+        for (int i = 0; i < ROWS; i++) {
+            textWriter.startRecord();
+            dataWriter.write(events[i], textWriter);
+            parsedRows[i] = textWriter.getRow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void decodePayload(Blackhole blackhole) throws JsonProcessingException {
+        for (AuditEvent event : events) {
+            blackhole.consume(objectMapper.readValue(event.getAuditPayload(), payloadType));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void convertRow(Blackhole blackhole) throws IOException {
+        var writer = new DiscardingWriter(blackhole);
+        for (AuditEvent event : events) {
+            writer.startRecord();
+            dataWriter.write(event, writer);
+            writer.endRecord();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void correctDates(Blackhole blackhole) {
+        for (String[] row : parsedRows) {
+            blackhole.consume(malformedDateConverter.correctDateFields(row.clone()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void encodeCsv() throws IOException {
+        try (var writer = new CsvExportWriter(OutputStream.nullOutputStream(), headers)) {
+            for (String[] row : parsedRows) {
+                writer.writeRecord(row);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void pipeline() throws IOException {
+        try (var writer = malformedDateConverter.correcting(
+            new CsvExportWriter(OutputStream.nullOutputStream(), headers, zonedDateTimeConverter),
+            zonedDateTimeConverter)) {
+            for (AuditEvent event : events) {
+                writer.startRecord();
+                dataWriter.write(event, writer);
+                writer.endRecord();
+            }
+        }
+    }
+
+    // reads the fields as text, as the export query does
+    private String[] projectPayloadFields(String auditPayload, String[] payloadFields) throws JsonProcessingException {
+        var payload = objectMapper.readTree(auditPayload);
+
+        var values = new String[payloadFields.length];
+        for (int i = 0; i < payloadFields.length; i++) {
+            var value = payload.at("/" + payloadFields[i].replace('.', '/'));
+            if (!value.isMissingNode() && !value.isNull()) {
+                values[i] = value.isValueNode() ? value.asText() : value.toString();
+            }
+        }
+        return values;
+    }
+
+    private CaseDataProjectionService caseDataProjectionService(AuditEventGenerator generator) {
+        var infoClient = new InfoClient(null, null) {
+            @Override
+            public Set<CaseTypeDto> getCaseTypes() {
+                return Set.of(new CaseTypeDto("MIN", AuditEventGenerator.CASE_TYPE_SHORT_CODE, "MIN"));
+            }
+        };
+        var caseDataFieldReader = new CaseDataFieldReader(objectMapper) {
+            @Override
+            public Set<String> getByCaseType(String caseType) {
+                return new LinkedHashSet<>(Arrays.asList(generator.getCaseDataFields()));
+            }
+        };
+        return new CaseDataProjectionService(objectMapper, null, infoClient, caseDataFieldReader, null, 0,
+            Duration.ZERO);
+    }
+
+    private DynamicExportService service(ExportType exportType, CaseDataProjectionService caseDataProjectionService) {
+        return switch (exportType) {
+            case ALLOCATIONS -> new AllocationExportService(objectMapper, null, null, null, null, null, null, null,
+                null, null);
+            case APPEALS -> new AppealExportService(objectMapper, null, null, null, null, null, null, null, null, null);
+            case CASE_DATA -> new CaseDataExportService(objectMapper, null, null, null, null, null, null, null, null,
+                null, null, null, caseDataProjectionService, null, false);
+            case CASE_DATA_V2 -> new CaseDataVersionTwoExportService(objectMapper, null, null, null, null, null, null,
+                null, null, null, null, null, caseDataProjectionService, null, false);
+            case CASE_NOTES -> new CaseNoteExportService(objectMapper, null, null, null, null, null, null, null, null,
+                null);
+            case CORRESPONDENTS -> new CorrespondentExportService(objectMapper, null, null, null, null, null, null,
+                null, null, null);
+            case DOCUMENTS -> new DocumentExportService(objectMapper, null, null, null, null, null, null, null, null,
+                null);
+            case EXTENSIONS -> new ExtensionExportService(objectMapper, null, null, null, null, null, null, null, null,
+                null);
+            case INTERESTS -> new InterestExportService(objectMapper, null, null, null, null, null, null, null, null,
+                null);
+            case TOPICS -> new TopicExportService(objectMapper, null, null, null, null, null, null, null, null, null);
+            case SUSPENSIONS -> new SuspensionExportService(objectMapper, null, null, null, null, null, null, null,
+                null, null);
+        };
+    }
+
+    private static Class<?> payloadType(ExportType exportType) {
+        return switch (exportType) {
+            case ALLOCATIONS -> AuditPayload.StageAllocation.class;
+            case APPEALS -> AuditPayload.Appeal.class;
+            case CASE_DATA, CASE_DATA_V2 -> AuditPayload.CaseData.class;
+            case CASE_NOTES -> AuditPayload.CaseNote.class;
+            case CORRESPONDENTS -> AuditPayload.Correspondent.class;
+            case DOCUMENTS -> AuditPayload.Document.class;
+            case EXTENSIONS -> AuditPayload.Extension.class;
+            case INTERESTS -> AuditPayload.Interest.class;
+            case TOPICS -> AuditPayload.Topic.class;
+            case SUSPENSIONS -> AuditPayload.Suspension.class;
+        };
+    }
+
+    /**
+     * Takes the values of a row as the text the CSV writer writes for them.
+     */
+    private class TextRowWriter implements ExportWriter {
+
+        private final List<String> row = new ArrayList<>();
+
+        String[] getRow() {
+            return row.toArray(new String[0]);
+        }
+
+        @Override
+        public void startRecord() {
+            row.clear();
+        }
+
+        @Override
+        public void writeString(String value) {
+            row.add(value);
+        }
+
+        @Override
+        public void writeTimestamp(LocalDateTime value) {
+            row.add(value != null ? zonedDateTimeConverter.convert(value) : null);
+        }
+
+        @Override
+        public void writeDate(LocalDate value) {
+            row.add(value != null ? value.toString() : null);
+        }
+
+        @Override
+        public void writeUuid(UUID value) {
+            row.add(value != null ? value.toString() : null);
+        }
+
+        @Override
+        public void endRecord() {}
+
+        @Override
+        public void close() {}
+
+    }
+
+    private static class DiscardingWriter implements ExportWriter {
+
+        private final Blackhole blackhole;
+
+        DiscardingWriter(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void startRecord() {}
+
+        @Override
+        public void writeString(String value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void writeTimestamp(LocalDateTime value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void writeDate(LocalDate value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void writeUuid(UUID value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void endRecord() {}
+
+        @Override
+        public void close() {}
+
+    }
+
+}
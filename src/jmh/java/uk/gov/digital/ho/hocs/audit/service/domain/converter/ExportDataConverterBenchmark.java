@@ -0,0 +1,103 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures {@link ExportDataConverter#convertValue(String)} over a mix of cells resembling a case data export: known
+ * and unknown UUIDs, entity list items, dates and free text. The regex variant runs a precompiled form of the
+ * previous check for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportDataConverterBenchmark {
+
+    private static final int CELLS = 4096;
+
+    private static final Pattern UUID_PATTERN = Pattern.compile(
+        "^[0-9a-f]{8}\\b-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-\\b[0-9a-f]{12}$", Pattern.CASE_INSENSITIVE);
+
+    private ExportDataConverter converter;
+
+    private Map<String, String> uuidToName;
+
+    private Map<String, String> entityListItemToName;
+
+    private String[] cells;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+
+        uuidToName = new HashMap<>();
+        String[] knownUuids = new String[2000];
+        for (int i = 0; i < knownUuids.length; i++) {
+            knownUuids[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+            uuidToName.put(knownUuids[i], "user.name" + i);
+        }
+
+        entityListItemToName = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            entityListItemToName.put("ITEM_" + i, "Item, number " + i);
+        }
+
+        converter = new ExportDataConverter(uuidToName, entityListItemToName, new CaseReferenceIndex());
+
+        cells = new String[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            cells[i] = switch (random.nextInt(5)) {
+                case 0 -> knownUuids[random.nextInt(knownUuids.length)];
+                case 1 -> new UUID(random.nextLong(), random.nextLong()).toString();
+                case 2 -> "ITEM_" + random.nextInt(250);
+                case 3 -> "2023-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10);
+                default -> "Free text value " + random.nextInt(1000);
+            };
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void convertValue(Blackhole blackhole) {
+        for (String cell : cells) {
+            blackhole.consume(converter.convertValue(cell));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void convertValueWithRegex(Blackhole blackhole) {
+        for (String cell : cells) {
+            String converted;
+            if (UUID_PATTERN.matcher(cell).matches()) {
+                converted = uuidToName.getOrDefault(cell, cell);
+            } else if (entityListItemToName.containsKey(cell)) {
+                converted = entityListItemToName.get(cell).replace(",", "");
+            } else {
+                converted = cell;
+            }
+            blackhole.consume(converted);
+        }
+    }
+
+}
@@ -5,6 +5,12 @@ public enum LogEvent {
     AUDIT_EVENT_DELETED,
     AUDIT_EVENT_CREATION_FAILED,
     AUDIT_RECORD_NOT_FOUND,
+    CASE_DATA_PROJECTION_FAILURE,
+    CASE_DATA_REPROJECTED,
+    CASE_LATEST_STATE_BACKFILLED,
+    CASE_LATEST_STATE_CONSISTENT,
+    CASE_LATEST_STATE_INCONSISTENT,
+    CASE_REFERENCE_INDEX_UPDATED,
     CONFIG_PARSE_FAILURE,
     CSV_CUSTOM_CONVERTER_FAILURE,
     CSV_EXPORT_COMPLETE,
@@ -14,13 +20,33 @@ public enum LogEvent {
     CSV_EXPORT_LOAD_CONVERSION_DATA_END,
     CSV_EXPORT_CONVERTER_START,
     CSV_RECORD_EXPORT_FAILURE,
+    EXPORT_ABORTED,
+    EXPORT_JOB_COMPLETE,
+    EXPORT_JOB_EXPIRED,
+    EXPORT_JOB_FAILED,
+    EXPORT_JOB_QUEUED,
+    EXPORT_JOB_REJECTED,
+    EXPORT_JOB_START,
+    EXPORT_QUEUED,
+    EXPORT_REJECTED,
+    EXPORT_WATERMARK_COMMITTED,
+    EXPORT_WATERMARK_NOT_COMMITTED,
+    EXPORT_WATERMARK_RESET,
+    EXPORT_WINDOW_LOADED,
+    EXPORT_WINDOW_LOAD_FAILURE,
     INVALID_AUDIT_PAYLOAD_STORED,
     INVALID_CASE_TYPE_SPECIFIED,
     INVALID_PARAMETER_SPECIFIED,
     JSON_PARSE_EXCEPTION,
+    LATEST_EVENTS_SPILL_FAILURE,
     MISSING_REQUEST_PARAMETER,
     NON_EXISTENT_VARIABLE,
+    REFERENCE_DATA_DROPPED,
+    REFERENCE_DATA_REFRESH_FAILURE,
     REFRESH_MATERIALISED_VIEW,
+    REPLICA_FALLBACK,
+    REPLICA_LAG_CHECK_FAILURE,
+    REPLICA_RESTORED,
     REST_CLIENT_EXCEPTION,
     UNAUTHORISED_ACCESS,
     UNCAUGHT_EXCEPTION;
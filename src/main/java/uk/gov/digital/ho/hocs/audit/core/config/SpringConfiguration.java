@@ -11,6 +11,8 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import uk.gov.digital.ho.hocs.audit.core.RequestData;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
@@ -62,4 +64,34 @@ public class SpringConfiguration implements WebMvcConfigurer {
         };
     }
 
+    @Bean
+    public Formatter<ExportCompression> exportCompressionFormatter() {
+        return new Formatter<>() {
+            @Override
+            public ExportCompression parse(String text, Locale locale) {
+                return ExportCompression.fromEncoding(text);
+            }
+
+            @Override
+            public String print(ExportCompression object, Locale locale) {
+                return object.getEncoding();
+            }
+        };
+    }
+
+    @Bean
+    public Formatter<ExportFormat> exportFormatFormatter() {
+        return new Formatter<>() {
+            @Override
+            public ExportFormat parse(String text, Locale locale) {
+                return ExportFormat.fromValue(text);
+            }
+
+            @Override
+            public String print(ExportFormat object, Locale locale) {
+                return object.name().toLowerCase();
+            }
+        };
+    }
+
 }
@@ -0,0 +1,63 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hands out connections that register the statements they create with the {@link QueryCancellation} bound to the
+ * creating thread, if there is one. The statements are otherwise used as they are, so this can wrap any pool.
+ */
+public class CancellableDataSource extends DelegatingDataSource {
+
+    public CancellableDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(CancellableDataSource.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                // the proxy stands in for the connection, so it is only equal to itself
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+
+                Object result;
+                try {
+                    result = method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+
+                // covers createStatement, prepareStatement and prepareCall
+                if (result instanceof Statement statement) {
+                    var cancellation = QueryCancellation.current();
+                    if (cancellation != null) {
+                        cancellation.register(statement);
+                    }
+                }
+                return result;
+            });
+    }
+
+}
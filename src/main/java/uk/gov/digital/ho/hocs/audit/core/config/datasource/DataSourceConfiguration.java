@@ -0,0 +1,65 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Adds a pool of connections to a read replica when {@code audit.datasource.replica.url} is set. Read-only
+ * transactions, which cover the exports and the case timeline, are routed to the replica and everything else stays
+ * on the primary; without a replica the single {@code spring.datasource} pool is used as before.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "audit.datasource.replica", name = "url")
+public class DataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReadReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("audit.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${audit.datasource.replica.url}") String url) {
+        var dataSource = DataSourceBuilder.create().type(HikariDataSource.class).url(url).build();
+        dataSource.setPoolName(ReadReplicaRoutingDataSource.REPLICA);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean(initMethod = "start")
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${audit.datasource.replica.max-lag:PT30S}") Duration maxLag,
+                                               @Value("${audit.datasource.replica.lag-check-interval:PT10S}")
+                                               Duration checkInterval) {
+        return new ReplicaLagMonitor(new JdbcTemplate(replicaDataSource), meterRegistry, maxLag, checkInterval);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(
+            new ReadReplicaRoutingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor, meterRegistry));
+    }
+
+}
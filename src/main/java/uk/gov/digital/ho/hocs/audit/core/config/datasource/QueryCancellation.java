@@ -0,0 +1,104 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The statements run by a thread while a cancellation is bound to it, so that another thread can cancel them. Once
+ * cancelled, the statement running is cancelled in the database and any further statement fails as it is created, so
+ * the thread's transaction is rolled back and its connection released. Statements are tracked by
+ * {@link CancellableDataSource}.
+ */
+@Slf4j
+public class QueryCancellation implements AutoCloseable {
+
+    // the state Postgres reports for a statement cancelled on request
+    static final String QUERY_CANCELED = "57014";
+
+    private static final ThreadLocal<QueryCancellation> CURRENT = new ThreadLocal<>();
+
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled;
+
+    private QueryCancellation previous;
+
+    private QueryCancellation() {}
+
+    /**
+     * Creates a cancellation and binds it to the current thread until it is closed.
+     */
+    public static QueryCancellation start() {
+        var cancellation = new QueryCancellation();
+        cancellation.previous = CURRENT.get();
+        CURRENT.set(cancellation);
+        return cancellation;
+    }
+
+    /**
+     * @return the cancellation bound to the current thread, or null if there is none.
+     */
+    static QueryCancellation current() {
+        return CURRENT.get();
+    }
+
+    void register(Statement statement) throws SQLException {
+        if (cancelled) {
+            statement.close();
+            throw new SQLException("Query cancelled", QUERY_CANCELED);
+        }
+
+        statements.removeIf(QueryCancellation::isClosed);
+        statements.add(statement);
+
+        // cancelled while the statement was being added, and so possibly missed
+        if (cancelled) {
+            cancel(statement);
+        }
+    }
+
+    /**
+     * Cancels the statements running on the bound thread, from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        statements.forEach(QueryCancellation::cancel);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void close() {
+        statements.clear();
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    private static void cancel(Statement statement) {
+        try {
+            if (!statement.isClosed()) {
+                statement.cancel();
+            }
+        } catch (SQLException e) {
+            log.warn("Unable to cancel statement: {}", e.toString());
+        }
+    }
+
+    private static boolean isClosed(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source the application reads through in a {@link CancellableDataSource}, whether it is the single
+ * pool or the routing data source added for a read replica, so that the queries of an export can be cancelled from
+ * another thread.
+ */
+@Configuration
+public class QueryCancellationConfiguration {
+
+    static final String DATA_SOURCE = "dataSource";
+
+    @Bean
+    public static BeanPostProcessor cancellableDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (DATA_SOURCE.equals(beanName) && bean instanceof DataSource dataSource
+                    && !(bean instanceof CancellableDataSource)) {
+                    return new CancellableDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,64 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends the connections of read-only transactions to the replica while it is within the allowed lag, and everything
+ * else to the primary. The transaction is only known to be read-only once it has started, so this has to be used
+ * behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    static final String REPLICA = "replica";
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    private final Counter primaryConnections;
+
+    private final Counter replicaConnections;
+
+    private final Counter fallbackConnections;
+
+    public ReadReplicaRoutingDataSource(DataSource primary,
+                                        DataSource replica,
+                                        ReplicaLagMonitor replicaLagMonitor,
+                                        MeterRegistry meterRegistry) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.primaryConnections = meterRegistry.counter("audit.datasource.connections", "pool", PRIMARY, "fallback",
+            "false");
+        this.replicaConnections = meterRegistry.counter("audit.datasource.connections", "pool", REPLICA, "fallback",
+            "false");
+        this.fallbackConnections = meterRegistry.counter("audit.datasource.connections", "pool", PRIMARY, "fallback",
+            "true");
+
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+
+        if (!replicaLagMonitor.isAvailable()) {
+            fallbackConnections.increment();
+            return PRIMARY;
+        }
+
+        replicaConnections.increment();
+        return REPLICA;
+    }
+
+}
@@ -0,0 +1,107 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXCEPTION;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.REPLICA_FALLBACK;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.REPLICA_LAG_CHECK_FAILURE;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.REPLICA_RESTORED;
+
+/**
+ * Checks in the background how far the read replica is behind the primary. The replica is only used while it is
+ * reachable, streaming from the primary and within the allowed lag, so reads fall back to the primary rather than
+ * returning stale data. Until the first check completes the replica is treated as unavailable.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    // a replica that has replayed everything it has received is up to date, however long ago the last write was, but
+    // only while its wal receiver is streaming: a disconnected or stalled receiver stops receiving too, so the two
+    // positions match however far behind the primary it is. Reading the receiver status needs pg_read_all_stats,
+    // without it the status is null and the replica is never used
+    static final String REPLICA_LAG_QUERY = """
+        SELECT CASE
+            WHEN NOT pg_is_in_recovery() THEN 0
+            WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL
+            WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+            ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+        END
+        """;
+
+    private final JdbcTemplate replica;
+
+    private final Duration maxLag;
+
+    private final Duration checkInterval;
+
+    private final ScheduledExecutorService checker;
+
+    private volatile double lagSeconds = Double.NaN;
+
+    private volatile boolean available;
+
+    public ReplicaLagMonitor(JdbcTemplate replica, MeterRegistry meterRegistry, Duration maxLag, Duration checkInterval) {
+        this.replica = replica;
+        this.maxLag = maxLag;
+        this.checkInterval = checkInterval;
+        this.checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("audit.datasource.replica.lag", this, ReplicaLagMonitor::getLagSeconds).baseUnit(
+            "seconds").register(meterRegistry);
+        Gauge.builder("audit.datasource.replica.available", this, monitor -> monitor.isAvailable() ? 1 : 0).register(
+            meterRegistry);
+    }
+
+    public void start() {
+        checker.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public double getLagSeconds() {
+        return lagSeconds;
+    }
+
+    void check() {
+        boolean wasAvailable = available;
+        try {
+            Double lag = replica.queryForObject(REPLICA_LAG_QUERY, Double.class);
+            lagSeconds = lag != null ? lag : Double.NaN;
+            available = lag != null && lag <= maxLag.toSeconds();
+        } catch (Exception e) {
+            lagSeconds = Double.NaN;
+            available = false;
+            log.error("Unable to check the lag of the read replica", value(EVENT, REPLICA_LAG_CHECK_FAILURE),
+                value(EXCEPTION, e.toString()));
+        }
+
+        if (wasAvailable && !available) {
+            log.warn("Routing read only transactions to the primary, replica lag is {}s", lagSeconds,
+                value(EVENT, REPLICA_FALLBACK));
+        } else if (!wasAvailable && available) {
+            log.info("Routing read only transactions to the replica, replica lag is {}s", lagSeconds,
+                value(EVENT, REPLICA_RESTORED));
+        }
+    }
+
+    public void shutdown() {
+        checker.shutdownNow();
+    }
+
+}
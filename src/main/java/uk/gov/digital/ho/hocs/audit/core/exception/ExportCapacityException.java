@@ -0,0 +1,22 @@
+package uk.gov.digital.ho.hocs.audit.core.exception;
+
+import java.time.Duration;
+
+public class ExportCapacityException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ExportCapacityException(String msg, Object... args) {
+        this(null, msg, args);
+    }
+
+    public ExportCapacityException(Duration retryAfter, String msg, Object... args) {
+        super(String.format(msg, args));
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -1,6 +1,7 @@
 package uk.gov.digital.ho.hocs.audit.core.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.UnsatisfiedServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -12,12 +13,14 @@ import static net.logstash.logback.argument.StructuredArguments.value;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.AUDIT_EVENT_CREATION_FAILED;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.AUDIT_RECORD_NOT_FOUND;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_EXPORT_FAILURE;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXCEPTION;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_REJECTED;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.INVALID_PARAMETER_SPECIFIED;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.MISSING_REQUEST_PARAMETER;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.REST_CLIENT_EXCEPTION;
@@ -59,6 +62,16 @@ public class RestResponseEntityExceptionHandler {
         return new ResponseEntity<>(e.getMessage(), NOT_FOUND);
     }
 
+    @ExceptionHandler(ExportCapacityException.class)
+    public ResponseEntity<String> handle(ExportCapacityException e) {
+        log.warn("ExportCapacityException", value(EVENT, EXPORT_REJECTED), value(EXCEPTION, e.toString()));
+        var response = ResponseEntity.status(TOO_MANY_REQUESTS);
+        if (e.getRetryAfter() != null) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())));
+        }
+        return response.body(e.getMessage());
+    }
+
     @ExceptionHandler(RestClientException.class)
     public ResponseEntity<String> handle(RestClientException e) {
         log.error("RestClientException", value(EVENT, REST_CLIENT_EXCEPTION), value(EXCEPTION, e.toString()));
@@ -1,20 +1,66 @@
 package uk.gov.digital.ho.hocs.audit.core.utils;
 
-import org.springframework.util.StringUtils;
-
-import java.util.regex.Pattern;
-
+/**
+ * Checks and parses canonical UUID strings (8-4-4-4-12 hex digits, either case) without regular expressions or
+ * allocation, as it runs against every exported value.
+ */
 public class UuidStringChecker {
 
-    private static final String UUID_REGEX = "^[0-9a-f]{8}\\b-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-\\b[0-9a-f]{12}$";
+    private static final int UUID_LENGTH = 36;
 
     private UuidStringChecker() {}
 
     public static boolean isUUID(String uuid) {
-        if (StringUtils.hasText(uuid)) {
-            return Pattern.compile(UUID_REGEX, Pattern.CASE_INSENSITIVE).matcher(uuid).matches();
+        if (uuid == null || uuid.length() != UUID_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = uuid.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (hexValue(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the most significant bits of a string that {@link #isUUID(String)} has accepted.
+     */
+    public static long mostSignificantBits(String uuid) {
+        return (hexBits(uuid, 0, 8) << 32) | (hexBits(uuid, 9, 13) << 16) | hexBits(uuid, 14, 18);
+    }
+
+    /**
+     * @return the least significant bits of a string that {@link #isUUID(String)} has accepted.
+     */
+    public static long leastSignificantBits(String uuid) {
+        return (hexBits(uuid, 19, 23) << 48) | hexBits(uuid, 24, 36);
+    }
+
+    private static long hexBits(String uuid, int from, int to) {
+        long bits = 0;
+        for (int i = from; i < to; i++) {
+            bits = (bits << 4) | hexValue(uuid.charAt(i));
+        }
+        return bits;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
         }
-        return false;
+        return -1;
     }
 
 }
@@ -2,14 +2,24 @@ package uk.gov.digital.ho.hocs.audit.core.utils;
 
 import org.springframework.util.StringUtils;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 
 /**
  * Converter that for the user to pass in a local date time and to return the offset
  * against a specified time zone.
+ * <p>
+ * Exports convert timestamps in time order, so consecutive values almost always fall between the same pair of zone
+ * transitions and on the same day. The converter keeps the shift between the two zones for the current transition
+ * window, and with the default format also the rendered date, only going back to the zone rules and formatter when a
+ * value falls outside them.
  */
 public class ZonedDateTimeConverter {
 
@@ -17,10 +27,25 @@ public class ZonedDateTimeConverter {
 
     private static final String DEFAULT_ZONE_ID = "Europe/London";
 
+    private static final DateTimeFormatter DATE_PREFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'");
+
+    private static final int SECONDS_PER_DAY = 86400;
+
     private DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(DEFAULT_DATE_FORMAT);
 
     private ZoneId specifiedTimeZoneId = ZoneId.of(DEFAULT_ZONE_ID);
 
+    private final ZoneId sourceTimeZoneId;
+
+    private boolean defaultFormat = true;
+
+    private String outputtedDateFormat = DEFAULT_DATE_FORMAT;
+
+    // both caches are immutable, so a converter shared between threads at worst recomputes them
+    private OffsetWindow offsetWindow;
+
+    private DatePrefix datePrefix;
+
     /*
      * Default constructor that initialises the formatter and zone id to the default.
      */
@@ -35,13 +60,21 @@ public class ZonedDateTimeConverter {
      * @param timeZoneId          the timezone to set against.
      */
     public ZonedDateTimeConverter(String outputtedDateFormat, String timeZoneId) {
+        this(outputtedDateFormat, timeZoneId, ZoneId.systemDefault());
+    }
+
+    ZonedDateTimeConverter(String outputtedDateFormat, String timeZoneId, ZoneId sourceTimeZoneId) {
         if (StringUtils.hasText(outputtedDateFormat)) {
             this.dateTimeFormatter = DateTimeFormatter.ofPattern(outputtedDateFormat);
+            this.defaultFormat = DEFAULT_DATE_FORMAT.equals(outputtedDateFormat);
+            this.outputtedDateFormat = outputtedDateFormat;
         }
 
         if (StringUtils.hasText(timeZoneId)) {
             this.specifiedTimeZoneId = ZoneId.of(timeZoneId);
         }
+
+        this.sourceTimeZoneId = sourceTimeZoneId;
     }
 
     /**
@@ -52,10 +85,158 @@ public class ZonedDateTimeConverter {
      * @return the offsetted date time string
      */
     public String convert(LocalDateTime localDateTime) {
-        ZonedDateTime zonedDateTime = localDateTime.atZone(ZoneId.systemDefault()).withZoneSameInstant(
+        long localSeconds = localDateTime.toEpochSecond(ZoneOffset.UTC);
+
+        var window = getOffsetWindow(localDateTime, localSeconds);
+        if (window == null) {
+            return convertWithZoneRules(localDateTime).format(dateTimeFormatter);
+        }
+
+        long seconds = localSeconds + window.shift;
+        if (!defaultFormat) {
+            return LocalDateTime.ofEpochSecond(seconds, localDateTime.getNano(), ZoneOffset.UTC).format(
+                dateTimeFormatter);
+        }
+
+        return format(seconds, localDateTime.getNano());
+    }
+
+    /**
+     * Returns the timestamp as a local date time in the specified time zone, for formats that store timestamps as
+     * values rather than text.
+     */
+    public LocalDateTime toLocalDateTime(LocalDateTime localDateTime) {
+        long localSeconds = localDateTime.toEpochSecond(ZoneOffset.UTC);
+
+        var window = getOffsetWindow(localDateTime, localSeconds);
+        if (window == null) {
+            return convertWithZoneRules(localDateTime);
+        }
+
+        return LocalDateTime.ofEpochSecond(localSeconds + window.shift, localDateTime.getNano(), ZoneOffset.UTC);
+    }
+
+    /**
+     * @return true if timestamps are rendered in the default format, which always renders a well formed date.
+     */
+    public boolean isDefaultFormat() {
+        return defaultFormat;
+    }
+
+    /**
+     * Describes the format and zones the converter renders with, so that output converted with the same settings can
+     * be recognised.
+     */
+    public String getSettings() {
+        return String.join("|", outputtedDateFormat, specifiedTimeZoneId.getId(), sourceTimeZoneId.getId());
+    }
+
+    /**
+     * @return the offset window holding the time, or null if it is in a gap or overlap of the source zone.
+     */
+    private OffsetWindow getOffsetWindow(LocalDateTime localDateTime, long localSeconds) {
+        var window = offsetWindow;
+        if (window == null || !window.contains(localSeconds)) {
+            window = OffsetWindow.around(localDateTime, localSeconds, sourceTimeZoneId, specifiedTimeZoneId);
+            if (window != null) {
+                offsetWindow = window;
+            }
+        }
+        return window;
+    }
+
+    private LocalDateTime convertWithZoneRules(LocalDateTime localDateTime) {
+        ZonedDateTime zonedDateTime = localDateTime.atZone(sourceTimeZoneId).withZoneSameInstant(
             specifiedTimeZoneId);
 
-        return zonedDateTime.toLocalDateTime().format(dateTimeFormatter);
+        return zonedDateTime.toLocalDateTime();
+    }
+
+    /**
+     * Renders the default format, yyyy-MM-dd'T'HH:mm:ss.SSSSSS, reusing the date part while the day is unchanged.
+     */
+    private String format(long seconds, int nano) {
+        long epochDay = Math.floorDiv(seconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(seconds, SECONDS_PER_DAY);
+
+        var prefix = datePrefix;
+        if (prefix == null || prefix.epochDay != epochDay) {
+            prefix = new DatePrefix(epochDay, LocalDate.ofEpochDay(epochDay).format(DATE_PREFIX_FORMATTER));
+            datePrefix = prefix;
+        }
+
+        int length = prefix.text.length();
+        char[] chars = new char[length + 15];
+        prefix.text.getChars(0, length, chars, 0);
+        writeDigits(chars, length, secondOfDay / 3600, 2);
+        chars[length + 2] = ':';
+        writeDigits(chars, length + 3, secondOfDay / 60 % 60, 2);
+        chars[length + 5] = ':';
+        writeDigits(chars, length + 6, secondOfDay % 60, 2);
+        chars[length + 8] = '.';
+        writeDigits(chars, length + 9, nano / 1000, 6);
+        return new String(chars);
+    }
+
+    private static void writeDigits(char[] chars, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private record DatePrefix(long epochDay, String text) {}
+
+    /**
+     * A range of local date times, as seconds from the epoch, over which neither zone changes its offset, so every
+     * value is converted by the same shift.
+     */
+    private record OffsetWindow(long from, long to, long shift) {
+
+        boolean contains(long localSeconds) {
+            return localSeconds >= from && localSeconds < to;
+        }
+
+        /**
+         * @return the window holding the given time, or null if the time is in a gap or overlap of the source zone.
+         */
+        static OffsetWindow around(LocalDateTime localDateTime, long localSeconds, ZoneId source, ZoneId target) {
+            Instant instant = localDateTime.atZone(source).toInstant();
+            long epochSecond = instant.getEpochSecond();
+            ZoneRules sourceRules = source.getRules();
+            ZoneRules targetRules = target.getRules();
+            int sourceOffset = sourceRules.getOffset(instant).getTotalSeconds();
+            int targetOffset = targetRules.getOffset(instant).getTotalSeconds();
+
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+
+            // local times just after a transition that moves the clocks back resolve to the earlier offset
+            ZoneOffsetTransition previous = sourceRules.previousTransition(Instant.ofEpochSecond(epochSecond + 1));
+            if (previous != null) {
+                from = previous.toEpochSecond() + Math.max(previous.getOffsetBefore().getTotalSeconds(),
+                    sourceOffset);
+            }
+            ZoneOffsetTransition next = sourceRules.nextTransition(Instant.ofEpochSecond(epochSecond));
+            if (next != null) {
+                to = next.toEpochSecond() + sourceOffset;
+            }
+
+            previous = targetRules.previousTransition(Instant.ofEpochSecond(epochSecond + 1));
+            if (previous != null) {
+                from = Math.max(from, previous.toEpochSecond() + sourceOffset);
+            }
+            next = targetRules.nextTransition(Instant.ofEpochSecond(epochSecond));
+            if (next != null) {
+                to = Math.min(to, next.toEpochSecond() + sourceOffset);
+            }
+
+            if (localSeconds < from || localSeconds >= to) {
+                return null;
+            }
+            return new OffsetWindow(from, to, targetOffset - sourceOffset);
+        }
+
     }
 
 }
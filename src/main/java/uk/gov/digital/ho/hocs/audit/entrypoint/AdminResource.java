@@ -2,13 +2,23 @@ package uk.gov.digital.ho.hocs.audit.entrypoint;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CaseDataProjectionResponse;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CaseLatestStateResponse;
+import uk.gov.digital.ho.hocs.audit.service.CaseDataProjectionService;
+import uk.gov.digital.ho.hocs.audit.service.CaseLatestStateService;
 import uk.gov.digital.ho.hocs.audit.service.CustomExportService;
 
 import jakarta.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 @Slf4j
 @RestController
@@ -16,8 +26,16 @@ public class AdminResource {
 
     private final CustomExportService customExportService;
 
-    public AdminResource(CustomExportService customExportService) {
+    private final CaseLatestStateService caseLatestStateService;
+
+    private final CaseDataProjectionService caseDataProjectionService;
+
+    public AdminResource(CustomExportService customExportService,
+                         CaseLatestStateService caseLatestStateService,
+                         CaseDataProjectionService caseDataProjectionService) {
         this.customExportService = customExportService;
+        this.caseLatestStateService = caseLatestStateService;
+        this.caseDataProjectionService = caseDataProjectionService;
     }
 
     @PostMapping(value = "/admin/export/custom/{viewName}/refresh")
@@ -32,4 +50,25 @@ public class AdminResource {
         }
     }
 
+    @PostMapping(value = "/admin/case-latest-state/{caseType}/backfill", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<CaseLatestStateResponse> backfillCaseLatestState(@PathVariable("caseType") String caseType,
+                                                                           @RequestParam("fromDate") LocalDate fromDate) {
+        long updated = caseLatestStateService.backfill(caseType, fromDate);
+        return ResponseEntity.ok(CaseLatestStateResponse.backfilled(caseType, fromDate, updated));
+    }
+
+    @GetMapping(value = "/admin/case-latest-state/{caseType}/check", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<CaseLatestStateResponse> checkCaseLatestState(@PathVariable("caseType") String caseType,
+                                                                        @RequestParam("fromDate") LocalDate fromDate) {
+        long mismatched = caseLatestStateService.check(caseType, fromDate);
+        return ResponseEntity.ok(CaseLatestStateResponse.checked(caseType, fromDate, mismatched));
+    }
+
+    @PostMapping(value = "/admin/case-data-projection/{caseType}/reproject", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<CaseDataProjectionResponse> reprojectCaseData(@PathVariable("caseType") String caseType,
+                                                                        @RequestParam("fromDate") LocalDate fromDate) {
+        long updated = caseDataProjectionService.reproject(caseType, fromDate);
+        return ResponseEntity.ok(new CaseDataProjectionResponse(caseType, fromDate, updated));
+    }
+
 }
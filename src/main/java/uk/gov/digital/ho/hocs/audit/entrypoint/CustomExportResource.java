@@ -2,7 +2,6 @@ package uk.gov.digital.ho.hocs.audit.entrypoint;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,12 +12,23 @@ import org.springframework.web.client.HttpClientErrorException;
 import uk.gov.digital.ho.hocs.audit.core.exception.EntityPermissionException;
 import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CustomExportFilter;
 import uk.gov.digital.ho.hocs.audit.service.CustomExportService;
+import uk.gov.digital.ho.hocs.audit.service.ExportAdmissionService;
+import uk.gov.digital.ho.hocs.audit.service.ExportCompressionService;
+import uk.gov.digital.ho.hocs.audit.service.ExportProfiler;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.time.LocalDate;
 
+import static net.logstash.logback.argument.StructuredArguments.entries;
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_EXPORT_COMPLETE;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+
 @Slf4j
 @RestController
 @Profile("extracts")
@@ -26,12 +36,26 @@ public class CustomExportResource {
 
     private final CustomExportService customExportService;
 
-    public CustomExportResource(CustomExportService customExportService) {
+    private final ExportCompressionService exportCompressionService;
+
+    private final ExportAdmissionService exportAdmissionService;
+
+    private final ExportProfiler exportProfiler;
+
+    public CustomExportResource(CustomExportService customExportService,
+                                ExportCompressionService exportCompressionService,
+                                ExportAdmissionService exportAdmissionService,
+                                ExportProfiler exportProfiler) {
         this.customExportService = customExportService;
+        this.exportCompressionService = exportCompressionService;
+        this.exportAdmissionService = exportAdmissionService;
+        this.exportProfiler = exportProfiler;
     }
 
-    @GetMapping(value = "/export/custom/{viewName}", produces = "text/csv;charset=UTF-8")
+    @GetMapping(value = "/export/custom/{viewName}",
+                produces = { "text/csv;charset=UTF-8", "application/vnd.apache.parquet", "application/x-ndjson" })
     public @ResponseBody void getCustomDataExport(
+        HttpServletRequest request,
         HttpServletResponse response,
         @PathVariable("viewName") String viewName,
         @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader,
@@ -39,13 +63,23 @@ public class CustomExportResource {
         @RequestParam(name = "dateFrom", required = false) LocalDate dateFrom,
         @RequestParam(name = "dateTo", required = false) LocalDate dateTo,
         @RequestParam(name = "value", required = false) String value,
-        @RequestParam(name = "includeEmpty", defaultValue = "false") boolean includeEmpty
+        @RequestParam(name = "includeEmpty", defaultValue = "false") boolean includeEmpty,
+        @RequestParam(name = "compression", required = false) ExportCompression compression,
+        @RequestParam(name = "format", defaultValue = "csv") ExportFormat format
     ) throws IOException {
+        var permit = exportAdmissionService.acquire();
 
         try {
             CustomExportFilter filter = new CustomExportFilter(filterBy, dateFrom, dateTo, value, includeEmpty);
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + getFilename(viewName));
-            customExportService.export(response, viewName, convertHeader, filter);
+            var validatedFilter = customExportService.validate(viewName, filter);
+            response.setContentType(format.getContentType());
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFilename(viewName, format));
+            try (var profile = exportProfiler.start(ExportProfiler.CUSTOM_EXPORT_TYPE, response)) {
+                customExportService.export(outputStream, viewName, convertHeader, validatedFilter, format);
+                log.info("Completed custom export of {} to {}", viewName, format, value(EVENT, CSV_EXPORT_COMPLETE),
+                    entries(profile.getSummary()));
+            }
             response.setStatus(200);
         } catch (Exception ex) {
             log.error("Error exporting CSV file for custom report {}: {}", viewName, ex.getMessage());
@@ -59,11 +93,14 @@ public class CustomExportResource {
             } else {
                 response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
             }
+        } finally {
+            permit.close();
         }
     }
 
-    public String getFilename(String viewName) {
-        return String.format("%s-%s.csv", viewName, customExportService.getViewLastRefreshedDate(viewName));
+    public String getFilename(String viewName, ExportFormat format) {
+        return String.format("%s-%s.%s", viewName, customExportService.getViewLastRefreshedDate(viewName),
+            format.getFileExtension());
     }
 
 }
@@ -4,18 +4,33 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import uk.gov.digital.ho.hocs.audit.core.LogEvent;
 import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.ExportEstimateResponse;
 import uk.gov.digital.ho.hocs.audit.service.DynamicExportService;
+import uk.gov.digital.ho.hocs.audit.service.ExportBundleService;
+import uk.gov.digital.ho.hocs.audit.service.ExportCancellationService;
+import uk.gov.digital.ho.hocs.audit.service.ExportDeltaService;
+import uk.gov.digital.ho.hocs.audit.service.ExportEstimateService;
+import uk.gov.digital.ho.hocs.audit.service.ExportAdmissionService;
+import uk.gov.digital.ho.hocs.audit.service.ExportCompressionService;
+import uk.gov.digital.ho.hocs.audit.service.ExportProfiler;
+import uk.gov.digital.ho.hocs.audit.service.ExportSegmentService;
 import uk.gov.digital.ho.hocs.audit.service.SomuExportService;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 import java.util.List;
@@ -23,6 +38,8 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static net.logstash.logback.argument.StructuredArguments.entries;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static net.logstash.logback.argument.StructuredArguments.value;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_EXPORT_COMPLETE;
 import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_EXPORT_START;
@@ -33,19 +50,54 @@ import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
 @Profile("extracts")
 public class DataExportResource {
 
+    static final String WATERMARK_HEADER = "X-Export-Watermark";
+
     private final Map<ExportType, DynamicExportService> dynamicExportServices;
 
     private final SomuExportService somuExportService;
 
-    public DataExportResource(List<DynamicExportService> dynamicExportServices, SomuExportService somuExportService) {
+    private final ExportCompressionService exportCompressionService;
+
+    private final ExportAdmissionService exportAdmissionService;
+
+    private final ExportProfiler exportProfiler;
+
+    private final ExportBundleService exportBundleService;
+
+    private final ExportDeltaService exportDeltaService;
+
+    private final ExportSegmentService exportSegmentService;
+
+    private final ExportCancellationService exportCancellationService;
+
+    private final ExportEstimateService exportEstimateService;
+
+    public DataExportResource(List<DynamicExportService> dynamicExportServices,
+                              SomuExportService somuExportService,
+                              ExportCompressionService exportCompressionService,
+                              ExportAdmissionService exportAdmissionService,
+                              ExportProfiler exportProfiler,
+                              ExportBundleService exportBundleService,
+                              ExportDeltaService exportDeltaService,
+                              ExportSegmentService exportSegmentService,
+                              ExportCancellationService exportCancellationService,
+                              ExportEstimateService exportEstimateService) {
         this.dynamicExportServices = dynamicExportServices.stream().collect(
             Collectors.toMap(DynamicExportService::getExportType, Function.identity()));
         this.somuExportService = somuExportService;
+        this.exportCompressionService = exportCompressionService;
+        this.exportAdmissionService = exportAdmissionService;
+        this.exportProfiler = exportProfiler;
+        this.exportBundleService = exportBundleService;
+        this.exportDeltaService = exportDeltaService;
+        this.exportSegmentService = exportSegmentService;
+        this.exportCancellationService = exportCancellationService;
+        this.exportEstimateService = exportEstimateService;
     }
 
     @GetMapping(value = "/export/{caseType}",
                 params = { "fromDate", "exportType" },
-                produces = "text/csv;charset=UTF-8")
+                produces = { "text/csv;charset=UTF-8", "application/vnd.apache.parquet", "application/x-ndjson" })
     public @ResponseBody void getDataExport(@RequestParam("fromDate") LocalDate fromDate,
                                             @RequestParam(name = "toDate",
                                                           defaultValue = "#{T(java.time.LocalDate).now()}")
@@ -58,11 +110,14 @@ public class DataExportResource {
                                             @RequestParam(name = "timestampFormat", required = false)
                                             String timestampFormat,
                                             @RequestParam(name = "timeZoneId", required = false) String timeZoneId,
+                                            @RequestParam(name = "compression", required = false)
+                                            ExportCompression compression,
+                                            @RequestParam(name = "format", defaultValue = "csv") ExportFormat format,
+                                            HttpServletRequest request,
                                             HttpServletResponse response) {
-        ZonedDateTimeConverter zonedDateTimeConverter = new ZonedDateTimeConverter(timestampFormat, timeZoneId);
-
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
-            "attachment; filename=" + getFileName(caseType, exportType));
+        // typed formats parse the timestamps back, so they are always written in the default format
+        ZonedDateTimeConverter zonedDateTimeConverter = new ZonedDateTimeConverter(
+            format.isTyped() ? null : timestampFormat, timeZoneId);
 
         var service = dynamicExportServices.get(exportType);
 
@@ -71,22 +126,191 @@ public class DataExportResource {
                 LogEvent.INVALID_PARAMETER_SPECIFIED, exportType);
         }
 
+        var permit = exportAdmissionService.acquire();
+        var watch = exportCancellationService.watch(exportType.toString(), caseType);
+
         try {
             log.info(
-                "Exporting {} to CSV with fromDate: {}, toDate: {}, caseType: {}, convert: {}, convertHeader: {}, timestampFormat: {}, timeZoneId: {}",
-                exportType, fromDate, toDate, caseType, convert, convertHeader, timestampFormat, timeZoneId,
+                "Exporting {} to {} with fromDate: {}, toDate: {}, caseType: {}, convert: {}, convertHeader: {}, timestampFormat: {}, timeZoneId: {}",
+                exportType, format, fromDate, toDate, caseType, convert, convertHeader, timestampFormat, timeZoneId,
                 value(EVENT, CSV_EXPORT_START)
             );
-            service.export(fromDate, toDate, response.getOutputStream(), caseType, convert, convertHeader,
-                zonedDateTimeConverter);
-            log.info("Completed export of {} to CSV", exportType, value(EVENT, CSV_EXPORT_COMPLETE));
+            response.setContentType(format.getContentType());
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFileName(caseType, exportType, format));
+            try (var profile = exportProfiler.start(exportType.toString(), response)) {
+                exportSegmentService.export(service, fromDate, toDate, outputStream, caseType, convert,
+                    convertHeader, zonedDateTimeConverter, format);
+                log.info("Completed export of {} to {}", exportType, format, value(EVENT, CSV_EXPORT_COMPLETE),
+                    entries(profile.getSummary()));
+            }
         } catch (Exception ex) {
+            // nobody is left to send an error to, and the abort is logged as the watch is closed
+            if (watch.isDisconnected()) {
+                return;
+            }
             log.error("Error exporting CSV file for case type {} and export type {} for reason {}", caseType,
                 exportType, ex.toString());
             response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        } finally {
+            watch.close();
+            permit.close();
+        }
+    }
+
+    /**
+     * Estimates the export of {@link #getDataExport} without running it. Only the parameters that change which events
+     * are read are taken, as the others change how they are written.
+     */
+    @GetMapping(value = "/export/{caseType}/estimate",
+                params = { "fromDate", "exportType" },
+                produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<ExportEstimateResponse> getDataExportEstimate(@RequestParam("fromDate") LocalDate fromDate,
+                                                                        @RequestParam(name = "toDate",
+                                                                                      defaultValue = "#{T(java.time.LocalDate).now()}")
+                                                                        LocalDate toDate,
+                                                                        @PathVariable("caseType") String caseType,
+                                                                        @RequestParam("exportType")
+                                                                        ExportType exportType) {
+        var service = dynamicExportServices.get(exportType);
+
+        if (service == null) {
+            throw new InvalidExportTypeException("Export service does not exist for type: %s",
+                LogEvent.INVALID_PARAMETER_SPECIFIED, exportType);
+        }
+
+        var estimate = exportEstimateService.estimate(service, fromDate, toDate, caseType);
+        return ResponseEntity.ok(ExportEstimateResponse.from(estimate));
+    }
+
+    @GetMapping(value = "/export/{caseType}/bundle",
+                params = { "fromDate" },
+                produces = "application/zip")
+    public @ResponseBody void getBundleExport(@RequestParam("fromDate") LocalDate fromDate,
+                                              @RequestParam(name = "toDate",
+                                                            defaultValue = "#{T(java.time.LocalDate).now()}")
+                                              LocalDate toDate,
+                                              @PathVariable("caseType") String caseType,
+                                              @RequestParam(name = "exportTypes", required = false)
+                                              List<ExportType> exportTypes,
+                                              @RequestParam(name = "convert", defaultValue = "false") boolean convert,
+                                              @RequestParam(name = "convertHeader", defaultValue = "false")
+                                              boolean convertHeader,
+                                              @RequestParam(name = "timestampFormat", required = false)
+                                              String timestampFormat,
+                                              @RequestParam(name = "timeZoneId", required = false) String timeZoneId,
+                                              HttpServletResponse response) {
+        ZonedDateTimeConverter zonedDateTimeConverter = new ZonedDateTimeConverter(timestampFormat, timeZoneId);
+
+        if (exportTypes != null && !exportBundleService.getExportTypes().containsAll(exportTypes)) {
+            throw new InvalidExportTypeException("Export types cannot be bundled: %s",
+                LogEvent.INVALID_PARAMETER_SPECIFIED, exportTypes);
+        }
+
+        var permit = exportAdmissionService.acquire();
+        var watch = exportCancellationService.watch(ExportProfiler.BUNDLE_EXPORT_TYPE, caseType);
+
+        try {
+            log.info("Exporting bundle of {} with fromDate: {}, toDate: {}, caseType: {}, convert: {}, convertHeader: {}",
+                exportTypes == null ? exportBundleService.getExportTypes() : exportTypes, fromDate, toDate, caseType,
+                convert, convertHeader, value(EVENT, CSV_EXPORT_START));
+            // the zip is already compressed, so no transfer encoding is negotiated
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=" + getFileName(caseType, "bundle", "zip"));
+            try (var profile = exportProfiler.start(ExportProfiler.BUNDLE_EXPORT_TYPE, response)) {
+                exportBundleService.export(fromDate, toDate, response.getOutputStream(), caseType, exportTypes, convert,
+                    convertHeader, zonedDateTimeConverter);
+                log.info("Completed export of bundle for case type {}", caseType, value(EVENT, CSV_EXPORT_COMPLETE),
+                    entries(profile.getSummary()));
+            }
+        } catch (Exception ex) {
+            if (watch.isDisconnected()) {
+                return;
+            }
+            log.error("Error exporting bundle for case type {} for reason {}", caseType, ex.toString());
+            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        } finally {
+            watch.close();
+            permit.close();
         }
     }
 
+    /**
+     * Exports the events audited since the consumer's committed watermark. The watermark that ends the delta is sent in
+     * a header, for the consumer to commit once it has the whole download; until then each delta starts from the
+     * same place.
+     */
+    @GetMapping(value = "/export/{caseType}/delta",
+                params = { "consumer", "exportType" },
+                produces = { "text/csv;charset=UTF-8", "application/vnd.apache.parquet", "application/x-ndjson" })
+    public @ResponseBody void getDeltaExport(@PathVariable("caseType") String caseType,
+                                             @RequestParam("consumer") String consumer,
+                                             @RequestParam("exportType") ExportType exportType,
+                                             @RequestParam(name = "convert", defaultValue = "false") boolean convert,
+                                             @RequestParam(name = "convertHeader", defaultValue = "false")
+                                             boolean convertHeader,
+                                             @RequestParam(name = "timestampFormat", required = false)
+                                             String timestampFormat,
+                                             @RequestParam(name = "timeZoneId", required = false) String timeZoneId,
+                                             @RequestParam(name = "compression", required = false)
+                                             ExportCompression compression,
+                                             @RequestParam(name = "format", defaultValue = "csv") ExportFormat format,
+                                             HttpServletRequest request,
+                                             HttpServletResponse response) {
+        ZonedDateTimeConverter zonedDateTimeConverter = new ZonedDateTimeConverter(
+            format.isTyped() ? null : timestampFormat, timeZoneId);
+
+        var delta = exportDeltaService.start(consumer, caseType, exportType);
+
+        var permit = exportAdmissionService.acquire();
+        var watch = exportCancellationService.watch(exportType.toString(), caseType);
+
+        try {
+            log.info("Exporting {} delta to {} for consumer: {}, caseType: {}, afterId: {}, lastId: {}", exportType,
+                format, consumer, caseType, delta.getAfterId(), delta.getLastId(), value(EVENT, CSV_EXPORT_START));
+            response.setContentType(format.getContentType());
+            response.setHeader(WATERMARK_HEADER, String.valueOf(delta.getLastId()));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFileName(caseType, exportType.toString().toLowerCase() + "-delta", format.getFileExtension()));
+            try (var profile = exportProfiler.start(exportType.toString(), response)) {
+                exportDeltaService.export(delta, outputStream, format, convert, convertHeader,
+                    zonedDateTimeConverter);
+                log.info("Completed export of {} delta to {}", exportType, format, value(EVENT, CSV_EXPORT_COMPLETE),
+                    entries(profile.getSummary()));
+            }
+        } catch (Exception ex) {
+            if (watch.isDisconnected()) {
+                return;
+            }
+            log.error("Error exporting delta for consumer {}, case type {} and export type {} for reason {}",
+                consumer, caseType, exportType, ex.toString());
+            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        } finally {
+            watch.close();
+            permit.close();
+        }
+    }
+
+    @PostMapping(value = "/export/{caseType}/delta", params = { "consumer", "exportType", "watermark" })
+    public ResponseEntity<Void> commitDeltaExport(@PathVariable("caseType") String caseType,
+                                                  @RequestParam("consumer") String consumer,
+                                                  @RequestParam("exportType") ExportType exportType,
+                                                  @RequestParam("watermark") long watermark) {
+        if (!exportDeltaService.commit(consumer, caseType, exportType, watermark)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping(value = "/export/{caseType}/delta", params = { "consumer", "exportType" })
+    public ResponseEntity<Void> resetDeltaExport(@PathVariable("caseType") String caseType,
+                                                 @RequestParam("consumer") String consumer,
+                                                 @RequestParam("exportType") ExportType exportType) {
+        exportDeltaService.reset(consumer, caseType, exportType);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping(value = "/export/somu/{caseType}",
                 params = { "fromDate", "somuType" },
                 produces = "text/csv;charset=UTF-8")
@@ -100,31 +324,50 @@ public class DataExportResource {
                                             @RequestParam(name = "timestampFormat", required = false)
                                             String timestampFormat,
                                             @RequestParam(name = "timeZoneId", required = false) String timeZoneId,
+                                            @RequestParam(name = "compression", required = false)
+                                            ExportCompression compression,
+                                            HttpServletRequest request,
                                             HttpServletResponse response) {
         ZonedDateTimeConverter zonedDateTimeConverter = new ZonedDateTimeConverter(timestampFormat, timeZoneId);
 
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + getFileName(caseType, somuType));
+        var permit = exportAdmissionService.acquire();
+        var watch = exportCancellationService.watch(ExportProfiler.SOMU_EXPORT_TYPE, caseType);
 
         try {
             log.info("Exporting {}:{} to CSV", caseType, somuType, value(EVENT, CSV_EXPORT_START));
-            somuExportService.export(fromDate, toDate, response.getOutputStream(), caseType, somuType, convert,
-                zonedDateTimeConverter);
-            log.info("Completed export of {}:{} to CSV", caseType, somuType, value(EVENT, CSV_EXPORT_COMPLETE));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFileName(caseType, somuType));
+            try (var profile = exportProfiler.start(ExportProfiler.SOMU_EXPORT_TYPE, response)) {
+                somuExportService.export(fromDate, toDate, outputStream, caseType, somuType, convert,
+                    zonedDateTimeConverter);
+                log.info("Completed export of {}:{} to CSV", caseType, somuType, value(EVENT, CSV_EXPORT_COMPLETE),
+                    entries(profile.getSummary()));
+            }
         } catch (Exception ex) {
+            if (watch.isDisconnected()) {
+                return;
+            }
             log.error("Error exporting CSV file for case type {} and somu type {} for reason {}", caseType, somuType,
                 ex.toString());
             response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        } finally {
+            watch.close();
+            permit.close();
         }
     }
 
     //TODO: Remove somehow - is it actually useful?
-    private String getFileName(String caseType, ExportType exportType) {
-        return String.format("%s-%s-%s.csv", caseType.toLowerCase(), exportType.toString().toLowerCase(),
-            LocalDate.now());
+    private String getFileName(String caseType, ExportType exportType, ExportFormat format) {
+        return String.format("%s-%s-%s.%s", caseType.toLowerCase(), exportType.toString().toLowerCase(),
+            LocalDate.now(), format.getFileExtension());
     }
 
     private String getFileName(String caseType, String export) {
-        return String.format("%s-%s-%s.csv", caseType.toLowerCase(), export, LocalDate.now());
+        return getFileName(caseType, export, "csv");
+    }
+
+    private String getFileName(String caseType, String export, String extension) {
+        return String.format("%s-%s-%s.%s", caseType.toLowerCase(), export, LocalDate.now(), extension);
     }
 
 }
@@ -0,0 +1,118 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.util.UriComponentsBuilder;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CustomExportFilter;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.ExportJobRequest;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.ExportJobResponse;
+import uk.gov.digital.ho.hocs.audit.service.ExportJobService;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportJob;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportJobStatus;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.UUID;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.INVALID_PARAMETER_SPECIFIED;
+
+@Slf4j
+@RestController
+@Profile("extracts")
+public class ExportJobResource {
+
+    private static final String FILE_LEASE_ATTRIBUTE = ExportJobResource.class.getName() + ".fileLease";
+
+    private final ExportJobService exportJobService;
+
+    public ExportJobResource(ExportJobService exportJobService) {
+        this.exportJobService = exportJobService;
+    }
+
+    @PostMapping(value = "/export/jobs",
+                 consumes = MediaType.APPLICATION_JSON_VALUE,
+                 produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createExportJob(@RequestBody ExportJobRequest request,
+                                             UriComponentsBuilder uriComponentsBuilder) {
+        ExportJob job;
+
+        try {
+            var format = request.getFormat() == null ? ExportFormat.CSV : ExportFormat.fromValue(request.getFormat());
+            var compression = request.getCompression() == null ? null : ExportCompression.fromEncoding(
+                request.getCompression());
+
+            if (request.getViewName() != null) {
+                job = exportJobService.submitCustomExport(request.getViewName(), request.isConvertHeader(),
+                    new CustomExportFilter(request.getFilterBy(), request.getDateFrom(), request.getDateTo(),
+                        request.getValue(), request.isIncludeEmpty()), format, compression);
+            } else {
+                if (request.getCaseType() == null || request.getExportType() == null
+                    || request.getFromDate() == null) {
+                    throw new IllegalArgumentException(
+                        "caseType, exportType and fromDate are required unless a viewName is given");
+                }
+
+                job = exportJobService.submitDynamicExport(
+                    ExportType.valueOf(request.getExportType().toUpperCase(Locale.ROOT)), request.getCaseType(),
+                    request.getFromDate(), request.getToDate() == null ? LocalDate.now() : request.getToDate(),
+                    request.isConvert(), request.isConvertHeader(), request.getTimestampFormat(),
+                    request.getTimeZoneId(), format, compression);
+            }
+        } catch (IllegalArgumentException | CustomExportFilter.FilterValidationException ex) {
+            log.error("Invalid export job request: {}", ex.getMessage(), value(EVENT, INVALID_PARAMETER_SPECIFIED));
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+
+        var location = uriComponentsBuilder.path("/export/jobs/{jobId}").buildAndExpand(job.getId()).toUri();
+        return ResponseEntity.accepted().location(location).body(ExportJobResponse.from(job));
+    }
+
+    @GetMapping(value = "/export/jobs/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ExportJobResponse> getExportJob(@PathVariable("jobId") UUID jobId) {
+        return ResponseEntity.ok(ExportJobResponse.from(exportJobService.getJob(jobId)));
+    }
+
+    /**
+     * Returns the spooled export. Range requests are served by the resource handling, so an interrupted download can
+     * be resumed from where it stopped. The file is leased until the request has completed, as the resource is only
+     * read once the response is written.
+     */
+    @GetMapping(value = "/export/jobs/{jobId}/file")
+    public ResponseEntity<Resource> getExportJobFile(@PathVariable("jobId") UUID jobId) {
+        var job = exportJobService.getJob(jobId);
+
+        if (job.getStatus() != ExportJobStatus.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        var lease = exportJobService.leaseFile(job);
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(FILE_LEASE_ATTRIBUTE,
+            lease::close, RequestAttributes.SCOPE_REQUEST);
+
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + job.getFileName())
+            .eTag(job.getId().toString())
+            .lastModified(job.getCompletedAt())
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(new FileSystemResource(job.getFile()));
+    }
+
+}
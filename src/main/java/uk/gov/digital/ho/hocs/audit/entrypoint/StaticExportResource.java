@@ -2,18 +2,20 @@ package uk.gov.digital.ho.hocs.audit.entrypoint;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import uk.gov.digital.ho.hocs.audit.service.ExportCompressionService;
 import uk.gov.digital.ho.hocs.audit.service.StaticTeamService;
 import uk.gov.digital.ho.hocs.audit.service.StaticTopicAndTeamService;
 import uk.gov.digital.ho.hocs.audit.service.StaticTopicService;
 import uk.gov.digital.ho.hocs.audit.service.StaticUnitAndTeamService;
 import uk.gov.digital.ho.hocs.audit.service.StaticUserService;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 
@@ -37,26 +39,33 @@ public class StaticExportResource {
 
     private final StaticUnitAndTeamService staticUnitAndTeamService;
 
+    private final ExportCompressionService exportCompressionService;
+
     public StaticExportResource(StaticTeamService staticTeamService,
                                 StaticTopicService staticTopicService,
                                 StaticTopicAndTeamService staticTopicAndTeamService,
                                 StaticUserService staticUserService,
-                                StaticUnitAndTeamService staticUnitAndTeamService) {
+                                StaticUnitAndTeamService staticUnitAndTeamService,
+                                ExportCompressionService exportCompressionService) {
         this.staticTeamService = staticTeamService;
         this.staticTopicService = staticTopicService;
         this.staticTopicAndTeamService = staticTopicAndTeamService;
         this.staticUserService = staticUserService;
         this.staticUnitAndTeamService = staticUnitAndTeamService;
+        this.exportCompressionService = exportCompressionService;
     }
 
     @GetMapping(value = "/export/topics", produces = "text/csv;charset=UTF-8")
-    public void getTopics(HttpServletResponse response,
-                          @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader) {
+    public void getTopics(HttpServletRequest request,
+                          HttpServletResponse response,
+                          @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader,
+                          @RequestParam(name = "compression", required = false) ExportCompression compression) {
         try {
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + getFilename("topics"));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFilename("topics"));
 
             log.info("Exporting topics to CSV", value(EVENT, CSV_EXPORT_START));
-            staticTopicService.export(response.getOutputStream(), convertHeader);
+            staticTopicService.export(outputStream, convertHeader);
             log.info("Completed export of topics to CSV", value(EVENT, CSV_EXPORT_COMPLETE));
         } catch (Exception ex) {
             log.error("Error exporting CSV file for static topic list for reason {}", ex.toString());
@@ -65,16 +74,19 @@ public class StaticExportResource {
     }
 
     @GetMapping(value = "/export/topics/{caseType}/teams", produces = "text/csv;charset=UTF-8")
-    public void getTopicsWithTeams(HttpServletResponse response,
+    public void getTopicsWithTeams(HttpServletRequest request,
+                                   HttpServletResponse response,
                                    @PathVariable("caseType") String caseType,
                                    @RequestParam(name = "convertHeader", defaultValue = "false")
-                                   boolean convertHeader) {
+                                   boolean convertHeader,
+                                   @RequestParam(name = "compression", required = false)
+                                   ExportCompression compression) {
         try {
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=" + getFileName(caseType, "topics_teams"));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFileName(caseType, "topics_teams"));
 
             log.info("Exporting topics and teams to CSV", value(EVENT, CSV_EXPORT_START));
-            staticTopicAndTeamService.export(response.getOutputStream(), caseType, convertHeader);
+            staticTopicAndTeamService.export(outputStream, caseType, convertHeader);
             log.info("Completed export of topics and teams to CSV", value(EVENT, CSV_EXPORT_COMPLETE));
         } catch (Exception ex) {
             log.error("Error exporting CSV file for static topic list for reason {}", ex.toString());
@@ -83,13 +95,16 @@ public class StaticExportResource {
     }
 
     @GetMapping(value = "/export/teams", produces = "text/csv;charset=UTF-8")
-    public void getTeams(HttpServletResponse response,
-                         @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader) {
+    public void getTeams(HttpServletRequest request,
+                         HttpServletResponse response,
+                         @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader,
+                         @RequestParam(name = "compression", required = false) ExportCompression compression) {
         try {
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + getFilename("teams"));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFilename("teams"));
 
             log.info("Exporting teams to CSV", value(EVENT, CSV_EXPORT_START));
-            staticTeamService.export(response.getOutputStream(), convertHeader);
+            staticTeamService.export(outputStream, convertHeader);
             log.info("Completed export of teams to CSV", value(EVENT, CSV_EXPORT_COMPLETE));
         } catch (Exception ex) {
             log.error("Error exporting CSV file for static team list for reason {}", ex.toString());
@@ -98,13 +113,16 @@ public class StaticExportResource {
     }
 
     @GetMapping(value = "/export/units/teams", produces = "text/csv;charset=UTF-8")
-    public void getUnitsForTeams(HttpServletResponse response,
-                                 @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader) {
+    public void getUnitsForTeams(HttpServletRequest request,
+                                 HttpServletResponse response,
+                                 @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader,
+                                 @RequestParam(name = "compression", required = false) ExportCompression compression) {
         try {
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + getFilename("units_teams"));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFilename("units_teams"));
 
             log.info("Exporting units with teams to CSV", value(EVENT, CSV_EXPORT_START));
-            staticUnitAndTeamService.export(response.getOutputStream(), convertHeader);
+            staticUnitAndTeamService.export(outputStream, convertHeader);
             log.info("Completed export of units with teams to CSV", value(EVENT, CSV_EXPORT_COMPLETE));
         } catch (Exception ex) {
             log.error("Error exporting CSV file for static units for teams list for reason {}", ex.toString());
@@ -113,13 +131,16 @@ public class StaticExportResource {
     }
 
     @GetMapping(value = "/export/users", produces = "text/csv;charset=UTF-8")
-    public void getUsers(HttpServletResponse response,
-                         @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader) {
+    public void getUsers(HttpServletRequest request,
+                         HttpServletResponse response,
+                         @RequestParam(name = "convertHeader", defaultValue = "false") boolean convertHeader,
+                         @RequestParam(name = "compression", required = false) ExportCompression compression) {
         try {
-            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + getFilename("users"));
+            var outputStream = exportCompressionService.prepareResponse(request, response, compression,
+                getFilename("users"));
 
             log.info("Exporting users to CSV", value(EVENT, CSV_EXPORT_START));
-            staticUserService.export(response.getOutputStream(), convertHeader);
+            staticUserService.export(outputStream, convertHeader);
             log.info("Completed export of users to CSV", value(EVENT, CSV_EXPORT_COMPLETE));
         } catch (Exception ex) {
             log.error("Error exporting CSV file for static user list for reason {}", ex.toString());
@@ -0,0 +1,22 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@AllArgsConstructor
+@Getter
+public class CaseDataProjectionResponse {
+
+    @JsonProperty("caseType")
+    private String caseType;
+
+    @JsonProperty("fromDate")
+    private LocalDate fromDate;
+
+    @JsonProperty("updated")
+    private long updated;
+
+}
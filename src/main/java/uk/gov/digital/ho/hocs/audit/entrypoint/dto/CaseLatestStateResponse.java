@@ -0,0 +1,36 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CaseLatestStateResponse {
+
+    @JsonProperty("caseType")
+    private String caseType;
+
+    @JsonProperty("fromDate")
+    private LocalDate fromDate;
+
+    @JsonProperty("updated")
+    private Long updated;
+
+    @JsonProperty("mismatched")
+    private Long mismatched;
+
+    public static CaseLatestStateResponse backfilled(String caseType, LocalDate fromDate, long updated) {
+        return new CaseLatestStateResponse(caseType, fromDate, updated, null);
+    }
+
+    public static CaseLatestStateResponse checked(String caseType, LocalDate fromDate, long mismatched) {
+        return new CaseLatestStateResponse(caseType, fromDate, null, mismatched);
+    }
+
+}
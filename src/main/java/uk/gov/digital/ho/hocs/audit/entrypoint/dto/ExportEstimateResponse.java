@@ -0,0 +1,40 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportEstimate;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportEstimateResponse {
+
+    @JsonProperty("caseType")
+    private String caseType;
+
+    @JsonProperty("exportType")
+    private ExportType exportType;
+
+    @JsonProperty("rows")
+    private long rows;
+
+    @JsonProperty("bytes")
+    private long bytes;
+
+    @JsonProperty("rowsPerSecond")
+    private Double rowsPerSecond;
+
+    @JsonProperty("durationSeconds")
+    private Long durationSeconds;
+
+    public static ExportEstimateResponse from(ExportEstimate estimate) {
+        return new ExportEstimateResponse(estimate.getCaseType(), estimate.getExportType(), estimate.getRows(),
+            estimate.getBytes(), estimate.getRowsPerSecond(),
+            estimate.getDuration() == null ? null : estimate.getDuration().toSeconds());
+    }
+
+}
@@ -0,0 +1,67 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Requests either a case type export, identified by {@code caseType} and {@code exportType}, or a custom export of
+ * {@code viewName}. The remaining fields mirror the query parameters of the synchronous export endpoints.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportJobRequest {
+
+    @JsonProperty("caseType")
+    private String caseType;
+
+    @JsonProperty("exportType")
+    private String exportType;
+
+    @JsonProperty("fromDate")
+    private LocalDate fromDate;
+
+    @JsonProperty("toDate")
+    private LocalDate toDate;
+
+    @JsonProperty("convert")
+    private boolean convert;
+
+    @JsonProperty("convertHeader")
+    private boolean convertHeader;
+
+    @JsonProperty("timestampFormat")
+    private String timestampFormat;
+
+    @JsonProperty("timeZoneId")
+    private String timeZoneId;
+
+    @JsonProperty("viewName")
+    private String viewName;
+
+    @JsonProperty("filterBy")
+    private String filterBy;
+
+    @JsonProperty("dateFrom")
+    private LocalDate dateFrom;
+
+    @JsonProperty("dateTo")
+    private LocalDate dateTo;
+
+    @JsonProperty("value")
+    private String value;
+
+    @JsonProperty("includeEmpty")
+    private boolean includeEmpty;
+
+    @JsonProperty("format")
+    private String format;
+
+    @JsonProperty("compression")
+    private String compression;
+
+}
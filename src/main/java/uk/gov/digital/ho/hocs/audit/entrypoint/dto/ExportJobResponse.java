@@ -0,0 +1,49 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportJob;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportJobStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportJobResponse {
+
+    @JsonProperty("id")
+    private UUID id;
+
+    @JsonProperty("status")
+    private ExportJobStatus status;
+
+    @JsonProperty("fileName")
+    private String fileName;
+
+    @JsonProperty("size")
+    private Long size;
+
+    @JsonProperty("createdAt")
+    private Instant createdAt;
+
+    @JsonProperty("startedAt")
+    private Instant startedAt;
+
+    @JsonProperty("completedAt")
+    private Instant completedAt;
+
+    @JsonProperty("error")
+    private String error;
+
+    public static ExportJobResponse from(ExportJob job) {
+        return new ExportJobResponse(job.getId(), job.getStatus(), job.getFileName(),
+            job.getStatus() == ExportJobStatus.COMPLETED ? job.getSize() : null, job.getCreatedAt(),
+            job.getStartedAt(), job.getCompletedAt(), job.getError());
+    }
+
+}
@@ -1,16 +1,20 @@
 package uk.gov.digital.ho.hocs.audit.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.repository.entity.CaseDataPayload;
 import uk.gov.digital.ho.hocs.audit.repository.entity.CaseReference;
+import uk.gov.digital.ho.hocs.audit.repository.entity.ExportSegmentVersion;
 
 import jakarta.persistence.QueryHint;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -31,15 +35,6 @@ public interface AuditRepository extends JpaRepository<AuditEvent, String>, Audi
            nativeQuery = true)
     List<AuditEvent> findAuditDataByCaseUUIDAndTypesInAndFrom(UUID caseUUID, String[] types, LocalDate from);
 
-    @QueryHints(value = { @QueryHint(name = HINT_FETCH_SIZE, value = "5000"),
-        @QueryHint(name = HINT_CACHEABLE, value = "false"), @QueryHint(name = READ_ONLY, value = "true") })
-    @Query(value = "SELECT a.* FROM audit_event a WHERE a.audit_timestamp BETWEEN ?1 AND ?2 AND a.type in ?3 AND a.case_type = ?4 AND a.deleted = false ORDER BY a.audit_timestamp ASC",
-           nativeQuery = true)
-    Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
-                                                         LocalDateTime dateTo,
-                                                         String[] types,
-                                                         String caseType);
-
     @QueryHints(value = { @QueryHint(name = HINT_FETCH_SIZE, value = "5000"),
         @QueryHint(name = HINT_CACHEABLE, value = "false"), @QueryHint(name = READ_ONLY, value = "true") })
     @Query(value = "SELECT a.* FROM audit_event a WHERE a.audit_timestamp BETWEEN ?1 AND ?2 AND a.type in ?3 AND a.deleted = false ORDER BY a.audit_timestamp ASC",
@@ -113,10 +108,197 @@ public interface AuditRepository extends JpaRepository<AuditEvent, String>, Audi
     @Query(value = "SELECT a.* FROM audit_event a WHERE a.case_uuid = ?1", nativeQuery = true)
     List<AuditEvent> findAuditDataByCaseUUID(UUID caseUUID);
 
+    /*
+     * A case's events can share a timestamp, so the latest state is the event with the highest (audit_timestamp,
+     * uuid), which keeps incremental updates, the backfill and the consistency check in agreement.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO case_latest_state
+            (id, uuid, case_uuid, stage_uuid, correlation_id, raising_service, audit_payload, namespace, audit_timestamp, type, user_id, case_type, deleted, case_data)
+        SELECT id, uuid, case_uuid, stage_uuid, correlation_id, raising_service, audit_payload, namespace, audit_timestamp, type, user_id, case_type, deleted, case_data
+        FROM audit_event
+        WHERE uuid = ?1 AND audit_timestamp = ?2 AND type = ?3 AND case_uuid IS NOT NULL
+        ON CONFLICT (case_uuid, type) DO UPDATE
+            SET id = EXCLUDED.id, uuid = EXCLUDED.uuid, stage_uuid = EXCLUDED.stage_uuid, correlation_id = EXCLUDED.correlation_id,
+                raising_service = EXCLUDED.raising_service, audit_payload = EXCLUDED.audit_payload, namespace = EXCLUDED.namespace,
+                audit_timestamp = EXCLUDED.audit_timestamp, user_id = EXCLUDED.user_id, case_type = EXCLUDED.case_type, deleted = EXCLUDED.deleted,
+                case_data = EXCLUDED.case_data
+            WHERE (case_latest_state.audit_timestamp, case_latest_state.uuid) < (EXCLUDED.audit_timestamp, EXCLUDED.uuid)
+        """, nativeQuery = true)
+    int upsertCaseLatestState(UUID uuid, LocalDateTime auditTimestamp, String type);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO case_latest_state
+            (id, uuid, case_uuid, stage_uuid, correlation_id, raising_service, audit_payload, namespace, audit_timestamp, type, user_id, case_type, deleted, case_data)
+        SELECT DISTINCT ON (case_uuid, type)
+            id, uuid, case_uuid, stage_uuid, correlation_id, raising_service, audit_payload, namespace, audit_timestamp, type, user_id, case_type, deleted, case_data
+        FROM audit_event
+        WHERE audit_timestamp BETWEEN ?3 AND ?4 AND type IN ?2 AND case_type = ?1 AND case_uuid IS NOT NULL
+        ORDER BY case_uuid, type, audit_timestamp DESC, uuid DESC
+        ON CONFLICT (case_uuid, type) DO UPDATE
+            SET id = EXCLUDED.id, uuid = EXCLUDED.uuid, stage_uuid = EXCLUDED.stage_uuid, correlation_id = EXCLUDED.correlation_id,
+                raising_service = EXCLUDED.raising_service, audit_payload = EXCLUDED.audit_payload, namespace = EXCLUDED.namespace,
+                audit_timestamp = EXCLUDED.audit_timestamp, user_id = EXCLUDED.user_id, case_type = EXCLUDED.case_type, deleted = EXCLUDED.deleted,
+                case_data = EXCLUDED.case_data
+            WHERE (case_latest_state.audit_timestamp, case_latest_state.uuid) < (EXCLUDED.audit_timestamp, EXCLUDED.uuid)
+        """, nativeQuery = true)
+    int backfillCaseLatestState(String caseType, String[] types, LocalDateTime dateFrom, LocalDateTime dateTo);
+
+    @Modifying
+    @Query(value = "UPDATE case_latest_state SET deleted = ?2 WHERE case_uuid = ?1", nativeQuery = true)
+    int updateCaseLatestStateDeleted(UUID caseUUID, Boolean deleted);
+
+    @Query(value = """
+        WITH
+        expected AS (
+            SELECT DISTINCT ON (case_uuid, type) case_uuid, type, uuid, deleted
+            FROM audit_event
+            WHERE audit_timestamp >= ?3 AND type IN ?2 AND case_type = ?1 AND case_uuid IS NOT NULL
+            ORDER BY case_uuid, type, audit_timestamp DESC, uuid DESC
+        ),
+        actual AS (
+            SELECT case_uuid, type, uuid, deleted
+            FROM case_latest_state
+            WHERE audit_timestamp >= ?3 AND type IN ?2 AND case_type = ?1
+        )
+        SELECT COUNT(*)
+        FROM expected e
+        FULL JOIN actual a ON a.case_uuid = e.case_uuid AND a.type = e.type
+        WHERE e.uuid IS DISTINCT FROM a.uuid OR e.deleted IS DISTINCT FROM a.deleted
+        """, nativeQuery = true)
+    long countCaseLatestStateMismatches(String caseType, String[] types, LocalDateTime dateFrom);
+
+    /*
+     * The latest state answers for every case whose latest event is in the range. Cases updated since the end of the
+     * range are looked up in the events, which only probes the cases that changed after it.
+     */
+    @QueryHints(value = { @QueryHint(name = HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HINT_CACHEABLE, value = "false"), @QueryHint(name = READ_ONLY, value = "true") })
+    @Query(value = """
+        SELECT s.id, s.uuid, s.case_uuid, s.stage_uuid, s.correlation_id, s.raising_service, s.audit_payload, s.namespace, s.audit_timestamp, s.type, s.user_id, s.case_type, s.deleted, s.case_data
+        FROM case_latest_state s
+        WHERE s.audit_timestamp BETWEEN ?1 AND ?2
+          AND s.type IN ?3
+          AND s.case_type = ?4
+          AND s.deleted = FALSE
+        UNION ALL
+        SELECT e.id, e.uuid, e.case_uuid, e.stage_uuid, e.correlation_id, e.raising_service, e.audit_payload, e.namespace, e.audit_timestamp, e.type, e.user_id, e.case_type, e.deleted, e.case_data
+        FROM case_latest_state s
+        CROSS JOIN LATERAL (
+            SELECT *
+            FROM audit_event a
+            WHERE a.audit_timestamp BETWEEN ?1 AND ?2
+              AND a.case_uuid = s.case_uuid
+              AND a.type = s.type
+              AND a.deleted = FALSE
+            ORDER BY a.audit_timestamp DESC, a.uuid DESC
+            LIMIT 1
+        ) e
+        WHERE s.audit_timestamp > ?2
+          AND s.type IN ?3
+          AND s.case_type = ?4
+        ORDER BY case_uuid, type
+        """, nativeQuery = true)
+    Stream<AuditEvent> findCaseLatestStateByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                               LocalDateTime dateTo,
+                                                               String[] types,
+                                                               String caseType);
+
+    @Query(value = """
+        SELECT id AS id, type AS type, CAST(audit_payload AS TEXT) AS auditPayload
+        FROM audit_event
+        WHERE audit_timestamp BETWEEN ?3 AND ?4
+          AND type IN ?2
+          AND case_type = ?1
+          AND id > ?6
+          AND case_data->>'version' IS DISTINCT FROM ?5
+        ORDER BY id
+        LIMIT ?7
+        """, nativeQuery = true)
+    List<CaseDataPayload> findCaseDataToProject(String caseType,
+                                                String[] types,
+                                                LocalDateTime dateFrom,
+                                                LocalDateTime dateTo,
+                                                String version,
+                                                long afterId,
+                                                int limit);
+
+    @Modifying
+    @Query(value = "UPDATE audit_event SET case_data = CAST(?4 AS JSONB) WHERE id = ?1 AND audit_timestamp BETWEEN ?2 AND ?3",
+           nativeQuery = true)
+    int updateCaseData(long id, LocalDateTime dateFrom, LocalDateTime dateTo, String caseData);
+
+    @Modifying
+    @Query(value = """
+        UPDATE case_latest_state s
+        SET case_data = a.case_data
+        FROM audit_event a
+        WHERE a.id = s.id
+          AND a.audit_timestamp = s.audit_timestamp
+          AND s.case_type = ?1
+          AND s.audit_timestamp BETWEEN ?2 AND ?3
+          AND s.case_data IS DISTINCT FROM a.case_data
+        """, nativeQuery = true)
+    int updateCaseLatestStateCaseData(String caseType, LocalDateTime dateFrom, LocalDateTime dateTo);
+
+    @Query(value = "SELECT last_id FROM export_watermark WHERE consumer = ?1 AND case_type = ?2 AND export_type = ?3",
+           nativeQuery = true)
+    Optional<Long> findExportWatermark(String consumer, String caseType, String exportType);
+
+    /*
+     * Watermarks only move forward, and committing the same one again is accepted so that a commit can be retried.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO export_watermark (consumer, case_type, export_type, last_id, committed_at)
+        VALUES (?1, ?2, ?3, ?4, now())
+        ON CONFLICT (consumer, case_type, export_type) DO UPDATE
+            SET last_id = EXCLUDED.last_id, committed_at = EXCLUDED.committed_at
+            WHERE export_watermark.last_id <= EXCLUDED.last_id
+        """, nativeQuery = true)
+    int commitExportWatermark(String consumer, String caseType, String exportType, long lastId);
+
+    @Modifying
+    @Query(value = "DELETE FROM export_watermark WHERE consumer = ?1 AND case_type = ?2 AND export_type = ?3",
+           nativeQuery = true)
+    int deleteExportWatermark(String consumer, String caseType, String exportType);
+
+    @Query(value = "SELECT day AS day, version AS version FROM export_segment_invalidation WHERE case_type = ?1 AND day BETWEEN ?2 AND ?3",
+           nativeQuery = true)
+    List<ExportSegmentVersion> findExportSegmentVersions(String caseType, LocalDate dateFrom, LocalDate dateTo);
+
+    /*
+     * Each invalidation takes a new version from the sequence, so a segment is only current while the version it was
+     * written at is still the latest for its day.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT INTO export_segment_invalidation (case_type, day, version)
+        VALUES (?1, ?2, nextval('export_segment_version'))
+        ON CONFLICT (case_type, day) DO UPDATE SET version = EXCLUDED.version
+        """, nativeQuery = true)
+    int invalidateExportSegment(String caseType, LocalDate day);
+
+    @Modifying
+    @Query(value = """
+        INSERT INTO export_segment_invalidation (case_type, day, version)
+        SELECT d.case_type, d.day, nextval('export_segment_version')
+        FROM (
+            SELECT DISTINCT case_type, CAST(audit_timestamp AS DATE) AS day
+            FROM audit_event
+            WHERE case_uuid = ?1 AND case_type IS NOT NULL
+        ) d
+        ON CONFLICT (case_type, day) DO UPDATE SET version = EXCLUDED.version
+        """, nativeQuery = true)
+    int invalidateExportSegmentsForCase(UUID caseUUID);
+
+    // deleted cases are left out of a first read, as there is nothing to remove them from
     @QueryHints(value = { @QueryHint(name = HINT_FETCH_SIZE, value = "5000"),
         @QueryHint(name = HINT_CACHEABLE, value = "false"), @QueryHint(name = READ_ONLY, value = "true") })
-    @Query(value = "SELECT audit_payload->>'reference' AS caseReference, cast(case_uuid AS VARCHAR(36)) as caseUuid FROM audit_event_latest_events WHERE type = 'CASE_CREATED' AND case_type = ?1",
+    @Query(value = "SELECT version, audit_payload->>'reference' AS caseReference, cast(case_uuid AS VARCHAR(36)) as caseUuid, deleted FROM audit_event_latest_events WHERE type = 'CASE_CREATED' AND case_type = ?1 AND version > ?2 AND version <= ?3 AND (?2 > 0 OR NOT deleted)",
            nativeQuery = true)
-    Stream<CaseReference> getCaseReferencesForType(String caseType);
+    Stream<CaseReference> getCaseReferencesForTypeChangedBetween(String caseType, long afterVersion, long lastVersion);
 
 }
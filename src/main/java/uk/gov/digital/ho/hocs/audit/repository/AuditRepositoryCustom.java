@@ -2,19 +2,115 @@ package uk.gov.digital.ho.hocs.audit.repository;
 
 import org.springframework.stereotype.Repository;
 import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CustomExportFilter;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEventEstimate;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.stream.Stream;
 
 @Repository
 public interface AuditRepositoryCustom {
 
+    /**
+     * Reads the events in timestamp order, in keyset chunks that are each fetched in their own short read-only
+     * transaction (or the surrounding one, if there is one). The events are bounded by the last event of the case
+     * type inserted by a transaction older than any still running when the call is made, so events audited later are
+     * left out however long the stream takes to consume.
+     * <p>
+     * This is not a snapshot: each chunk sees the events as they are when it is read, so a case deleted while the
+     * stream is read is left out of the chunks read after the delete, and an event below the bound whose transaction
+     * was still running when the bound was read is read if it has been committed by the time its chunk is read. The
+     * bound is read alongside the chunks, from the replica when one is in use.
+     */
+    Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                         LocalDateTime dateTo,
+                                                         String[] types,
+                                                         String caseType);
+
+    /**
+     * Reads the events as above, with the given payload fields projected in the query in place of the payload. Each
+     * field is a dot separated path into the payload, and its value is read as text, or null if it is missing.
+     *
+     * @see AuditEvent#getPayloadFields()
+     */
+    Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                         LocalDateTime dateTo,
+                                                         String[] types,
+                                                         String caseType,
+                                                         String[] payloadFields);
+
+    /**
+     * Reads the events as above, up to a bound from {@link #findCommittedAuditEventId(String)}, for a reader that
+     * goes on to read the events after the bound by id. The chunks are read on the primary, as the bound is, as a
+     * replica may not yet hold every event below it.
+     */
+    Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                         LocalDateTime dateTo,
+                                                         String[] types,
+                                                         String caseType,
+                                                         String[] payloadFields,
+                                                         long lastId);
+
+    /**
+     * Reads the events with ids after the first and up to the last, in id order, so a reader that keeps the last id it
+     * read can read only the events audited since. Chunks are read as above, on the primary, and payload fields
+     * projected if given.
+     */
+    Stream<AuditEvent> findAuditDataByIdRangeAndEvents(long afterId,
+                                                       long lastId,
+                                                       String[] types,
+                                                       String caseType,
+                                                       String[] payloadFields);
+
+    /**
+     * The number and size of the events in the range as estimated by the query planner, which is cheap to read but
+     * only as accurate as the table statistics. The size is that of the rows as stored in the partitions read.
+     */
+    AuditEventEstimate estimateAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                             LocalDateTime dateTo,
+                                                             String[] types,
+                                                             String caseType);
+
+    /**
+     * The last event id issued, read on the primary. Ids are issued before the events holding them are committed, so
+     * this only bounds the ids an export could have read.
+     */
+    long findLastAuditEventId();
+
+    /**
+     * The highest id of the case type's committed events, read on the primary once every event whose id has been drawn
+     * is committed or rolled back, so that every event of the case type at or below the bound is visible, or will
+     * never be. Reading the bound waits for the events being audited, and holds back new audits while it does.
+     *
+     * @see #holdCommittedAuditEventId()
+     */
+    long findCommittedAuditEventId(String caseType);
+
+    /**
+     * The highest version of the latest events whose changes are all committed, read on the primary as
+     * {@link #findCommittedAuditEventId(String)} is, so that every latest event changed at or below the version is
+     * visible with its change.
+     */
+    long findCommittedLatestEventVersion();
+
+    /**
+     * Holds {@link #findCommittedAuditEventId(String)} and {@link #findCommittedLatestEventVersion()} below the changes
+     * of the current transaction until it finishes. A transaction takes the hold before it inserts or deletes any
+     * event, as events draw their ids, and latest events their versions, as they are written and may be committed out
+     * of order.
+     */
+    void holdCommittedAuditEventId();
+
     Stream<Object[]> getResultsFromView(String viewName, CustomExportFilter.ValidatedFilter filter);
 
     void refreshMaterialisedView(String viewName);
 
     LocalDate getViewLastRefreshedDate(String viewName);
 
+    List<String> getViewColumnTypes(String viewName);
+
     void checkViewNameIsAllowed(String viewName);
 
 }
@@ -1,17 +1,42 @@
 package uk.gov.digital.ho.hocs.audit.repository;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.NonNull;
+import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CustomExportFilter;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEventEstimate;
 
 import java.sql.Timestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @SuppressWarnings("unused")
 public class AuditRepositoryImpl implements AuditRepositoryCustom {
@@ -25,9 +50,370 @@ public class AuditRepositoryImpl implements AuditRepositoryCustom {
         }
     }
 
+    private static final String LAST_AUDIT_EVENT_ID_QUERY =
+        "SELECT COALESCE(pg_sequence_last_value(pg_get_serial_sequence('audit_event', 'id')), 0)";
+
+    // the events inserted by transactions older than the oldest one running, which are committed, though a
+    // transaction still running may hold a lower id it drew before them
+    private static final String FINISHED_AUDIT_EVENT_ID_QUERY = """
+        SELECT COALESCE(MAX(a.id), 0) FROM audit_event a
+        WHERE a.case_type = :caseType
+          AND a.deleted = false
+          AND age(a.xmin) > age(CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS TEXT) AS XID))
+        """;
+
+    // taken shared by each transaction that audits or deletes events, before it draws their ids or versions, and
+    // exclusively by a reader of a committed bound, which so waits for every one drawn to be committed or rolled back
+    private static final String AUDIT_EVENT_ID_LOCK = "hashtext('audit_event.id')";
+
+    private static final String AUDIT_EVENT_ID_SHARED_LOCK_QUERY =
+        "SELECT 1 FROM pg_advisory_xact_lock_shared(" + AUDIT_EVENT_ID_LOCK + ")";
+
+    private static final String AUDIT_EVENT_ID_EXCLUSIVE_LOCK_QUERY =
+        "SELECT 1 FROM pg_advisory_xact_lock(" + AUDIT_EVENT_ID_LOCK + ")";
+
+    private static final String LAST_LATEST_EVENT_VERSION_QUERY =
+        "SELECT COALESCE(pg_sequence_last_value('audit_event_latest_events_version'), 0)";
+
+    private static final String COMMITTED_AUDIT_EVENT_ID_QUERY = """
+        SELECT COALESCE(MAX(a.id), 0) FROM audit_event a
+        WHERE a.case_type = :caseType
+          AND a.deleted = false
+          AND a.id <= :lastId
+        """;
+
+    private static final String AUDIT_EVENT_CHUNK_QUERY = """
+        SELECT %s FROM audit_event a
+        WHERE a.audit_timestamp BETWEEN :dateFrom AND :dateTo
+          AND a.type IN (:types)
+          AND a.case_type = :caseType
+          AND a.deleted = false
+          AND a.id <= :lastId
+          AND (a.audit_timestamp, a.uuid, a.type) > (:afterTimestamp, :afterUuid, :afterType)
+        ORDER BY a.audit_timestamp, a.uuid, a.type
+        LIMIT :chunkSize
+        """;
+
+    // the planner's estimate of the rows in a range, from the statistics rather than a count
+    private static final String AUDIT_EVENT_ESTIMATE_QUERY = """
+        EXPLAIN (FORMAT JSON) SELECT a.* FROM audit_event a
+        WHERE a.audit_timestamp BETWEEN :dateFrom AND :dateTo
+          AND a.type IN (:types)
+          AND a.case_type = :caseType
+          AND a.deleted = false
+        """;
+
+    // the size of the partitions as stored, including their out of line payloads
+    private static final String PARTITION_SIZE_QUERY = """
+        SELECT CAST(COALESCE(SUM(c.relpages + COALESCE(t.relpages, 0)), 0) AS BIGINT)
+                   * CAST(current_setting('block_size') AS BIGINT),
+               CAST(COALESCE(SUM(GREATEST(c.reltuples, 0)), 0) AS BIGINT)
+        FROM pg_class c
+        LEFT JOIN pg_class t ON t.oid = c.reltoastrelid
+        WHERE c.relname IN (:relations)
+          AND c.relnamespace = CAST(current_schema() AS REGNAMESPACE)
+        """;
+
+    // ids are issued as events are audited, so reading past an id reads the events audited since
+    private static final String AUDIT_EVENT_ID_CHUNK_QUERY = """
+        SELECT %s FROM audit_event a
+        WHERE a.case_type = :caseType
+          AND a.type IN (:types)
+          AND a.deleted = false
+          AND a.id > :afterId
+          AND a.id <= :lastId
+        ORDER BY a.id
+        LIMIT :chunkSize
+        """;
+
+    // the payload is left out when its fields are projected, so only they are sent
+    private static final String AUDIT_EVENT_PROJECTED_COLUMNS = """
+        a.id, a.uuid, a.case_uuid, a.stage_uuid, a.correlation_id, a.raising_service, NULL AS audit_payload, \
+        a.namespace, a.audit_timestamp, a.type, a.user_id, a.case_type, a.deleted, NULL AS case_data""";
+
+    private static final Pattern PAYLOAD_FIELD = Pattern.compile("[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)*");
+
+    // sorts before any event at the start of the range, as event types are never empty
+    private static final UUID FIRST_UUID = new UUID(0, 0);
+
+    @Value("${audit.export.chunk-size:5000}")
+    int chunkSize;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PersistenceContext
     private EntityManager em;
 
+    @Override
+    public Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                                LocalDateTime dateTo,
+                                                                String[] types,
+                                                                String caseType) {
+        return findAuditDataByDateRangeAndEvents(dateFrom, dateTo, types, caseType, null);
+    }
+
+    @Override
+    public Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                                LocalDateTime dateTo,
+                                                                String[] types,
+                                                                String caseType,
+                                                                String[] payloadFields) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        // read where the chunks are read, so the bound does not run ahead of a replica
+        long lastId = transactionTemplate.execute(status -> ((Number) em.createNativeQuery(
+            FINISHED_AUDIT_EVENT_ID_QUERY).setParameter("caseType", caseType).getSingleResult()).longValue());
+
+        return streamDateRangeChunks(dateFrom, dateTo, types, caseType, payloadFields, lastId, true);
+    }
+
+    @Override
+    public Stream<AuditEvent> findAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                                LocalDateTime dateTo,
+                                                                String[] types,
+                                                                String caseType,
+                                                                String[] payloadFields,
+                                                                long lastId) {
+        return streamDateRangeChunks(dateFrom, dateTo, types, caseType, payloadFields, lastId, false);
+    }
+
+    private Stream<AuditEvent> streamDateRangeChunks(LocalDateTime dateFrom,
+                                                     LocalDateTime dateTo,
+                                                     String[] types,
+                                                     String caseType,
+                                                     String[] payloadFields,
+                                                     long lastId,
+                                                     boolean readOnly) {
+        var chunkQuery = getChunkQuery(AUDIT_EVENT_CHUNK_QUERY, payloadFields);
+
+        // the primary key is (uuid, audit_timestamp, type), so the type is needed to make the keyset unique
+        return streamChunks(readOnly, last -> readChunk(chunkQuery, payloadFields, query -> query
+            .setParameter("dateFrom", dateFrom)
+            .setParameter("dateTo", dateTo)
+            .setParameter("types", Arrays.asList(types))
+            .setParameter("caseType", caseType)
+            .setParameter("lastId", lastId)
+            .setParameter("afterTimestamp", last == null ? dateFrom : last.getAuditTimestamp())
+            .setParameter("afterUuid", last == null ? FIRST_UUID : last.getUuid())
+            .setParameter("afterType", last == null ? "" : last.getType())));
+    }
+
+    @Override
+    public Stream<AuditEvent> findAuditDataByIdRangeAndEvents(long afterId,
+                                                              long lastId,
+                                                              String[] types,
+                                                              String caseType,
+                                                              String[] payloadFields) {
+        var chunkQuery = getChunkQuery(AUDIT_EVENT_ID_CHUNK_QUERY, payloadFields);
+
+        return streamChunks(false, last -> readChunk(chunkQuery, payloadFields, query -> query
+            .setParameter("types", Arrays.asList(types))
+            .setParameter("caseType", caseType)
+            .setParameter("afterId", last == null ? afterId : last.getId())
+            .setParameter("lastId", lastId)));
+    }
+
+    @Override
+    public AuditEventEstimate estimateAuditDataByDateRangeAndEvents(LocalDateTime dateFrom,
+                                                                    LocalDateTime dateTo,
+                                                                    String[] types,
+                                                                    String caseType) {
+        NativeQuery<?> query = em.createNativeQuery(AUDIT_EVENT_ESTIMATE_QUERY).unwrap(NativeQuery.class);
+        var explain = (String) query
+            .addScalar("QUERY PLAN", StandardBasicTypes.STRING)
+            .setParameter("dateFrom", dateFrom)
+            .setParameter("dateTo", dateTo)
+            .setParameter("types", Arrays.asList(types))
+            .setParameter("caseType", caseType)
+            .getSingleResult();
+
+        JsonNode plan;
+        try {
+            plan = objectMapper.readTree(explain).path(0).path("Plan");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to read query plan", e);
+        }
+
+        // the root of the plan covers the whole query, and its leaves are the partitions left after pruning
+        long rows = plan.path("Plan Rows").asLong();
+        List<String> relations = new ArrayList<>();
+        collectRelations(plan, relations);
+
+        // the plan's row width leaves out stored overheads, so rows are sized from the partitions where they can be
+        long bytes = rows * plan.path("Plan Width").asLong();
+        if (!relations.isEmpty()) {
+            var size = (Object[]) em.createNativeQuery(PARTITION_SIZE_QUERY)
+                .setParameter("relations", relations)
+                .getSingleResult();
+            long partitionBytes = ((Number) size[0]).longValue();
+            long partitionRows = ((Number) size[1]).longValue();
+            if (partitionRows > 0) {
+                bytes = Math.round((double) partitionBytes / partitionRows * rows);
+            }
+        }
+
+        return new AuditEventEstimate(rows, bytes);
+    }
+
+    private static void collectRelations(JsonNode plan, List<String> relations) {
+        if (plan.hasNonNull("Relation Name")) {
+            relations.add(plan.get("Relation Name").asText());
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            collectRelations(child, relations);
+        }
+    }
+
+    @Override
+    public long findLastAuditEventId() {
+        return primaryTransaction().execute(
+            status -> ((Number) em.createNativeQuery(LAST_AUDIT_EVENT_ID_QUERY).getSingleResult()).longValue());
+    }
+
+    @Override
+    public long findCommittedAuditEventId(String caseType) {
+        long lastId = readOnceAuditsFinish(LAST_AUDIT_EVENT_ID_QUERY);
+
+        return primaryTransaction().execute(status -> ((Number) em.createNativeQuery(COMMITTED_AUDIT_EVENT_ID_QUERY)
+            .setParameter("caseType", caseType)
+            .setParameter("lastId", lastId)
+            .getSingleResult()).longValue());
+    }
+
+    @Override
+    public long findCommittedLatestEventVersion() {
+        return readOnceAuditsFinish(LAST_LATEST_EVENT_VERSION_QUERY);
+    }
+
+    /**
+     * Reads a value once the transactions that hold the committed bounds have finished. The lock is only held while
+     * the value is read, so audits only wait for the events already being audited.
+     */
+    private long readOnceAuditsFinish(String query) {
+        return primaryTransaction().execute(status -> {
+            em.createNativeQuery(AUDIT_EVENT_ID_EXCLUSIVE_LOCK_QUERY).getSingleResult();
+            return ((Number) em.createNativeQuery(query).getSingleResult()).longValue();
+        });
+    }
+
+    @Override
+    public void holdCommittedAuditEventId() {
+        em.createNativeQuery(AUDIT_EVENT_ID_SHARED_LOCK_QUERY).getSingleResult();
+    }
+
+    /**
+     * A transaction of its own that is not read-only, so that it is routed to the primary even when the caller is in
+     * a read-only transaction.
+     */
+    private TransactionTemplate primaryTransaction() {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    /**
+     * Streams the events read a chunk at a time, each chunk read after the last event of the one before it. Chunks
+     * that are not read-only are read on the primary.
+     */
+    private Stream<AuditEvent> streamChunks(boolean readOnly, Function<AuditEvent, List<AuditEvent>> chunkReader) {
+        TransactionTemplate transactionTemplate;
+        if (readOnly) {
+            transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+        } else {
+            transactionTemplate = primaryTransaction();
+        }
+
+        Iterator<AuditEvent> events = new Iterator<>() {
+            private List<AuditEvent> chunk = List.of();
+
+            private int next;
+
+            private boolean exhausted;
+
+            private AuditEvent last;
+
+            @Override
+            public boolean hasNext() {
+                if (next == chunk.size() && !exhausted) {
+                    chunk = transactionTemplate.execute(status -> chunkReader.apply(last));
+                    next = 0;
+                    exhausted = chunk.size() < chunkSize;
+                }
+                return next < chunk.size();
+            }
+
+            @Override
+            public AuditEvent next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = chunk.get(next++);
+                return last;
+            }
+        };
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(events, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private List<AuditEvent> readChunk(String chunkQuery,
+                                       String[] payloadFields,
+                                       UnaryOperator<NativeQuery<?>> parameters) {
+        if (payloadFields == null) {
+            return readChunk(parameters.apply(
+                em.createNativeQuery(chunkQuery, AuditEvent.class).unwrap(NativeQuery.class)));
+        }
+
+        NativeQuery<?> query = em.createNativeQuery(chunkQuery).unwrap(NativeQuery.class).addEntity("a",
+            AuditEvent.class);
+        for (int i = 0; i < payloadFields.length; i++) {
+            query.addScalar("p" + i, StandardBasicTypes.STRING);
+        }
+
+        return this.<Object[]>readChunk(parameters.apply(query)).stream().map(columns -> {
+            var event = (AuditEvent) columns[0];
+            event.setPayloadFields(
+                Arrays.stream(columns, 1, columns.length).map(String.class::cast).toArray(String[]::new));
+            return event;
+        }).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> readChunk(NativeQuery<?> query) {
+        return (List<T>) query
+            .setParameter("chunkSize", chunkSize)
+            .setHint(HINT_READ_ONLY, true)
+            .getResultList();
+    }
+
+    private static String getChunkQuery(String chunkQuery, String[] payloadFields) {
+        if (payloadFields == null) {
+            return String.format(chunkQuery, "a.*");
+        }
+
+        var columns = new StringBuilder(AUDIT_EVENT_PROJECTED_COLUMNS);
+        for (int i = 0; i < payloadFields.length; i++) {
+            // the fields are declared by the exports, but are checked as they are written into the query
+            if (!PAYLOAD_FIELD.matcher(payloadFields[i]).matches()) {
+                throw new IllegalArgumentException("Invalid payload field " + payloadFields[i]);
+            }
+
+            var path = payloadFields[i].split("\\.");
+            columns.append(", a.audit_payload");
+            for (int j = 0; j < path.length - 1; j++) {
+                columns.append("->'").append(path[j]).append('\'');
+            }
+            columns.append("->>'").append(path[path.length - 1]).append("' AS p").append(i);
+        }
+        return String.format(chunkQuery, columns);
+    }
+
     @Override
     public Stream<Object[]> getResultsFromView(@NonNull String viewName, CustomExportFilter.ValidatedFilter filter) {
         checkViewNameIsAllowed(viewName);
@@ -55,6 +441,21 @@ public class AuditRepositoryImpl implements AuditRepositoryCustom {
         return timestamp.toLocalDateTime().toLocalDate();
     }
 
+    @Override
+    public List<String> getViewColumnTypes(@NonNull String viewName) {
+        checkViewNameIsAllowed(viewName);
+
+        @SuppressWarnings("unchecked")
+        List<String> columnTypes = em.createNativeQuery("""
+            SELECT format_type(a.atttypid, a.atttypmod)
+            FROM pg_attribute a
+            WHERE a.attrelid = to_regclass(:viewName) AND a.attnum > 0 AND NOT a.attisdropped
+            ORDER BY a.attnum
+            """, String.class).setParameter("viewName", viewName).getResultList();
+
+        return columnTypes;
+    }
+
     @Override
     public void refreshMaterialisedView(@NonNull String viewName) {
         checkViewNameIsAllowed(viewName);
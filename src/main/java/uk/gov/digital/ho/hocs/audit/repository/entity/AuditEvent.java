@@ -10,6 +10,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -22,7 +23,8 @@ public class AuditEvent implements Serializable {
     @Id
     @Column(name = "id")
     @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private int id;
+    @Getter
+    private long id;
 
     @Column(name = "uuid")
     @Getter
@@ -73,6 +75,17 @@ public class AuditEvent implements Serializable {
     @Setter
     private Boolean deleted;
 
+    @Column(name = "case_data")
+    @Getter
+    @Setter
+    private String caseData;
+
+    // the payload fields an export projected in its query, in place of the payload
+    @Transient
+    @Getter
+    @Setter
+    private String[] payloadFields;
+
     public AuditEvent(String correlationID,
                       String raisingService,
                       String auditPayload,
@@ -111,4 +124,24 @@ public class AuditEvent implements Serializable {
         }
     }
 
+    // rebuilds an event held outside the database with the fields event exports read, as by the export window
+    public AuditEvent(long id,
+                      UUID uuid,
+                      UUID caseUUID,
+                      LocalDateTime auditTimestamp,
+                      String type,
+                      String userID,
+                      String caseType,
+                      String[] payloadFields) {
+        this.id = id;
+        this.uuid = uuid;
+        this.caseUUID = caseUUID;
+        this.auditTimestamp = auditTimestamp;
+        this.type = type;
+        this.userID = userID;
+        this.caseType = caseType;
+        this.payloadFields = payloadFields;
+        this.deleted = false;
+    }
+
 }
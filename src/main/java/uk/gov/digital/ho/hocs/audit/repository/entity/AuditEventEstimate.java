@@ -0,0 +1,17 @@
+package uk.gov.digital.ho.hocs.audit.repository.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The number and size of the events in a range, as estimated by the query planner from the table statistics.
+ */
+@Getter
+@AllArgsConstructor
+public class AuditEventEstimate {
+
+    private final long rows;
+
+    private final long bytes;
+
+}
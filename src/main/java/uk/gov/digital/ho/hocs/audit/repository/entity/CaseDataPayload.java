@@ -0,0 +1,11 @@
+package uk.gov.digital.ho.hocs.audit.repository.entity;
+
+public interface CaseDataPayload {
+
+    Long getId();
+
+    String getType();
+
+    String getAuditPayload();
+
+}
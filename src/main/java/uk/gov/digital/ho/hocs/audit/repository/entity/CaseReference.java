@@ -2,8 +2,12 @@ package uk.gov.digital.ho.hocs.audit.repository.entity;
 
 public interface CaseReference {
 
+    Long getVersion();
+
     String getCaseReference();
 
     String getCaseUUID();
 
+    Boolean getDeleted();
+
 }
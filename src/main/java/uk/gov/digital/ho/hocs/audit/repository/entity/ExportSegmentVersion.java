@@ -0,0 +1,11 @@
+package uk.gov.digital.ho.hocs.audit.repository.entity;
+
+import java.time.LocalDate;
+
+public interface ExportSegmentVersion {
+
+    LocalDate getDay();
+
+    Long getVersion();
+
+}
@@ -1,23 +1,23 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeActionDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.TeamDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -27,8 +27,6 @@ import java.time.LocalTime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static uk.gov.digital.ho.hocs.audit.service.domain.EventType.STAGE_ALLOCATED_TO_TEAM;
@@ -37,6 +35,8 @@ import static uk.gov.digital.ho.hocs.audit.service.domain.EventType.STAGE_COMPLE
 import static uk.gov.digital.ho.hocs.audit.service.domain.EventType.STAGE_CREATED;
 import static uk.gov.digital.ho.hocs.audit.service.domain.EventType.STAGE_RECREATED;
 import static uk.gov.digital.ho.hocs.audit.service.domain.EventType.STAGE_UNALLOCATED_FROM_USER;
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.convertUuid;
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.parseDate;
 
 @Service
 public class AllocationExportService extends DynamicExportService {
@@ -44,13 +44,24 @@ public class AllocationExportService extends DynamicExportService {
     private static final String[] EVENTS = { STAGE_ALLOCATED_TO_TEAM, STAGE_CREATED, STAGE_RECREATED, STAGE_COMPLETED,
         STAGE_ALLOCATED_TO_USER, STAGE_UNALLOCATED_FROM_USER };
 
+    private static final String[] PAYLOAD_FIELDS = { "stage", "allocatedToUUID", "deadline" };
+
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseUuid"), ExportColumn.string("stage"),
+        ExportColumn.convertibleUuid("allocatedTo"), ExportColumn.date("deadline") };
+
     public AllocationExportService(ObjectMapper objectMapper,
                                    AuditRepository auditRepository,
                                    InfoClient infoClient,
                                    CaseworkClient caseworkClient,
                                    HeaderConverter headerConverter,
-                                   MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                                   MalformedDateConverter malformedDateConverter,
+                                   ExportWriterFactory exportWriterFactory,
+                                   ReferenceDataCache referenceDataCache,
+                                   CaseReferenceCache caseReferenceCache,
+                                   ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
     }
 
     @Override
@@ -59,25 +70,24 @@ public class AllocationExportService extends DynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo, caseTypeCode, events);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeDto = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeDto.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeDto);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     public ExportDataConverter getDataConverter(boolean convert, CaseTypeDto caseType) {
@@ -85,21 +95,29 @@ public class AllocationExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = new HashMap<>();
+        var referenceData = referenceDataCache.getSnapshot();
+
+        Map<String, String> uuidToName = new HashMap<>(referenceData.getUserNames());
+        uuidToName.putAll(referenceData.getTeamNames());
+        uuidToName.putAll(referenceData.getCaseTypeActionLabels());
+
+        return new ExportDataConverter(uuidToName, Collections.emptyMap(),
+            caseReferenceCache.getIndex(caseType.getShortCode()));
+    }
 
-        uuidToName.putAll(
-            infoClient.getUsers().stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername)));
-        uuidToName.putAll(infoClient.getAllTeams().stream().collect(
-            Collectors.toMap(team -> team.getUuid().toString(), TeamDto::getDisplayName)));
-        uuidToName.putAll(infoClient.getCaseTypeActions().stream().collect(
-            Collectors.toMap(action -> action.getUuid().toString(), CaseTypeActionDto::getActionLabel)));
+    @Override
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
+    }
 
-        return new ExportDataConverter(uuidToName, Collections.emptyMap(), caseType.getShortCode(), auditRepository);
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseUuid", "stage", "allocatedTo", "deadline" };
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -108,17 +126,18 @@ public class AllocationExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.StageAllocation allocationData = objectMapper.readValue(audit.getAuditPayload(),
-            AuditPayload.StageAllocation.class);
-
-        return new String[] { zonedDateTimeConverter.convert(audit.getAuditTimestamp()), audit.getType(),
-            exportDataConverter.convertValue(audit.getUserID()),
-            exportDataConverter.convertCaseUuid(audit.getCaseUUID()), allocationData.getStage(),
-            exportDataConverter.convertValue(Objects.toString(allocationData.getAllocatedToUUID(), "")),
-            Objects.toString(allocationData.getDeadline(), "") };
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeString(payload[0]);
+        writer.writeString(exportDataConverter.convertValue(convertUuid(payload[1])));
+        writer.writeDate(parseDate(payload[2]));
     }
 
 }
@@ -1,22 +1,23 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeActionDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -26,22 +27,39 @@ import java.time.LocalTime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.convertDateTime;
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.convertUuid;
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.parseDate;
+
 @Service
 public class AppealExportService extends DynamicExportService {
 
     private static final String[] EVENTS = { "APPEAL_CREATED", "APPEAL_UPDATED" };
 
+    private static final String[] PAYLOAD_FIELDS = { "created", "caseTypeActionUuid", "status", "dateSentRMS", "outcome",
+        "complexCase", "note", "officerType", "officerName", "officerDirectorate" };
+
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseId"),
+        ExportColumn.timestamp("created"), ExportColumn.string("type"), ExportColumn.string("status"),
+        ExportColumn.date("dateSentRMS"), ExportColumn.string("outcome"), ExportColumn.string("complex"),
+        ExportColumn.string("note"), ExportColumn.string("officerType"), ExportColumn.string("officerName"),
+        ExportColumn.string("officerDirectorate") };
+
     public AppealExportService(ObjectMapper objectMapper,
                                AuditRepository auditRepository,
                                InfoClient infoClient,
                                CaseworkClient caseworkClient,
                                HeaderConverter headerConverter,
-                               MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                               MalformedDateConverter malformedDateConverter,
+                               ExportWriterFactory exportWriterFactory,
+                               ReferenceDataCache referenceDataCache,
+                               CaseReferenceCache caseReferenceCache,
+                               ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
     }
 
     @Override
@@ -50,8 +68,17 @@ public class AppealExportService extends DynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo, caseTypeCode, events);
+    }
+
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
+    }
+
+    @Override
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -60,41 +87,47 @@ public class AppealExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.Appeal appealData = objectMapper.readValue(audit.getAuditPayload(), AuditPayload.Appeal.class);
-
-        return new String[] { zonedDateTimeConverter.convert(audit.getAuditTimestamp()), audit.getType(),
-            exportDataConverter.convertValue(audit.getUserID()),
-            exportDataConverter.convertCaseUuid(audit.getCaseUUID()), Objects.toString(appealData.getCreated(), ""),
-            exportDataConverter.convertValue(Objects.toString(appealData.getType(), "")), appealData.getStatus(),
-            Objects.toString(appealData.getDateSentRMS(), ""), appealData.getOutcome(), appealData.getComplexCase(),
-            appealData.getNote(), appealData.getOfficerType(),
-            exportDataConverter.convertValue(appealData.getOfficerName()), appealData.getOfficerDirectorate() };
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeString(convertDateTime(payload[0]));
+        writer.writeString(exportDataConverter.convertValue(convertUuid(payload[1])));
+        writer.writeString(payload[2]);
+        writer.writeDate(parseDate(payload[3]));
+        writer.writeString(payload[4]);
+        writer.writeString(payload[5]);
+        writer.writeString(payload[6]);
+        writer.writeString(payload[7]);
+        writer.writeString(exportDataConverter.convertValue(payload[8]));
+        writer.writeString(payload[9]);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeDto = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeDto.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeDto);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseId", "created", "type", "status", "dateSentRMS",
-            "outcome", "complex", "note", "officerType", "officerName", "officerDirectorate" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -103,14 +136,13 @@ public class AppealExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = new HashMap<>();
+        var referenceData = referenceDataCache.getSnapshot();
 
-        uuidToName.putAll(
-            infoClient.getUsers().stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername)));
-        uuidToName.putAll(infoClient.getCaseTypeActions().stream().collect(
-            Collectors.toMap(action -> action.getUuid().toString(), CaseTypeActionDto::getActionLabel)));
+        Map<String, String> uuidToName = new HashMap<>(referenceData.getUserNames());
+        uuidToName.putAll(referenceData.getCaseTypeActionLabels());
 
-        return new ExportDataConverter(uuidToName, Collections.emptyMap(), caseType.getShortCode(), auditRepository);
+        return new ExportDataConverter(uuidToName, Collections.emptyMap(),
+            caseReferenceCache.getIndex(caseType.getShortCode()));
     }
 
 }
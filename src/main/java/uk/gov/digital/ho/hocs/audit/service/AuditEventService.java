@@ -3,6 +3,7 @@ package uk.gov.digital.ho.hocs.audit.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
 
@@ -21,9 +22,21 @@ public class AuditEventService {
 
     private final AuditRepository auditRepository;
 
+    private final CaseLatestStateService caseLatestStateService;
+
+    private final CaseDataProjectionService caseDataProjectionService;
+
+    private final ExportSegmentService exportSegmentService;
+
     @Autowired
-    public AuditEventService(AuditRepository auditRepository) {
+    public AuditEventService(AuditRepository auditRepository,
+                             CaseLatestStateService caseLatestStateService,
+                             CaseDataProjectionService caseDataProjectionService,
+                             ExportSegmentService exportSegmentService) {
         this.auditRepository = auditRepository;
+        this.caseLatestStateService = caseLatestStateService;
+        this.caseDataProjectionService = caseDataProjectionService;
+        this.exportSegmentService = exportSegmentService;
     }
 
     public AuditEvent createAudit(String correlationID,
@@ -37,6 +50,7 @@ public class AuditEventService {
             userID);
     }
 
+    @Transactional
     public AuditEvent createAudit(UUID caseUUID,
                                   UUID stageUUID,
                                   String correlationID,
@@ -48,26 +62,36 @@ public class AuditEventService {
                                   String userID) {
         AuditEvent auditEvent = new AuditEvent(caseUUID, stageUUID, correlationID, raisingService, auditPayload,
             namespace, auditTimestamp, type, userID);
+        auditEvent.setCaseData(caseDataProjectionService.project(auditEvent));
+        auditRepository.holdCommittedAuditEventId();
         auditRepository.save(auditEvent);
+        caseLatestStateService.record(auditEvent);
+        exportSegmentService.invalidate(auditEvent);
         log.debug("Created Audit: UUID: {} at timestamp: {}", auditEvent.getUuid(), auditEvent.getAuditTimestamp());
         return auditEvent;
     }
 
+    @Transactional
     public Integer deleteCaseAudit(UUID caseUUID, Boolean deleted) {
+        auditRepository.holdCommittedAuditEventId();
         List<AuditEvent> audits = auditRepository.findAuditDataByCaseUUID(caseUUID);
         for (AuditEvent audit : audits) {
             audit.setDeleted(deleted);
             auditRepository.save(audit);
         }
+        caseLatestStateService.markDeleted(caseUUID, deleted);
+        exportSegmentService.invalidateCase(caseUUID);
         log.info("Set Deleted=({}) for {} audit lines for caseUUID: {}", deleted, audits.size(), caseUUID,
             value(EVENT, AUDIT_EVENT_DELETED));
         return audits.size();
     }
 
+    @Transactional(readOnly = true)
     public List<AuditEvent> getAuditDataByCaseUUID(UUID caseUUID, String[] filterTypes) {
         return auditRepository.findAuditDataByCaseUUIDAndTypesIn(caseUUID, filterTypes);
     }
 
+    @Transactional(readOnly = true)
     public List<AuditEvent> getAuditDataByCaseUUID(UUID caseUUID, String[] filterTypes, LocalDate fromDate) {
         return auditRepository.findAuditDataByCaseUUIDAndTypesInAndFrom(caseUUID, filterTypes, fromDate);
     }
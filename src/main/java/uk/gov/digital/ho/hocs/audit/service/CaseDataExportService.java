@@ -3,40 +3,39 @@ package uk.gov.digital.ho.hocs.audit.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeActionDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.TeamDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UnitDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.config.CaseDataFieldReader;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.CaseDataProjection;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.CorrespondentUuidToNameCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.logstash.logback.argument.StructuredArguments.value;
@@ -51,6 +50,12 @@ public class CaseDataExportService extends CaseDataDynamicExportService {
 
     static final String[] EVENTS = { "CASE_CREATED", "CASE_UPDATED", "CASE_COMPLETED" };
 
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseUuid"),
+        ExportColumn.string("reference"), ExportColumn.string("caseType"), ExportColumn.date("deadline"),
+        ExportColumn.convertibleUuid("primaryCorrespondent"), ExportColumn.convertibleUuid("primaryTopic"),
+        ExportColumn.string("migratedReference") };
+
     private final CorrespondentUuidToNameCache correspondentUuidToNameCache;
 
     private static final Map<String, String[]> ENTITY_LISTS = Map.of(
@@ -70,6 +75,13 @@ public class CaseDataExportService extends CaseDataDynamicExportService {
 
     private final CaseDataFieldReader caseDataFieldReader;
 
+    private final CaseDataProjectionService caseDataProjectionService;
+
+    private final CaseLatestEventService caseLatestEventService;
+
+    // read the latest state of each case rather than every event, once it has been backfilled
+    private final boolean latestState;
+
     public CaseDataExportService(
         ObjectMapper objectMapper,
         AuditRepository auditRepository,
@@ -77,13 +89,24 @@ public class CaseDataExportService extends CaseDataDynamicExportService {
         CaseworkClient caseworkClient,
         HeaderConverter headerConverter,
         MalformedDateConverter malformedDateConverter,
+        ExportWriterFactory exportWriterFactory,
+        ReferenceDataCache referenceDataCache,
+        CaseReferenceCache caseReferenceCache,
+        ExportWindowService exportWindowService,
         CorrespondentUuidToNameCache correspondentUuidToNameCache,
-        CaseDataFieldReader caseDataFieldReader
+        CaseDataFieldReader caseDataFieldReader,
+        CaseDataProjectionService caseDataProjectionService,
+        CaseLatestEventService caseLatestEventService,
+        @Value("${audit.export.case-data.latest-state:false}") boolean latestState
     ) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
 
         this.correspondentUuidToNameCache = correspondentUuidToNameCache;
         this.caseDataFieldReader = caseDataFieldReader;
+        this.caseDataProjectionService = caseDataProjectionService;
+        this.caseLatestEventService = caseLatestEventService;
+        this.latestState = latestState;
     }
 
     @Override
@@ -92,55 +115,60 @@ public class CaseDataExportService extends CaseDataDynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter,
-                                 String[] additionalHeaders) throws JsonProcessingException {
-        AuditPayload.CaseData caseData = objectMapper.readValue(audit.getAuditPayload(), AuditPayload.CaseData.class);
-
-        List<String> data = new ArrayList<>();
-
-        data.add(zonedDateTimeConverter.convert(audit.getAuditTimestamp()));
-        data.add(audit.getType());
-        data.add(exportDataConverter.convertValue(audit.getUserID()));
-        data.add(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
-        data.add(caseData.getReference());
-        data.add(caseData.getType());
-        data.add(Objects.toString(caseData.getCaseDeadline(), ""));
-        data.add(exportDataConverter.convertValue(Objects.toString(caseData.getPrimaryCorrespondent(), "")));
-        data.add(exportDataConverter.convertValue(Objects.toString(caseData.getPrimaryTopic(), "")));
-        data.add(caseData.getMigratedReference());
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer,
+                             String[] additionalHeaders) throws IOException {
+        CaseDataProjection caseData = readCaseData(audit);
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeString(caseData.getReference());
+        writer.writeString(caseData.getType());
+        writer.writeDate(caseData.getCaseDeadline());
+        writer.writeString(exportDataConverter.convertValue(Objects.toString(caseData.getPrimaryCorrespondent(), "")));
+        writer.writeString(exportDataConverter.convertValue(Objects.toString(caseData.getPrimaryTopic(), "")));
+        writer.writeString(caseData.getMigratedReference());
 
         if (caseData.getData() != null) {
             for (String field : additionalHeaders) {
-                data.add(exportDataConverter.convertValue(caseData.getData().getOrDefault(field, "")));
+                writer.writeString(exportDataConverter.convertValue(caseData.getData().getOrDefault(field, "")));
             }
         }
+    }
 
-        return data.toArray(new String[0]);
+    private CaseDataProjection readCaseData(AuditEvent audit) throws JsonProcessingException {
+        long start = System.nanoTime();
+        try {
+            return caseDataProjectionService.read(audit);
+        } finally {
+            ExportProfile.current().record(ExportProfile.Phase.DECODE, start);
+        }
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeDto = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeDto.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeDto);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, caseTypeDto, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, caseTypeDto, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseUuid", "reference", "caseType", "deadline",
-            "primaryCorrespondent", "primaryTopic", "migratedReference" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -154,49 +182,33 @@ public class CaseDataExportService extends CaseDataDynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = new HashMap<>();
+        var referenceData = referenceDataCache.getSnapshot();
+
+        Map<String, String> uuidToName = new HashMap<>(referenceData.getUserNames());
         Map<String, String> entityListItemToName = new HashMap<>();
 
-        log.info("Start loading users", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
-        uuidToName.putAll(
-            infoClient.getUsers().stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername)));
-        log.info("End loading users", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
-
-        log.info("Start loading teams", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
-        uuidToName.putAll(infoClient.getAllTeams().stream().collect(
-            Collectors.toMap(team -> team.getUuid().toString(), TeamDto::getDisplayName)));
-        log.info("End loading teams", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
-
-        log.info("Start loading units", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
-        uuidToName.putAll(
-            infoClient.getUnits().stream().collect(Collectors.toMap(UnitDto::getUuid, UnitDto::getDisplayName)));
-        log.info("End loading units", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
-
-        log.info("Start loading topics", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
-        caseworkClient.getAllCaseTopics().forEach(
-            topic -> {
-                uuidToName.putIfAbsent(topic.getTopicUUID().toString(), topic.getTopicText());
-                uuidToName.putIfAbsent(topic.getUuid().toString(), topic.getTopicText());
-            });
-        log.info("End loading topics", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
+        uuidToName.putAll(referenceData.getTeamNames());
+        uuidToName.putAll(referenceData.getUnitNames());
+        referenceData.getCaseTopicNames().forEach(uuidToName::putIfAbsent);
 
         log.info("Start loading correspondents", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
         uuidToName.putAll(correspondentUuidToNameCache.getUuidToNameLookup());
         log.info("End loading correspondents", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
 
-        log.info("Start loading caseTypeActions", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
-        uuidToName.putAll(infoClient.getCaseTypeActions().stream().collect(
-            Collectors.toMap(action -> action.getUuid().toString(), CaseTypeActionDto::getActionLabel)));
-        log.info("End loading correspondents", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
+        uuidToName.putAll(referenceData.getCaseTypeActionLabels());
 
         for (String listName : ENTITY_LISTS.getOrDefault(caseType.getType(), new String[0])) {
-            log.info("Start loading entity list {}", listName, value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
-            Set<EntityDto> entities = infoClient.getEntitiesForList(listName);
-            entities.forEach(e -> entityListItemToName.put(e.getSimpleName(), e.getData().getTitle()));
-            log.info("End loading entity list {}", listName, value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
+            entityListItemToName.putAll(referenceDataCache.getEntityListTitles(listName));
         }
 
-        return new ExportDataConverter(uuidToName, entityListItemToName, caseType.getShortCode(), auditRepository);
+        return new ExportDataConverter(uuidToName, entityListItemToName,
+            caseReferenceCache.getIndex(caseType.getShortCode()));
+    }
+
+    // only the latest of the events of each case are written, so the estimate is an upper bound
+    @Override
+    String[] getEstimatedEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -205,8 +217,28 @@ public class CaseDataExportService extends CaseDataDynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findLastAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        LocalDateTime dateFrom = LocalDateTime.of(from, LocalTime.MIN);
+
+        if (latestState) {
+            return auditRepository.findCaseLatestStateByDateRangeAndEvents(dateFrom, peggedTo, events, caseTypeCode);
+        }
+
+        // ranges too large for the database to sort in memory are reduced as they are read instead
+        if (caseLatestEventService.isReducedInApplication(dateFrom, peggedTo, events, caseTypeCode)) {
+            return caseLatestEventService.findLatestEvents(dateFrom, peggedTo, events, caseTypeCode);
+        }
+
+        return findLastEvents(dateFrom, peggedTo, caseTypeCode, events);
+    }
+
+    /**
+     * Reads the last event of each case and type in the range with the database sorting the range by case.
+     */
+    protected Stream<AuditEvent> findLastEvents(LocalDateTime dateFrom,
+                                                LocalDateTime dateTo,
+                                                String caseTypeCode,
+                                                String[] events) {
+        return auditRepository.findLastAuditDataByDateRangeAndEvents(dateFrom, dateTo, events, caseTypeCode);
     }
 
 }
@@ -0,0 +1,260 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.exception.AuditExportException;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.config.CaseDataFieldReader;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.repository.entity.CaseDataPayload;
+import uk.gov.digital.ho.hocs.audit.service.domain.CaseDataProjection;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CASE_DATA_PROJECTION_FAILURE;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CASE_DATA_REPROJECTED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+
+/**
+ * Projects case data events down to the fields the case data exports read when they are audited, so exports decode a
+ * few fields rather than the whole case. Projections made with different configured fields are ignored by the exports
+ * until the re-projection brings them up to date.
+ * <p>
+ * The configured fields of each case type are looked up from the info service once. Case types it does not know, or
+ * cannot be asked about, are looked up again after the miss timeout, so events audited meanwhile do not each wait on
+ * the info service.
+ */
+@Slf4j
+@Service
+public class CaseDataProjectionService {
+
+    private static final String[] EVENTS = CaseDataExportService.EVENTS;
+
+    private static final Set<String> EVENT_TYPES = Set.of(EVENTS);
+
+    private final ObjectMapper objectMapper;
+
+    private final AuditRepository auditRepository;
+
+    private final InfoClient infoClient;
+
+    private final CaseDataFieldReader caseDataFieldReader;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final Duration missTimeout;
+
+    // configured fields by case type short code
+    private final Map<String, ProjectedFields> projectedFields = new ConcurrentHashMap<>();
+
+    // case type short codes the last lookup did not find, or failed for
+    private final Map<String, Miss> misses = new ConcurrentHashMap<>();
+
+    public CaseDataProjectionService(ObjectMapper objectMapper,
+                                     AuditRepository auditRepository,
+                                     InfoClient infoClient,
+                                     CaseDataFieldReader caseDataFieldReader,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${audit.export.case-data.projection-batch-size:1000}") int batchSize,
+                                     @Value("${audit.export.case-data.projection-miss-timeout:PT1M}")
+                                     Duration missTimeout) {
+        this.objectMapper = objectMapper;
+        this.auditRepository = auditRepository;
+        this.infoClient = infoClient;
+        this.caseDataFieldReader = caseDataFieldReader;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.missTimeout = missTimeout;
+    }
+
+    /**
+     * Projects an event as it is audited. Failing to project it does not fail the audit, as the exports read the full
+     * payload of events without a projection.
+     *
+     * @return the projection, or null if the event is not a case data event or cannot be projected.
+     */
+    public String project(AuditEvent auditEvent) {
+        if (auditEvent.getCaseType() == null || !EVENT_TYPES.contains(auditEvent.getType())) {
+            return null;
+        }
+
+        try {
+            return project(auditEvent.getCaseType(), auditEvent.getAuditPayload());
+        } catch (Exception e) {
+            log.warn("Unable to project case data for audit event {}: {}", auditEvent.getUuid(), e.getMessage(),
+                value(EVENT, CASE_DATA_PROJECTION_FAILURE));
+            return null;
+        }
+    }
+
+    /**
+     * Reads the projection of a case data event if it was made with the fields configured now, otherwise projects its
+     * payload.
+     */
+    public CaseDataProjection read(AuditEvent auditEvent) throws JsonProcessingException {
+        var fields = getProjectedFields(auditEvent.getCaseType());
+
+        if (auditEvent.getCaseData() != null && fields != null) {
+            var projection = objectMapper.readValue(auditEvent.getCaseData(), CaseDataProjection.class);
+            if (fields.version().equals(projection.getVersion())) {
+                return projection;
+            }
+        }
+
+        return toProjection(objectMapper.readValue(auditEvent.getAuditPayload(), AuditPayload.CaseData.class), fields);
+    }
+
+    /**
+     * Re-projects the case data events audited from the given date whose projection is missing or was made with
+     * different configured fields, a month at a time, and updates the latest case state to match.
+     *
+     * @return the number of events re-projected.
+     */
+    public long reproject(String caseType, LocalDate from) {
+        var caseTypeCode = getCaseTypeCode(caseType);
+        var fields = getProjectedFields(caseTypeCode);
+
+        long updated = 0;
+        for (LocalDate month = from.withDayOfMonth(1); !month.isAfter(LocalDate.now()); month = month.plusMonths(1)) {
+            var monthFrom = LocalDateTime.of(month.isBefore(from) ? from : month, LocalTime.MIN);
+            var monthTo = LocalDateTime.of(month.plusMonths(1).minusDays(1), LocalTime.MAX);
+
+            long afterId = Long.MIN_VALUE;
+            List<CaseDataPayload> batch;
+            do {
+                var batchAfterId = afterId;
+                batch = transactionTemplate.execute(status -> {
+                    var payloads = auditRepository.findCaseDataToProject(caseTypeCode, EVENTS, monthFrom, monthTo,
+                        fields.version(), batchAfterId, batchSize);
+                    for (CaseDataPayload payload : payloads) {
+                        auditRepository.updateCaseData(payload.getId(), monthFrom, monthTo,
+                            reproject(caseTypeCode, payload));
+                    }
+                    return payloads;
+                });
+                updated += batch.size();
+                afterId = batch.isEmpty() ? afterId : batch.get(batch.size() - 1).getId();
+            } while (batch.size() == batchSize);
+
+            transactionTemplate.executeWithoutResult(
+                status -> auditRepository.updateCaseLatestStateCaseData(caseTypeCode, monthFrom, monthTo));
+        }
+
+        log.info("Re-projected {} case data events for case type {} from {}", updated, caseType, from,
+            value(EVENT, CASE_DATA_REPROJECTED));
+        return updated;
+    }
+
+    private String reproject(String caseTypeCode, CaseDataPayload payload) {
+        try {
+            return project(caseTypeCode, payload.getAuditPayload());
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to project case data for audit event {}: {}", payload.getId(), e.getMessage(),
+                value(EVENT, CASE_DATA_PROJECTION_FAILURE));
+            return null;
+        }
+    }
+
+    private String project(String caseTypeCode, String auditPayload) throws JsonProcessingException {
+        var fields = getProjectedFields(caseTypeCode);
+        if (fields == null) {
+            return null;
+        }
+
+        var caseData = objectMapper.readValue(auditPayload, AuditPayload.CaseData.class);
+        return objectMapper.writeValueAsString(toProjection(caseData, fields));
+    }
+
+    private CaseDataProjection toProjection(AuditPayload.CaseData caseData, ProjectedFields fields) {
+        Map<String, String> data = null;
+        if (caseData.getData() != null) {
+            data = new HashMap<>();
+            for (String field : fields == null ? Set.<String>of() : fields.fields()) {
+                if (caseData.getData().containsKey(field)) {
+                    data.put(field, caseData.getData().get(field));
+                }
+            }
+        }
+
+        return new CaseDataProjection(fields == null ? null : fields.version(), caseData.getType(),
+            caseData.getReference(), caseData.getCaseDeadline(), caseData.getPrimaryCorrespondent(),
+            caseData.getPrimaryTopic(), caseData.getMigratedReference(), data);
+    }
+
+    private ProjectedFields getProjectedFields(String caseTypeCode) {
+        if (caseTypeCode == null) {
+            return null;
+        }
+
+        var fields = projectedFields.get(caseTypeCode);
+        if (fields != null) {
+            return fields;
+        }
+
+        var miss = misses.get(caseTypeCode);
+        if (miss != null && System.nanoTime() - miss.missedAt() < missTimeout.toNanos()) {
+            if (miss.failure() != null) {
+                throw miss.failure();
+            }
+            return null;
+        }
+
+        try {
+            fields = infoClient.getCaseTypes().stream()
+                .filter(caseTypeDto -> caseTypeCode.equals(caseTypeDto.getShortCode()))
+                .findFirst()
+                .map(caseTypeDto -> ProjectedFields.of(caseDataFieldReader.getByCaseType(caseTypeDto.getType())))
+                .orElse(null);
+        } catch (RuntimeException e) {
+            misses.put(caseTypeCode, new Miss(System.nanoTime(), e));
+            throw e;
+        }
+
+        if (fields == null) {
+            misses.put(caseTypeCode, new Miss(System.nanoTime(), null));
+            return null;
+        }
+
+        misses.remove(caseTypeCode);
+        var known = projectedFields.putIfAbsent(caseTypeCode, fields);
+        return known != null ? known : fields;
+    }
+
+    private String getCaseTypeCode(String caseType) {
+        return infoClient.getCaseTypes().stream().filter(
+            caseTypeDto -> caseTypeDto.getType().equals(caseType)).findFirst().map(CaseTypeDto::getShortCode).orElseThrow(
+            () -> new AuditExportException("Invalid case type specified %s", LogEvent.INVALID_CASE_TYPE_SPECIFIED,
+                caseType));
+    }
+
+    private record ProjectedFields(String version, Set<String> fields) {
+
+        static ProjectedFields of(Set<String> fields) {
+            return new ProjectedFields(Integer.toHexString(String.join(",", fields).hashCode()), fields);
+        }
+
+    }
+
+    private record Miss(long missedAt, RuntimeException failure) {}
+
+}
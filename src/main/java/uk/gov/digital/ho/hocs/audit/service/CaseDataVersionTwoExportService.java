@@ -1,6 +1,7 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
@@ -9,13 +10,14 @@ import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.config.CaseDataFieldReader;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.CorrespondentUuidToNameCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -32,11 +34,20 @@ public class CaseDataVersionTwoExportService extends CaseDataExportService {
         CaseworkClient caseworkClient,
         HeaderConverter headerConverter,
         MalformedDateConverter malformedDateConverter,
+        ExportWriterFactory exportWriterFactory,
+        ReferenceDataCache referenceDataCache,
+        CaseReferenceCache caseReferenceCache,
+        ExportWindowService exportWindowService,
         CorrespondentUuidToNameCache correspondentUuidToNameCache,
-        CaseDataFieldReader caseDataFieldReader)
+        CaseDataFieldReader caseDataFieldReader,
+        CaseDataProjectionService caseDataProjectionService,
+        CaseLatestEventService caseLatestEventService,
+        @Value("${audit.export.case-data.latest-state:false}") boolean latestState)
     {
         super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
-            correspondentUuidToNameCache, caseDataFieldReader);
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService,
+            correspondentUuidToNameCache, caseDataFieldReader, caseDataProjectionService, caseLatestEventService,
+            latestState);
     }
 
     private final static Set<String> UNIQUE_EVENT_TYPES = Set.of("CASE_CREATED");
@@ -47,17 +58,17 @@ public class CaseDataVersionTwoExportService extends CaseDataExportService {
     }
 
     @Override
-    protected Stream<AuditEvent> getData(LocalDate from, LocalDate to, String caseTypeCode, String[] events) {
-        LocalDateTime peggedTo = to.isBefore(LocalDate.now())
-            ? LocalDateTime.of(to, LocalTime.MAX)
-            : LocalDateTime.now();
-
+    protected Stream<AuditEvent> findLastEvents(LocalDateTime dateFrom,
+                                                LocalDateTime dateTo,
+                                                String caseTypeCode,
+                                                String[] events) {
+        // created events are unique to a case, so they need not be sorted to find the last of them
         String[] uniqueEvents = Arrays.stream(events).filter(UNIQUE_EVENT_TYPES::contains).toArray(String[]::new);
         String[] duplicatedEvents = Arrays.stream(events).filter(Predicate.not(UNIQUE_EVENT_TYPES::contains)).toArray(String[]::new);
 
         return auditRepository.findLastAuditDataByDateRangeAndEvents(
-            LocalDateTime.of(from, LocalTime.MIN),
-            peggedTo,
+            dateFrom,
+            dateTo,
             caseTypeCode,
             uniqueEvents,
             duplicatedEvents);
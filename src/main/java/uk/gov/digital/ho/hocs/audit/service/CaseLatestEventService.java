@@ -0,0 +1,110 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.exception.AuditExportException;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.LatestEventReducer;
+
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.LATEST_EVENTS_SPILL_FAILURE;
+
+/**
+ * Reads the latest event of each case and type in a range by streaming the range once in timestamp order, rather than
+ * having the database sort the whole range by case. The latest events beyond the memory budget are spilled to local
+ * disk and merged back, so the memory held does not grow with the range. The database is still preferred for ranges
+ * the planner estimates to be small, where its sort stays in memory.
+ */
+@Slf4j
+@Service
+public class CaseLatestEventService {
+
+    private final AuditRepository auditRepository;
+
+    private final EntityManager entityManager;
+
+    private final long inAppThreshold;
+
+    private final long memoryBudget;
+
+    private final Path directory;
+
+    public CaseLatestEventService(AuditRepository auditRepository,
+                                  EntityManager entityManager,
+                                  @Value("${audit.export.case-data.latest-events.in-app-threshold:1000000}")
+                                  long inAppThreshold,
+                                  @Value("${audit.export.case-data.latest-events.memory-budget:67108864}")
+                                  long memoryBudget,
+                                  @Value("${audit.export.case-data.latest-events.directory:${java.io.tmpdir}/hocs-audit-latest-events}")
+                                  String directory) throws IOException {
+        this.auditRepository = auditRepository;
+        this.entityManager = entityManager;
+        this.inAppThreshold = inAppThreshold;
+        this.memoryBudget = memoryBudget;
+        this.directory = Path.of(directory);
+
+        prepareDirectory();
+    }
+
+    /**
+     * Whether the latest events in the range are better read by {@link #findLatestEvents}, from the number of events
+     * the planner estimates are in it.
+     */
+    public boolean isReducedInApplication(LocalDateTime dateFrom,
+                                          LocalDateTime dateTo,
+                                          String[] types,
+                                          String caseType) {
+        var estimate = auditRepository.estimateAuditDataByDateRangeAndEvents(dateFrom, dateTo, types, caseType)
+            .getRows();
+        log.debug("Estimated {} events of case type {} for the latest events from {} to {}", estimate, caseType,
+            dateFrom, dateTo);
+        return estimate >= inAppThreshold;
+    }
+
+    /**
+     * Reads the latest event of each case and type in the range, in the order of
+     * {@link AuditRepository#findLastAuditDataByDateRangeAndEvents}.
+     */
+    public Stream<AuditEvent> findLatestEvents(LocalDateTime dateFrom,
+                                               LocalDateTime dateTo,
+                                               String[] types,
+                                               String caseType) {
+        var events = auditRepository.findAuditDataByDateRangeAndEvents(dateFrom, dateTo, types, caseType)
+            .peek(entityManager::detach);
+
+        try {
+            return new LatestEventReducer(directory, memoryBudget).reduce(events);
+        } catch (IOException e) {
+            log.error("Unable to spill latest events for reason {}", e.getMessage(),
+                value(EVENT, LATEST_EVENTS_SPILL_FAILURE));
+            throw new AuditExportException(String.format("Unable to spill latest events for reason %s", e.getMessage()),
+                LATEST_EVENTS_SPILL_FAILURE, e);
+        }
+    }
+
+    private void prepareDirectory() throws IOException {
+        Files.createDirectories(directory);
+
+        // runs are only read by the export that wrote them, so any left by a previous run are removed
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Unable to delete latest event run {}: {}", file, e.toString());
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.exception.AuditExportException;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Set;
+import java.util.UUID;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CASE_LATEST_STATE_BACKFILLED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CASE_LATEST_STATE_CONSISTENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CASE_LATEST_STATE_INCONSISTENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+
+/**
+ * Keeps the latest case data event of each case and type, so that the case data exports read one row per case rather
+ * than every update to it. Events are added as they are audited; the backfill loads the events audited before then,
+ * and the check compares the two.
+ */
+@Slf4j
+@Service
+public class CaseLatestStateService {
+
+    private static final String[] EVENTS = CaseDataExportService.EVENTS;
+
+    private static final Set<String> EVENT_TYPES = Set.of(EVENTS);
+
+    private final AuditRepository auditRepository;
+
+    private final InfoClient infoClient;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public CaseLatestStateService(AuditRepository auditRepository,
+                                  InfoClient infoClient,
+                                  PlatformTransactionManager transactionManager) {
+        this.auditRepository = auditRepository;
+        this.infoClient = infoClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Updates the latest state with an event that has just been saved, if it is newer. Must be called in the
+     * transaction that saved it.
+     */
+    public void record(AuditEvent auditEvent) {
+        if (auditEvent.getCaseUUID() == null || !EVENT_TYPES.contains(auditEvent.getType())) {
+            return;
+        }
+
+        auditRepository.upsertCaseLatestState(auditEvent.getUuid(), auditEvent.getAuditTimestamp(),
+            auditEvent.getType());
+    }
+
+    public void markDeleted(UUID caseUUID, Boolean deleted) {
+        auditRepository.updateCaseLatestStateDeleted(caseUUID, deleted);
+    }
+
+    /**
+     * Loads the latest state from the events audited from the given date, a month at a time so each statement reads
+     * only a few partitions. Events already held are only replaced by newer ones, so it can be rerun or run while
+     * events are being audited.
+     *
+     * @return the number of cases and types added or updated.
+     */
+    public long backfill(String caseType, LocalDate from) {
+        var caseTypeCode = getCaseTypeCode(caseType);
+
+        long updated = 0;
+        for (LocalDate month = from.withDayOfMonth(1); !month.isAfter(LocalDate.now()); month = month.plusMonths(1)) {
+            var monthFrom = LocalDateTime.of(month.isBefore(from) ? from : month, LocalTime.MIN);
+            var monthTo = LocalDateTime.of(month.plusMonths(1).minusDays(1), LocalTime.MAX);
+
+            updated += transactionTemplate.execute(
+                status -> auditRepository.backfillCaseLatestState(caseTypeCode, EVENTS, monthFrom, monthTo));
+        }
+
+        log.info("Backfilled {} latest case states for case type {} from {}", updated, caseType, from,
+            value(EVENT, CASE_LATEST_STATE_BACKFILLED));
+        return updated;
+    }
+
+    /**
+     * Compares the latest state with the latest event of each case and type audited from the given date.
+     *
+     * @return the number of cases and types that differ.
+     */
+    public long check(String caseType, LocalDate from) {
+        var caseTypeCode = getCaseTypeCode(caseType);
+
+        long mismatches = transactionTemplate.execute(
+            status -> auditRepository.countCaseLatestStateMismatches(caseTypeCode, EVENTS,
+                LocalDateTime.of(from, LocalTime.MIN)));
+
+        if (mismatches > 0) {
+            log.warn("Latest case state for case type {} from {} differs from the events for {} cases and types",
+                caseType, from, mismatches, value(EVENT, CASE_LATEST_STATE_INCONSISTENT));
+        } else {
+            log.info("Latest case state for case type {} from {} matches the events", caseType, from,
+                value(EVENT, CASE_LATEST_STATE_CONSISTENT));
+        }
+        return mismatches;
+    }
+
+    private String getCaseTypeCode(String caseType) {
+        return infoClient.getCaseTypes().stream().filter(
+            caseTypeDto -> caseTypeDto.getType().equals(caseType)).findFirst().map(CaseTypeDto::getShortCode).orElseThrow(
+            () -> new AuditExportException("Invalid case type specified %s", LogEvent.INVALID_CASE_TYPE_SPECIFIED,
+                caseType));
+    }
+
+}
@@ -1,21 +1,23 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -23,10 +25,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
@@ -34,15 +34,36 @@ public class CaseNoteExportService extends DynamicExportService {
 
     private static final String[] EVENTS = { "CASE_NOTE_CREATED", "CASE_NOTE_UPDATED", "CASE_NOTE_DELETED" };
 
+    private static final String[] PAYLOAD_FIELDS = { "caseNoteType", "text" };
+
     private static final int EXCEL_MAX_CELL_SIZE = 32766;
 
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseUuid"), ExportColumn.uuid("uuid"),
+        ExportColumn.string("caseNoteType"), ExportColumn.string("text") };
+
     public CaseNoteExportService(ObjectMapper objectMapper,
                                  AuditRepository auditRepository,
                                  InfoClient infoClient,
                                  CaseworkClient caseworkClient,
                                  HeaderConverter headerConverter,
-                                 MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                                 MalformedDateConverter malformedDateConverter,
+                                 ExportWriterFactory exportWriterFactory,
+                                 ReferenceDataCache referenceDataCache,
+                                 CaseReferenceCache caseReferenceCache,
+                                 ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
+    }
+
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
+    }
+
+    @Override
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -51,18 +72,20 @@ public class CaseNoteExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.CaseNote caseNote = objectMapper.readValue(audit.getAuditPayload(), AuditPayload.CaseNote.class);
-
-        String caseNoteText = Objects.toString(caseNote.getText(), "");
-
-        return new String[] { zonedDateTimeConverter.convert(audit.getAuditTimestamp()), audit.getType(),
-            exportDataConverter.convertValue(audit.getUserID()),
-            exportDataConverter.convertCaseUuid(audit.getCaseUUID()), Objects.toString(audit.getUuid(), ""),
-            caseNote.getCaseNoteType(),
-            caseNoteText.substring(0, Math.min(caseNoteText.length(), EXCEL_MAX_CELL_SIZE - 1)) };
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        String caseNoteText = Objects.toString(payload[1], "");
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeUuid(audit.getUuid());
+        writer.writeString(payload[0]);
+        writer.writeString(caseNoteText.substring(0, Math.min(caseNoteText.length(), EXCEL_MAX_CELL_SIZE - 1)));
     }
 
     @Override
@@ -71,30 +94,29 @@ public class CaseNoteExportService extends DynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo, caseTypeCode, events);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeDto = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeDto.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeDto);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseUuid", "uuid", "caseNoteType", "text" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -103,10 +125,10 @@ public class CaseNoteExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = new HashMap<>(
-            infoClient.getUsers().stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername)));
+        Map<String, String> uuidToName = referenceDataCache.getSnapshot().getUserNames();
 
-        return new ExportDataConverter(uuidToName, Collections.emptyMap(), caseType.getShortCode(), auditRepository);
+        return new ExportDataConverter(uuidToName, Collections.emptyMap(),
+            caseReferenceCache.getIndex(caseType.getShortCode()));
     }
 
 }
@@ -1,50 +1,88 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
-import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetCorrespondentOutlineResponse;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.convertUuid;
+
 @Service
 public class CorrespondentExportService extends DynamicExportService {
 
     private static final String[] EVENTS = { "CORRESPONDENT_DELETED", "CORRESPONDENT_CREATED",
         "CORRESPONDENT_UPDATED" };
 
+    private static final String[] PAYLOAD_FIELDS = { "uuid", "fullname", "organisation", "address", "address.address1",
+        "address.address2", "address.address3", "address.country", "address.postcode", "telephone", "email",
+        "reference", "externalKey" };
+
+    private static final int CORRESPONDENT_UUID = indexOf("uuid");
+
+    private static final int[] NAME_FIELDS = indexesOf("fullname", "organisation");
+
+    private static final int ADDRESS = indexOf("address");
+
+    private static final int[] ADDRESS_FIELDS = indexesOf("address.address1", "address.address2", "address.address3",
+        "address.country", "address.postcode");
+
+    private static final int[] CONTACT_FIELDS = indexesOf("telephone", "email", "reference", "externalKey");
+
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseUuid"),
+        ExportColumn.convertibleUuid("correspondentUuid"), ExportColumn.string("fullname"),
+        ExportColumn.string("organisation"), ExportColumn.string("address1"), ExportColumn.string("address2"),
+        ExportColumn.string("address3"), ExportColumn.string("country"), ExportColumn.string("postcode"),
+        ExportColumn.string("telephone"), ExportColumn.string("email"), ExportColumn.string("reference"),
+        ExportColumn.string("externalKey") };
+
     public CorrespondentExportService(ObjectMapper objectMapper,
                                       AuditRepository auditRepository,
                                       InfoClient infoClient,
                                       CaseworkClient caseworkClient,
                                       HeaderConverter headerConverter,
-                                      MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                                      MalformedDateConverter malformedDateConverter,
+                                      ExportWriterFactory exportWriterFactory,
+                                      ReferenceDataCache referenceDataCache,
+                                      CaseReferenceCache caseReferenceCache,
+                                      ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
+    }
+
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
+    }
+
+    @Override
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -53,36 +91,28 @@ public class CorrespondentExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.Correspondent correspondentData = objectMapper.readValue(audit.getAuditPayload(),
-            AuditPayload.Correspondent.class);
-
-        List<String> data = new ArrayList<>();
-        data.add(zonedDateTimeConverter.convert(audit.getAuditTimestamp()));
-        data.add(audit.getType());
-        data.add(exportDataConverter.convertValue(audit.getUserID()));
-        data.add(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
-        data.add(exportDataConverter.convertValue(Objects.toString(correspondentData.getUuid(), "")));
-        data.add(correspondentData.getFullname());
-        data.add(correspondentData.getOrganisation());
-
-        if (correspondentData.getAddress() != null) {
-            data.add(correspondentData.getAddress().getAddress1());
-            data.add(correspondentData.getAddress().getAddress2());
-            data.add(correspondentData.getAddress().getAddress3());
-            data.add(correspondentData.getAddress().getCountry());
-            data.add(correspondentData.getAddress().getPostcode());
-        } else {
-            data.addAll(List.of("", "", "", "", ""));
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeString(exportDataConverter.convertValue(convertUuid(payload[CORRESPONDENT_UUID])));
+        for (int field : NAME_FIELDS) {
+            writer.writeString(payload[field]);
         }
 
-        data.add(correspondentData.getTelephone());
-        data.add(correspondentData.getEmail());
-        data.add(correspondentData.getReference());
-        data.add(correspondentData.getExternalKey());
-        return data.toArray(new String[0]);
+        // the address is projected to tell a missing address from one without these fields
+        for (int field : ADDRESS_FIELDS) {
+            writer.writeString(payload[ADDRESS] != null ? payload[field] : "");
+        }
+
+        for (int field : CONTACT_FIELDS) {
+            writer.writeString(payload[field]);
+        }
     }
 
     @Override
@@ -91,32 +121,29 @@ public class CorrespondentExportService extends DynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo, caseTypeCode, events);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeDto = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeDto.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeDto);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseUuid", "correspondentUuid", "fullname",
-            "organisation", "address1", "address2", "address3", "country", "postcode", "telephone", "email",
-            "reference", "externalKey" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -125,14 +152,25 @@ public class CorrespondentExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = new HashMap<>();
+        var referenceData = referenceDataCache.getSnapshot();
 
-        uuidToName.putAll(
-            infoClient.getUsers().stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername)));
-        uuidToName.putAll(caseworkClient.getAllCorrespondents().stream().collect(
-            Collectors.toMap(corr -> corr.getUuid().toString(), GetCorrespondentOutlineResponse::getFullname)));
+        Map<String, String> uuidToName = new HashMap<>(referenceData.getUserNames());
+        uuidToName.putAll(referenceDataCache.getCorrespondentNames());
+
+        return new ExportDataConverter(uuidToName, Collections.emptyMap(),
+            caseReferenceCache.getIndex(caseType.getShortCode()));
+    }
+
+    private static int indexOf(String payloadField) {
+        int index = Arrays.asList(PAYLOAD_FIELDS).indexOf(payloadField);
+        if (index < 0) {
+            throw new IllegalStateException(String.format("Payload field %s is not projected", payloadField));
+        }
+        return index;
+    }
 
-        return new ExportDataConverter(uuidToName, Collections.emptyMap(), caseType.getShortCode(), auditRepository);
+    private static int[] indexesOf(String... payloadFields) {
+        return Arrays.stream(payloadFields).mapToInt(CorrespondentExportService::indexOf).toArray();
     }
 
 }
@@ -2,8 +2,6 @@ package uk.gov.digital.ho.hocs.audit.service;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -13,16 +11,15 @@ import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CustomExportFilter;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.config.CustomExportViewsReader;
 import uk.gov.digital.ho.hocs.audit.repository.config.model.CustomExportViews;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.CustomExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
-import jakarta.servlet.http.HttpServletResponse;
-
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
@@ -46,27 +43,32 @@ public class CustomExportService {
 
     private final RequestData requestData;
 
+    private final ExportWriterFactory exportWriterFactory;
+
     public CustomExportService(
         AuditRepository auditRepository,
         CustomExportViewsReader customExportViewsReader,
         CustomExportDataConverter customExportDataConverter,
         HeaderConverter headerConverter,
-        RequestData requestData
+        RequestData requestData,
+        ExportWriterFactory exportWriterFactory
     ) {
         this.auditRepository = auditRepository;
         this.customExportViewsReader = customExportViewsReader;
         this.customExportDataConverter = customExportDataConverter;
         this.headerConverter = headerConverter;
         this.requestData = requestData;
+        this.exportWriterFactory = exportWriterFactory;
     }
 
-    @Transactional(readOnly = true)
-    public void export(
-        HttpServletResponse response,
+    /**
+     * Checks the caller may run the custom export and validates the requested filter against the view, so that
+     * problems can be reported before any of the export is written.
+     */
+    public CustomExportFilter.ValidatedFilter validate(
         String viewName,
-        boolean convertHeader,
         CustomExportFilter filter
-    ) throws IOException, CustomExportFilter.FilterValidationException {
+    ) throws CustomExportFilter.FilterValidationException {
         var exportView = customExportViewsReader.getByViewName(viewName);
 
         if (StringUtils.hasText(exportView.requiredPermission()) && !requestData.getRoles().contains(
@@ -79,34 +81,47 @@ public class CustomExportService {
             throw new EntityPermissionException("No permission to view %s", viewName);
         }
 
-        var validatedFilter = filter.validate(exportView);
+        return filter.validate(exportView);
+    }
+
+    @Transactional(readOnly = true)
+    public void export(
+        OutputStream outputStream,
+        String viewName,
+        boolean convertHeader,
+        CustomExportFilter.ValidatedFilter validatedFilter,
+        ExportFormat format
+    ) throws IOException {
+        var exportView = customExportViewsReader.getByViewName(viewName);
 
         String[] headers = getHeaders(exportView, convertHeader);
+        ExportColumnType[] columnTypes = getColumnTypes(viewName, exportView, format);
 
         customExportDataConverter.initialiseAdapters();
 
-        try (OutputStream buffer = new BufferedOutputStream(
-            response.getOutputStream()); OutputStreamWriter outputWriter = new OutputStreamWriter(
-            buffer,
-            StandardCharsets.UTF_8
-        ); var printer = new CSVPrinter(
-            outputWriter,
-            CSVFormat.Builder.create().setHeader(headers).setAutoFlush(true).setNullString("").build()
-        )) {
+        // the rows are converted on other threads, which do not see the profile bound to this one
+        var profile = ExportProfile.current();
+
+        try (var writer = exportWriterFactory.create(format, outputStream, headers, columnTypes)) {
             AtomicBoolean connected = new AtomicBoolean(true);
 
-            retrieveAuditData(viewName, validatedFilter).parallel().map(data -> {
-                Object[] converted = customExportDataConverter.convertData(data, exportView.fields());
+            profile.timeFetch(retrieveAuditData(viewName, validatedFilter)).parallel().map(data -> {
+                long convertStart = System.nanoTime();
+                String[] converted = customExportDataConverter.convertData(data, exportView.fields());
+                profile.record(ExportProfile.Phase.CONVERT, convertStart);
 
                 if (converted == null) {
                     log.warn("No data to print after converting data {}", data);
-                    return new Object[0];
+                    return new String[0];
                 }
 
                 return converted;
             }).takeWhile(c -> connected.get()).forEachOrdered(converted -> {
                 try {
-                    printer.printRecord(converted);
+                    long writeStart = System.nanoTime();
+                    writer.writeRecord(converted);
+                    profile.record(ExportProfile.Phase.WRITE, writeStart);
+                    profile.recordRow();
                 } catch (IOException e) {
                     connected.set(false);
                     log.error(
@@ -118,6 +133,17 @@ public class CustomExportService {
         }
     }
 
+    private ExportColumnType[] getColumnTypes(String viewName,
+                                              CustomExportViews.CustomExportView exportView,
+                                              ExportFormat format) {
+        if (!format.isTyped()) {
+            return null;
+        }
+
+        return customExportDataConverter.getColumnTypes(exportView,
+            auditRepository.getViewColumnTypes(viewName));
+    }
+
     private String[] getHeaders(CustomExportViews.CustomExportView exportView, boolean convertHeader) {
         String[] headers = customExportDataConverter.getHeaders(exportView);
 
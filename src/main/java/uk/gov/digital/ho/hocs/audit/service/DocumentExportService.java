@@ -1,34 +1,34 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetCorrespondentOutlineResponse;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -37,13 +37,34 @@ public class DocumentExportService extends DynamicExportService {
 
     private static final String[] EVENTS = { "DOCUMENT_CREATED" };
 
+    private static final String[] PAYLOAD_FIELDS = { "documentTitle", "documentType" };
+
+    private static final ExportColumn[] COLUMNS = { ExportColumn.convertibleUuid("caseUuid"),
+        ExportColumn.timestamp("timestamp"), ExportColumn.string("documentTitle"),
+        ExportColumn.string("documentType") };
+
     public DocumentExportService(ObjectMapper objectMapper,
                                  AuditRepository auditRepository,
                                  InfoClient infoClient,
                                  CaseworkClient caseworkClient,
                                  HeaderConverter headerConverter,
-                                 MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                                 MalformedDateConverter malformedDateConverter,
+                                 ExportWriterFactory exportWriterFactory,
+                                 ReferenceDataCache referenceDataCache,
+                                 CaseReferenceCache caseReferenceCache,
+                                 ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
+    }
+
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
+    }
+
+    @Override
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -52,19 +73,15 @@ public class DocumentExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.Document documentData = objectMapper.readValue(audit.getAuditPayload(),
-            AuditPayload.Document.class);
-
-        List<String> data = new ArrayList<>();
-        data.add(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
-        data.add(zonedDateTimeConverter.convert(audit.getAuditTimestamp()));
-        data.add(documentData.getDocumentTitle());
-        data.add(documentData.getDocumentType());
-
-        return data.toArray(new String[0]);
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(payload[0]);
+        writer.writeString(payload[1]);
     }
 
     @Override
@@ -73,30 +90,29 @@ public class DocumentExportService extends DynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo, caseTypeCode, events);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeDto = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeDto.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeDto);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "caseUuid", "timestamp", "documentTitle", "documentType" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -105,7 +121,8 @@ public class DocumentExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        return new ExportDataConverter(new HashMap<>(), Collections.emptyMap(), caseType.getShortCode(), auditRepository);
+        return new ExportDataConverter(new HashMap<>(), Collections.emptyMap(),
+            caseReferenceCache.getIndex(caseType.getShortCode()));
     }
 
 }
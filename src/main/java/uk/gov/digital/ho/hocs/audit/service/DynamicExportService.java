@@ -3,8 +3,6 @@ package uk.gov.digital.ho.hocs.audit.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
@@ -15,19 +13,28 @@ import uk.gov.digital.ho.hocs.audit.core.exception.AuditExportException;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.CsvExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.stream.Stream;
 
 import static net.logstash.logback.argument.StructuredArguments.value;
@@ -51,6 +58,14 @@ public abstract class DynamicExportService {
 
     protected final MalformedDateConverter malformedDateConverter;
 
+    protected final ExportWriterFactory exportWriterFactory;
+
+    protected final ReferenceDataCache referenceDataCache;
+
+    protected final CaseReferenceCache caseReferenceCache;
+
+    protected final ExportWindowService exportWindowService;
+
     @PersistenceContext
     protected EntityManager entityManager;
 
@@ -59,13 +74,21 @@ public abstract class DynamicExportService {
                                    InfoClient infoClient,
                                    CaseworkClient caseworkClient,
                                    HeaderConverter headerConverter,
-                                   MalformedDateConverter malformedDateConverter) {
+                                   MalformedDateConverter malformedDateConverter,
+                                   ExportWriterFactory exportWriterFactory,
+                                   ReferenceDataCache referenceDataCache,
+                                   CaseReferenceCache caseReferenceCache,
+                                   ExportWindowService exportWindowService) {
         this.objectMapper = objectMapper;
         this.auditRepository = auditRepository;
         this.infoClient = infoClient;
         this.caseworkClient = caseworkClient;
         this.headerConverter = headerConverter;
         this.malformedDateConverter = malformedDateConverter;
+        this.exportWriterFactory = exportWriterFactory;
+        this.referenceDataCache = referenceDataCache;
+        this.caseReferenceCache = caseReferenceCache;
+        this.exportWindowService = exportWindowService;
     }
 
     CaseTypeDto getCaseTypeCode(String caseType) {
@@ -76,53 +99,88 @@ public abstract class DynamicExportService {
     }
 
     protected void printData(OutputStream outputStream,
+                             ExportFormat format,
                              ZonedDateTimeConverter zonedDateTimeConverter,
                              ExportDataConverter exportDataConverter,
                              boolean convertHeader,
                              Stream<AuditEvent> data) {
-        var headers = getConvertedHeaders(getHeaders(), convertHeader);
+        var columnTypes = getColumnTypes(exportDataConverter);
+        var convertedHeaders = getConvertedHeaders(getHeaders(), convertHeader);
 
-        printData(outputStream, zonedDateTimeConverter, exportDataConverter, headers, data);
+        printData(outputStream, format, zonedDateTimeConverter, convertedHeaders, columnTypes,
+            (audit, writer) -> writeData(audit, exportDataConverter, writer), data);
     }
 
     protected void printData(OutputStream outputStream,
+                             ExportFormat format,
                              ZonedDateTimeConverter zonedDateTimeConverter,
-                             ExportDataConverter exportDataConverter,
-                             boolean convertHeader,
-                             Stream<AuditEvent> data,
-                             String[] headers) {
-        var convertedHeaders = getConvertedHeaders(headers, convertHeader);
-
-        printData(outputStream, zonedDateTimeConverter, exportDataConverter, convertedHeaders, data);
-    }
-
-    protected void printData(OutputStream outputStream,
-                             ZonedDateTimeConverter zonedDateTimeConverter,
-                             ExportDataConverter exportDataConverter,
                              String[] headers,
+                             ExportColumnType[] columnTypes,
+                             DataWriter dataWriter,
                              Stream<AuditEvent> data) {
-        try (OutputStream buffer = new BufferedOutputStream(
-            outputStream); OutputStreamWriter outputWriter = new OutputStreamWriter(buffer,
-            StandardCharsets.UTF_8); var printer = new CSVPrinter(outputWriter,
-            CSVFormat.Builder.create().setHeader(headers).setAutoFlush(true).setNullString("").build())) {
-            data.forEach(audit -> {
-                try {
-                    String[] parsedData = parseData(audit, zonedDateTimeConverter, exportDataConverter);
-                    entityManager.detach(audit);
-
-                    parsedData = malformedDateConverter.correctDateFields(parsedData);
-                    printer.printRecord((Object[]) parsedData);
-                    printer.flush();
-                } catch (IOException e) {
-                    throw new AuditExportException(String.format("Unable to parse record for audit %s for reason %s", audit.getUuid(), e.getMessage()),
-                        CSV_RECORD_EXPORT_FAILURE, e);
-                }
+        var profile = ExportProfile.current();
+
+        try (var writer = new RecordWriter(
+            exportWriterFactory.create(format, outputStream, headers, columnTypes, zonedDateTimeConverter),
+            zonedDateTimeConverter, dataWriter)) {
+            profile.timeFetch(data).forEach(audit -> {
+                writer.write(audit);
+                entityManager.detach(audit);
             });
         } catch (IOException e) {
+            // a response that could not be completed is a failed export, not a short one
             log.error("Unable to export record for reason {}", e.getMessage(), value(EVENT, CSV_EXPORT_FAILURE));
+            throw new AuditExportException("Unable to export record for reason %s", CSV_EXPORT_FAILURE,
+                e.getMessage());
         }
     }
 
+    /**
+     * Opens a writer that writes the records of this export one event at a time, for exports that are not fed from
+     * their own query.
+     */
+    RecordWriter openRecordWriter(ExportFormat format,
+                                  OutputStream outputStream,
+                                  ZonedDateTimeConverter zonedDateTimeConverter,
+                                  ExportDataConverter exportDataConverter,
+                                  boolean convertHeader) throws IOException {
+        return openRecordWriter(
+            exportWriterFactory.create(format, outputStream, getConvertedHeaders(getHeaders(), convertHeader),
+                getColumnTypes(exportDataConverter), zonedDateTimeConverter), zonedDateTimeConverter,
+            exportDataConverter);
+    }
+
+    /**
+     * Opens a writer for CSV records without a header, for exports written in parts after the header.
+     */
+    RecordWriter openRowWriter(OutputStream outputStream,
+                               ZonedDateTimeConverter zonedDateTimeConverter,
+                               ExportDataConverter exportDataConverter) throws IOException {
+        return openRecordWriter(new CsvExportWriter(outputStream, null, zonedDateTimeConverter),
+            zonedDateTimeConverter, exportDataConverter);
+    }
+
+    private RecordWriter openRecordWriter(ExportWriter writer,
+                                          ZonedDateTimeConverter zonedDateTimeConverter,
+                                          ExportDataConverter exportDataConverter) {
+        return new RecordWriter(writer, zonedDateTimeConverter,
+            (audit, out) -> writeData(audit, exportDataConverter, out));
+    }
+
+    /**
+     * The unconverted headers of the export's columns.
+     */
+    protected String[] getHeaders() {
+        return ExportColumn.getHeaders(getColumns());
+    }
+
+    /**
+     * The type of each of the export's columns, for formats that store typed values.
+     */
+    protected ExportColumnType[] getColumnTypes(ExportDataConverter exportDataConverter) {
+        return ExportColumn.getTypes(getColumns(), exportDataConverter.isConverting());
+    }
+
     private String[] getConvertedHeaders(String[] headers, boolean convertHeader) {
         if (!convertHeader) {
             return headers;
@@ -131,25 +189,150 @@ public abstract class DynamicExportService {
         return headerConverter.substitute(headers);
     }
 
+    /**
+     * Decodes the payload of an audit event, recording the time taken against the profile of the export.
+     */
+    protected <T> T readPayload(AuditEvent audit, Class<T> payloadType) throws JsonProcessingException {
+        long start = System.nanoTime();
+        try {
+            return objectMapper.readValue(audit.getAuditPayload(), payloadType);
+        } finally {
+            ExportProfile.current().record(ExportProfile.Phase.DECODE, start);
+        }
+    }
+
+    /**
+     * Reads the events of an event export in the range, from the export window where it holds the whole range.
+     */
+    protected Stream<AuditEvent> findEvents(LocalDateTime dateFrom,
+                                            LocalDateTime dateTo,
+                                            String caseTypeCode,
+                                            String[] events) {
+        var windowed = exportWindowService.find(this, dateFrom, dateTo, caseTypeCode, events);
+        if (windowed != null) {
+            return windowed;
+        }
+        return auditRepository.findAuditDataByDateRangeAndEvents(dateFrom, dateTo, events, caseTypeCode,
+            getPayloadFields());
+    }
+
+    /**
+     * The payload fields the export reads, as dot separated paths. Exports that declare them have the fields projected
+     * in their query rather than decoding the whole payload, and parse the values from
+     * {@link AuditEvent#getPayloadFields()} in the same order.
+     */
+    protected String[] getPayloadFields() {
+        return null;
+    }
+
+    /**
+     * The events the export reads with the plain date range and event query, so that it can be read alongside other
+     * exports in a single scan. Exports that read their events any other way return null.
+     */
+    protected String[] getEvents() {
+        return null;
+    }
+
+    /**
+     * The events the export's rows are read from, for estimating its size ahead of running it. Exports that read
+     * their events any other way, and so cannot be estimated, return null.
+     */
+    String[] getEstimatedEvents() {
+        return getEvents();
+    }
+
+    /**
+     * Whether the export reads plain events into projected fields, so that its events can be read by queries other
+     * than its own.
+     */
+    boolean isEventExport() {
+        return getEvents() != null && getPayloadFields() != null;
+    }
+
     public abstract ExportType getExportType();
 
-    protected abstract String[] parseData(AuditEvent audit,
-                                          ZonedDateTimeConverter zonedDateTimeConverter,
-                                          ExportDataConverter exportDataConverter) throws JsonProcessingException;
+    /**
+     * Writes the values of the export's record for an event, in the order of its columns.
+     */
+    protected abstract void writeData(AuditEvent audit,
+                                      ExportDataConverter exportDataConverter,
+                                      ExportWriter writer) throws IOException;
 
     @Transactional(readOnly = true)
+    public void export(LocalDate from,
+                       LocalDate to,
+                       OutputStream outputStream,
+                       String caseType,
+                       boolean convert,
+                       boolean convertHeader,
+                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        export(from, to, outputStream, caseType, convert, convertHeader, zonedDateTimeConverter, ExportFormat.CSV);
+    }
+
     public abstract void export(LocalDate from,
                                 LocalDate to,
                                 OutputStream outputStream,
                                 String caseType,
                                 boolean convert,
                                 boolean convertHeader,
-                                ZonedDateTimeConverter zonedDateTimeConverter) throws IOException;
+                                ZonedDateTimeConverter zonedDateTimeConverter,
+                                ExportFormat format) throws IOException;
 
-    protected abstract String[] getHeaders();
+    protected abstract ExportColumn[] getColumns();
 
     protected abstract ExportDataConverter getDataConverter(boolean convert, CaseTypeDto caseType);
 
     protected abstract Stream<AuditEvent> getData(LocalDate from, LocalDate to, String caseTypeCode, String[] events);
 
+    /**
+     * Writes the values of an event's record to the writer of the export.
+     */
+    @FunctionalInterface
+    interface DataWriter {
+
+        void write(AuditEvent audit, ExportWriter writer) throws IOException;
+
+    }
+
+    class RecordWriter implements Closeable {
+
+        private final ExportWriter writer;
+
+        private final DataWriter dataWriter;
+
+        private RecordWriter(ExportWriter writer,
+                             ZonedDateTimeConverter zonedDateTimeConverter,
+                             DataWriter dataWriter) {
+            this.writer = malformedDateConverter.correcting(writer, zonedDateTimeConverter);
+            this.dataWriter = dataWriter;
+        }
+
+        void write(AuditEvent audit) {
+            var profile = ExportProfile.current();
+
+            try {
+                long convertMark = profile.startConvert();
+                writer.startRecord();
+                dataWriter.write(audit, writer);
+                profile.endConvert(convertMark);
+
+                long writeStart = System.nanoTime();
+                writer.endRecord();
+                profile.record(ExportProfile.Phase.WRITE, writeStart);
+                profile.recordRow();
+            } catch (IOException | IllegalArgumentException | DateTimeException e) {
+                // a projected value that does not parse, or that the writer cannot store as the type of its column,
+                // fails the export
+                throw new AuditExportException("Unable to parse record for audit %s for reason %s",
+                    CSV_RECORD_EXPORT_FAILURE, audit.getUuid(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,242 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.RequestData;
+import uk.gov.digital.ho.hocs.audit.core.exception.ExportCapacityException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_QUEUED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_REJECTED;
+
+/**
+ * Limits the number of exports running at once, both across the pod and for each user, so that a few heavy extracts
+ * cannot exhaust the connection pool and heap for everyone else.
+ * <p>
+ * Exports over the limits wait in a bounded queue and are admitted in arrival order. A waiting export is only passed
+ * over while its own user is at their limit, so one user queueing several exports does not hold up other users.
+ */
+@Slf4j
+@Service
+@Profile("extracts")
+public class ExportAdmissionService {
+
+    private final RequestData requestData;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int maxConcurrent;
+
+    private final int maxConcurrentPerUser;
+
+    private final int maxQueued;
+
+    private final Duration maxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+
+    private final Map<String, Integer> activeByUser = new HashMap<>();
+
+    private int active;
+
+    public ExportAdmissionService(RequestData requestData,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${audit.export.admission.max-concurrent:3}") int maxConcurrent,
+                                  @Value("${audit.export.admission.max-concurrent-per-user:1}")
+                                  int maxConcurrentPerUser,
+                                  @Value("${audit.export.admission.max-queued:10}") int maxQueued,
+                                  @Value("${audit.export.admission.max-wait:PT30S}") Duration maxWait) {
+        this.requestData = requestData;
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrent = maxConcurrent;
+        this.maxConcurrentPerUser = maxConcurrentPerUser;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+
+        Gauge.builder("audit.export.admission.queued", this, ExportAdmissionService::getQueued).register(
+            meterRegistry);
+        Gauge.builder("audit.export.admission.active", this, ExportAdmissionService::getActive).register(
+            meterRegistry);
+    }
+
+    /**
+     * Waits for the calling user's export to be admitted.
+     *
+     * @return the permit to close once the export has finished.
+     *
+     * @throws ExportCapacityException if the queue is full or the export is not admitted within the maximum wait.
+     */
+    public Permit acquire() {
+        return acquire(requestData.getUserId());
+    }
+
+    Permit acquire(String userId) {
+        return acquire(userId, true);
+    }
+
+    /**
+     * Waits for a background export job to be admitted. The job worker pool already bounds how many jobs can wait,
+     * so a job is queued even when the queue is full and waits for as long as it takes.
+     */
+    Permit acquireForJob(String userId) {
+        return acquire(userId, false);
+    }
+
+    private Permit acquire(String userId, boolean bounded) {
+        lock.lock();
+        try {
+            // after every dispatch nothing left in the queue can run, so an export that can run now overtakes nobody
+            if (canRun(userId)) {
+                admit(userId);
+                return new Permit(userId);
+            }
+
+            if (bounded && queue.size() >= maxQueued) {
+                throw reject(userId, "queue_full");
+            }
+
+            var waiter = new Waiter(userId, lock.newCondition());
+            queue.addLast(waiter);
+            log.info("Queued export for user {} behind {} others", userId, queue.size() - 1,
+                value(EVENT, EXPORT_QUEUED));
+
+            long remaining = maxWait.toNanos();
+            try {
+                while (!waiter.admitted) {
+                    if (!bounded) {
+                        waiter.condition.await();
+                        continue;
+                    }
+                    if (remaining <= 0) {
+                        queue.remove(waiter);
+                        throw reject(userId, "timeout");
+                    }
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.admitted) {
+                    release(userId);
+                } else {
+                    queue.remove(waiter);
+                }
+                throw new ExportCapacityException(maxWait, "Interrupted waiting for export capacity");
+            }
+
+            return new Permit(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canRun(String userId) {
+        return active < maxConcurrent && activeByUser.getOrDefault(userId, 0) < maxConcurrentPerUser;
+    }
+
+    private void admit(String userId) {
+        active++;
+        activeByUser.merge(userId, 1, Integer::sum);
+    }
+
+    private void release(String userId) {
+        active--;
+        activeByUser.computeIfPresent(userId, (user, count) -> count > 1 ? count - 1 : null);
+        dispatch();
+    }
+
+    private void dispatch() {
+        Iterator<Waiter> waiters = queue.iterator();
+        while (waiters.hasNext() && active < maxConcurrent) {
+            var waiter = waiters.next();
+            if (canRun(waiter.userId)) {
+                waiters.remove();
+                admit(waiter.userId);
+                waiter.admitted = true;
+                waiter.condition.signal();
+            }
+        }
+    }
+
+    private ExportCapacityException reject(String userId, String reason) {
+        meterRegistry.counter("audit.export.admission.rejected", "reason", reason).increment();
+        log.warn("Rejected export for user {} with {} running and {} queued ({})", userId, active, queue.size(),
+            reason, value(EVENT, EXPORT_REJECTED));
+        return new ExportCapacityException(maxWait, "Too many exports are running, try again in %d seconds",
+            maxWait.toSeconds());
+    }
+
+    private static class Waiter {
+
+        private final String userId;
+
+        private final Condition condition;
+
+        private boolean admitted;
+
+        Waiter(String userId, Condition condition) {
+            this.userId = userId;
+            this.condition = condition;
+        }
+
+    }
+
+    public class Permit implements AutoCloseable {
+
+        private final String userId;
+
+        private boolean released;
+
+        private Permit(String userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (!released) {
+                    released = true;
+                    release(userId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
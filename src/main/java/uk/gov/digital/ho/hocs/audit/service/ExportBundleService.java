@@ -0,0 +1,238 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes several event exports for a case type and date range from a single scan of the audit events, as a zip of one
+ * CSV per export. Each event is parsed by every export that reads its type, and each export is spooled to its own file
+ * while the scan runs, as a zip entry has to be written whole before the next one starts.
+ */
+@Slf4j
+@Service
+public class ExportBundleService {
+
+    private final Map<ExportType, DynamicExportService> exportServices = new EnumMap<>(ExportType.class);
+
+    private final AuditRepository auditRepository;
+
+    private final Path directory;
+
+    public ExportBundleService(List<DynamicExportService> dynamicExportServices,
+                               AuditRepository auditRepository,
+                               @Value("${audit.export.bundle.directory:${java.io.tmpdir}/hocs-audit-export-bundles}")
+                               String directory) throws IOException {
+        for (DynamicExportService service : dynamicExportServices) {
+            if (service.isEventExport()) {
+                exportServices.put(service.getExportType(), service);
+            }
+        }
+        this.auditRepository = auditRepository;
+        this.directory = Path.of(directory);
+
+        Files.createDirectories(this.directory);
+    }
+
+    public Set<ExportType> getExportTypes() {
+        return exportServices.keySet();
+    }
+
+    /**
+     * The events are read in chunks of their own short transactions rather than one held open across the scan and
+     * the copy into the zip, and every export in the bundle is written from the same scan, so they share its bound on
+     * the events audited so far.
+     *
+     * @param exportTypes the exports to bundle, or every export that can be bundled if empty.
+     */
+    public void export(LocalDate from,
+                       LocalDate to,
+                       OutputStream outputStream,
+                       String caseType,
+                       Collection<ExportType> exportTypes,
+                       boolean convert,
+                       boolean convertHeader,
+                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        var services = getServices(exportTypes);
+        var caseTypeDto = services.get(0).getCaseTypeCode(caseType);
+
+        List<String> payloadFields = new ArrayList<>();
+        Map<String, List<BundledExport>> exportsByEvent = new HashMap<>();
+        List<BundledExport> exports = new ArrayList<>();
+
+        try {
+            for (DynamicExportService service : services) {
+                var export = new BundledExport(service, Files.createTempFile(directory, "bundle-", ".csv"),
+                    indexPayloadFields(service.getPayloadFields(), payloadFields));
+                exports.add(export);
+
+                for (String event : service.getEvents()) {
+                    exportsByEvent.computeIfAbsent(event, key -> new ArrayList<>()).add(export);
+                }
+            }
+
+            // the converters are all built before the scan, so they convert from the same reference data
+            for (BundledExport export : exports) {
+                export.open(zonedDateTimeConverter, export.service.getDataConverter(convert, caseTypeDto),
+                    convertHeader);
+            }
+
+            LocalDateTime peggedTo = to.isBefore(LocalDate.now())
+                ? LocalDateTime.of(to, LocalTime.MAX)
+                : LocalDateTime.now();
+
+            try (Stream<AuditEvent> data = auditRepository.findAuditDataByDateRangeAndEvents(
+                LocalDateTime.of(from, LocalTime.MIN), peggedTo, exportsByEvent.keySet().toArray(String[]::new),
+                caseTypeDto.getShortCode(), payloadFields.toArray(String[]::new))) {
+                ExportProfile.current().timeFetch(data).forEach(audit -> {
+                    var projected = audit.getPayloadFields();
+                    for (BundledExport export : exportsByEvent.get(audit.getType())) {
+                        export.write(audit, projected);
+                    }
+                });
+            }
+
+            for (BundledExport export : exports) {
+                export.close();
+            }
+
+            var zip = new ZipOutputStream(outputStream);
+            for (BundledExport export : exports) {
+                zip.putNextEntry(new ZipEntry(getFileName(caseType, export.service.getExportType())));
+                Files.copy(export.file, zip);
+                zip.closeEntry();
+            }
+            zip.finish();
+        } finally {
+            for (BundledExport export : exports) {
+                export.discard();
+            }
+        }
+    }
+
+    private List<DynamicExportService> getServices(Collection<ExportType> exportTypes) {
+        if (exportTypes == null || exportTypes.isEmpty()) {
+            return new ArrayList<>(exportServices.values());
+        }
+
+        return exportTypes.stream().distinct().sorted().map(exportType -> {
+            var service = exportServices.get(exportType);
+            if (service == null) {
+                throw new InvalidExportTypeException("Export type cannot be bundled: %s",
+                    LogEvent.INVALID_PARAMETER_SPECIFIED, exportType);
+            }
+            return service;
+        }).toList();
+    }
+
+    /**
+     * Adds the payload fields of an export to those projected by the scan, sharing any already there.
+     *
+     * @return the position of each of the export's fields in the projected fields.
+     */
+    private static int[] indexPayloadFields(String[] fields, List<String> payloadFields) {
+        int[] indexes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            int index = payloadFields.indexOf(fields[i]);
+            if (index < 0) {
+                index = payloadFields.size();
+                payloadFields.add(fields[i]);
+            }
+            indexes[i] = index;
+        }
+        return indexes;
+    }
+
+    private static String getFileName(String caseType, ExportType exportType) {
+        return String.format("%s-%s-%s.%s", caseType.toLowerCase(), exportType.toString().toLowerCase(),
+            LocalDate.now(), ExportFormat.CSV.getFileExtension());
+    }
+
+    private static class BundledExport {
+
+        private final DynamicExportService service;
+
+        private final Path file;
+
+        private final int[] payloadFieldIndexes;
+
+        private DynamicExportService.RecordWriter writer;
+
+        BundledExport(DynamicExportService service, Path file, int[] payloadFieldIndexes) {
+            this.service = service;
+            this.file = file;
+            this.payloadFieldIndexes = payloadFieldIndexes;
+        }
+
+        void open(ZonedDateTimeConverter zonedDateTimeConverter,
+                  ExportDataConverter exportDataConverter,
+                  boolean convertHeader) throws IOException {
+            writer = service.openRecordWriter(ExportFormat.CSV, Files.newOutputStream(file), zonedDateTimeConverter,
+                exportDataConverter, convertHeader);
+        }
+
+        /**
+         * Writes an event with the fields projected for the whole bundle narrowed to those of this export, in the
+         * order it declares them.
+         */
+        void write(AuditEvent audit, String[] projected) {
+            String[] payloadFields = new String[payloadFieldIndexes.length];
+            for (int i = 0; i < payloadFieldIndexes.length; i++) {
+                payloadFields[i] = projected[payloadFieldIndexes[i]];
+            }
+            audit.setPayloadFields(payloadFields);
+
+            writer.write(audit);
+        }
+
+        void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+
+        void discard() {
+            try {
+                close();
+            } catch (IOException e) {
+                log.warn("Unable to close bundled export file {}: {}", file, e.toString());
+            }
+
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Unable to delete bundled export file {}: {}", file, e.toString());
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,213 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.ServerConnection;
+import io.undertow.server.protocol.http.HttpServerConnection;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xnio.IoUtils;
+import org.xnio.XnioExecutor;
+import uk.gov.digital.ho.hocs.audit.core.config.datasource.QueryCancellation;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_ABORTED;
+
+/**
+ * Cancels the queries of an export whose client has gone away, rather than leaving them to run until a write to the
+ * response finally fails. The export is cancelled as soon as Undertow closes the client's connection, which it does
+ * when a write to it fails. Undertow only notices a closed connection when it next reads from or writes to it, though,
+ * which an export waiting on a query does not do, so a plain HTTP/1.1 connection is also polled with a non-blocking
+ * read while the export runs. The poll runs on the connection's own IO thread, as Undertow's reads do, and only until
+ * the exchange completes. Anything read from a client that is still there is the start of its next request, and is
+ * handed back to the connection as extra bytes, the way Undertow hands back a pipelined request, to be read as one.
+ * <p>
+ * Only a failed read cancels the export. The end of the stream may be a client that has shut down its side of the
+ * connection but is still reading the response, so it stops the polling and leaves the export to be cancelled when a
+ * write fails and Undertow closes the connection.
+ */
+@Slf4j
+@Service
+public class ExportCancellationService {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration pollInterval;
+
+    public ExportCancellationService(MeterRegistry meterRegistry,
+                                     @Value("${audit.export.disconnect.poll-interval:PT1S}") Duration pollInterval) {
+        this.meterRegistry = meterRegistry;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Binds a query cancellation to the current thread for an export written to the current response, and watches the
+     * client's connection until the returned watch is closed. The watch must be closed by the same thread.
+     */
+    public Watch watch(String exportType, String caseType) {
+        var context = ServletRequestContext.current();
+        var exchange = context != null ? context.getExchange() : null;
+
+        var watch = new Watch(exportType, caseType, QueryCancellation.start(),
+            exchange != null ? exchange.getConnection() : null);
+        if (exchange != null) {
+            watch.start(exchange);
+        }
+        return watch;
+    }
+
+    /**
+     * Whether the connection can be polled. Only plain HTTP/1.1 connections are, as reading from a TLS or HTTP/2
+     * connection would interfere with its protocol.
+     */
+    private static boolean isPollable(ServerConnection connection) {
+        return connection instanceof HttpServerConnection && connection.getSslSessionInfo() == null;
+    }
+
+    public class Watch implements AutoCloseable {
+
+        private final String exportType;
+
+        private final String caseType;
+
+        private final QueryCancellation cancellation;
+
+        private final ServerConnection connection;
+
+        private XnioExecutor.Key poll;
+
+        private boolean closed;
+
+        private volatile boolean disconnected;
+
+        private Watch(String exportType,
+                      String caseType,
+                      QueryCancellation cancellation,
+                      ServerConnection connection) {
+            this.exportType = exportType;
+            this.caseType = caseType;
+            this.cancellation = cancellation;
+            this.connection = connection;
+        }
+
+        private void start(HttpServerExchange exchange) {
+            // close listeners cannot be removed, so one left on a kept alive connection does nothing once closed
+            connection.addCloseListener(closedConnection -> onClose());
+            exchange.addExchangeCompleteListener((completed, next) -> {
+                stopPolling();
+                next.proceed();
+            });
+
+            if (isPollable(connection)) {
+                synchronized (this) {
+                    poll = connection.getIoThread().executeAtInterval(this::poll, pollInterval.toMillis(),
+                        TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        /**
+         * Whether the client went away before the export finished, either as seen by polling or by a failed write.
+         */
+        public boolean isDisconnected() {
+            return disconnected || (connection != null && !connection.isOpen());
+        }
+
+        // runs on the connection's IO thread, and is synchronized with close so that the connection is never read once
+        // the export has returned it to Undertow
+        private synchronized void poll() {
+            var httpConnection = (HttpServerConnection) connection;
+
+            // a request read ahead of time shows the client is there, and is not to be overwritten
+            if (closed || disconnected || httpConnection.getExtraBytes() != null) {
+                return;
+            }
+
+            var buffer = httpConnection.getByteBufferPool().allocate();
+            try {
+                int read = httpConnection.getChannel().getSourceChannel().read(buffer.getBuffer());
+                if (read > 0) {
+                    buffer.getBuffer().flip();
+                    httpConnection.setExtraBytes(buffer);
+                    buffer = null;
+                } else if (read < 0) {
+                    // half closed, or gone, which only a write can tell apart
+                    stopPolling();
+                }
+            } catch (IOException e) {
+                disconnectLater();
+            } finally {
+                if (buffer != null) {
+                    buffer.close();
+                }
+            }
+        }
+
+        private synchronized void onClose() {
+            if (!closed && !disconnected) {
+                disconnectLater();
+            }
+        }
+
+        /**
+         * Disconnects on one of the server's worker threads, as cancelling a query blocks on the database and the IO
+         * thread that noticed the disconnect must not.
+         */
+        private void disconnectLater() {
+            stopPolling();
+            connection.getWorker().execute(this::disconnect);
+        }
+
+        void disconnect() {
+            // the query is cancelled outside the lock, so that a poll waiting on it does not hold up the IO thread
+            synchronized (this) {
+                if (closed || disconnected) {
+                    return;
+                }
+                disconnected = true;
+                stopPolling();
+            }
+
+            log.debug("Cancelling export of {} for case type {} as the client has disconnected", exportType,
+                caseType);
+            cancellation.cancel();
+
+            // fails the export's next write straight away, rather than once the response buffer fills
+            if (connection != null) {
+                IoUtils.safeClose(connection);
+            }
+        }
+
+        private synchronized void stopPolling() {
+            if (poll != null) {
+                poll.remove();
+                poll = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                stopPolling();
+            }
+            cancellation.close();
+
+            if (isDisconnected()) {
+                // not tagged with the case type, which is taken from the request path before it is validated
+                meterRegistry.counter("audit.export.aborted", "exportType", exportType).increment();
+                log.warn("Aborted export of {} for case type {} as the client disconnected", exportType, caseType,
+                    value(EVENT, EXPORT_ABORTED));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.utils.CountingOutputStream;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@Service
+public class ExportCompressionService {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int gzipLevel;
+
+    private final int zstdLevel;
+
+    private final boolean negotiate;
+
+    public ExportCompressionService(MeterRegistry meterRegistry,
+                                    @Value("${audit.export.compression.gzip-level:6}") int gzipLevel,
+                                    @Value("${audit.export.compression.zstd-level:3}") int zstdLevel,
+                                    @Value("${audit.export.compression.negotiate:true}") boolean negotiate) {
+        this.meterRegistry = meterRegistry;
+        this.gzipLevel = gzipLevel;
+        this.zstdLevel = zstdLevel;
+        this.negotiate = negotiate;
+    }
+
+    /**
+     * Sets the download headers for an export and returns the stream the export should be written to.
+     * <p>
+     * An explicitly requested compression produces a compressed file, so the extension is appended to the filename
+     * and no Content-Encoding is sent. Otherwise, a compression negotiated from Accept-Encoding is applied as a
+     * transfer encoding that the client decodes transparently.
+     *
+     * @param request     the export request, used for the Accept-Encoding header.
+     * @param response    the export response.
+     * @param compression the compression requested through the query parameter, may be null.
+     * @param fileName    the uncompressed filename of the export.
+     *
+     * @return the stream to write the export to; closing it completes the compressed output.
+     */
+    public OutputStream prepareResponse(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        ExportCompression compression,
+                                        String fileName) throws IOException {
+        if (compression != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=" + fileName + "." + compression.getFileExtension());
+            return compress(response.getOutputStream(), compression);
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
+
+        if (!negotiate) {
+            return response.getOutputStream();
+        }
+
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        Optional<ExportCompression> negotiated = ExportCompression.fromAcceptEncoding(
+            request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (negotiated.isEmpty()) {
+            return response.getOutputStream();
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, negotiated.get().getEncoding());
+        return compress(response.getOutputStream(), negotiated.get());
+    }
+
+    public OutputStream compress(OutputStream outputStream, ExportCompression compression) throws IOException {
+        var compressed = new CountingOutputStream(outputStream);
+
+        OutputStream encoder = switch (compression) {
+            case GZIP -> new LevelledGzipOutputStream(compressed, gzipLevel);
+            case ZSTD -> new ZstdOutputStream(compressed, zstdLevel);
+        };
+
+        return new MeteredCompressionOutputStream(encoder, compressed, compression);
+    }
+
+    private static class LevelledGzipOutputStream extends GZIPOutputStream {
+
+        LevelledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(level);
+        }
+
+    }
+
+    /**
+     * Counts the raw bytes going into the encoder and records both totals once the export is closed. Flushes are not
+     * passed on to the encoder, as the exports flush after every record and that would force tiny compressed blocks.
+     */
+    private class MeteredCompressionOutputStream extends FilterOutputStream {
+
+        private final CountingOutputStream compressed;
+
+        private final ExportCompression compression;
+
+        private long raw;
+
+        private boolean closed;
+
+        MeteredCompressionOutputStream(OutputStream encoder,
+                                       CountingOutputStream compressed,
+                                       ExportCompression compression) {
+            super(encoder);
+            this.compressed = compressed;
+            this.compression = compression;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            raw++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            raw += len;
+        }
+
+        @Override
+        public void flush() {
+            // deliberately not propagated, see class comment
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                out.close();
+            } finally {
+                meterRegistry.counter("audit.export.bytes", "encoding", compression.getEncoding(), "stage",
+                    "raw").increment(raw);
+                meterRegistry.counter("audit.export.bytes", "encoding", compression.getEncoding(), "stage",
+                    "compressed").increment(compressed.getCount());
+                log.debug("Compressed export with {} from {} to {} bytes", compression.getEncoding(), raw,
+                    compressed.getCount());
+            }
+        }
+
+    }
+
+}
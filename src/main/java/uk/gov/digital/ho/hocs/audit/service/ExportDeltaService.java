@@ -0,0 +1,141 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportDelta;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_WATERMARK_COMMITTED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_WATERMARK_NOT_COMMITTED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_WATERMARK_RESET;
+
+/**
+ * Exports only the events audited since a named consumer last downloaded an export. Each consumer has a watermark per
+ * case type and export, the last event id it has downloaded, which is held here but only moved on when the consumer
+ * commits it, as only the consumer knows that a download reached it in full. Events are read in id order rather than
+ * by date, so late events with an earlier timestamp are still picked up.
+ */
+@Slf4j
+@Service
+public class ExportDeltaService {
+
+    // ids start from zero, so a consumer without a watermark reads every event
+    private static final long NO_WATERMARK = Long.MIN_VALUE;
+
+    private final Map<ExportType, DynamicExportService> exportServices = new EnumMap<>(ExportType.class);
+
+    private final AuditRepository auditRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ExportDeltaService(List<DynamicExportService> dynamicExportServices,
+                              AuditRepository auditRepository,
+                              PlatformTransactionManager transactionManager) {
+        for (DynamicExportService service : dynamicExportServices) {
+            if (service.isEventExport()) {
+                exportServices.put(service.getExportType(), service);
+            }
+        }
+        this.auditRepository = auditRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Bounds the events the consumer has not yet downloaded, up to the committed events of the case type. The bound
+     * waits for the events still being audited when the delta starts, so none of them is skipped. The watermark and
+     * the bound are read on the primary, as the events of the delta are, so that a lagging replica cannot hide events
+     * below them.
+     */
+    public ExportDelta start(String consumer, String caseType, ExportType exportType) {
+        var caseTypeDto = getService(exportType).getCaseTypeCode(caseType);
+
+        long afterId = transactionTemplate.execute(
+            status -> auditRepository.findExportWatermark(consumer, caseType, exportType.toString()).orElse(
+                NO_WATERMARK));
+
+        return new ExportDelta(consumer, caseType, exportType, afterId,
+            auditRepository.findCommittedAuditEventId(caseTypeDto.getShortCode()));
+    }
+
+    public void export(ExportDelta delta,
+                       OutputStream outputStream,
+                       ExportFormat format,
+                       boolean convert,
+                       boolean convertHeader,
+                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        var service = getService(delta.getExportType());
+        var caseTypeDto = service.getCaseTypeCode(delta.getCaseType());
+        var dataConverter = service.getDataConverter(convert, caseTypeDto);
+
+        try (var writer = service.openRecordWriter(format, outputStream, zonedDateTimeConverter, dataConverter,
+            convertHeader);
+             var data = auditRepository.findAuditDataByIdRangeAndEvents(delta.getAfterId(), delta.getLastId(),
+                 service.getEvents(), caseTypeDto.getShortCode(), service.getPayloadFields())) {
+            ExportProfile.current().timeFetch(data).forEach(writer::write);
+        }
+    }
+
+    /**
+     * Moves the consumer's watermark on to the end of a delta it has downloaded. Watermarks only move forward, up to
+     * the last event id issued, which is checked on the primary alongside the commit.
+     *
+     * @return whether the watermark is now at the given id.
+     */
+    public boolean commit(String consumer, String caseType, ExportType exportType, long lastId) {
+        getService(exportType);
+
+        int updated = transactionTemplate.execute(status -> lastId > auditRepository.findLastAuditEventId()
+            ? 0
+            : auditRepository.commitExportWatermark(consumer, caseType, exportType.toString(), lastId));
+
+        if (updated == 0) {
+            log.warn("Not committing watermark {} for consumer {} of {} {}, as it is behind the committed watermark or "
+                + "ahead of the events", lastId, consumer, caseType, exportType,
+                value(EVENT, EXPORT_WATERMARK_NOT_COMMITTED));
+            return false;
+        }
+
+        log.info("Committed watermark {} for consumer {} of {} {}", lastId, consumer, caseType, exportType,
+            value(EVENT, EXPORT_WATERMARK_COMMITTED));
+        return true;
+    }
+
+    /**
+     * Removes the consumer's watermark, so its next delta holds every event.
+     */
+    public void reset(String consumer, String caseType, ExportType exportType) {
+        getService(exportType);
+
+        transactionTemplate.executeWithoutResult(
+            status -> auditRepository.deleteExportWatermark(consumer, caseType, exportType.toString()));
+
+        log.info("Reset watermark for consumer {} of {} {}", consumer, caseType, exportType,
+            value(EVENT, EXPORT_WATERMARK_RESET));
+    }
+
+    private DynamicExportService getService(ExportType exportType) {
+        var service = exportServices.get(exportType);
+        if (service == null) {
+            throw new InvalidExportTypeException("Export type cannot be exported as a delta: %s",
+                LogEvent.INVALID_PARAMETER_SPECIFIED, exportType);
+        }
+        return service;
+    }
+
+}
@@ -0,0 +1,78 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportEstimate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the size of an export without running it, so that a large one can be warned about or run as a job. The
+ * rows and bytes come from the query planner and partition statistics, and the duration from the rows per second of
+ * the exports of the same type recorded by {@link ExportProfiler}, which are held by each instance since it started.
+ */
+@Slf4j
+@Service
+public class ExportEstimateService {
+
+    private final AuditRepository auditRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    public ExportEstimateService(AuditRepository auditRepository, MeterRegistry meterRegistry) {
+        this.auditRepository = auditRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ExportEstimate estimate(DynamicExportService service, LocalDate from, LocalDate to, String caseType) {
+        var events = service.getEstimatedEvents();
+        if (events == null) {
+            throw new InvalidExportTypeException("Export cannot be estimated for type: %s",
+                LogEvent.INVALID_PARAMETER_SPECIFIED, service.getExportType());
+        }
+
+        var caseTypeDto = service.getCaseTypeCode(caseType);
+        LocalDateTime peggedTo = to.isBefore(LocalDate.now())
+            ? LocalDateTime.of(to, LocalTime.MAX)
+            : LocalDateTime.now();
+
+        var estimate = auditRepository.estimateAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN),
+            peggedTo, events, caseTypeDto.getShortCode());
+
+        var rowsPerSecond = getRowsPerSecond(service.getExportType().toString());
+        var duration = rowsPerSecond == null
+            ? null
+            : Duration.ofMillis(Math.round(estimate.getRows() / rowsPerSecond * 1000));
+
+        log.debug("Estimated export of {} for case type {} from {} to {} at {} rows and {} bytes", service.getExportType(),
+            caseType, from, to, estimate.getRows(), estimate.getBytes());
+        return new ExportEstimate(caseType, service.getExportType(), estimate.getRows(), estimate.getBytes(),
+            rowsPerSecond, duration);
+    }
+
+    /**
+     * @return the rows per second written by the exports of the type across all case types, or null if none have
+     *     written any.
+     */
+    private Double getRowsPerSecond(String exportType) {
+        double rows = meterRegistry.find("audit.export.rows").tag("exportType", exportType).counters().stream()
+            .mapToDouble(Counter::count).sum();
+        double seconds = meterRegistry.find("audit.export.phase").tag("exportType", exportType).timers().stream()
+            .mapToDouble(timer -> timer.totalTime(TimeUnit.SECONDS)).sum();
+
+        if (rows <= 0 || seconds <= 0) {
+            return null;
+        }
+        return rows / seconds;
+    }
+
+}
@@ -0,0 +1,365 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.RequestData;
+import uk.gov.digital.ho.hocs.audit.core.exception.EntityNotFoundException;
+import uk.gov.digital.ho.hocs.audit.core.exception.ExportCapacityException;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.CustomExportFilter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportJob;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXCEPTION;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_JOB_COMPLETE;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_JOB_EXPIRED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_JOB_FAILED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_JOB_QUEUED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_JOB_REJECTED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_JOB_START;
+
+/**
+ * Runs exports on a worker pool and spools the compressed result to local disk, so that long extracts are not tied
+ * to the lifetime of an HTTP request. Jobs hold no transaction of their own: event exports read their events in
+ * chunks of their own, and exports that stream from a single query open a transaction for it, so a long job does not
+ * hold one connection or snapshot across the whole extract.
+ * <p>
+ * Jobs are admitted through {@link ExportAdmissionService} alongside exports streamed to a request, so a job counts
+ * against the same pod and user limits. Downloads lease the file of a job, so an expired job's file is only removed
+ * once the downloads still reading it have finished.
+ */
+@Slf4j
+@Service
+@Profile("extracts")
+public class ExportJobService {
+
+    private final Map<ExportType, DynamicExportService> dynamicExportServices;
+
+    private final CustomExportService customExportService;
+
+    private final ExportSegmentService exportSegmentService;
+
+    private final ExportCompressionService exportCompressionService;
+
+    private final ExportProfiler exportProfiler;
+
+    private final ExportAdmissionService exportAdmissionService;
+
+    private final RequestData requestData;
+
+    private final Path directory;
+
+    private final Duration retention;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ScheduledExecutorService cleaner;
+
+    private final Map<UUID, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public ExportJobService(List<DynamicExportService> dynamicExportServices,
+                            CustomExportService customExportService,
+                            ExportSegmentService exportSegmentService,
+                            ExportCompressionService exportCompressionService,
+                            ExportProfiler exportProfiler,
+                            ExportAdmissionService exportAdmissionService,
+                            RequestData requestData,
+                            @Value("${audit.export.jobs.directory:${java.io.tmpdir}/hocs-audit-export-jobs}")
+                            String directory,
+                            @Value("${audit.export.jobs.workers:2}") int workers,
+                            @Value("${audit.export.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${audit.export.jobs.retention:PT24H}") Duration retention)
+        throws IOException {
+        this.dynamicExportServices = dynamicExportServices.stream().collect(
+            Collectors.toMap(DynamicExportService::getExportType, Function.identity()));
+        this.customExportService = customExportService;
+        this.exportSegmentService = exportSegmentService;
+        this.exportCompressionService = exportCompressionService;
+        this.exportProfiler = exportProfiler;
+        this.exportAdmissionService = exportAdmissionService;
+        this.requestData = requestData;
+        this.directory = Path.of(directory);
+        this.retention = retention;
+
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), namedThreads("export-job-"));
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(namedThreads("export-job-cleaner-"));
+
+        prepareDirectory();
+
+        long cleanupInterval = Math.max(retention.toMillis() / 4, TimeUnit.MINUTES.toMillis(1));
+        cleaner.scheduleWithFixedDelay(this::removeExpiredJobs, cleanupInterval, cleanupInterval,
+            TimeUnit.MILLISECONDS);
+    }
+
+    public ExportJob submitDynamicExport(ExportType exportType,
+                                         String caseType,
+                                         LocalDate fromDate,
+                                         LocalDate toDate,
+                                         boolean convert,
+                                         boolean convertHeader,
+                                         String timestampFormat,
+                                         String timeZoneId,
+                                         ExportFormat format,
+                                         ExportCompression compression) {
+        var service = dynamicExportServices.get(exportType);
+
+        if (service == null) {
+            throw new InvalidExportTypeException("Export service does not exist for type: %s",
+                LogEvent.INVALID_PARAMETER_SPECIFIED, exportType);
+        }
+
+        // typed formats parse the timestamps back, so they are always written in the default format
+        var zonedDateTimeConverter = new ZonedDateTimeConverter(format.isTyped() ? null : timestampFormat,
+            timeZoneId);
+        var fileName = String.format("%s-%s-%s.%s", caseType.toLowerCase(), exportType.toString().toLowerCase(),
+            LocalDate.now(), format.getFileExtension());
+
+        return submit(fileName, compression,
+            outputStream -> {
+                try (var ignored = exportProfiler.start(exportType.toString())) {
+                    exportSegmentService.export(service, fromDate, toDate, outputStream, caseType, convert,
+                        convertHeader, zonedDateTimeConverter, format);
+                }
+            });
+    }
+
+    public ExportJob submitCustomExport(String viewName,
+                                        boolean convertHeader,
+                                        CustomExportFilter filter,
+                                        ExportFormat format,
+                                        ExportCompression compression)
+        throws CustomExportFilter.FilterValidationException {
+        // validated up front as the permission check relies on the roles of the calling request
+        var validatedFilter = customExportService.validate(viewName, filter);
+        var fileName = String.format("%s-%s.%s", viewName, customExportService.getViewLastRefreshedDate(viewName),
+            format.getFileExtension());
+
+        return submit(fileName, compression,
+            outputStream -> {
+                try (var ignored = exportProfiler.start(ExportProfiler.CUSTOM_EXPORT_TYPE)) {
+                    customExportService.export(outputStream, viewName, convertHeader, validatedFilter, format);
+                }
+            });
+    }
+
+    /**
+     * Returns a job submitted by the calling user. Jobs of other users are reported as missing rather than
+     * forbidden, so that job ids cannot be probed.
+     */
+    public ExportJob getJob(UUID jobId) {
+        var job = jobs.get(jobId);
+
+        if (job == null || !Objects.equals(job.getUserId(), requestData.getUserId())) {
+            throw new EntityNotFoundException("Export job %s not found", jobId);
+        }
+
+        return job;
+    }
+
+    /**
+     * Leases the file of a completed job for a download. The lease must be closed once the download has finished.
+     *
+     * @throws EntityNotFoundException if the job has expired since it was looked up.
+     */
+    public FileLease leaseFile(ExportJob job) {
+        if (!job.lease()) {
+            throw new EntityNotFoundException("Export job %s not found", job.getId());
+        }
+
+        return () -> {
+            if (job.release()) {
+                deleteFile(job.getFile());
+            }
+        };
+    }
+
+    private ExportJob submit(String fileName, ExportCompression compression, ExportTask task) {
+        var jobCompression = compression != null ? compression : ExportCompression.GZIP;
+        var job = new ExportJob(UUID.randomUUID(), requestData.getUserId(),
+            fileName + "." + jobCompression.getFileExtension(), jobCompression);
+        var context = MDC.getCopyOfContextMap();
+
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> run(job, context, task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            log.warn("Rejected export job {} as the queue is full", job.getFileName(),
+                value(EVENT, EXPORT_JOB_REJECTED));
+            throw new ExportCapacityException("Too many export jobs are queued, try again later");
+        }
+
+        log.info("Queued export job {} for {}", job.getId(), job.getFileName(), value(EVENT, EXPORT_JOB_QUEUED));
+        return job;
+    }
+
+    private void run(ExportJob job, Map<String, String> context, ExportTask task) {
+        if (context != null) {
+            MDC.setContextMap(context);
+        }
+
+        var file = directory.resolve(job.getId() + "." + job.getCompression().getFileExtension());
+
+        try (var ignored = exportAdmissionService.acquireForJob(job.getUserId())) {
+            job.started();
+            log.info("Started export job {} for {}", job.getId(), job.getFileName(), value(EVENT, EXPORT_JOB_START));
+
+            var fileStream = new FailureTrackingOutputStream(Files.newOutputStream(file));
+            try (var outputStream = exportCompressionService.compress(fileStream, job.getCompression())) {
+                task.export(outputStream);
+            }
+
+            // custom exports stop at a write failure without failing, so check the file is whole before publishing it
+            if (fileStream.failure != null) {
+                throw fileStream.failure;
+            }
+
+            job.completed(file, Files.size(file));
+            log.info("Completed export job {} for {} with {} bytes", job.getId(), job.getFileName(), job.getSize(),
+                value(EVENT, EXPORT_JOB_COMPLETE));
+        } catch (Exception e) {
+            log.error("Export job {} for {} failed", job.getId(), job.getFileName(), value(EVENT, EXPORT_JOB_FAILED),
+                value(EXCEPTION, e.toString()));
+            deleteFile(file);
+            job.failed("Export failed");
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    void removeExpiredJobs() {
+        var expiry = Instant.now().minus(retention);
+
+        jobs.values().removeIf(job -> {
+            if (!job.isFinished() || job.getCompletedAt().isAfter(expiry)) {
+                return false;
+            }
+
+            if (job.expire() && job.getFile() != null) {
+                deleteFile(job.getFile());
+            }
+            log.info("Removed expired export job {}", job.getId(), value(EVENT, EXPORT_JOB_EXPIRED));
+            return true;
+        });
+    }
+
+    /**
+     * Jobs do not survive a restart, so anything left in the spool directory belongs to jobs that can no longer be
+     * polled or downloaded.
+     */
+    private void prepareDirectory() throws IOException {
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(Files::isRegularFile).forEach(this::deleteFile);
+        }
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete export job file {}: {}", file, e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A lease on the file of a job, held while the file is downloaded.
+     */
+    public interface FileLease extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+    @FunctionalInterface
+    private interface ExportTask {
+
+        void export(OutputStream outputStream) throws IOException;
+
+    }
+
+    private static class FailureTrackingOutputStream extends FilterOutputStream {
+
+        private IOException failure;
+
+        FailureTrackingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                out.write(b);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
+
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+@Slf4j
+@Service
+public class ExportProfiler {
+
+    public static final String SOMU_EXPORT_TYPE = "SOMU";
+
+    public static final String CUSTOM_EXPORT_TYPE = "CUSTOM";
+
+    public static final String BUNDLE_EXPORT_TYPE = "BUNDLE";
+
+    static final String SERVER_TIMING = "Server-Timing";
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean serverTiming;
+
+    public ExportProfiler(MeterRegistry meterRegistry,
+                          @Value("${audit.export.profiling.server-timing:false}") boolean serverTiming) {
+        this.meterRegistry = meterRegistry;
+        this.serverTiming = serverTiming;
+    }
+
+    /**
+     * Starts profiling an export run by the current thread, until the returned profile is closed.
+     */
+    public ExportProfile start(String exportType) {
+        return ExportProfile.start(meterRegistry, exportType);
+    }
+
+    /**
+     * Starts profiling an export written to the response and, if enabled, declares a {@code Server-Timing} trailer
+     * holding the phase timings. Trailers are only sent on chunked responses, so the profile is still recorded
+     * when the container cannot send one.
+     */
+    public ExportProfile start(String exportType, HttpServletResponse response) {
+        var profile = start(exportType);
+
+        if (serverTiming) {
+            try {
+                response.setTrailerFields(() -> Map.of(SERVER_TIMING, profile.toServerTiming()));
+                response.setHeader("Trailer", SERVER_TIMING);
+            } catch (IllegalStateException e) {
+                log.debug("Unable to send export timings as a trailer: {}", e.getMessage());
+            }
+        }
+
+        return profile;
+    }
+
+}
@@ -0,0 +1,117 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keeps export segments as gzipped files on local disk, evicting the least used once they go over the maximum size.
+ * Each segment is held with the invalidation version it was written at, and is only read back at that version. The
+ * segments are not indexed anywhere else, so any left by a previous run are removed at startup.
+ */
+@Slf4j
+@Service
+public class ExportSegmentCache {
+
+    private final Path directory;
+
+    private final Cache<String, Segment> segments;
+
+    public ExportSegmentCache(@Value("${audit.export.segment-cache.directory:${java.io.tmpdir}/hocs-audit-export-segments}")
+                              String directory,
+                              @Value("${audit.export.segment-cache.max-size:1073741824}") long maxSize)
+        throws IOException {
+        this.directory = Path.of(directory);
+        // a segment is weighed by its file, plus its key so that empty segments still count
+        this.segments = Caffeine.newBuilder()
+            .maximumWeight(maxSize)
+            .weigher((String key, Segment segment) -> (int) Math.min(key.length() + segment.size(), Integer.MAX_VALUE))
+            .removalListener((String key, Segment segment, RemovalCause cause) -> deleteFile(segment.file()))
+            .build();
+
+        prepareDirectory();
+    }
+
+    /**
+     * Opens the rows of a cached segment.
+     *
+     * @return the rows as CSV, or null if the segment is not cached at the given version.
+     */
+    public InputStream open(String key, long version) throws IOException {
+        var segment = segments.getIfPresent(key);
+        if (segment == null || segment.version() != version) {
+            return null;
+        }
+
+        if (segment.file() == null) {
+            return InputStream.nullInputStream();
+        }
+
+        try {
+            return new GZIPInputStream(Files.newInputStream(segment.file()));
+        } catch (NoSuchFileException e) {
+            // evicted since it was looked up
+            return null;
+        }
+    }
+
+    /**
+     * Creates a file in the cache directory for a segment to be written to, before it is put in the cache.
+     */
+    public Path createFile() throws IOException {
+        return Files.createTempFile(directory, "segment-", ".csv.gz");
+    }
+
+    /**
+     * Caches a segment written to a file from {@link #createFile()}. The file belongs to the cache from then on and
+     * may be removed at any time.
+     *
+     * @param file the gzipped rows, or null if the segment has no rows.
+     */
+    public void put(String key, long version, Path file) throws IOException {
+        segments.put(key, new Segment(file, version, file == null ? 0 : Files.size(file)));
+    }
+
+    public void discard(Path file) {
+        deleteFile(file);
+    }
+
+    long getSegmentCount() {
+        segments.cleanUp();
+        return segments.estimatedSize();
+    }
+
+    private void prepareDirectory() throws IOException {
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(Files::isRegularFile).forEach(this::deleteFile);
+        }
+    }
+
+    private void deleteFile(Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to delete export segment file {}: {}", file, e.toString());
+        }
+    }
+
+    private record Segment(Path file, long version, long size) {}
+
+}
@@ -0,0 +1,318 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.LogEvent;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.repository.entity.ExportSegmentVersion;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes CSV event exports from segments of one closed day each, cached on local disk, computing only the days that
+ * are not cached and the days that are still open. A day is closed once it has been over for the configured time, after
+ * which its events only change when a case is deleted or an event is audited late; either one invalidates the
+ * segments of the day for every pod, through a version kept in the database.
+ */
+@Slf4j
+@Service
+public class ExportSegmentService {
+
+    private final Map<ExportType, DynamicExportService> exportServices = new EnumMap<>(ExportType.class);
+
+    private final AuditRepository auditRepository;
+
+    private final ExportSegmentCache exportSegmentCache;
+
+    private final boolean enabled;
+
+    private final Duration closedAfter;
+
+    public ExportSegmentService(List<DynamicExportService> dynamicExportServices,
+                                AuditRepository auditRepository,
+                                ExportSegmentCache exportSegmentCache,
+                                @Value("${audit.export.segment-cache.enabled:false}") boolean enabled,
+                                @Value("${audit.export.segment-cache.closed-after:PT1H}") Duration closedAfter) {
+        for (DynamicExportService service : dynamicExportServices) {
+            if (service.isEventExport()) {
+                exportServices.put(service.getExportType(), service);
+            }
+        }
+        this.auditRepository = auditRepository;
+        this.exportSegmentCache = exportSegmentCache;
+        this.enabled = enabled;
+        this.closedAfter = closedAfter;
+    }
+
+    /**
+     * Exports from cached segments where the export can be, otherwise exports as normal. Event exports read their
+     * events in chunks of their own, so no transaction is held across the export here; exports that need one for a
+     * single query open their own.
+     */
+    public void export(DynamicExportService service,
+                       LocalDate from,
+                       LocalDate to,
+                       OutputStream outputStream,
+                       String caseType,
+                       boolean convert,
+                       boolean convertHeader,
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
+        if (!enabled || format != ExportFormat.CSV || !exportServices.containsKey(service.getExportType())) {
+            service.export(from, to, outputStream, caseType, convert, convertHeader, zonedDateTimeConverter, format);
+            return;
+        }
+
+        exportSegments(service, from, to, outputStream, caseType, convert, convertHeader, zonedDateTimeConverter);
+    }
+
+    /**
+     * Exports an event export as CSV from cached segments, whether or not the cache is enabled for other exports.
+     */
+    void exportSegments(DynamicExportService service,
+                               LocalDate from,
+                               LocalDate to,
+                               OutputStream outputStream,
+                               String caseType,
+                               boolean convert,
+                               boolean convertHeader,
+                               ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        if (!exportServices.containsKey(service.getExportType())) {
+            throw new InvalidExportTypeException("Export type cannot be exported from segments: %s",
+                LogEvent.INVALID_PARAMETER_SPECIFIED, service.getExportType());
+        }
+
+        var caseTypeDto = service.getCaseTypeCode(caseType);
+        var caseTypeCode = caseTypeDto.getShortCode();
+        var exportDataConverter = service.getDataConverter(convert, caseTypeDto);
+        var export = new SegmentedExport(service, caseTypeCode, zonedDateTimeConverter, exportDataConverter,
+            outputStream);
+
+        // the header is not part of any segment, as it is converted separately from the rows
+        var header = new ByteArrayOutputStream();
+        service.openRecordWriter(ExportFormat.CSV, header, zonedDateTimeConverter, exportDataConverter,
+            convertHeader).close();
+        header.writeTo(outputStream);
+
+        // the versions are read before any events, so a segment written while its day is invalidated is not current
+        // once the invalidation is seen
+        var lastClosedDay = getLastClosedDay();
+        var versions = getVersions(caseTypeCode, from, to.isBefore(lastClosedDay) ? to : lastClosedDay);
+
+        LocalDate missingFrom = null;
+        LocalDate day = from;
+        for (; !day.isAfter(to) && !day.isAfter(lastClosedDay); day = day.plusDays(1)) {
+            try (InputStream segment = exportSegmentCache.open(export.getKey(day), versions.getOrDefault(day, 0L))) {
+                if (segment == null) {
+                    missingFrom = missingFrom == null ? day : missingFrom;
+                    continue;
+                }
+
+                if (missingFrom != null) {
+                    export.writeSegments(missingFrom, day.minusDays(1), versions);
+                    missingFrom = null;
+                }
+                segment.transferTo(outputStream);
+                export.cachedDays++;
+            }
+        }
+        if (missingFrom != null) {
+            export.writeSegments(missingFrom, day.minusDays(1), versions);
+        }
+
+        try (var writer = service.openRowWriter(outputStream, zonedDateTimeConverter, exportDataConverter)) {
+            if (!day.isAfter(to)) {
+                export.write(writer, day, to.isBefore(LocalDate.now()) ? LocalDateTime.of(to, LocalTime.MAX)
+                    : LocalDateTime.now());
+            }
+        }
+
+        log.debug("Exported {} for case type {} from {} cached and {} computed days", service.getExportType(),
+            caseType, export.cachedDays, export.computedDays);
+    }
+
+    /**
+     * Invalidates the segments of the day an event was audited for, if the day is already closed. Events are audited
+     * on pods that do not serve exports, so segments are invalidated whether or not the cache is enabled here, as it
+     * may be where the segments are read; the export window relies on the same versions.
+     */
+    public void invalidate(AuditEvent auditEvent) {
+        var day = auditEvent.getAuditTimestamp().toLocalDate();
+        if (auditEvent.getCaseType() != null && !day.isAfter(getLastClosedDay())) {
+            auditRepository.invalidateExportSegment(auditEvent.getCaseType(), day);
+        }
+    }
+
+    /**
+     * Invalidates the segments of every day a case has events on, whether or not the cache is enabled here.
+     */
+    public void invalidateCase(UUID caseUUID) {
+        auditRepository.invalidateExportSegmentsForCase(caseUUID);
+    }
+
+    private LocalDate getLastClosedDay() {
+        return LocalDateTime.now().minus(closedAfter).toLocalDate().minusDays(1);
+    }
+
+    private Map<LocalDate, Long> getVersions(String caseTypeCode, LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return Map.of();
+        }
+
+        return auditRepository.findExportSegmentVersions(caseTypeCode, from, to).stream().collect(
+            Collectors.toMap(ExportSegmentVersion::getDay, ExportSegmentVersion::getVersion));
+    }
+
+    private class SegmentedExport {
+
+        private final DynamicExportService service;
+
+        private final String caseTypeCode;
+
+        private final ZonedDateTimeConverter zonedDateTimeConverter;
+
+        private final ExportDataConverter exportDataConverter;
+
+        private final OutputStream outputStream;
+
+        private final String settings;
+
+        private int cachedDays;
+
+        private int computedDays;
+
+        SegmentedExport(DynamicExportService service,
+                        String caseTypeCode,
+                        ZonedDateTimeConverter zonedDateTimeConverter,
+                        ExportDataConverter exportDataConverter,
+                        OutputStream outputStream) {
+            this.service = service;
+            this.caseTypeCode = caseTypeCode;
+            this.zonedDateTimeConverter = zonedDateTimeConverter;
+            this.exportDataConverter = exportDataConverter;
+            this.outputStream = outputStream;
+            this.settings = String.join("|", service.getExportType().toString(), caseTypeCode,
+                exportDataConverter.isConverting() ? exportDataConverter.getFingerprint() : "raw",
+                zonedDateTimeConverter.getSettings());
+        }
+
+        String getKey(LocalDate day) {
+            return settings + "|" + day;
+        }
+
+        /**
+         * Writes the segments of consecutive days from a single query, caching each one once it has been written out.
+         */
+        void writeSegments(LocalDate from, LocalDate to, Map<LocalDate, Long> versions) throws IOException {
+            var segment = new Segment(from);
+            try (Stream<AuditEvent> data = query(from, LocalDateTime.of(to, LocalTime.MAX))) {
+                for (var iterator = ExportProfile.current().timeFetch(data).iterator(); iterator.hasNext(); ) {
+                    var audit = iterator.next();
+                    while (audit.getAuditTimestamp().toLocalDate().isAfter(segment.day)) {
+                        segment.finish(versions.getOrDefault(segment.day, 0L));
+                        segment = new Segment(segment.day.plusDays(1));
+                    }
+                    segment.write(audit);
+                }
+
+                while (segment.day.isBefore(to)) {
+                    segment.finish(versions.getOrDefault(segment.day, 0L));
+                    segment = new Segment(segment.day.plusDays(1));
+                }
+                segment.finish(versions.getOrDefault(segment.day, 0L));
+            } finally {
+                segment.discard();
+            }
+        }
+
+        void write(DynamicExportService.RecordWriter writer, LocalDate from, LocalDateTime to) {
+            try (Stream<AuditEvent> data = query(from, to)) {
+                ExportProfile.current().timeFetch(data).forEach(writer::write);
+            }
+        }
+
+        private Stream<AuditEvent> query(LocalDate from, LocalDateTime to) {
+            return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), to,
+                service.getEvents(), caseTypeCode, service.getPayloadFields());
+        }
+
+        private class Segment {
+
+            private final LocalDate day;
+
+            private Path file;
+
+            private DynamicExportService.RecordWriter writer;
+
+            Segment(LocalDate day) {
+                this.day = day;
+            }
+
+            void write(AuditEvent audit) throws IOException {
+                if (writer == null) {
+                    file = exportSegmentCache.createFile();
+                    writer = service.openRowWriter(new GZIPOutputStream(Files.newOutputStream(file)),
+                        zonedDateTimeConverter, exportDataConverter);
+                }
+                writer.write(audit);
+            }
+
+            /**
+             * Copies the rows of the segment to the export and hands the segment to the cache.
+             */
+            void finish(long version) throws IOException {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                    try (InputStream rows = new GZIPInputStream(Files.newInputStream(file))) {
+                        rows.transferTo(outputStream);
+                    }
+                }
+
+                exportSegmentCache.put(getKey(day), version, file);
+                file = null;
+                computedDays++;
+            }
+
+            void discard() {
+                try {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    log.warn("Unable to close export segment file {}: {}", file, e.toString());
+                }
+
+                exportSegmentCache.discard(file);
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,310 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.repository.entity.ExportSegmentVersion;
+import uk.gov.digital.ho.hocs.audit.service.domain.EventWindow;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXCEPTION;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_WINDOW_LOADED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXPORT_WINDOW_LOAD_FAILURE;
+
+/**
+ * Holds the events of the last few days of each event export in memory, so that the short ranges most exports ask for
+ * are read without scanning the newest partition. A case type is loaded into the window of an export the first time it
+ * is exported, and from then on the window reads the events audited since, by id, both in the background and before
+ * each export it serves, so an export reads the same events from the window as it would from the database. A case
+ * type is loaded again when the segment versions of its days change, as a case is deleted or an event audited late,
+ * which every pod that audits events records whether or not the segment cache is enabled.
+ * <p>
+ * Events are loaded and caught up to the same bound, the last committed event of the case type once the events
+ * being audited are committed, so no event is read past while its transaction is still open. The windows are
+ * bounded by their number of events and by their estimated memory, shared equally by the export types in use, and
+ * hold fewer days than configured when either is reached.
+ */
+@Slf4j
+@Service
+public class ExportWindowService {
+
+    private static final int BATCH_SIZE = 5000;
+
+    private final Map<ExportType, Window> windows = new ConcurrentHashMap<>();
+
+    private final AuditRepository auditRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final int days;
+
+    private final int maxEvents;
+
+    private final long maxBytes;
+
+    private final ScheduledExecutorService poller;
+
+    public ExportWindowService(AuditRepository auditRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${audit.export.window.enabled:false}") boolean enabled,
+                               @Value("${audit.export.window.days:3}") int days,
+                               @Value("${audit.export.window.poll-interval:PT30S}") Duration pollInterval,
+                               @Value("${audit.export.window.max-events:2000000}") int maxEvents,
+                               @Value("${audit.export.window.max-size:512MB}") DataSize maxSize) {
+        this.auditRepository = auditRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.days = days;
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxSize.toBytes();
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "export-window-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (enabled) {
+            poller.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads the events of an event export from its window, if the window holds the case type from the start of the
+     * range. Otherwise returns null for the export to read from the database, and starts loading the case type if it
+     * is not already loaded, so that later exports can be read from the window.
+     */
+    public Stream<AuditEvent> find(DynamicExportService service,
+                                   LocalDateTime dateFrom,
+                                   LocalDateTime dateTo,
+                                   String caseTypeCode,
+                                   String[] events) {
+        if (!enabled || !service.isEventExport() || !Arrays.asList(service.getEvents()).containsAll(
+            Arrays.asList(events))) {
+            return null;
+        }
+
+        var window = windows.computeIfAbsent(service.getExportType(), exportType -> new Window(service));
+        var caseType = window.caseTypes.computeIfAbsent(caseTypeCode, code -> {
+            var loading = new CaseTypeWindow(code);
+            poller.execute(() -> load(window, loading));
+            return loading;
+        });
+
+        // checked before waiting on the case type, so an export does not wait for it to be loaded
+        if (!caseType.loaded || dateFrom.isBefore(window.start)) {
+            return null;
+        }
+
+        synchronized (caseType) {
+            if (!catchUp(window, caseType)) {
+                return null;
+            }
+
+            // the events are taken while the case type is held, so they are not removed by a reload
+            log.debug("Reading {} for case type {} from {} to {} from the export window", service.getExportType(),
+                caseTypeCode, dateFrom, dateTo);
+            return window.events.read(dateFrom, dateTo, caseTypeCode, events);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    void poll() {
+        for (Window window : windows.values()) {
+            window.roll();
+            window.trim();
+            for (CaseTypeWindow caseType : window.caseTypes.values()) {
+                try {
+                    catchUp(window, caseType);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to poll the export window of {} for case type {}: {}", window.exportType,
+                        caseType.code, e.toString());
+                }
+            }
+        }
+    }
+
+    private void load(Window window, CaseTypeWindow caseType) {
+        try {
+            // the versions are read before any events, so a day changed while it is loaded is loaded again
+            var from = window.start;
+            var versions = getVersions(caseType.code, from.toLocalDate());
+            long lastId = auditRepository.findCommittedAuditEventId(caseType.code);
+
+            // events are read in the window's order, so are appended as they are read
+            var loaded = new EventWindow(window.payloadFields.length);
+            try (var events = auditRepository.findAuditDataByDateRangeAndEvents(from,
+                LocalDate.now().plusDays(1).atStartOfDay(), window.types, caseType.code, window.payloadFields,
+                lastId)) {
+                events.forEach(loaded::append);
+            }
+
+            synchronized (caseType) {
+                window.events.removeCaseType(caseType.code);
+                window.events.addAll(loaded);
+                window.trim();
+
+                caseType.versions = versions;
+                caseType.lastId = lastId;
+                caseType.loaded = true;
+            }
+            log.info("Loaded {} events of {} for case type {} into the export window", loaded.size(),
+                window.exportType, caseType.code, value(EVENT, EXPORT_WINDOW_LOADED));
+        } catch (RuntimeException e) {
+            // the case type is loaded again by the next export of it
+            synchronized (caseType) {
+                window.caseTypes.remove(caseType.code);
+                window.events.removeCaseType(caseType.code);
+            }
+            log.error("Unable to load {} for case type {} into the export window", window.exportType, caseType.code,
+                value(EVENT, EXPORT_WINDOW_LOAD_FAILURE), value(EXCEPTION, e.toString()));
+        }
+    }
+
+    /**
+     * Reads the events of the case type audited since it was last read into the window.
+     *
+     * @return whether the case type is loaded and its events up to date, or false if it is still being loaded or
+     *     has to be loaded again.
+     */
+    private boolean catchUp(Window window, CaseTypeWindow caseType) {
+        synchronized (caseType) {
+            if (!caseType.loaded) {
+                return false;
+            }
+
+            // the days before the start have left the window, so changes to them are not looked for
+            var from = window.start.toLocalDate();
+            var known = caseType.versions.entrySet().stream().filter(day -> !day.getKey().isBefore(from)).collect(
+                Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            if (!getVersions(caseType.code, from).equals(known)) {
+                log.debug("Reloading {} for case type {} into the export window as its days have changed",
+                    window.exportType, caseType.code);
+                caseType.loaded = false;
+                poller.execute(() -> load(window, caseType));
+                return false;
+            }
+
+            long lastId = auditRepository.findCommittedAuditEventId(caseType.code);
+            if (lastId > caseType.lastId) {
+                List<AuditEvent> batch = new ArrayList<>();
+                try (var events = auditRepository.findAuditDataByIdRangeAndEvents(caseType.lastId, lastId,
+                    window.types, caseType.code, window.payloadFields)) {
+                    events.forEach(event -> {
+                        batch.add(event);
+                        if (batch.size() == BATCH_SIZE) {
+                            window.events.add(batch);
+                            batch.clear();
+                        }
+                    });
+                }
+                window.events.add(batch);
+                window.trim();
+                caseType.lastId = lastId;
+            }
+            return true;
+        }
+    }
+
+    private Map<LocalDate, Long> getVersions(String caseTypeCode, LocalDate from) {
+        return auditRepository.findExportSegmentVersions(caseTypeCode, from, LocalDate.now()).stream().collect(
+            Collectors.toMap(ExportSegmentVersion::getDay, ExportSegmentVersion::getVersion));
+    }
+
+    private class Window {
+
+        private final ExportType exportType;
+
+        private final String[] types;
+
+        private final String[] payloadFields;
+
+        private final EventWindow events;
+
+        private final Map<String, CaseTypeWindow> caseTypes = new ConcurrentHashMap<>();
+
+        // the window holds every event audited from the start, which only moves forward
+        private volatile LocalDateTime start;
+
+        Window(DynamicExportService service) {
+            this.exportType = service.getExportType();
+            this.types = service.getEvents();
+            this.payloadFields = service.getPayloadFields();
+            this.events = new EventWindow(payloadFields.length);
+            this.start = getFirstDay();
+
+            Gauge.builder("audit.export.window.events", events, EventWindow::size).tag("exportType",
+                exportType.toString()).register(meterRegistry);
+            Gauge.builder("audit.export.window.size", events, EventWindow::bytes).baseUnit("bytes").tag("exportType",
+                exportType.toString()).register(meterRegistry);
+        }
+
+        void roll() {
+            var firstDay = getFirstDay();
+            if (firstDay.isAfter(start)) {
+                start = firstDay;
+            }
+            events.removeBefore(start);
+        }
+
+        // the budgets are shared by the windows in use, so a window trims to its share as others are added
+        synchronized void trim() {
+            int count = windows.size();
+            var trimmedTo = events.trimTo(maxEvents / count, maxBytes / count);
+            if (trimmedTo != null && trimmedTo.isAfter(start)) {
+                log.debug("Export window of {} is full, holding events from {}", exportType, trimmedTo);
+                start = trimmedTo;
+            }
+        }
+
+        private LocalDateTime getFirstDay() {
+            return LocalDate.now().minusDays(days - 1L).atStartOfDay();
+        }
+
+    }
+
+    private static class CaseTypeWindow {
+
+        private final String code;
+
+        private volatile boolean loaded;
+
+        private long lastId;
+
+        private Map<LocalDate, Long> versions;
+
+        CaseTypeWindow(String code) {
+            this.code = code;
+        }
+
+    }
+
+}
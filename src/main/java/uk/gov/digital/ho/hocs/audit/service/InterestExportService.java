@@ -1,22 +1,23 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -25,8 +26,6 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
@@ -34,16 +33,37 @@ public class InterestExportService extends DynamicExportService {
 
     private static final String[] EVENTS = { "EXTERNAL_INTEREST_CREATED", "EXTERNAL_INTEREST_UPDATED" };
 
+    private static final String[] PAYLOAD_FIELDS = { "partyType", "interestDetails" };
+
     private static final Map<String, String[]> ENTITY_LISTS = Map.of("BF", new String[] { "BF_INTERESTED_PARTIES" },
         "BF2", new String[] { "BF_INTERESTED_PARTIES" }, "FOI", new String[] { "FOI_INTERESTED_PARTIES" });
 
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseId"),
+        ExportColumn.string("partyType"), ExportColumn.string("interestDetails") };
+
     public InterestExportService(ObjectMapper objectMapper,
                                  AuditRepository auditRepository,
                                  InfoClient infoClient,
                                  CaseworkClient caseworkClient,
                                  HeaderConverter headerConverter,
-                                 MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                                 MalformedDateConverter malformedDateConverter,
+                                 ExportWriterFactory exportWriterFactory,
+                                 ReferenceDataCache referenceDataCache,
+                                 CaseReferenceCache caseReferenceCache,
+                                 ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
+    }
+
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
+    }
+
+    @Override
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -52,16 +72,17 @@ public class InterestExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.Interest interestData = objectMapper.readValue(audit.getAuditPayload(),
-            AuditPayload.Interest.class);
-
-        return new String[] { zonedDateTimeConverter.convert(audit.getAuditTimestamp()), audit.getType(),
-            exportDataConverter.convertValue(audit.getUserID()),
-            exportDataConverter.convertCaseUuid(audit.getCaseUUID()),
-            exportDataConverter.convertValue(interestData.getPartyType()), interestData.getInterestDetails() };
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeString(exportDataConverter.convertValue(payload[0]));
+        writer.writeString(payload[1]);
     }
 
     @Override
@@ -70,30 +91,29 @@ public class InterestExportService extends DynamicExportService {
             ? LocalDateTime.of(to, LocalTime.MAX)
             : LocalDateTime.now();
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo,
-            events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), peggedTo, caseTypeCode, events);
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeCode = getCaseTypeCode(caseType);
 
         var data = getData(from, to, caseTypeCode.getShortCode(), EVENTS);
         var dataConverter = getDataConverter(convert, caseTypeCode);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseId", "partyType", "interestDetails" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -102,17 +122,16 @@ public class InterestExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = infoClient.getUsers().stream().collect(
-            Collectors.toMap(UserDto::getId, UserDto::getUsername));
+        Map<String, String> uuidToName = referenceDataCache.getSnapshot().getUserNames();
 
         Map<String, String> entityListItemToName = new HashMap<>();
 
         for (String listName : ENTITY_LISTS.getOrDefault(caseType.getType(), new String[0])) {
-            Set<EntityDto> entities = infoClient.getEntitiesForList(listName);
-            entities.forEach(e -> entityListItemToName.put(e.getSimpleName(), e.getData().getTitle()));
+            entityListItemToName.putAll(referenceDataCache.getEntityListTitles(listName));
         }
 
-        return new ExportDataConverter(uuidToName, entityListItemToName, caseType.getShortCode(), auditRepository);
+        return new ExportDataConverter(uuidToName, entityListItemToName,
+            caseReferenceCache.getIndex(caseType.getShortCode()));
     }
 
 }
@@ -4,32 +4,28 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.StringUtils;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.SomuTypeDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.SomuTypeField;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.SomuTypeSchema;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.LogEvent;
 import uk.gov.digital.ho.hocs.audit.core.exception.AuditExportException;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
 import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportProfile;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.CsvExportWriter;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -39,8 +35,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.logstash.logback.argument.StructuredArguments.value;
@@ -64,20 +58,27 @@ public class SomuExportService {
 
     private final MalformedDateConverter malformedDateConverter;
 
+    private final ReferenceDataCache referenceDataCache;
+
+    private final CaseReferenceCache caseReferenceCache;
+
     @PersistenceContext
     private EntityManager entityManager;
 
     public SomuExportService(ObjectMapper objectMapper,
                              AuditRepository auditRepository,
                              InfoClient infoClient,
-                             MalformedDateConverter malformedDateConverter) {
+                             MalformedDateConverter malformedDateConverter,
+                             ReferenceDataCache referenceDataCache,
+                             CaseReferenceCache caseReferenceCache) {
         this.objectMapper = objectMapper;
         this.auditRepository = auditRepository;
         this.infoClient = infoClient;
         this.malformedDateConverter = malformedDateConverter;
+        this.referenceDataCache = referenceDataCache;
+        this.caseReferenceCache = caseReferenceCache;
     }
 
-    @Transactional(readOnly = true)
     public void export(LocalDate from,
                        LocalDate to,
                        OutputStream outputStream,
@@ -101,19 +102,24 @@ public class SomuExportService {
         var somuTypeFields = getSomuFields(somuType);
         String[] headers = getHeaders(somuTypeFields);
 
-        try (OutputStream buffer = new BufferedOutputStream(
-            outputStream); OutputStreamWriter outputWriter = new OutputStreamWriter(buffer,
-            StandardCharsets.UTF_8); var printer = new CSVPrinter(outputWriter,
-            CSVFormat.Builder.create().setHeader(headers).setAutoFlush(true).setNullString("").build())) {
-            data.forEach(audit -> {
+        var profile = ExportProfile.current();
+
+        try (var writer = new CsvExportWriter(outputStream, headers)) {
+            profile.timeFetch(data).forEach(audit -> {
                 try {
                     if (filterSomuType(audit, somuType)) {
+                        long convertMark = profile.startConvert();
                         String[] parsedData = parseData(audit, somuTypeFields, zonedDateTimeConverter,
                             exportDataConverter);
                         entityManager.detach(audit);
 
                         parsedData = malformedDateConverter.correctDateFields(parsedData);
-                        printer.printRecord((Object[]) parsedData);
+                        profile.endConvert(convertMark);
+
+                        long writeStart = System.nanoTime();
+                        writer.writeRecord(parsedData);
+                        profile.record(ExportProfile.Phase.WRITE, writeStart);
+                        profile.recordRow();
                     }
                 } catch (IOException e) {
                     throw new AuditExportException("Unable to parse record for audit {} for reason {}",
@@ -121,7 +127,10 @@ public class SomuExportService {
                 }
             });
         } catch (IOException e) {
+            // a response that could not be completed is a failed export, not a short one
             log.error("Unable to export record for reason {}", e.getMessage(), value(EVENT, CSV_EXPORT_FAILURE));
+            throw new AuditExportException("Unable to export record for reason %s", CSV_EXPORT_FAILURE,
+                e.getMessage());
         }
     }
 
@@ -129,7 +138,7 @@ public class SomuExportService {
                                List<SomuTypeField> headers,
                                ZonedDateTimeConverter zonedDateTimeConverter,
                                ExportDataConverter exportDataConverter) throws IOException {
-        AuditPayload.SomuItem somuData = objectMapper.readValue(audit.getAuditPayload(), AuditPayload.SomuItem.class);
+        AuditPayload.SomuItem somuData = readSomuItem(audit);
 
         List<String> data = new ArrayList<>();
         data.add(zonedDateTimeConverter.convert(audit.getAuditTimestamp()));
@@ -150,21 +159,18 @@ public class SomuExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = new HashMap<>(
-            infoClient.getUsers().stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername)));
+        Map<String, String> uuidToName = referenceDataCache.getSnapshot().getUserNames();
 
         Map<String, String> entityListItemToName = new HashMap<>();
         somuTypeFields.forEach(field -> {
             var fieldChoices = field.getExtractChoices();
             if (fieldChoices != null) {
-                fieldChoices.forEach(choice -> {
-                    Set<EntityDto> entities = infoClient.getEntitiesForList(choice);
-                    entities.forEach(e -> entityListItemToName.put(e.getSimpleName(), e.getData().getTitle()));
-                });
+                fieldChoices.forEach(
+                    choice -> entityListItemToName.putAll(referenceDataCache.getEntityListTitles(choice)));
             }
         });
 
-        return new ExportDataConverter(uuidToName, entityListItemToName, caseType, auditRepository);
+        return new ExportDataConverter(uuidToName, entityListItemToName, caseReferenceCache.getIndex(caseType));
 
     }
 
@@ -187,11 +193,19 @@ public class SomuExportService {
     }
 
     private boolean filterSomuType(AuditEvent auditEvent, SomuTypeDto somuTypeDto) throws IOException {
-        AuditPayload.SomuItem somuItem = objectMapper.readValue(auditEvent.getAuditPayload(),
-            AuditPayload.SomuItem.class);
+        AuditPayload.SomuItem somuItem = readSomuItem(auditEvent);
         return StringUtils.equals(somuItem.getSomuTypeUuid().toString(), somuTypeDto.getUuid().toString());
     }
 
+    private AuditPayload.SomuItem readSomuItem(AuditEvent auditEvent) throws JsonProcessingException {
+        long start = System.nanoTime();
+        try {
+            return objectMapper.readValue(auditEvent.getAuditPayload(), AuditPayload.SomuItem.class);
+        } finally {
+            ExportProfile.current().record(ExportProfile.Phase.DECODE, start);
+        }
+    }
+
     private String getCaseTypeCode(String caseType) {
         return infoClient.getCaseTypes().stream().filter(
             caseTypeDto -> caseTypeDto.getType().equals(caseType)).findFirst().orElseThrow(
@@ -1,20 +1,23 @@
 package uk.gov.digital.ho.hocs.audit.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
-import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
-import uk.gov.digital.ho.hocs.audit.entrypoint.dto.AuditPayload;
 import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
 import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumn;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
 import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.CaseReferenceCache;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.ExportDataConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.HeaderConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.converter.MalformedDateConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.converter.ReferenceDataCache;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriterFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -22,23 +25,45 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static uk.gov.digital.ho.hocs.audit.service.domain.converter.PayloadFieldConverter.convertUuid;
+
 @Service
 public class TopicExportService extends DynamicExportService {
 
     private static final String[] EVENTS = { "CASE_TOPIC_CREATED", "CASE_TOPIC_DELETED" };
 
+    private static final String[] PAYLOAD_FIELDS = { "topicUuid", "topicName" };
+
+    private static final ExportColumn[] COLUMNS = { ExportColumn.timestamp("timestamp"), ExportColumn.string("event"),
+        ExportColumn.convertibleUuid("userId"), ExportColumn.convertibleUuid("caseUuid"),
+        ExportColumn.convertibleUuid("topicUuid"), ExportColumn.string("topic") };
+
     public TopicExportService(ObjectMapper objectMapper,
                               AuditRepository auditRepository,
                               InfoClient infoClient,
                               CaseworkClient caseworkClient,
                               HeaderConverter headerConverter,
-                              MalformedDateConverter malformedDateConverter) {
-        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter);
+                              MalformedDateConverter malformedDateConverter,
+                              ExportWriterFactory exportWriterFactory,
+                              ReferenceDataCache referenceDataCache,
+                              CaseReferenceCache caseReferenceCache,
+                              ExportWindowService exportWindowService) {
+        super(objectMapper, auditRepository, infoClient, caseworkClient, headerConverter, malformedDateConverter,
+            exportWriterFactory, referenceDataCache, caseReferenceCache, exportWindowService);
+    }
+
+    @Override
+    protected String[] getPayloadFields() {
+        return PAYLOAD_FIELDS;
+    }
+
+    @Override
+    protected String[] getEvents() {
+        return EVENTS;
     }
 
     @Override
@@ -47,24 +72,25 @@ public class TopicExportService extends DynamicExportService {
     }
 
     @Override
-    protected String[] parseData(AuditEvent audit,
-                                 ZonedDateTimeConverter zonedDateTimeConverter,
-                                 ExportDataConverter exportDataConverter) throws JsonProcessingException {
-        AuditPayload.Topic topicData = objectMapper.readValue(audit.getAuditPayload(), AuditPayload.Topic.class);
-
-        return new String[] { zonedDateTimeConverter.convert(audit.getAuditTimestamp()), audit.getType(),
-            exportDataConverter.convertValue(audit.getUserID()),
-            exportDataConverter.convertCaseUuid(audit.getCaseUUID()),
-            exportDataConverter.convertValue(Objects.toString(topicData.getTopicUuid(), "")),
-            topicData.getTopicName() };
+    protected void writeData(AuditEvent audit,
+                             ExportDataConverter exportDataConverter,
+                             ExportWriter writer) throws IOException {
+        String[] payload = audit.getPayloadFields();
+
+        writer.writeTimestamp(audit.getAuditTimestamp());
+        writer.writeString(audit.getType());
+        writer.writeString(exportDataConverter.convertValue(audit.getUserID()));
+        writer.writeString(exportDataConverter.convertCaseUuid(audit.getCaseUUID()));
+        writer.writeString(exportDataConverter.convertValue(convertUuid(payload[0])));
+        writer.writeString(payload[1]);
     }
 
     @Override
     protected Stream<AuditEvent> getData(LocalDate from, LocalDate to, String caseTypeCode, String[] events) {
         LocalDate peggedTo = to.isAfter(LocalDate.now()) ? LocalDate.now() : to;
 
-        return auditRepository.findAuditDataByDateRangeAndEvents(LocalDateTime.of(from, LocalTime.MIN),
-            LocalDateTime.of(peggedTo, LocalTime.MAX), events, caseTypeCode);
+        return findEvents(LocalDateTime.of(from, LocalTime.MIN), LocalDateTime.of(peggedTo, LocalTime.MAX),
+            caseTypeCode, events);
     }
 
     @Override
@@ -74,18 +100,19 @@ public class TopicExportService extends DynamicExportService {
                        String caseType,
                        boolean convert,
                        boolean convertHeader,
-                       ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+                       ZonedDateTimeConverter zonedDateTimeConverter,
+                       ExportFormat format) throws IOException {
         var caseTypeCode = getCaseTypeCode(caseType);
 
         var dataConverter = getDataConverter(convert, caseTypeCode);
         var data = getData(from, to, caseTypeCode.getShortCode(), EVENTS);
 
-        printData(outputStream, zonedDateTimeConverter, dataConverter, convertHeader, data);
+        printData(outputStream, format, zonedDateTimeConverter, dataConverter, convertHeader, data);
     }
 
     @Override
-    protected String[] getHeaders() {
-        return new String[] { "timestamp", "event", "userId", "caseUuid", "topicUuid", "topic" };
+    protected ExportColumn[] getColumns() {
+        return COLUMNS;
     }
 
     @Override
@@ -94,13 +121,13 @@ public class TopicExportService extends DynamicExportService {
             return new ExportDataConverter();
         }
 
-        Map<String, String> uuidToName = infoClient.getUsers().stream().collect(
-            Collectors.toMap(UserDto::getId, UserDto::getUsername));
+        var referenceData = referenceDataCache.getSnapshot();
 
-        caseworkClient.getAllCaseTopics().forEach(
-            topic -> uuidToName.putIfAbsent(topic.getTopicUUID().toString(), topic.getTopicText()));
+        Map<String, String> uuidToName = new HashMap<>(referenceData.getUserNames());
+        referenceData.getTopicNames().forEach(uuidToName::putIfAbsent);
 
-        return new ExportDataConverter(uuidToName, Collections.emptyMap(), caseType.getShortCode(), auditRepository);
+        return new ExportDataConverter(uuidToName, Collections.emptyMap(),
+            caseReferenceCache.getIndex(caseType.getShortCode()));
     }
 
 }
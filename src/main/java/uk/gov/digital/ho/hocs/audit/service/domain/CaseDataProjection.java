@@ -0,0 +1,47 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The fields of a case data event that the case data exports read, with only the data fields configured for its case
+ * type. The version identifies the configured fields it was projected with.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CaseDataProjection {
+
+    @JsonProperty("version")
+    private String version;
+
+    @JsonProperty("type")
+    private String type;
+
+    @JsonProperty("reference")
+    private String reference;
+
+    @JsonProperty("caseDeadline")
+    private LocalDate caseDeadline;
+
+    @JsonProperty("primaryCorrespondent")
+    private UUID primaryCorrespondent;
+
+    @JsonProperty("primaryTopic")
+    private UUID primaryTopic;
+
+    @JsonProperty("migratedReference")
+    private String migratedReference;
+
+    @JsonProperty("data")
+    private Map<String, String> data;
+
+}
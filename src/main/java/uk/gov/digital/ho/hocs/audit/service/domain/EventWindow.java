@@ -0,0 +1,493 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Events of an event export held column by column, so that a few days of them take little memory. The type, case
+ * type and user of each event are held as codes into dictionaries, the ids, uuids and timestamps as primitives, and
+ * only the payload fields the export projects are kept. Events are kept in the order exports read them. They are
+ * changed by one thread at a time, while any number of threads read the events held when they started reading.
+ * <p>
+ * The window keeps an estimate of the memory its events take, from the size of their columns and the length of their
+ * payload fields, so that it can be bounded by size as well as by its number of events, as payload fields such as the
+ * text of case notes vary widely in length.
+ */
+public class EventWindow {
+
+    private static final long MICROS_PER_SECOND = 1_000_000;
+
+    // the ids, timestamps, uuids and codes of an event, and a reference to each of its payload fields
+    private static final long ROW_BYTES = 6 * Long.BYTES + 3 * Integer.BYTES;
+
+    private static final long REFERENCE_BYTES = 8;
+
+    // the header of a string and of the array holding its characters, held a byte to each for most text
+    private static final long STRING_BYTES = 40;
+
+    // uuids compare as their bytes, as the database compares them
+    private static final Comparator<AuditEvent> ORDER = Comparator.comparing(AuditEvent::getAuditTimestamp)
+        .thenComparing(AuditEvent::getUuid, EventWindow::compareUuids)
+        .thenComparing(AuditEvent::getType);
+
+    private final int fieldCount;
+
+    private final Dictionary types = new Dictionary();
+
+    private final Dictionary caseTypes = new Dictionary();
+
+    private final Dictionary users = new Dictionary();
+
+    // replaced whenever events are changed, so a reader keeps the columns it started with
+    private volatile Columns columns;
+
+    public EventWindow(int fieldCount) {
+        this.fieldCount = fieldCount;
+        this.columns = new Columns(fieldCount, 0);
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * The estimated memory taken by the events held, leaving out the dictionaries their codes are held in.
+     */
+    public long bytes() {
+        return columns.bytes;
+    }
+
+    /**
+     * Adds events read with the export's payload fields, in any order.
+     */
+    public synchronized void add(List<AuditEvent> events) {
+        var added = new EventWindow(fieldCount);
+        events.stream().sorted(ORDER).forEach(added::append);
+        addAll(added);
+    }
+
+    /**
+     * Appends an event that is read after every event held, as when loading events read in order.
+     */
+    public synchronized void append(AuditEvent event) {
+        var current = columns;
+        var target = current.size < current.capacity() ? current : current.copy(grow(current.size + 1));
+
+        int row = current.size;
+        target.ids[row] = event.getId();
+        target.timestamps[row] = toMicros(event.getAuditTimestamp());
+        target.uuidHigh[row] = event.getUuid().getMostSignificantBits();
+        target.uuidLow[row] = event.getUuid().getLeastSignificantBits();
+        // events of a case type are always of a case
+        target.caseHigh[row] = event.getCaseUUID().getMostSignificantBits();
+        target.caseLow[row] = event.getCaseUUID().getLeastSignificantBits();
+        target.types[row] = types.encode(event.getType());
+        target.caseTypes[row] = caseTypes.encode(event.getCaseType());
+        target.users[row] = users.encode(event.getUserID());
+        for (int field = 0; field < fieldCount; field++) {
+            target.fields[field][row] = event.getPayloadFields()[field];
+        }
+
+        columns = target.withSize(row + 1, current.bytes + target.rowBytes(row));
+    }
+
+    /**
+     * Adds the events of another window, which is not changed while they are added.
+     */
+    public synchronized void addAll(EventWindow other) {
+        var added = other.columns;
+        if (added.size == 0) {
+            return;
+        }
+
+        var translation = new Translation(other, this);
+        var current = columns;
+
+        // events are mostly added after those held, so the columns are only merged for events audited late
+        if (current.size == 0 || compare(current, this, current.size - 1, added, other, 0) < 0) {
+            int size = current.size + added.size;
+            var target = size <= current.capacity() ? current : current.copy(grow(size));
+            for (int row = 0; row < added.size; row++) {
+                translation.copy(added, row, target, current.size + row);
+            }
+            columns = target.withSize(size, current.bytes + added.bytes);
+            return;
+        }
+
+        var target = new Columns(fieldCount, grow(current.size + added.size));
+        int row = 0;
+        int left = 0;
+        int right = 0;
+        while (left < current.size || right < added.size) {
+            if (right == added.size
+                || (left < current.size && compare(current, this, left, added, other, right) <= 0)) {
+                current.copyRow(left++, target, row++);
+            } else {
+                translation.copy(added, right++, target, row++);
+            }
+        }
+        columns = target.withSize(row, current.bytes + added.bytes);
+    }
+
+    /**
+     * Removes the events audited before the timestamp.
+     */
+    public synchronized void removeBefore(LocalDateTime timestamp) {
+        var current = columns;
+        int first = lowerBound(current, toMicros(timestamp));
+        if (first > 0) {
+            columns = current.slice(first, current.bytes - current.bytes(0, first));
+        }
+    }
+
+    /**
+     * Removes the events of a case type, so that it can be loaded again.
+     */
+    public synchronized void removeCaseType(String caseType) {
+        int code = caseTypes.find(caseType);
+        var current = columns;
+        if (code < 0) {
+            return;
+        }
+
+        var target = new Columns(fieldCount, current.capacity());
+        int row = 0;
+        long bytes = 0;
+        for (int i = 0; i < current.size; i++) {
+            if (current.caseTypes[i] != code) {
+                current.copyRow(i, target, row++);
+                bytes += current.rowBytes(i);
+            }
+        }
+        columns = target.withSize(row, bytes);
+    }
+
+    /**
+     * Removes the oldest events until at most the given number are left and they take at most the given estimated
+     * memory, keeping all the events of a timestamp or none of them.
+     *
+     * @return the timestamp from which the window holds every event if any were removed, or null.
+     */
+    public synchronized LocalDateTime trimTo(int maxEvents, long maxBytes) {
+        var current = columns;
+        if (current.size <= maxEvents && current.bytes <= maxBytes) {
+            return null;
+        }
+
+        // at least one event is removed, as the window is over one of its bounds
+        int first = Math.max(0, current.size - maxEvents);
+        long bytes = current.bytes - current.bytes(0, first);
+        while (first < current.size && bytes > maxBytes) {
+            bytes -= current.rowBytes(first++);
+        }
+        while (first < current.size && current.timestamps[first] == current.timestamps[first - 1]) {
+            bytes -= current.rowBytes(first++);
+        }
+        columns = current.slice(first, bytes);
+        return fromMicros(current.timestamps[first - 1] + 1);
+    }
+
+    /**
+     * Reads the events of the case type and event types audited in the range, both ends included, in the order of the
+     * export queries. The events have only the fields event exports read.
+     */
+    public Stream<AuditEvent> read(LocalDateTime from, LocalDateTime to, String caseType, String[] eventTypes) {
+        var current = columns;
+        int caseTypeCode = caseTypes.find(caseType);
+        if (caseTypeCode < 0) {
+            return Stream.empty();
+        }
+
+        var typeCodes = new BitSet();
+        for (String type : eventTypes) {
+            int code = types.find(type);
+            if (code >= 0) {
+                typeCodes.set(code);
+            }
+        }
+
+        int first = lowerBound(current, toMicros(from));
+        int last = lowerBound(current, toMicros(to) + 1);
+        return IntStream.range(first, last)
+            .filter(row -> current.caseTypes[row] == caseTypeCode && typeCodes.get(current.types[row]))
+            .mapToObj(row -> decode(current, row));
+    }
+
+    private AuditEvent decode(Columns current, int row) {
+        var fields = new String[fieldCount];
+        for (int field = 0; field < fieldCount; field++) {
+            fields[field] = current.fields[field][row];
+        }
+
+        return new AuditEvent(current.ids[row], new UUID(current.uuidHigh[row], current.uuidLow[row]),
+            new UUID(current.caseHigh[row], current.caseLow[row]), fromMicros(current.timestamps[row]),
+            types.decode(current.types[row]), users.decode(current.users[row]),
+            caseTypes.decode(current.caseTypes[row]), fields);
+    }
+
+    private static int compare(Columns left, EventWindow leftWindow, int leftRow,
+                               Columns right, EventWindow rightWindow, int rightRow) {
+        int result = Long.compare(left.timestamps[leftRow], right.timestamps[rightRow]);
+        if (result == 0) {
+            result = Long.compareUnsigned(left.uuidHigh[leftRow], right.uuidHigh[rightRow]);
+        }
+        if (result == 0) {
+            result = Long.compareUnsigned(left.uuidLow[leftRow], right.uuidLow[rightRow]);
+        }
+        if (result == 0) {
+            result = leftWindow.types.decode(left.types[leftRow]).compareTo(
+                rightWindow.types.decode(right.types[rightRow]));
+        }
+        return result;
+    }
+
+    private static int compareUuids(UUID left, UUID right) {
+        int result = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+        return result != 0
+            ? result
+            : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+    }
+
+    /**
+     * @return the first row audited at or after the timestamp.
+     */
+    private static int lowerBound(Columns current, long micros) {
+        int low = 0;
+        int high = current.size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (current.timestamps[middle] < micros) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int grow(int size) {
+        return Math.max(size, size + (size >> 1));
+    }
+
+    // timestamps are held to the microsecond, as the database holds them
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + timestamp.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+            (int) Math.floorMod(micros, MICROS_PER_SECOND) * 1000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Columns are only ever written past the size of the columns published with them, so the rows a reader has are
+     * never changed.
+     */
+    private static final class Columns {
+
+        private final int size;
+
+        private final long bytes;
+
+        private final long[] ids;
+
+        private final long[] timestamps;
+
+        private final long[] uuidHigh;
+
+        private final long[] uuidLow;
+
+        private final long[] caseHigh;
+
+        private final long[] caseLow;
+
+        private final int[] types;
+
+        private final int[] caseTypes;
+
+        private final int[] users;
+
+        private final String[][] fields;
+
+        Columns(int fieldCount, int capacity) {
+            this(0, 0, new long[capacity], new long[capacity], new long[capacity], new long[capacity],
+                new long[capacity], new long[capacity], new int[capacity], new int[capacity], new int[capacity],
+                new String[fieldCount][capacity]);
+        }
+
+        private Columns(int size, long bytes, long[] ids, long[] timestamps, long[] uuidHigh, long[] uuidLow,
+                        long[] caseHigh, long[] caseLow, int[] types, int[] caseTypes, int[] users, String[][] fields) {
+            this.size = size;
+            this.bytes = bytes;
+            this.ids = ids;
+            this.timestamps = timestamps;
+            this.uuidHigh = uuidHigh;
+            this.uuidLow = uuidLow;
+            this.caseHigh = caseHigh;
+            this.caseLow = caseLow;
+            this.types = types;
+            this.caseTypes = caseTypes;
+            this.users = users;
+            this.fields = fields;
+        }
+
+        int capacity() {
+            return ids.length;
+        }
+
+        Columns withSize(int newSize, long newBytes) {
+            return new Columns(newSize, newBytes, ids, timestamps, uuidHigh, uuidLow, caseHigh, caseLow, types,
+                caseTypes, users, fields);
+        }
+
+        Columns copy(int capacity) {
+            return copyRange(0, size, capacity, bytes);
+        }
+
+        /**
+         * Copies the rows from the first, which take the given estimated memory.
+         */
+        Columns slice(int first, long slicedBytes) {
+            return copyRange(first, size, size - first, slicedBytes);
+        }
+
+        long rowBytes(int row) {
+            long rowBytes = ROW_BYTES;
+            for (String[] field : fields) {
+                var value = field[row];
+                rowBytes += REFERENCE_BYTES + (value == null ? 0 : STRING_BYTES + value.length());
+            }
+            return rowBytes;
+        }
+
+        long bytes(int from, int to) {
+            long rangeBytes = 0;
+            for (int row = from; row < to; row++) {
+                rangeBytes += rowBytes(row);
+            }
+            return rangeBytes;
+        }
+
+        private Columns copyRange(int from, int to, int capacity, long copiedBytes) {
+            var copied = new String[fields.length][];
+            for (int field = 0; field < fields.length; field++) {
+                copied[field] = Arrays.copyOf(Arrays.copyOfRange(fields[field], from, to), capacity);
+            }
+            return new Columns(to - from, copiedBytes, copyRange(ids, from, to, capacity),
+                copyRange(timestamps, from, to, capacity), copyRange(uuidHigh, from, to, capacity),
+                copyRange(uuidLow, from, to, capacity), copyRange(caseHigh, from, to, capacity),
+                copyRange(caseLow, from, to, capacity), copyRange(types, from, to, capacity),
+                copyRange(caseTypes, from, to, capacity), copyRange(users, from, to, capacity), copied);
+        }
+
+        void copyRow(int row, Columns target, int targetRow) {
+            target.ids[targetRow] = ids[row];
+            target.timestamps[targetRow] = timestamps[row];
+            target.uuidHigh[targetRow] = uuidHigh[row];
+            target.uuidLow[targetRow] = uuidLow[row];
+            target.caseHigh[targetRow] = caseHigh[row];
+            target.caseLow[targetRow] = caseLow[row];
+            target.types[targetRow] = types[row];
+            target.caseTypes[targetRow] = caseTypes[row];
+            target.users[targetRow] = users[row];
+            for (int field = 0; field < fields.length; field++) {
+                target.fields[field][targetRow] = fields[field][row];
+            }
+        }
+
+        private static long[] copyRange(long[] values, int from, int to, int capacity) {
+            return Arrays.copyOf(Arrays.copyOfRange(values, from, to), capacity);
+        }
+
+        private static int[] copyRange(int[] values, int from, int to, int capacity) {
+            return Arrays.copyOf(Arrays.copyOfRange(values, from, to), capacity);
+        }
+
+    }
+
+    /**
+     * Codes for the values of a column, in the order they were first seen. Codes are only added, so a code read from
+     * published columns can always be decoded. Null is held as -1.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+        private volatile String[] values = new String[16];
+
+        private int size;
+
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+
+            var code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            codes.put(value, size);
+            return size++;
+        }
+
+        int find(String value) {
+            return value == null ? -1 : codes.getOrDefault(value, -1);
+        }
+
+        String decode(int code) {
+            return code < 0 ? null : values[code];
+        }
+
+    }
+
+    /**
+     * Translates the codes of one window into those of another as rows are copied between them.
+     */
+    private static final class Translation {
+
+        private final EventWindow from;
+
+        private final EventWindow to;
+
+        private final Map<Integer, Integer> types = new HashMap<>();
+
+        private final Map<Integer, Integer> caseTypes = new HashMap<>();
+
+        private final Map<Integer, Integer> users = new HashMap<>();
+
+        Translation(EventWindow from, EventWindow to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void copy(Columns source, int row, Columns target, int targetRow) {
+            source.copyRow(row, target, targetRow);
+            target.types[targetRow] = translate(types, from.types, to.types, source.types[row]);
+            target.caseTypes[targetRow] = translate(caseTypes, from.caseTypes, to.caseTypes, source.caseTypes[row]);
+            target.users[targetRow] = translate(users, from.users, to.users, source.users[row]);
+        }
+
+        private static int translate(Map<Integer, Integer> codes, Dictionary from, Dictionary to, int code) {
+            return code < 0 ? -1 : codes.computeIfAbsent(code, fromCode -> to.encode(from.decode(fromCode)));
+        }
+
+    }
+
+}
@@ -0,0 +1,58 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * A column of an export, as the export declares it: its header before any substitution and the type of the values it
+ * holds. UUIDs that are replaced with names or references when the export is converted are text in converted exports.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ExportColumn {
+
+    @Getter
+    private final String header;
+
+    private final ExportColumnType type;
+
+    private final boolean convertible;
+
+    public static ExportColumn string(String header) {
+        return new ExportColumn(header, ExportColumnType.STRING, false);
+    }
+
+    public static ExportColumn timestamp(String header) {
+        return new ExportColumn(header, ExportColumnType.TIMESTAMP, false);
+    }
+
+    public static ExportColumn date(String header) {
+        return new ExportColumn(header, ExportColumnType.DATE, false);
+    }
+
+    public static ExportColumn uuid(String header) {
+        return new ExportColumn(header, ExportColumnType.UUID, false);
+    }
+
+    public static ExportColumn convertibleUuid(String header) {
+        return new ExportColumn(header, ExportColumnType.UUID, true);
+    }
+
+    /**
+     * The type of the column's values, given whether the export converts UUIDs to display values.
+     */
+    public ExportColumnType getType(boolean convert) {
+        return convert && convertible ? ExportColumnType.STRING : type;
+    }
+
+    public static String[] getHeaders(ExportColumn[] columns) {
+        return Arrays.stream(columns).map(ExportColumn::getHeader).toArray(String[]::new);
+    }
+
+    public static ExportColumnType[] getTypes(ExportColumn[] columns, boolean convert) {
+        return Arrays.stream(columns).map(column -> column.getType(convert)).toArray(ExportColumnType[]::new);
+    }
+
+}
@@ -0,0 +1,33 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+/**
+ * The type of value held in an export column, used by formats that store typed values. Event exports declare the type
+ * of each of their columns, see {@link ExportColumn}, and hand each value to the writer as that type, so it is stored
+ * without being parsed. Custom exports take the types from their view and write their rows as text, which the writer
+ * parses for every column other than {@link #STRING}.
+ */
+public enum ExportColumnType {
+    STRING,
+    TIMESTAMP,
+    DATE,
+    UUID;
+
+    /**
+     * Resolves the column type for a database column, from its type as given by {@code format_type}.
+     */
+    public static ExportColumnType forDatabaseType(String databaseType) {
+        if (databaseType == null) {
+            return STRING;
+        }
+        if (databaseType.startsWith("timestamp")) {
+            return TIMESTAMP;
+        }
+
+        return switch (databaseType) {
+            case "date" -> DATE;
+            case "uuid" -> UUID;
+            default -> STRING;
+        };
+    }
+
+}
@@ -0,0 +1,88 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Streaming encodings that can be applied to an export response, either requested explicitly through the
+ * {@code compression} parameter or negotiated from the {@code Accept-Encoding} request header.
+ */
+public enum ExportCompression {
+    ZSTD("zstd", "zst"),
+    GZIP("gzip", "gz");
+
+    private final String encoding;
+
+    private final String fileExtension;
+
+    ExportCompression(String encoding, String fileExtension) {
+        this.encoding = encoding;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public static ExportCompression fromEncoding(String encoding) {
+        return Arrays.stream(values()).filter(compression -> compression.encoding.equalsIgnoreCase(
+            encoding.trim())).findFirst().orElseThrow(
+            () -> new IllegalArgumentException("Unsupported compression: " + encoding));
+    }
+
+    /**
+     * Picks the supported encoding with the highest quality value from an {@code Accept-Encoding} header. Ties are
+     * broken by declaration order, and wildcards are ignored so that compression is only applied when a client names
+     * an encoding it can decode.
+     *
+     * @param acceptEncoding the raw header value, may be null.
+     *
+     * @return the preferred encoding, or empty if the client accepts none of ours.
+     */
+    public static Optional<ExportCompression> fromAcceptEncoding(String acceptEncoding) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return Optional.empty();
+        }
+
+        ExportCompression preferred = null;
+        double preferredQuality = 0;
+
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.split(";");
+            String name = parts[0].trim();
+            double quality = parseQuality(parts);
+
+            for (ExportCompression compression : values()) {
+                if (compression.encoding.equalsIgnoreCase(name) && quality > 0 && (preferred == null
+                    || quality > preferredQuality
+                    || (quality == preferredQuality && compression.ordinal() < preferred.ordinal()))) {
+                    preferred = compression;
+                    preferredQuality = quality;
+                }
+            }
+        }
+
+        return Optional.ofNullable(preferred);
+    }
+
+    private static double parseQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+}
@@ -0,0 +1,24 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The events of an export a consumer has not yet downloaded: those with ids after its watermark, up to the last id
+ * issued when the delta was started, which the consumer commits as its watermark once it has the download.
+ */
+@Getter
+@AllArgsConstructor
+public class ExportDelta {
+
+    private final String consumer;
+
+    private final String caseType;
+
+    private final ExportType exportType;
+
+    private final long afterId;
+
+    private final long lastId;
+
+}
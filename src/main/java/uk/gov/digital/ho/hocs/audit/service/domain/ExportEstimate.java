@@ -0,0 +1,29 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * The expected size of an export, from the planner's estimate of the events it reads, and how long it is expected to
+ * take from the throughput of the exports of its type run before. The throughput and duration are null until an export
+ * of the type has run.
+ */
+@Getter
+@AllArgsConstructor
+public class ExportEstimate {
+
+    private final String caseType;
+
+    private final ExportType exportType;
+
+    private final long rows;
+
+    private final long bytes;
+
+    private final Double rowsPerSecond;
+
+    private final Duration duration;
+
+}
@@ -0,0 +1,45 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import java.util.Arrays;
+
+/**
+ * Output formats an export can be written in, selected through the {@code format} parameter.
+ */
+public enum ExportFormat {
+    CSV("text/csv;charset=UTF-8", "csv", false),
+    PARQUET("application/vnd.apache.parquet", "parquet", true),
+    NDJSON("application/x-ndjson", "ndjson", false);
+
+    private final String contentType;
+
+    private final String fileExtension;
+
+    private final boolean typed;
+
+    ExportFormat(String contentType, String fileExtension, boolean typed) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+        this.typed = typed;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Whether the format stores timestamps, dates and UUIDs as typed values rather than formatted text.
+     */
+    public boolean isTyped() {
+        return typed;
+    }
+
+    public static ExportFormat fromValue(String value) {
+        return Arrays.stream(values()).filter(format -> format.name().equalsIgnoreCase(value.trim())).findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unsupported export format: " + value));
+    }
+
+}
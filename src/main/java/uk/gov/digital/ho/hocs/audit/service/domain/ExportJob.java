@@ -0,0 +1,110 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * An export running in the background. Jobs are only held in memory by the pod that accepted them, so status and
+ * downloads must be requested from the same instance.
+ */
+@Getter
+public class ExportJob {
+
+    private final UUID id;
+
+    private final String userId;
+
+    private final String fileName;
+
+    private final ExportCompression compression;
+
+    private final Instant createdAt;
+
+    private volatile ExportJobStatus status;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant completedAt;
+
+    private volatile Path file;
+
+    private volatile long size;
+
+    private volatile String error;
+
+    @Getter(AccessLevel.NONE)
+    private int readers;
+
+    @Getter(AccessLevel.NONE)
+    private boolean expired;
+
+    public ExportJob(UUID id, String userId, String fileName, ExportCompression compression) {
+        this.id = id;
+        this.userId = userId;
+        this.fileName = fileName;
+        this.compression = compression;
+        this.createdAt = Instant.now();
+        this.status = ExportJobStatus.QUEUED;
+    }
+
+    public void started() {
+        this.startedAt = Instant.now();
+        this.status = ExportJobStatus.RUNNING;
+    }
+
+    public void completed(Path file, long size) {
+        this.file = file;
+        this.size = size;
+        this.completedAt = Instant.now();
+        this.status = ExportJobStatus.COMPLETED;
+    }
+
+    public void failed(String error) {
+        this.error = error;
+        this.completedAt = Instant.now();
+        this.status = ExportJobStatus.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == ExportJobStatus.COMPLETED || status == ExportJobStatus.FAILED;
+    }
+
+    /**
+     * Takes a lease on the file for a download.
+     *
+     * @return false if the job has expired and its file can no longer be read.
+     */
+    public synchronized boolean lease() {
+        if (expired) {
+            return false;
+        }
+        readers++;
+        return true;
+    }
+
+    /**
+     * Releases a lease taken for a download.
+     *
+     * @return true if the job has expired and this was the last download, so the file can now be removed.
+     */
+    public synchronized boolean release() {
+        readers--;
+        return expired && readers == 0;
+    }
+
+    /**
+     * Expires the job so that no new downloads are started.
+     *
+     * @return true if the file is not being downloaded and can be removed now, rather than once the last download
+     *     releases its lease.
+     */
+    public synchronized boolean expire() {
+        expired = true;
+        return readers == 0;
+    }
+
+}
@@ -0,0 +1,8 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+public enum ExportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,186 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cumulative time spent in each phase of a single export, and the number of rows written. A profile is bound to the
+ * thread running the export while it is open, so the services can find it without it being passed through every
+ * method; closing it records the totals as timers tagged with the export type. They are not tagged with the case type,
+ * which comes from the request path and is only validated once the export has started.
+ * <p>
+ * Decoding a payload happens while a row is converted, so conversion is timed with {@link #startConvert()} and
+ * {@link #endConvert(long)}, which leave out any decoding recorded in between. Values are handed to the writer as they
+ * are converted, so writing covers completing each record once its values are given.
+ */
+public class ExportProfile implements AutoCloseable {
+
+    private static final ThreadLocal<ExportProfile> CURRENT = new ThreadLocal<>();
+
+    // collects the timings of exports run without a profile, such as by tests, and is never reported
+    private static final ExportProfile DETACHED = new ExportProfile(null, "none");
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String exportType;
+
+    private final LongAdder[] nanos = new LongAdder[Phase.values().length];
+
+    private final LongAdder rows = new LongAdder();
+
+    private final long startedAt = System.nanoTime();
+
+    private ExportProfile previous;
+
+    private ExportProfile(MeterRegistry meterRegistry, String exportType) {
+        this.meterRegistry = meterRegistry;
+        this.exportType = exportType;
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates a profile and binds it to the current thread until it is closed.
+     */
+    public static ExportProfile start(MeterRegistry meterRegistry, String exportType) {
+        var profile = new ExportProfile(meterRegistry, exportType);
+        profile.previous = CURRENT.get();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    /**
+     * @return the profile bound to the current thread, or a detached one if no export is being profiled.
+     */
+    public static ExportProfile current() {
+        var profile = CURRENT.get();
+        return profile != null ? profile : DETACHED;
+    }
+
+    public void record(Phase phase, long startNanos) {
+        nanos[phase.ordinal()].add(System.nanoTime() - startNanos);
+    }
+
+    public long startConvert() {
+        return System.nanoTime() - getNanos(Phase.DECODE);
+    }
+
+    public void endConvert(long mark) {
+        nanos[Phase.CONVERT.ordinal()].add(System.nanoTime() - getNanos(Phase.DECODE) - mark);
+    }
+
+    public void recordRow() {
+        rows.increment();
+    }
+
+    /**
+     * Wraps the export data so that the time spent waiting for each row from the database is recorded. The returned
+     * stream closes the original when it is closed.
+     */
+    public <T> Stream<T> timeFetch(Stream<T> data) {
+        Iterator<T> iterator = data.iterator();
+        Iterator<T> timed = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                try {
+                    return iterator.hasNext();
+                } finally {
+                    record(Phase.FETCH, start);
+                }
+            }
+
+            @Override
+            public T next() {
+                long start = System.nanoTime();
+                try {
+                    return iterator.next();
+                } finally {
+                    record(Phase.FETCH, start);
+                }
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(timed, Spliterator.ORDERED), false).onClose(
+            data::close);
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * @return the phase durations in milliseconds, in the format of a {@code Server-Timing} header.
+     */
+    public String toServerTiming() {
+        var serverTiming = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            serverTiming.append(phase.getName()).append(";dur=").append(toMillis(getNanos(phase))).append(", ");
+        }
+        return serverTiming.append("total;dur=").append(toMillis(System.nanoTime() - startedAt)).toString();
+    }
+
+    /**
+     * @return the rows written and the milliseconds spent in each phase, keyed for structured logging.
+     */
+    public Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("export_rows", getRows());
+        for (Phase phase : Phase.values()) {
+            summary.put("export_" + phase.getName() + "_ms", toMillis(getNanos(phase)));
+        }
+        summary.put("export_total_ms", toMillis(System.nanoTime() - startedAt));
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+
+        for (Phase phase : Phase.values()) {
+            Timer.builder("audit.export.phase").tag("exportType", exportType).tag("phase", phase.getName()).register(
+                meterRegistry).record(getNanos(phase), TimeUnit.NANOSECONDS);
+        }
+        meterRegistry.counter("audit.export.rows", "exportType", exportType).increment(getRows());
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / NANOS_PER_MILLI * 10) / 10d;
+    }
+
+    public enum Phase {
+        FETCH,
+        DECODE,
+        CONVERT,
+        WRITE;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import lombok.extern.slf4j.Slf4j;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reduces events read in timestamp order to the latest event of each case and type, ordered by case and type as the
+ * database orders them. The latest events are kept in memory up to a budget, past which they are written out as a run
+ * sorted by case and type, and the runs are merged as the result is read. The budget is measured from the length of
+ * each event's text, so it bounds rather than measures the memory held.
+ */
+@Slf4j
+public class LatestEventReducer {
+
+    // the fields other than text, and the entry holding the event
+    private static final int EVENT_OVERHEAD = 256;
+
+    // uuids compare as their text to order as the database orders them
+    private static final Comparator<AuditEvent> KEY_ORDER = Comparator.comparing(
+        (AuditEvent event) -> event.getCaseUUID().toString()).thenComparing(AuditEvent::getType);
+
+    private static final Comparator<AuditEvent> TIME_ORDER = Comparator.comparing(AuditEvent::getAuditTimestamp)
+        .thenComparing(event -> event.getUuid().toString());
+
+    private final Path directory;
+
+    private final long memoryBudget;
+
+    public LatestEventReducer(Path directory, long memoryBudget) {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Reads the events and returns the latest of each case and type. Any runs written out are removed once the result
+     * has been read or closed.
+     */
+    public Stream<AuditEvent> reduce(Stream<AuditEvent> events) throws IOException {
+        Map<Key, AuditEvent> latest = new HashMap<>();
+        List<Path> runs = new ArrayList<>();
+        long used = 0;
+
+        try (events) {
+            for (var iterator = events.iterator(); iterator.hasNext(); ) {
+                var event = iterator.next();
+                var previous = latest.put(new Key(event.getCaseUUID().toString(), event.getType()), event);
+                if (previous != null && TIME_ORDER.compare(previous, event) > 0) {
+                    latest.put(new Key(event.getCaseUUID().toString(), event.getType()), previous);
+                    continue;
+                }
+                used += size(event) - (previous == null ? 0 : size(previous));
+
+                if (used > memoryBudget) {
+                    runs.add(writeRun(latest.values()));
+                    latest.clear();
+                    used = 0;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            runs.forEach(LatestEventReducer::deleteRun);
+            throw e;
+        }
+
+        var remaining = sorted(latest.values());
+        if (runs.isEmpty()) {
+            return remaining.stream();
+        }
+
+        log.debug("Merging {} runs of latest events written out beyond the memory budget", runs.size());
+        var merge = new Merge(runs, remaining);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge, Spliterator.ORDERED | Spliterator.NONNULL),
+            false).onClose(merge::close);
+    }
+
+    private Path writeRun(Iterable<AuditEvent> events) throws IOException {
+        var run = Files.createTempFile(directory, "latest-", ".run");
+        try (var output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (AuditEvent event : sorted(events)) {
+                output.writeObject(event);
+                // the stream would otherwise hold every event written, and the reader every event read
+                output.reset();
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteRun(run);
+            throw e;
+        }
+        return run;
+    }
+
+    private static List<AuditEvent> sorted(Iterable<AuditEvent> events) {
+        List<AuditEvent> list = new ArrayList<>();
+        events.forEach(list::add);
+        list.sort(KEY_ORDER);
+        return list;
+    }
+
+    private static long size(AuditEvent event) {
+        return EVENT_OVERHEAD + length(event.getAuditPayload()) + length(event.getCaseData())
+            + length(event.getCorrelationID()) + length(event.getRaisingService()) + length(event.getNamespace())
+            + length(event.getUserID()) + length(event.getType()) + length(event.getCaseType());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void deleteRun(Path run) {
+        try {
+            Files.deleteIfExists(run);
+        } catch (IOException e) {
+            log.warn("Unable to delete latest event run {}: {}", run, e.toString());
+        }
+    }
+
+    private record Key(String caseUuid, String type) {}
+
+    /**
+     * Merges the runs in case and type order, taking the latest event of each case and type across them.
+     */
+    private static class Merge implements Iterator<AuditEvent>, Closeable {
+
+        private final PriorityQueue<Cursor> cursors = new PriorityQueue<>(
+            (first, second) -> KEY_ORDER.compare(first.head, second.head));
+
+        private final List<Cursor> open = new ArrayList<>();
+
+        Merge(List<Path> runs, List<AuditEvent> remaining) throws IOException {
+            try {
+                for (Path run : runs) {
+                    open.add(new RunCursor(run));
+                }
+            } catch (IOException e) {
+                close();
+                runs.forEach(LatestEventReducer::deleteRun);
+                throw e;
+            }
+            open.add(new Cursor(remaining.iterator()));
+
+            for (Cursor cursor : open) {
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (cursors.isEmpty()) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public AuditEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            var cursor = cursors.poll();
+            var latest = cursor.head;
+            requeue(cursor);
+
+            while (!cursors.isEmpty() && KEY_ORDER.compare(cursors.peek().head, latest) == 0) {
+                var duplicate = cursors.poll();
+                if (TIME_ORDER.compare(duplicate.head, latest) > 0) {
+                    latest = duplicate.head;
+                }
+                requeue(duplicate);
+            }
+            return latest;
+        }
+
+        private void requeue(Cursor cursor) {
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+
+        @Override
+        public void close() {
+            cursors.clear();
+            open.forEach(Cursor::close);
+        }
+
+    }
+
+    private static class Cursor implements Closeable {
+
+        private final Iterator<AuditEvent> events;
+
+        AuditEvent head;
+
+        Cursor(Iterator<AuditEvent> events) {
+            this.events = events;
+        }
+
+        boolean advance() {
+            head = events.hasNext() ? events.next() : null;
+            return head != null;
+        }
+
+        @Override
+        public void close() {}
+
+    }
+
+    private static class RunCursor extends Cursor {
+
+        private final Path run;
+
+        private final ObjectInputStream input;
+
+        RunCursor(Path run) throws IOException {
+            super(null);
+            this.run = run;
+            this.input = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(run)));
+        }
+
+        @Override
+        boolean advance() {
+            try {
+                head = (AuditEvent) input.readObject();
+            } catch (EOFException e) {
+                head = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+            return head != null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                input.close();
+            } catch (IOException e) {
+                log.warn("Unable to close latest event run {}: {}", run, e.toString());
+            }
+            deleteRun(run);
+        }
+
+    }
+
+}
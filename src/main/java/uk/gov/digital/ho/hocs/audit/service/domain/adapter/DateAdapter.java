@@ -2,16 +2,14 @@ package uk.gov.digital.ho.hocs.audit.service.domain.adapter;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import static uk.gov.digital.ho.hocs.audit.client.info.ExportViewConstants.FIELD_ADAPTER_DATE;
-import static uk.gov.digital.ho.hocs.audit.client.info.ExportViewConstants.GROUPED_DATE_REGEX;
 
 @Slf4j
 public class DateAdapter implements ExportViewFieldAdapter {
 
-    private static final Pattern DATE_PATTERN = Pattern.compile(GROUPED_DATE_REGEX);
+    private static final int YEAR_DIGITS = 4;
+
+    private static final int MONTH_OR_DAY_DIGITS = 2;
 
     @Override
     public String getAdapterType() {
@@ -20,7 +18,9 @@ public class DateAdapter implements ExportViewFieldAdapter {
 
     /**
      * The aim of this function is to identify dates that are malformed by having a zero in front of the
-     * year, month or day (0yyyy-0mm-0dd). The REGEX used will identify any combination of the zero leading digits.
+     * year, month or day (0yyyy-0mm-0dd). Any combination of the zero leading digits is identified, as is a single
+     * trailing line terminator, matching {@code GROUPED_DATE_REGEX}. The value is scanned by hand rather than with the
+     * regex as it runs over exported cells.
      * Once identified, this function converts the date to a format without the leading zero (yyyy-mm-dd).
      *
      * @param input The ExportViewFieldAdapter interface supports any kind of object but the calling code only ever passes a string.
@@ -30,17 +30,80 @@ public class DateAdapter implements ExportViewFieldAdapter {
     @Override
     public String convert(Object input) {
         if (input instanceof String) {
-            String date = (String) input;
-            Matcher matcher = DATE_PATTERN.matcher(date);
-            if (matcher.find()) {
-                String year = matcher.group(1);
-                String month = matcher.group(2);
-                String day = matcher.group(3);
-                return year + "-" + month + "-" + day;
-            }
-            return date;
+            return correctDate((String) input);
         }
         return input != null ? input.toString() : null;
     }
 
+    private static String correctDate(String date) {
+        int end = endOfContent(date);
+        int yearEnd = date.indexOf('-');
+        if (yearEnd < 0 || yearEnd >= end) {
+            return date;
+        }
+        int monthEnd = date.indexOf('-', yearEnd + 1);
+        if (monthEnd < 0 || monthEnd >= end) {
+            return date;
+        }
+
+        if (!isZeroPadded(date, 0, yearEnd, YEAR_DIGITS)
+            || !isZeroPadded(date, yearEnd + 1, monthEnd, MONTH_OR_DAY_DIGITS)
+            || !isZeroPadded(date, monthEnd + 1, end, MONTH_OR_DAY_DIGITS)) {
+            return date;
+        }
+
+        int month = twoDigits(date, monthEnd - MONTH_OR_DAY_DIGITS);
+        int day = twoDigits(date, end - MONTH_OR_DAY_DIGITS);
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return date;
+        }
+
+        if (end == date.length() && yearEnd == YEAR_DIGITS && monthEnd - yearEnd - 1 == MONTH_OR_DAY_DIGITS
+            && end - monthEnd - 1 == MONTH_OR_DAY_DIGITS) {
+            // already well formed
+            return date;
+        }
+
+        return date.substring(yearEnd - YEAR_DIGITS, yearEnd) + "-" + date.substring(
+            monthEnd - MONTH_OR_DAY_DIGITS, monthEnd) + "-" + date.substring(end - MONTH_OR_DAY_DIGITS, end);
+    }
+
+    /**
+     * Returns the length of the value less a single trailing line terminator, which a {@code $} anchor allows.
+     */
+    private static int endOfContent(String value) {
+        int length = value.length();
+        if (length >= 2 && value.charAt(length - 2) == '\r' && value.charAt(length - 1) == '\n') {
+            return length - 2;
+        }
+        if (length >= 1) {
+            char last = value.charAt(length - 1);
+            if (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+                return length - 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks the range holds only ASCII digits, all but the last {@code digits} of which are zero.
+     */
+    private static boolean isZeroPadded(String value, int from, int to, int digits) {
+        if (to - from < digits) {
+            return false;
+        }
+        int padEnd = to - digits;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (i < padEnd ? c != '0' : c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int twoDigits(String value, int from) {
+        return (value.charAt(from) - '0') * 10 + value.charAt(from + 1) - '0';
+    }
+
 }
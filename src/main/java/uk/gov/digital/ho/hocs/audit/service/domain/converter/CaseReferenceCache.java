@@ -0,0 +1,71 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.CaseReference;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CASE_REFERENCE_INDEX_UPDATED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+
+/**
+ * Holds a case reference index per case type, shared by every export on the pod. The first export for a case type
+ * loads its index, later exports only read the CASE_CREATED rows changed since.
+ * <p>
+ * Each insert or update of a row gives it a new version, so a reference that changes, a case that is deleted and one
+ * that is restored are all read as changed rows. Rows are read up to the last version whose changes are committed,
+ * and on the primary, so a row changed out of version order is not passed over.
+ */
+@Slf4j
+@Service
+public class CaseReferenceCache {
+
+    private final AuditRepository auditRepository;
+
+    private final Map<String, CaseReferenceIndex> indexes = new ConcurrentHashMap<>();
+
+    public CaseReferenceCache(AuditRepository auditRepository) {
+        this.auditRepository = auditRepository;
+    }
+
+    // a transaction of its own, as a read-only one the export is in would read the rows from the replica
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public CaseReferenceIndex getIndex(String caseType) {
+        var index = indexes.computeIfAbsent(caseType, key -> new CaseReferenceIndex());
+
+        synchronized (index) {
+            long after = index.getWatermark();
+            long lastVersion = auditRepository.findCommittedLatestEventVersion();
+            int changed = 0;
+            try (Stream<CaseReference> references = auditRepository.getCaseReferencesForTypeChangedBetween(caseType,
+                after, lastVersion)) {
+                var iterator = references.iterator();
+                while (iterator.hasNext()) {
+                    var reference = iterator.next();
+                    var caseUuid = UUID.fromString(reference.getCaseUUID());
+                    if (Boolean.TRUE.equals(reference.getDeleted())) {
+                        index.remove(caseUuid);
+                    } else {
+                        index.put(caseUuid, reference.getCaseReference());
+                    }
+                    changed++;
+                }
+            }
+            index.advanceWatermark(lastVersion);
+
+            log.debug("Read {} changed case references for {} after version {}, index holds {}", changed, caseType,
+                after, index.size(), value(EVENT, CASE_REFERENCE_INDEX_UPDATED));
+        }
+
+        return index;
+    }
+
+}
@@ -0,0 +1,233 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps case UUIDs to case references for a single case type. UUIDs are held as pairs of longs in an open addressing
+ * table, which takes a fraction of the memory of a map of strings and allows lookups without formatting the UUID.
+ * <p>
+ * Lookups run concurrently with updates. Readers take an optimistic stamp and only fall back to a read lock if an
+ * update ran during the lookup. The arrays of the table are published together through a single field, so a reader
+ * racing a resize always probes arrays of the same length and the stamp catches any other change it raced.
+ */
+public class CaseReferenceIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StampedLock lock = new StampedLock();
+
+    private volatile Table table;
+
+    private int size;
+
+    private long watermark;
+
+    public CaseReferenceIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public CaseReferenceIndex(int expectedSize) {
+        table = new Table(tableSize(expectedSize));
+    }
+
+    public String get(UUID caseUuid) {
+        long msb = caseUuid.getMostSignificantBits();
+        long lsb = caseUuid.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        String reference = table.find(msb, lsb);
+        if (lock.validate(stamp)) {
+            return reference;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return table.find(msb, lsb);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void put(UUID caseUuid, String reference) {
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > table.capacity() * LOAD_FACTOR) {
+                table = table.resize(table.capacity() * 2);
+            }
+            if (table.insert(caseUuid.getMostSignificantBits(), caseUuid.getLeastSignificantBits(), reference)) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a case, such as one that has been deleted.
+     */
+    public void remove(UUID caseUuid) {
+        long stamp = lock.writeLock();
+        try {
+            if (table.delete(caseUuid.getMostSignificantBits(), caseUuid.getLeastSignificantBits())) {
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return the highest source row version applied to the index, used to fetch only rows changed since on the next
+     *     update.
+     */
+    public long getWatermark() {
+        long stamp = lock.readLock();
+        try {
+            return watermark;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void advanceWatermark(long id) {
+        long stamp = lock.writeLock();
+        try {
+            watermark = Math.max(watermark, id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static int tableSize(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * The slots of the index. A table never changes size, it is replaced by a larger one on resize.
+     */
+    private static final class Table {
+
+        private final long[] mostSignificant;
+
+        private final long[] leastSignificant;
+
+        private final String[] references;
+
+        Table(int capacity) {
+            mostSignificant = new long[capacity];
+            leastSignificant = new long[capacity];
+            references = new String[capacity];
+        }
+
+        int capacity() {
+            return references.length;
+        }
+
+        String find(long msb, long lsb) {
+            // slots may be written by a concurrent insert, so an optimistic caller validates the result
+            int mask = references.length - 1;
+            int slot = hash(msb, lsb) & mask;
+            for (int probes = 0; probes < references.length; probes++) {
+                String reference = references[slot];
+                if (reference == null) {
+                    return null;
+                }
+                if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                    return reference;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        boolean insert(long msb, long lsb, String reference) {
+            int mask = references.length - 1;
+            int slot = hash(msb, lsb) & mask;
+            while (references[slot] != null) {
+                if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                    references[slot] = reference;
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            mostSignificant[slot] = msb;
+            leastSignificant[slot] = lsb;
+            references[slot] = reference;
+            return true;
+        }
+
+        /**
+         * Removes a case, shifting back the cases after it in its cluster that could not be placed in its slot, so
+         * that no probe sequence is left with a gap.
+         */
+        boolean delete(long msb, long lsb) {
+            int mask = references.length - 1;
+            int free = hash(msb, lsb) & mask;
+            while (references[free] != null && (mostSignificant[free] != msb || leastSignificant[free] != lsb)) {
+                free = (free + 1) & mask;
+            }
+            if (references[free] == null) {
+                return false;
+            }
+
+            int slot = (free + 1) & mask;
+            while (references[slot] != null) {
+                int home = hash(mostSignificant[slot], leastSignificant[slot]) & mask;
+                // the case may move back if its home is not between the free slot and its own
+                if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                    mostSignificant[free] = mostSignificant[slot];
+                    leastSignificant[free] = leastSignificant[slot];
+                    references[free] = references[slot];
+                    free = slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            references[free] = null;
+            return true;
+        }
+
+        Table resize(int capacity) {
+            var resized = new Table(capacity);
+            forEach(resized::insert);
+            return resized;
+        }
+
+        void forEach(SlotConsumer consumer) {
+            for (int i = 0; i < references.length; i++) {
+                if (references[i] != null) {
+                    consumer.accept(mostSignificant[i], leastSignificant[i], references[i]);
+                }
+            }
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface SlotConsumer {
+
+        void accept(long msb, long lsb, String reference);
+
+    }
+
+}
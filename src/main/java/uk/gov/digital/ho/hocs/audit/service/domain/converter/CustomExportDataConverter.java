@@ -2,16 +2,15 @@ package uk.gov.digital.ho.hocs.audit.service.domain.converter;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
 import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetTopicResponse;
 import uk.gov.digital.ho.hocs.audit.client.info.ExportViewConstants;
-import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.TeamDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.UnitDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
 import uk.gov.digital.ho.hocs.audit.core.LogEvent;
 import uk.gov.digital.ho.hocs.audit.repository.config.model.CustomExportViews;
 import uk.gov.digital.ho.hocs.audit.repository.config.model.CustomExportViews.CustomExportView.ExportField;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
 import uk.gov.digital.ho.hocs.audit.service.domain.adapter.ExportViewFieldAdapter;
 import uk.gov.digital.ho.hocs.audit.service.domain.adapter.TeamNameAdapter;
 import uk.gov.digital.ho.hocs.audit.service.domain.adapter.TopicNameAdapter;
@@ -34,15 +33,12 @@ import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_CUSTOM_CONVERTER_FA
 @Service
 public class CustomExportDataConverter {
 
-    private final InfoClient infoClient;
-
-    private final CaseworkClient caseworkClient;
+    private final ReferenceDataCache referenceDataCache;
 
     private Map<String, ExportViewFieldAdapter> adapters;
 
-    public CustomExportDataConverter(InfoClient infoClient, CaseworkClient caseworkClient) {
-        this.infoClient = infoClient;
-        this.caseworkClient = caseworkClient;
+    public CustomExportDataConverter(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
 
         adapters = new HashMap<>();
     }
@@ -59,8 +55,30 @@ public class CustomExportDataConverter {
         return headers.toArray(String[]::new);
     }
 
-    public Object[] convertData(Object[] input, List<ExportField> fields) {
-        Object[] convertedData = null;
+    /**
+     * Resolves the type of each shown field from the types of the view columns, for formats that store typed values.
+     * Fields converted by an adapter are always strings.
+     *
+     * @param exportView  the custom export view.
+     * @param columnTypes the database types of the view columns, in column order.
+     */
+    public ExportColumnType[] getColumnTypes(CustomExportViews.CustomExportView exportView, List<String> columnTypes) {
+        List<ExportColumnType> results = new ArrayList<>();
+        int index = 0;
+        for (var field : exportView.fields()) {
+            if (shouldShow(field)) {
+                results.add(field.adapter() == null && index < columnTypes.size()
+                    ? ExportColumnType.forDatabaseType(columnTypes.get(index))
+                    : ExportColumnType.STRING);
+            }
+            index++;
+        }
+
+        return results.toArray(new ExportColumnType[0]);
+    }
+
+    public String[] convertData(Object[] input, List<ExportField> fields) {
+        String[] convertedData = null;
 
         if (input != null) {
             convertedData = convertCustomDataRow(input, fields);
@@ -69,7 +87,7 @@ public class CustomExportDataConverter {
         return convertedData;
     }
 
-    private Object[] convertCustomDataRow(Object[] rawData, List<ExportField> fields) {
+    private String[] convertCustomDataRow(Object[] rawData, List<ExportField> fields) {
         List<String> results = new ArrayList<>();
         int index = 0;
         for (var field : fields) {
@@ -79,7 +97,7 @@ public class CustomExportDataConverter {
             index++;
         }
 
-        return results.toArray();
+        return results.toArray(new String[0]);
     }
 
     private String applyAdapter(Object data, String adapter) {
@@ -107,10 +125,11 @@ public class CustomExportDataConverter {
     }
 
     public void initialiseAdapters() {
-        Set<UserDto> users = infoClient.getUsers();
-        Set<TeamDto> teams = infoClient.getAllTeams();
-        Set<UnitDto> units = infoClient.getUnits();
-        Set<GetTopicResponse> topics = caseworkClient.getAllCaseTopics();
+        var referenceData = referenceDataCache.getSnapshot();
+        Set<UserDto> users = referenceData.getUsers();
+        Set<TeamDto> teams = referenceData.getTeams();
+        Set<UnitDto> units = referenceData.getUnits();
+        Set<GetTopicResponse> topics = referenceData.getCaseTopics();
         List<ExportViewFieldAdapter> adapterList = new ArrayList<>();
 
         adapterList.add(new UserEmailAdapter(users));
@@ -1,49 +1,86 @@
 package uk.gov.digital.ho.hocs.audit.service.domain.converter;
 
 import uk.gov.digital.ho.hocs.audit.core.utils.UuidStringChecker;
-import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
-import uk.gov.digital.ho.hocs.audit.repository.entity.CaseReference;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public class ExportDataConverter {
 
-    private final Map<String, String> uuidToName;
+    private final UuidNameLookup uuidToName;
 
-    private final Map<String, String> caseUUIDToCaseRef;
+    private final CaseReferenceIndex caseReferences;
 
     private final Map<String, String> entityListItemToName;
 
     private final boolean convert;
 
+    // the names as given, kept to fingerprint them if asked
+    private final List<Map<String, String>> substitutions;
+
+    private String fingerprint;
+
     public ExportDataConverter(Map<String, String> uuidToName,
                                Map<String, String> entityListItemToName,
-                               String caseTypeCode,
-                               AuditRepository auditRepository) {
-        this(true, uuidToName, entityListItemToName, caseTypeCode, auditRepository);
+                               CaseReferenceIndex caseReferences) {
+        this(true, uuidToName, entityListItemToName, caseReferences);
     }
 
     public ExportDataConverter() {
-        this(false, null, null, null, null);
+        this(false, null, null, null);
     }
 
     private ExportDataConverter(boolean convert,
                                 Map<String, String> uuidToName,
                                 Map<String, String> entityListItemToName,
-                                String caseTypeCode,
-                                AuditRepository auditRepository) {
+                                CaseReferenceIndex caseReferences) {
         this.convert = convert;
-        this.uuidToName = uuidToName;
-        this.entityListItemToName = entityListItemToName;
-
-        if (convert) {
-            this.caseUUIDToCaseRef = auditRepository.getCaseReferencesForType(caseTypeCode).collect(
-                Collectors.toMap(CaseReference::getCaseUUID, CaseReference::getCaseReference));
-        } else {
-            this.caseUUIDToCaseRef = null;
+        this.uuidToName = convert ? new UuidNameLookup(uuidToName) : null;
+        this.entityListItemToName = convert ? withoutCommas(entityListItemToName) : null;
+        this.caseReferences = caseReferences;
+        this.substitutions = convert ? List.of(uuidToName, entityListItemToName) : List.of();
+    }
+
+    public boolean isConverting() {
+        return convert;
+    }
+
+    /**
+     * A SHA-256 hash of the names the converter substitutes, in hex, which differs when the reference data it was
+     * built from does. Case references are not included, as a case keeps its reference once created. The hash is
+     * computed when first asked for, as only some exports need it.
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+
+            // each name is hashed in key order, with its key, and delimited so that no two sets of names run together
+            for (Map<String, String> names : substitutions) {
+                new TreeMap<>(names).forEach((key, name) -> {
+                    digest.update(key.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    if (name != null) {
+                        digest.update(name.getBytes(StandardCharsets.UTF_8));
+                    }
+                    digest.update((byte) (name != null ? 1 : 2));
+                });
+                digest.update((byte) 3);
+            }
+            fingerprint = HexFormat.of().formatHex(digest.digest());
         }
+        return fingerprint;
     }
 
     public String convertValue(String value) {
@@ -52,12 +89,12 @@ public class ExportDataConverter {
         }
 
         if (UuidStringChecker.isUUID(value)) {
-            return uuidToName.getOrDefault(value, value);
-        } else if (entityListItemToName.containsKey(value)) {
-            return entityListItemToName.get(value).replace(",", "");
+            var name = uuidToName.get(value);
+            return name != null ? name : value;
         }
 
-        return value;
+        var title = entityListItemToName.get(value);
+        return title != null ? title : value;
     }
 
     public String convertCaseUuid(UUID value) {
@@ -65,12 +102,18 @@ public class ExportDataConverter {
             return null;
         }
 
-        var uuidString = value.toString();
         if (!convert) {
-            return uuidString;
+            return value.toString();
         }
 
-        return caseUUIDToCaseRef.getOrDefault(uuidString, uuidString);
+        var reference = caseReferences.get(value);
+        return reference != null ? reference : value.toString();
+    }
+
+    private static Map<String, String> withoutCommas(Map<String, String> entityListItemToName) {
+        Map<String, String> titles = new HashMap<>(entityListItemToName.size() * 2);
+        entityListItemToName.forEach((key, title) -> titles.put(key, title != null ? title.replace(",", "") : null));
+        return titles;
     }
 
 }
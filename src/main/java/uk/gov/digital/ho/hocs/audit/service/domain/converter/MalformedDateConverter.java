@@ -1,7 +1,14 @@
 package uk.gov.digital.ho.hocs.audit.service.domain.converter;
 
 import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
 import uk.gov.digital.ho.hocs.audit.service.domain.adapter.DateAdapter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.ExportWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Service
 public class MalformedDateConverter {
@@ -18,4 +25,69 @@ public class MalformedDateConverter {
         return auditData;
     }
 
+    /**
+     * Wraps a writer so that malformed dates are corrected in every value that could hold one: all text, and
+     * timestamps rendered in a custom format. Dates, UUIDs and timestamps in the default format are always rendered
+     * well formed, so are written as they are.
+     */
+    public ExportWriter correcting(ExportWriter writer, ZonedDateTimeConverter zonedDateTimeConverter) {
+        return new CorrectingWriter(writer, zonedDateTimeConverter);
+    }
+
+    private class CorrectingWriter implements ExportWriter {
+
+        private final ExportWriter writer;
+
+        private final ZonedDateTimeConverter zonedDateTimeConverter;
+
+        CorrectingWriter(ExportWriter writer, ZonedDateTimeConverter zonedDateTimeConverter) {
+            this.writer = writer;
+            this.zonedDateTimeConverter = zonedDateTimeConverter;
+        }
+
+        @Override
+        public void startRecord() throws IOException {
+            writer.startRecord();
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            writer.writeString(dateAdapter.convert(value));
+        }
+
+        @Override
+        public void writeTimestamp(LocalDateTime value) throws IOException {
+            if (value != null && !zonedDateTimeConverter.isDefaultFormat()) {
+                var rendered = zonedDateTimeConverter.convert(value);
+                var corrected = dateAdapter.convert(rendered);
+                if (!corrected.equals(rendered)) {
+                    writer.writeString(corrected);
+                    return;
+                }
+            }
+            writer.writeTimestamp(value);
+        }
+
+        @Override
+        public void writeDate(LocalDate value) throws IOException {
+            writer.writeDate(value);
+        }
+
+        @Override
+        public void writeUuid(UUID value) throws IOException {
+            writer.writeUuid(value);
+        }
+
+        @Override
+        public void endRecord() throws IOException {
+            writer.endRecord();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,54 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Formats payload fields projected as text in an export query the way decoding them from the payload would, so that
+ * exports read the same values either way. Missing and empty values are formatted as empty.
+ */
+public final class PayloadFieldConverter {
+
+    private PayloadFieldConverter() {}
+
+    public static String convertUuid(String value) {
+        if (value == null || value.isBlank()) {
+            return "";
+        }
+        return UUID.fromString(value.trim()).toString();
+    }
+
+    /**
+     * Parses a date the way decoding it from the payload would, or returns null if it is missing or empty.
+     */
+    public static LocalDate parseDate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+
+        var trimmed = value.trim();
+        // timestamps are read as their date
+        if (trimmed.length() > 10 && trimmed.charAt(10) == 'T') {
+            return parseDateTime(trimmed).toLocalDate();
+        }
+        return LocalDate.parse(trimmed);
+    }
+
+    public static String convertDateTime(String value) {
+        if (value == null || value.isBlank()) {
+            return "";
+        }
+        return parseDateTime(value.trim()).toString();
+    }
+
+    private static LocalDateTime parseDateTime(String value) {
+        if (value.endsWith("Z")) {
+            return LocalDateTime.ofInstant(Instant.parse(value), ZoneOffset.UTC);
+        }
+        return LocalDateTime.parse(value);
+    }
+
+}
@@ -0,0 +1,222 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
+import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetCorrespondentOutlineResponse;
+import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDto;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static net.logstash.logback.argument.StructuredArguments.value;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_EXPORT_LOAD_CONVERSION_DATA_END;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.CSV_EXPORT_LOAD_CONVERSION_DATA_START;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EVENT;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.EXCEPTION;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.REFERENCE_DATA_DROPPED;
+import static uk.gov.digital.ho.hocs.audit.core.LogEvent.REFERENCE_DATA_REFRESH_FAILURE;
+
+/**
+ * Holds the reference data shared by the export converters. The first export to convert loads the snapshot, after
+ * which it is reloaded in the background and swapped in whole, so converted exports no longer wait on the info and
+ * casework services. A failed reload keeps the previous snapshot.
+ * <p>
+ * Data only some exports need, entity lists and correspondents, is added the first time it is asked for and reloaded
+ * with the snapshot from then on. Reference data is always fetched outside the lock, which is only held to swap the
+ * snapshot. Once no export has read the snapshot for the idle timeout it is dropped and the reloading stops, until
+ * the next export loads it again.
+ */
+@Slf4j
+@Service
+public class ReferenceDataCache {
+
+    private final InfoClient infoClient;
+
+    private final CaseworkClient caseworkClient;
+
+    private final Duration refreshInterval;
+
+    private final Duration idleTimeout;
+
+    private final ScheduledExecutorService refresher;
+
+    private volatile ReferenceDataSnapshot snapshot;
+
+    private volatile long lastReadAt;
+
+    private ScheduledFuture<?> refreshTask;
+
+    public ReferenceDataCache(InfoClient infoClient,
+                              CaseworkClient caseworkClient,
+                              @Value("${audit.export.reference-data.refresh-interval:PT5M}") Duration refreshInterval,
+                              @Value("${audit.export.reference-data.idle-timeout:PT1H}") Duration idleTimeout) {
+        this.infoClient = infoClient;
+        this.caseworkClient = caseworkClient;
+        this.refreshInterval = refreshInterval;
+        this.idleTimeout = idleTimeout;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "reference-data-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ReferenceDataSnapshot getSnapshot() {
+        lastReadAt = System.nanoTime();
+
+        var current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = load(Set.of(), false);
+                refreshTask = refresher.scheduleWithFixedDelay(this::refresh, refreshInterval.toMillis(),
+                    refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Returns the titles of an entity list keyed by simple name.
+     */
+    public Map<String, String> getEntityListTitles(String listName) {
+        var current = getSnapshot();
+        var titles = current.getEntityListTitles(listName);
+        if (titles != null) {
+            return titles;
+        }
+
+        Set<EntityDto> entities = infoClient.getEntitiesForList(listName);
+        return update(current, loaded -> loaded.withEntityList(listName, entities)).getEntityListTitles(listName);
+    }
+
+    /**
+     * Returns the names of correspondents keyed by correspondent UUID.
+     */
+    public Map<String, String> getCorrespondentNames() {
+        var current = getSnapshot();
+        if (current.getCorrespondentNames() != null) {
+            return current.getCorrespondentNames();
+        }
+
+        Set<GetCorrespondentOutlineResponse> correspondents = caseworkClient.getAllCorrespondents();
+        return update(current, loaded -> loaded.withCorrespondents(correspondents)).getCorrespondentNames();
+    }
+
+    void refresh() {
+        if (System.nanoTime() - lastReadAt > idleTimeout.toNanos() && stopIfIdle()) {
+            return;
+        }
+
+        // a dropped snapshot is only loaded again by the next export to read it
+        var current = snapshot;
+        if (current == null) {
+            return;
+        }
+
+        try {
+            var refreshed = load(current.getEntityListNames(), current.getCorrespondentNames() != null);
+
+            while (true) {
+                synchronized (this) {
+                    if (snapshot == current) {
+                        snapshot = refreshed;
+                        return;
+                    }
+                    if (snapshot == null) {
+                        return;
+                    }
+                    current = snapshot;
+                }
+
+                // data added while the reload was running is fetched for the reloaded snapshot before swapping it in
+                for (String listName : current.getEntityListNames()) {
+                    if (refreshed.getEntityListTitles(listName) == null) {
+                        refreshed = refreshed.withEntityList(listName, infoClient.getEntitiesForList(listName));
+                    }
+                }
+                if (current.getCorrespondentNames() != null && refreshed.getCorrespondentNames() == null) {
+                    refreshed = refreshed.withCorrespondents(caseworkClient.getAllCorrespondents());
+                }
+            }
+        } catch (Exception e) {
+            // the snapshot may have been dropped while the reload was running
+            var kept = snapshot;
+            if (kept != null) {
+                log.error("Failed to refresh reference data, keeping snapshot loaded at {}", kept.getLoadedAt(),
+                    value(EVENT, REFERENCE_DATA_REFRESH_FAILURE), value(EXCEPTION, e.toString()));
+            } else {
+                log.error("Failed to refresh reference data, which has been dropped",
+                    value(EVENT, REFERENCE_DATA_REFRESH_FAILURE), value(EXCEPTION, e.toString()));
+            }
+        }
+    }
+
+    private synchronized boolean stopIfIdle() {
+        // an export may have read the snapshot since the refresh checked, or another refresh may have dropped it
+        if (snapshot == null) {
+            return true;
+        }
+        if (System.nanoTime() - lastReadAt <= idleTimeout.toNanos()) {
+            return false;
+        }
+
+        refreshTask.cancel(false);
+        refreshTask = null;
+        snapshot = null;
+        log.info("Dropped reference data unused for {}", idleTimeout, value(EVENT, REFERENCE_DATA_DROPPED));
+        return true;
+    }
+
+    /**
+     * Adds data fetched for the given snapshot to the current snapshot. If the snapshot was dropped meanwhile the
+     * data is only added to the given one, which is returned to the caller without being kept.
+     */
+    private synchronized ReferenceDataSnapshot update(ReferenceDataSnapshot current,
+                                                      UnaryOperator<ReferenceDataSnapshot> change) {
+        if (snapshot == null) {
+            return change.apply(current);
+        }
+
+        snapshot = change.apply(snapshot);
+        return snapshot;
+    }
+
+    private ReferenceDataSnapshot load(Set<String> entityListNames, boolean correspondents) {
+        log.info("Start loading reference data", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_START));
+
+        Map<String, Set<EntityDto>> entityLists = new HashMap<>();
+        for (String listName : entityListNames) {
+            entityLists.put(listName, infoClient.getEntitiesForList(listName));
+        }
+
+        var loaded = new ReferenceDataSnapshot(infoClient.getUsers(), infoClient.getAllTeams(), infoClient.getUnits(),
+            caseworkClient.getAllCaseTopics(), infoClient.getCaseTypeActions(), entityLists);
+        if (correspondents) {
+            loaded = loaded.withCorrespondents(caseworkClient.getAllCorrespondents());
+        }
+
+        log.info("End loading reference data", value(EVENT, CSV_EXPORT_LOAD_CONVERSION_DATA_END));
+        return loaded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+}
@@ -0,0 +1,164 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetCorrespondentOutlineResponse;
+import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetTopicResponse;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeActionDto;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDto;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.TeamDto;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.UnitDto;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable copy of the reference data used to convert exports, along with the lookups built from it. A snapshot
+ * is shared by every export running while it is current, so none of its collections may be modified.
+ */
+@Getter
+public final class ReferenceDataSnapshot {
+
+    private final Instant loadedAt;
+
+    private final Set<UserDto> users;
+
+    private final Set<TeamDto> teams;
+
+    private final Set<UnitDto> units;
+
+    private final Set<GetTopicResponse> caseTopics;
+
+    private final Map<String, String> userNames;
+
+    private final Map<String, String> teamNames;
+
+    private final Map<String, String> unitNames;
+
+    /**
+     * Topic names keyed by topic UUID.
+     */
+    private final Map<String, String> topicNames;
+
+    /**
+     * Topic names keyed by both the topic UUID and the UUID of the case topic, the first topic loaded winning.
+     */
+    private final Map<String, String> caseTopicNames;
+
+    private final Map<String, String> caseTypeActionLabels;
+
+    /**
+     * Correspondent names keyed by correspondent UUID, or null if correspondents are not part of this snapshot.
+     */
+    private final Map<String, String> correspondentNames;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Map<String, String>> entityListTitles;
+
+    public ReferenceDataSnapshot(Set<UserDto> users,
+                                 Set<TeamDto> teams,
+                                 Set<UnitDto> units,
+                                 Set<GetTopicResponse> caseTopics,
+                                 List<CaseTypeActionDto> caseTypeActions,
+                                 Map<String, Set<EntityDto>> entityLists) {
+        this(Instant.now(), Set.copyOf(users), Set.copyOf(teams), Set.copyOf(units), Set.copyOf(caseTopics),
+            Map.copyOf(users.stream().collect(Collectors.toMap(UserDto::getId, UserDto::getUsername))),
+            Map.copyOf(teams.stream().collect(
+                Collectors.toMap(team -> team.getUuid().toString(), TeamDto::getDisplayName))),
+            Map.copyOf(units.stream().collect(Collectors.toMap(UnitDto::getUuid, UnitDto::getDisplayName))),
+            topicNames(caseTopics, false), topicNames(caseTopics, true),
+            Map.copyOf(caseTypeActions.stream().collect(
+                Collectors.toMap(action -> action.getUuid().toString(), CaseTypeActionDto::getActionLabel))),
+            null, entityListTitles(entityLists));
+    }
+
+    private ReferenceDataSnapshot(Instant loadedAt,
+                                  Set<UserDto> users,
+                                  Set<TeamDto> teams,
+                                  Set<UnitDto> units,
+                                  Set<GetTopicResponse> caseTopics,
+                                  Map<String, String> userNames,
+                                  Map<String, String> teamNames,
+                                  Map<String, String> unitNames,
+                                  Map<String, String> topicNames,
+                                  Map<String, String> caseTopicNames,
+                                  Map<String, String> caseTypeActionLabels,
+                                  Map<String, String> correspondentNames,
+                                  Map<String, Map<String, String>> entityListTitles) {
+        this.loadedAt = loadedAt;
+        this.users = users;
+        this.teams = teams;
+        this.units = units;
+        this.caseTopics = caseTopics;
+        this.userNames = userNames;
+        this.teamNames = teamNames;
+        this.unitNames = unitNames;
+        this.topicNames = topicNames;
+        this.caseTopicNames = caseTopicNames;
+        this.caseTypeActionLabels = caseTypeActionLabels;
+        this.correspondentNames = correspondentNames;
+        this.entityListTitles = entityListTitles;
+    }
+
+    /**
+     * @return the titles of the entity list keyed by simple name, or null if the list is not part of this snapshot.
+     */
+    public Map<String, String> getEntityListTitles(String listName) {
+        return entityListTitles.get(listName);
+    }
+
+    public Set<String> getEntityListNames() {
+        return entityListTitles.keySet();
+    }
+
+    /**
+     * Returns a copy of this snapshot that also holds the given entity list.
+     */
+    public ReferenceDataSnapshot withEntityList(String listName, Set<EntityDto> entities) {
+        var lists = new HashMap<>(entityListTitles);
+        lists.put(listName, entityTitles(entities));
+
+        return new ReferenceDataSnapshot(loadedAt, users, teams, units, caseTopics, userNames, teamNames, unitNames,
+            topicNames, caseTopicNames, caseTypeActionLabels, correspondentNames, Map.copyOf(lists));
+    }
+
+    /**
+     * Returns a copy of this snapshot that also holds the given correspondents.
+     */
+    public ReferenceDataSnapshot withCorrespondents(Set<GetCorrespondentOutlineResponse> correspondents) {
+        return new ReferenceDataSnapshot(loadedAt, users, teams, units, caseTopics, userNames, teamNames, unitNames,
+            topicNames, caseTopicNames, caseTypeActionLabels, Map.copyOf(correspondents.stream().collect(
+            Collectors.toMap(corr -> corr.getUuid().toString(), GetCorrespondentOutlineResponse::getFullname))),
+            entityListTitles);
+    }
+
+    private static Map<String, String> topicNames(Collection<GetTopicResponse> topics, boolean includeCaseTopics) {
+        Map<String, String> names = new HashMap<>();
+        topics.forEach(topic -> {
+            names.putIfAbsent(topic.getTopicUUID().toString(), topic.getTopicText());
+            if (includeCaseTopics) {
+                names.putIfAbsent(topic.getUuid().toString(), topic.getTopicText());
+            }
+        });
+        return Collections.unmodifiableMap(names);
+    }
+
+    private static Map<String, Map<String, String>> entityListTitles(Map<String, Set<EntityDto>> entityLists) {
+        return Map.copyOf(entityLists.entrySet().stream().collect(
+            Collectors.toMap(Map.Entry::getKey, entry -> entityTitles(entry.getValue()))));
+    }
+
+    private static Map<String, String> entityTitles(Set<EntityDto> entities) {
+        Map<String, String> titles = new HashMap<>();
+        entities.forEach(e -> titles.put(e.getSimpleName(), e.getData().getTitle()));
+        return Collections.unmodifiableMap(titles);
+    }
+
+}
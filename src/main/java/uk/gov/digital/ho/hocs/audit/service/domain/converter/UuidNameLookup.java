@@ -0,0 +1,74 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import uk.gov.digital.ho.hocs.audit.core.utils.UuidStringChecker;
+
+import java.util.Map;
+
+/**
+ * A read-only map of UUIDs to display names, keyed by the two longs of the UUID so that a value can be looked up
+ * straight from its string form without creating a key. Entries whose key is not a UUID are dropped, as they could
+ * never match a UUID value.
+ */
+final class UuidNameLookup {
+
+    private final long[] mostSignificant;
+
+    private final long[] leastSignificant;
+
+    private final String[] names;
+
+    UuidNameLookup(Map<String, String> uuidToName) {
+        int capacity = 16;
+        while (capacity < uuidToName.size() * 2) {
+            capacity <<= 1;
+        }
+        mostSignificant = new long[capacity];
+        leastSignificant = new long[capacity];
+        names = new String[capacity];
+
+        uuidToName.forEach((uuid, name) -> {
+            if (name != null && UuidStringChecker.isUUID(uuid)) {
+                put(UuidStringChecker.mostSignificantBits(uuid), UuidStringChecker.leastSignificantBits(uuid), name);
+            }
+        });
+    }
+
+    /**
+     * @return the name for a string that {@link UuidStringChecker#isUUID(String)} has accepted, or null.
+     */
+    String get(String uuid) {
+        long msb = UuidStringChecker.mostSignificantBits(uuid);
+        long lsb = UuidStringChecker.leastSignificantBits(uuid);
+
+        int mask = names.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (names[slot] != null) {
+            if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                return names[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private void put(long msb, long lsb, String name) {
+        int mask = names.length - 1;
+        int slot = hash(msb, lsb) & mask;
+        while (names[slot] != null) {
+            if (mostSignificant[slot] == msb && leastSignificant[slot] == lsb) {
+                // keys differing only in case collapse to the first one seen
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mostSignificant[slot] = msb;
+        leastSignificant[slot] = lsb;
+        names[slot] = name;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
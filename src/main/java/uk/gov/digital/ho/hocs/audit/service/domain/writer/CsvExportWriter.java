@@ -0,0 +1,188 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Writes CSV as UTF-8 straight into a reusable byte buffer. The output is the same as a {@code CSVPrinter} using
+ * {@code CSVFormat.DEFAULT} with a header and a null string of {@code ""}: fields are only quoted where that format
+ * quotes them, with quotes doubled, and records end with CRLF. Typed values are written as their text: timestamps in the
+ * format requested for the export and dates and UUIDs in their ISO form.
+ */
+public class CsvExportWriter implements ExportWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // the most bytes a single char, or a surrogate pair, is encoded to
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private static final byte DELIMITER = ',';
+
+    private static final byte QUOTE = '"';
+
+    private static final byte UNMAPPABLE = '?';
+
+    private final OutputStream outputStream;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private final ZonedDateTimeConverter zonedDateTimeConverter;
+
+    private int position;
+
+    private int column;
+
+    /**
+     * @param headers the header record, or null to write the records alone.
+     */
+    public CsvExportWriter(OutputStream outputStream, String[] headers) throws IOException {
+        this(outputStream, headers, new ZonedDateTimeConverter());
+    }
+
+    /**
+     * @param headers                the header record, or null to write the records alone.
+     * @param zonedDateTimeConverter the converter timestamps are written with.
+     */
+    public CsvExportWriter(OutputStream outputStream,
+                           String[] headers,
+                           ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        this.outputStream = outputStream;
+        this.zonedDateTimeConverter = zonedDateTimeConverter;
+        if (headers != null) {
+            writeRecord(headers);
+        }
+    }
+
+    @Override
+    public void startRecord() {
+        column = 0;
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        if (column > 0) {
+            writeByte(DELIMITER);
+        }
+        writeField(value, column == 0);
+        column++;
+    }
+
+    @Override
+    public void writeTimestamp(LocalDateTime value) throws IOException {
+        writeString(value != null ? zonedDateTimeConverter.convert(value) : null);
+    }
+
+    @Override
+    public void writeDate(LocalDate value) throws IOException {
+        writeString(value != null ? value.toString() : null);
+    }
+
+    @Override
+    public void writeUuid(UUID value) throws IOException {
+        writeString(value != null ? value.toString() : null);
+    }
+
+    @Override
+    public void endRecord() throws IOException {
+        writeByte('\r');
+        writeByte('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (outputStream) {
+            flushBuffer();
+            outputStream.flush();
+        }
+    }
+
+    private void writeField(String value, boolean firstInRecord) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        if (!needsQuotes(value, firstInRecord)) {
+            writeChars(value, false);
+            return;
+        }
+
+        writeByte(QUOTE);
+        writeChars(value, true);
+        writeByte(QUOTE);
+    }
+
+    /**
+     * Applies the minimal quoting rules of commons-csv: an empty first field, a field starting with a char up to
+     * {@code #} or ending with one up to a space, and any field holding a line break, quote or delimiter.
+     */
+    private static boolean needsQuotes(String value, boolean firstInRecord) {
+        int length = value.length();
+        if (length == 0) {
+            return firstInRecord;
+        }
+        if (value.charAt(0) <= '#' || value.charAt(length - 1) <= ' ') {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '"' || c == ',') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeChars(String value, boolean doubleQuotes) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (position + MAX_CHAR_BYTES > buffer.length) {
+                flushBuffer();
+            }
+
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' && doubleQuotes) {
+                    buffer[position++] = QUOTE;
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(
+                value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // an unpaired surrogate, replaced as the UTF-8 stream encoder does
+                buffer[position++] = UNMAPPABLE;
+            }
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+}
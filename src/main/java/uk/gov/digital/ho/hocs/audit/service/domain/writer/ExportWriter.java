@@ -0,0 +1,52 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Writes the records of an export to its output stream in a particular {@link
+ * uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat}. Closing the writer completes the output and closes the
+ * underlying stream.
+ * <p>
+ * A record is written a value at a time, in column order, between {@link #startRecord()} and {@link #endRecord()}, so
+ * that typed values reach the format as they are rather than as text. A null value is a missing value.
+ */
+public interface ExportWriter extends Closeable {
+
+    /**
+     * Writes a record of text values, such as the rows of a view.
+     */
+    default void writeRecord(String[] record) throws IOException {
+        startRecord();
+        for (String value : record) {
+            writeString(value);
+        }
+        endRecord();
+    }
+
+    void startRecord() throws IOException;
+
+    /**
+     * Writes a value as text. Formats that store typed values parse the text of a typed column.
+     */
+    void writeString(String value) throws IOException;
+
+    /**
+     * Writes the time an event was audited, converted to the time zone, and for text formats the date format,
+     * requested for the export.
+     */
+    void writeTimestamp(LocalDateTime value) throws IOException;
+
+    void writeDate(LocalDate value) throws IOException;
+
+    void writeUuid(UUID value) throws IOException;
+
+    /**
+     * Completes the record. Formats with a fixed set of columns write any values not given as missing.
+     */
+    void endRecord() throws IOException;
+
+}
@@ -0,0 +1,71 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Service
+public class ExportWriterFactory {
+
+    private final ObjectMapper objectMapper;
+
+    private final long parquetRowGroupSize;
+
+    private final int parquetPageSize;
+
+    private final CompressionCodecName parquetCompressionCodec;
+
+    public ExportWriterFactory(ObjectMapper objectMapper,
+                               @Value("${audit.export.parquet.row-group-size:8388608}") long parquetRowGroupSize,
+                               @Value("${audit.export.parquet.page-size:1048576}") int parquetPageSize,
+                               @Value("${audit.export.parquet.compression-codec:SNAPPY}")
+                               CompressionCodecName parquetCompressionCodec) {
+        this.objectMapper = objectMapper;
+        this.parquetRowGroupSize = parquetRowGroupSize;
+        this.parquetPageSize = parquetPageSize;
+        this.parquetCompressionCodec = parquetCompressionCodec;
+    }
+
+    /**
+     * Creates a writer for an export that writes text values alone.
+     */
+    public ExportWriter create(ExportFormat format,
+                               OutputStream outputStream,
+                               String[] headers,
+                               ExportColumnType[] columnTypes) throws IOException {
+        return create(format, outputStream, headers, columnTypes, new ZonedDateTimeConverter());
+    }
+
+    /**
+     * Creates a writer for an export.
+     *
+     * @param format                 the format to write.
+     * @param outputStream           the stream to write to, closed when the writer is closed.
+     * @param headers                the column headers, after any header substitution.
+     * @param columnTypes            the type of each column, used by formats that write typed values.
+     * @param zonedDateTimeConverter the converter timestamps are written with.
+     *
+     * @return the writer, which must be closed to complete the export.
+     */
+    public ExportWriter create(ExportFormat format,
+                               OutputStream outputStream,
+                               String[] headers,
+                               ExportColumnType[] columnTypes,
+                               ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvExportWriter(outputStream, headers, zonedDateTimeConverter);
+            case PARQUET -> new ParquetExportWriter(outputStream, headers, columnTypes, zonedDateTimeConverter,
+                parquetRowGroupSize, parquetPageSize, parquetCompressionCodec);
+            case NDJSON -> new NdjsonExportWriter(objectMapper.getFactory(), outputStream, headers, columnTypes,
+                zonedDateTimeConverter);
+        };
+    }
+
+}
@@ -0,0 +1,105 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Writes an export as newline delimited JSON, one object per record keyed by the export headers. Values are streamed
+ * straight to the generator as they are written, and missing values are written as JSON nulls so that every line has
+ * the same keys. An empty value in a timestamp, date or UUID column is missing, as it is in typed formats, while an
+ * empty string is kept in a text column.
+ */
+public class NdjsonExportWriter implements ExportWriter {
+
+    private final JsonGenerator generator;
+
+    private final SerializedString[] keys;
+
+    private final boolean[] typedColumns;
+
+    private final ZonedDateTimeConverter zonedDateTimeConverter;
+
+    private int column;
+
+    /**
+     * @param columnTypes the type of each column, or null if every column holds text.
+     */
+    public NdjsonExportWriter(JsonFactory jsonFactory,
+                              OutputStream outputStream,
+                              String[] headers,
+                              ExportColumnType[] columnTypes,
+                              ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        this.generator = jsonFactory.createGenerator(outputStream);
+        this.generator.setRootValueSeparator(null);
+        this.generator.enable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.zonedDateTimeConverter = zonedDateTimeConverter;
+
+        this.keys = new SerializedString[headers.length];
+        this.typedColumns = new boolean[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            keys[i] = new SerializedString(headers[i]);
+            typedColumns[i] = columnTypes != null && columnTypes[i] != ExportColumnType.STRING;
+        }
+    }
+
+    @Override
+    public void startRecord() throws IOException {
+        generator.writeStartObject();
+        column = 0;
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        if (column >= keys.length) {
+            return;
+        }
+
+        generator.writeFieldName(keys[column]);
+        if (value == null || (value.isEmpty() && typedColumns[column])) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+        column++;
+    }
+
+    @Override
+    public void writeTimestamp(LocalDateTime value) throws IOException {
+        writeString(value != null ? zonedDateTimeConverter.convert(value) : null);
+    }
+
+    @Override
+    public void writeDate(LocalDate value) throws IOException {
+        writeString(value != null ? value.toString() : null);
+    }
+
+    @Override
+    public void writeUuid(UUID value) throws IOException {
+        writeString(value != null ? value.toString() : null);
+    }
+
+    @Override
+    public void endRecord() throws IOException {
+        while (column < keys.length) {
+            generator.writeFieldName(keys[column++]);
+            generator.writeNull();
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+}
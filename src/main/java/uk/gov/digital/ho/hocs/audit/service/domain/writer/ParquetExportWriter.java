@@ -0,0 +1,307 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes an export as a Parquet file. Rows are buffered in memory until the configured row group size is reached and
+ * are then written out, so memory use is bounded by the row group size rather than the size of the export.
+ * <p>
+ * Timestamps are written as local timestamps in the time zone requested for the export, dates as dates and UUIDs as
+ * fixed length UUIDs. Typed values are stored as they are given, and text given for a typed column is parsed. A value
+ * that cannot be parsed fails the write with an {@link IllegalArgumentException} naming the column, rather than being
+ * lost from the export.
+ */
+public class ParquetExportWriter implements ExportWriter {
+
+    // accepts the default export timestamp format, LocalDateTime.toString and java.sql.Timestamp.toString
+    private static final DateTimeFormatter TIMESTAMP_PARSER = new DateTimeFormatterBuilder()
+        .append(DateTimeFormatter.ISO_LOCAL_DATE)
+        .optionalStart().appendLiteral('T').optionalEnd()
+        .optionalStart().appendLiteral(' ').optionalEnd()
+        .append(DateTimeFormatter.ISO_LOCAL_TIME)
+        .toFormatter();
+
+    private final ParquetWriter<Object[]> writer;
+
+    private final ZonedDateTimeConverter zonedDateTimeConverter;
+
+    // the values of the record being written, handed to the Parquet writer as it is ended
+    private final Object[] record;
+
+    private int column;
+
+    public ParquetExportWriter(OutputStream outputStream,
+                               String[] headers,
+                               ExportColumnType[] columnTypes,
+                               ZonedDateTimeConverter zonedDateTimeConverter,
+                               long rowGroupSize,
+                               int pageSize,
+                               CompressionCodecName compressionCodec) throws IOException {
+        var schema = getSchema(headers, columnTypes);
+        this.zonedDateTimeConverter = zonedDateTimeConverter;
+        this.record = new Object[headers.length];
+
+        this.writer = new Builder(new StreamOutputFile(outputStream), schema, columnTypes)
+            .withConf(new Configuration(false))
+            .withRowGroupSize(rowGroupSize)
+            .withPageSize(pageSize)
+            .withCompressionCodec(compressionCodec)
+            .build();
+    }
+
+    @Override
+    public void startRecord() {
+        Arrays.fill(record, null);
+        column = 0;
+    }
+
+    @Override
+    public void writeString(String value) {
+        setValue(value);
+    }
+
+    @Override
+    public void writeTimestamp(LocalDateTime value) {
+        setValue(value != null ? zonedDateTimeConverter.toLocalDateTime(value) : null);
+    }
+
+    @Override
+    public void writeDate(LocalDate value) {
+        setValue(value);
+    }
+
+    @Override
+    public void writeUuid(UUID value) {
+        setValue(value);
+    }
+
+    @Override
+    public void endRecord() throws IOException {
+        writer.write(record);
+    }
+
+    private void setValue(Object value) {
+        if (column < record.length) {
+            record[column] = value;
+        }
+        column++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static MessageType getSchema(String[] headers, ExportColumnType[] columnTypes) {
+        var builder = Types.buildMessage();
+
+        for (int i = 0; i < headers.length; i++) {
+            switch (columnTypes[i]) {
+                case TIMESTAMP -> builder.optional(PrimitiveTypeName.INT64).as(
+                    LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS)).named(
+                    headers[i]);
+                case DATE -> builder.optional(PrimitiveTypeName.INT32).as(LogicalTypeAnnotation.dateType()).named(
+                    headers[i]);
+                case UUID -> builder.optional(PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY).length(16).as(
+                    LogicalTypeAnnotation.uuidType()).named(headers[i]);
+                default -> builder.optional(PrimitiveTypeName.BINARY).as(LogicalTypeAnnotation.stringType()).named(
+                    headers[i]);
+            }
+        }
+
+        return builder.named("export");
+    }
+
+    private static class Builder extends ParquetWriter.Builder<Object[], Builder> {
+
+        private final MessageType schema;
+
+        private final ExportColumnType[] columnTypes;
+
+        Builder(OutputFile outputFile, MessageType schema, ExportColumnType[] columnTypes) {
+            super(outputFile);
+            this.schema = schema;
+            this.columnTypes = columnTypes;
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<Object[]> getWriteSupport(Configuration conf) {
+            return new RecordWriteSupport(schema, columnTypes);
+        }
+
+    }
+
+    private static class RecordWriteSupport extends WriteSupport<Object[]> {
+
+        private final MessageType schema;
+
+        private final ExportColumnType[] columnTypes;
+
+        private RecordConsumer recordConsumer;
+
+        RecordWriteSupport(MessageType schema, ExportColumnType[] columnTypes) {
+            this.schema = schema;
+            this.columnTypes = columnTypes;
+        }
+
+        @Override
+        public WriteContext init(Configuration configuration) {
+            return new WriteContext(schema, Map.of());
+        }
+
+        @Override
+        public void prepareForWrite(RecordConsumer recordConsumer) {
+            this.recordConsumer = recordConsumer;
+        }
+
+        @Override
+        public void write(Object[] record) {
+            recordConsumer.startMessage();
+
+            for (int i = 0; i < record.length; i++) {
+                var value = record[i];
+                if (value == null || (value instanceof String text && text.isEmpty()
+                    && columnTypes[i] != ExportColumnType.STRING)) {
+                    continue;
+                }
+
+                try {
+                    writeValue(i, value);
+                } catch (DateTimeParseException | IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                        String.format("Unable to write value %s to %s column %s", value, columnTypes[i],
+                            schema.getFieldName(i)), e);
+                }
+            }
+
+            recordConsumer.endMessage();
+        }
+
+        private void writeValue(int index, Object value) {
+            // parse before starting the field so that an unparseable value leaves the record unchanged
+            switch (columnTypes[index]) {
+                case TIMESTAMP -> {
+                    var timestamp = value instanceof LocalDateTime localDateTime ? localDateTime : LocalDateTime.parse(
+                        value.toString(), TIMESTAMP_PARSER);
+                    var micros = timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+                    recordConsumer.startField(schema.getFieldName(index), index);
+                    recordConsumer.addLong(micros);
+                }
+                case DATE -> {
+                    var date = value instanceof LocalDate localDate ? localDate : LocalDate.parse(value.toString());
+                    recordConsumer.startField(schema.getFieldName(index), index);
+                    recordConsumer.addInteger((int) date.toEpochDay());
+                }
+                case UUID -> {
+                    var uuid = value instanceof UUID typed ? typed : UUID.fromString(value.toString());
+                    var bytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(
+                        uuid.getLeastSignificantBits()).array();
+                    recordConsumer.startField(schema.getFieldName(index), index);
+                    recordConsumer.addBinary(Binary.fromConstantByteArray(bytes));
+                }
+                default -> {
+                    recordConsumer.startField(schema.getFieldName(index), index);
+                    recordConsumer.addBinary(Binary.fromString(value.toString()));
+                }
+            }
+            recordConsumer.endField(schema.getFieldName(index), index);
+        }
+
+    }
+
+    /**
+     * Exposes a plain output stream as a Parquet output file, tracking the position that the file writer needs for
+     * its footer offsets.
+     */
+    private static class StreamOutputFile implements OutputFile {
+
+        private final OutputStream outputStream;
+
+        StreamOutputFile(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) {
+            return new PositionOutputStream() {
+
+                private long position;
+
+                @Override
+                public long getPos() {
+                    return position;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    outputStream.write(b);
+                    position++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    outputStream.write(b, off, len);
+                    position += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    outputStream.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    outputStream.close();
+                }
+            };
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+            return create(blockSizeHint);
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+
+    }
+
+}
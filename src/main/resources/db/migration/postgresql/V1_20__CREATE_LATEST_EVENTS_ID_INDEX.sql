@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS audit_event_latest_events_case_type_id ON audit_event_latest_events (case_type, type, id);
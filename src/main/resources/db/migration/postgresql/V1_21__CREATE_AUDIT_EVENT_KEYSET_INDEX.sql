@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS idx_audit_events_case_type_timestamp_uuid_type ON audit_event(case_type, audit_timestamp, uuid, type) WHERE deleted = FALSE;
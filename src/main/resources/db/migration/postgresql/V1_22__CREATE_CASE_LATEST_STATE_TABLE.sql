@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS case_latest_state
+(
+    case_uuid              UUID        NOT NULL,
+    type                   TEXT        NOT NULL,
+    id                     BIGINT      NOT NULL,
+    uuid                   UUID        NOT NULL,
+    stage_uuid             UUID,
+    correlation_id         TEXT        NOT NULL,
+    raising_service        TEXT        NOT NULL,
+    audit_payload          JSONB,
+    namespace              TEXT        NOT NULL,
+    audit_timestamp        TIMESTAMP   NOT NULL,
+    user_id                TEXT        NOT NULL,
+    case_type              TEXT,
+    deleted                BOOLEAN     NOT NULL DEFAULT FALSE,
+
+    PRIMARY KEY (case_uuid, type)
+);
+
+CREATE INDEX IF NOT EXISTS idx_case_latest_state_case_type_timestamp ON case_latest_state(case_type, audit_timestamp);
@@ -0,0 +1,3 @@
+ALTER TABLE audit_event ADD COLUMN IF NOT EXISTS case_data JSONB;
+
+ALTER TABLE case_latest_state ADD COLUMN IF NOT EXISTS case_data JSONB;
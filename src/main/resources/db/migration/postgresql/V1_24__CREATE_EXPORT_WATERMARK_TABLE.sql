@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS export_watermark
+(
+    consumer               TEXT        NOT NULL,
+    case_type              TEXT        NOT NULL,
+    export_type            TEXT        NOT NULL,
+    last_id                BIGINT      NOT NULL,
+    committed_at           TIMESTAMP   NOT NULL,
+
+    PRIMARY KEY (consumer, case_type, export_type)
+);
+
+CREATE INDEX IF NOT EXISTS idx_audit_events_case_type_id ON audit_event(case_type, id) WHERE deleted = FALSE;
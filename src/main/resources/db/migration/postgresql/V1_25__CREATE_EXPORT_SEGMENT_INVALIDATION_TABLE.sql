@@ -0,0 +1,10 @@
+CREATE SEQUENCE IF NOT EXISTS export_segment_version;
+
+CREATE TABLE IF NOT EXISTS export_segment_invalidation
+(
+    case_type              TEXT        NOT NULL,
+    day                    DATE        NOT NULL,
+    version                BIGINT      NOT NULL,
+
+    PRIMARY KEY (case_type, day)
+);
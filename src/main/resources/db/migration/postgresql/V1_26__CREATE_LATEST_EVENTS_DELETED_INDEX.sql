@@ -0,0 +1 @@
+CREATE INDEX IF NOT EXISTS audit_event_latest_events_case_type_deleted ON audit_event_latest_events (case_type) WHERE type = 'CASE_CREATED' AND deleted;
@@ -0,0 +1,25 @@
+CREATE SEQUENCE IF NOT EXISTS audit_event_latest_events_version;
+
+-- every insert and update of a latest event takes a new version, so readers can read the rows changed since
+ALTER TABLE audit_event_latest_events
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT nextval('audit_event_latest_events_version');
+
+CREATE OR REPLACE FUNCTION versionLatestAuditEvents() RETURNS TRIGGER AS
+$BODY$
+BEGIN
+    NEW.version = nextval('audit_event_latest_events_version');
+
+    RETURN NEW;
+END;
+$BODY$
+language plpgsql;
+
+CREATE TRIGGER auditEventLatestEventsVersion
+    BEFORE UPDATE ON audit_event_latest_events
+    FOR EACH ROW
+EXECUTE PROCEDURE versionLatestAuditEvents();
+
+CREATE INDEX IF NOT EXISTS audit_event_latest_events_case_type_version ON audit_event_latest_events (case_type, type, version);
+
+-- deleted cases are read as changed rows, so are no longer looked up apart
+DROP INDEX IF EXISTS audit_event_latest_events_case_type_deleted;
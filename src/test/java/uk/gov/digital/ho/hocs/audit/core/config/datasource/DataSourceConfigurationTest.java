@@ -0,0 +1,71 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+
+import java.time.Duration;
+
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = { "audit.datasource.replica.url=${spring.datasource.url}",
+    "audit.datasource.replica.lag-check-interval=PT1S", "spring.datasource.hikari.maximum-pool-size=2",
+    "audit.datasource.replica.hikari.maximum-pool-size=2" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// both pools point at the test database, so close them rather than hold its connections for the other tests
+@DirtiesContext
+public class DataSourceConfigurationTest {
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void shouldRouteReadOnlyTransactionsToTheReplica() {
+        await().atMost(Duration.ofSeconds(10)).until(replicaLagMonitor::isAvailable);
+
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        double replicaConnections = getConnections("replica");
+
+        transactionTemplate.executeWithoutResult(status -> auditRepository.count());
+
+        Assertions.assertEquals(replicaConnections + 1, getConnections("replica"));
+    }
+
+    @Test
+    public void shouldRouteWritesToThePrimary() {
+        double primaryConnections = getConnections("primary");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> auditRepository.count());
+
+        Assertions.assertEquals(primaryConnections + 1, getConnections("primary"));
+    }
+
+    @Test
+    public void shouldRecordMetricsForEachPool() {
+        Assertions.assertNotNull(meterRegistry.find("hikaricp.connections").tag("pool", "primary").gauge());
+        Assertions.assertNotNull(meterRegistry.find("hikaricp.connections").tag("pool", "replica").gauge());
+    }
+
+    private double getConnections(String pool) {
+        return meterRegistry.get("audit.datasource.connections").tag("pool", pool).tag("fallback",
+            "false").counter().count();
+    }
+
+}
@@ -0,0 +1,76 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ReadReplicaRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+
+    private final Connection replicaConnection = mock(Connection.class);
+
+    private final ReplicaLagMonitor replicaLagMonitor = mock(ReplicaLagMonitor.class);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReadReplicaRoutingDataSource dataSource;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        var primary = mock(DataSource.class);
+        given(primary.getConnection()).willReturn(primaryConnection);
+        var replica = mock(DataSource.class);
+        given(replica.getConnection()).willReturn(replicaConnection);
+
+        meterRegistry = new SimpleMeterRegistry();
+        dataSource = new ReadReplicaRoutingDataSource(primary, replica, replicaLagMonitor, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void shouldRouteReadOnlyTransactionsToTheReplica() throws SQLException {
+        given(replicaLagMonitor.isAvailable()).willReturn(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        Assertions.assertSame(replicaConnection, dataSource.getConnection());
+        Assertions.assertEquals(1, getConnections("replica", "false"));
+    }
+
+    @Test
+    public void shouldRouteWritesToThePrimary() throws SQLException {
+        given(replicaLagMonitor.isAvailable()).willReturn(true);
+
+        Assertions.assertSame(primaryConnection, dataSource.getConnection());
+        Assertions.assertEquals(1, getConnections("primary", "false"));
+    }
+
+    @Test
+    public void shouldFallBackToThePrimaryWhenTheReplicaIsBehind() throws SQLException {
+        given(replicaLagMonitor.isAvailable()).willReturn(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        Assertions.assertSame(primaryConnection, dataSource.getConnection());
+        Assertions.assertEquals(1, getConnections("primary", "true"));
+    }
+
+    private double getConnections(String pool, String fallback) {
+        return meterRegistry.get("audit.datasource.connections").tag("pool", pool).tag("fallback",
+            fallback).counter().count();
+    }
+
+}
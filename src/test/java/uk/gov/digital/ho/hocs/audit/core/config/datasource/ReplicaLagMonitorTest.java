@@ -0,0 +1,80 @@
+package uk.gov.digital.ho.hocs.audit.core.config.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ReplicaLagMonitorTest {
+
+    private final JdbcTemplate replica = mock(JdbcTemplate.class);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        replicaLagMonitor = new ReplicaLagMonitor(replica, meterRegistry, Duration.ofSeconds(30),
+            Duration.ofSeconds(10));
+    }
+
+    @Test
+    public void shouldBeUnavailableUntilChecked() {
+        Assertions.assertFalse(replicaLagMonitor.isAvailable());
+    }
+
+    @Test
+    public void shouldBeAvailableWithinTheAllowedLag() {
+        given(replica.queryForObject(ReplicaLagMonitor.REPLICA_LAG_QUERY, Double.class)).willReturn(5.0);
+
+        replicaLagMonitor.check();
+
+        Assertions.assertTrue(replicaLagMonitor.isAvailable());
+        Assertions.assertEquals(5.0, meterRegistry.get("audit.datasource.replica.lag").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("audit.datasource.replica.available").gauge().value());
+    }
+
+    @Test
+    public void shouldBeUnavailableWhenBehind() {
+        given(replica.queryForObject(ReplicaLagMonitor.REPLICA_LAG_QUERY, Double.class)).willReturn(5.0, 45.0);
+
+        replicaLagMonitor.check();
+        replicaLagMonitor.check();
+
+        Assertions.assertFalse(replicaLagMonitor.isAvailable());
+        Assertions.assertEquals(0.0, meterRegistry.get("audit.datasource.replica.available").gauge().value());
+    }
+
+    @Test
+    public void shouldBeUnavailableWhenNotStreaming() {
+        given(replica.queryForObject(ReplicaLagMonitor.REPLICA_LAG_QUERY, Double.class)).willReturn(5.0, null);
+
+        replicaLagMonitor.check();
+        replicaLagMonitor.check();
+
+        Assertions.assertFalse(replicaLagMonitor.isAvailable());
+        Assertions.assertTrue(Double.isNaN(replicaLagMonitor.getLagSeconds()));
+    }
+
+    @Test
+    public void shouldBeUnavailableWhenTheCheckFails() {
+        given(replica.queryForObject(ReplicaLagMonitor.REPLICA_LAG_QUERY, Double.class)).willReturn(5.0).willThrow(
+            new DataAccessResourceFailureException("Connection refused"));
+
+        replicaLagMonitor.check();
+        replicaLagMonitor.check();
+
+        Assertions.assertFalse(replicaLagMonitor.isAvailable());
+        Assertions.assertTrue(Double.isNaN(replicaLagMonitor.getLagSeconds()));
+    }
+
+}
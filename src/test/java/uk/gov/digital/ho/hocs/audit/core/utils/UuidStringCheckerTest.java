@@ -33,4 +33,20 @@ public class UuidStringCheckerTest {
         Assertions.assertFalse(UuidStringChecker.isUUID("TEST"));
     }
 
+    @Test
+    public void shouldReturnFalseWithMisplacedHyphens() {
+        Assertions.assertFalse(UuidStringChecker.isUUID("0000000-00000-0000-0000-000000000000"));
+        Assertions.assertFalse(UuidStringChecker.isUUID("00000000-0000-0000-0000-00000000000g"));
+    }
+
+    @Test
+    public void shouldParseBitsOfUuidString() {
+        var uuid = UUID.randomUUID();
+
+        Assertions.assertEquals(uuid.getMostSignificantBits(),
+            UuidStringChecker.mostSignificantBits(uuid.toString().toUpperCase(Locale.ROOT)));
+        Assertions.assertEquals(uuid.getLeastSignificantBits(),
+            UuidStringChecker.leastSignificantBits(uuid.toString()));
+    }
+
 }
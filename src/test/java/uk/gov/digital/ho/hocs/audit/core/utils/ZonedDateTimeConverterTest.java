@@ -3,9 +3,16 @@ package uk.gov.digital.ho.hocs.audit.core.utils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.time.zone.ZoneRulesException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 public class ZonedDateTimeConverterTest {
 
@@ -99,4 +106,48 @@ public class ZonedDateTimeConverterTest {
         Assertions.assertThrows(ZoneRulesException.class, () -> new ZonedDateTimeConverter(null, "INVALID"));
     }
 
+    @Test
+    public void shouldMatchZoneRulesAcrossTransitions() {
+        String[] zones = { "Europe/London", "UTC", "America/New_York", "Australia/Lord_Howe", "Pacific/Apia" };
+
+        for (String source : zones) {
+            for (String target : zones) {
+                assertMatchesZoneRules(null, source, target);
+            }
+        }
+        assertMatchesZoneRules("dd/MM/yyyy HH:mm:ss", "Europe/London", "America/New_York");
+    }
+
+    private static void assertMatchesZoneRules(String format, String source, String target) {
+        var converter = new ZonedDateTimeConverter(format, target, ZoneId.of(source));
+        var formatter = DateTimeFormatter.ofPattern(format != null ? format : "yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+
+        // a sweep across 2011 and 2012, which include the Samoa date line change, and each minute around transitions
+        List<LocalDateTime> times = new ArrayList<>();
+        var step = Duration.ofSeconds(6007).plusNanos(123_456_789);
+        for (var time = LocalDateTime.of(2011, 1, 1, 0, 0); time.getYear() < 2013; time = time.plus(step)) {
+            times.add(time);
+        }
+        for (String zone : List.of(source, target)) {
+            var rules = ZoneId.of(zone).getRules();
+            for (var transition = rules.nextTransition(Instant.parse("2011-01-01T00:00:00Z"));
+                 transition != null && transition.getInstant().isBefore(Instant.parse("2013-01-01T00:00:00Z"));
+                 transition = rules.nextTransition(transition.getInstant())) {
+                var around = transition.getDateTimeBefore().minusHours(3);
+                for (int minute = 0; minute < 6 * 60; minute++) {
+                    times.add(around.plusSeconds(minute * 61L).plusNanos(999_999));
+                }
+            }
+        }
+        List<LocalDateTime> shuffled = new ArrayList<>(times);
+        Collections.shuffle(shuffled, new Random(1));
+        times.addAll(shuffled);
+
+        for (LocalDateTime time : times) {
+            String expected = time.atZone(ZoneId.of(source)).withZoneSameInstant(ZoneId.of(target)).toLocalDateTime()
+                .format(formatter);
+            Assertions.assertEquals(expected, converter.convert(time), source + " to " + target + " at " + time);
+        }
+    }
+
 }
@@ -1,28 +1,53 @@
 package uk.gov.digital.ho.hocs.audit.entrypoint;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.csv.CSVRecord;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.SomuTypeDto;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
 
 import static org.mockito.BDDMockito.given;
 import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.test.context.jdbc.SqlConfig.TransactionMode.ISOLATED;
 
 @ActiveProfiles({"local", "extracts"})
 public class DataExportResourceTest extends BaseExportResourceTest {
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeEach
     public void setup() {
         given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
@@ -43,6 +68,66 @@ public class DataExportResourceTest extends BaseExportResourceTest {
         Assertions.assertEquals(1, rows.size());
     }
 
+    @Test
+    public void exportTypeExportWithCompression() throws IOException {
+        ResponseEntity<byte[]> result = restTemplate.exchange(
+            getExportUri("/export/TEST?fromDate=2020-01-01&toDate=2022-01-01&exportType=CASE_DATA&compression=gzip"),
+            GET, HttpEntity.EMPTY, byte[].class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(getFileName("test", "case_data") + ".gz",
+            result.getHeaders().getContentDisposition().getFilename());
+
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(result.getBody()))) {
+            var body = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            var rows = getCSVRows(body).stream().map(CSVRecord::toList).collect(Collectors.toList());
+            Assertions.assertEquals(1, rows.size());
+        }
+    }
+
+    @Test
+    public void exportTypeExportAsParquet() {
+        ResponseEntity<byte[]> result = restTemplate.exchange(
+            getExportUri("/export/TEST?fromDate=2020-01-01&toDate=2022-01-01&exportType=CASE_DATA&format=parquet"),
+            GET, HttpEntity.EMPTY, byte[].class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("application/vnd.apache.parquet", result.getHeaders().getContentType().toString());
+        Assertions.assertEquals(getFileName("test", "case_data").replace(".csv", ".parquet"),
+            result.getHeaders().getContentDisposition().getFilename());
+
+        var body = result.getBody();
+        Assertions.assertEquals("PAR1", new String(body, 0, 4, StandardCharsets.US_ASCII));
+        Assertions.assertEquals("PAR1", new String(body, body.length - 4, 4, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void exportTypeExportAsNdjson() {
+        ResponseEntity<String> result = restTemplate.exchange(
+            getExportUri("/export/TEST?fromDate=2020-01-01&toDate=2022-01-01&exportType=CASE_DATA&format=ndjson"),
+            GET, HttpEntity.EMPTY, String.class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(getFileName("test", "case_data").replace(".csv", ".ndjson"),
+            result.getHeaders().getContentDisposition().getFilename());
+
+        // unlike the CSV export there is no header line, so an export without data is empty
+        Assertions.assertNull(result.getBody());
+    }
+
+    @Test
+    public void exportTypeReportFailsIfCompressionIsInvalid() {
+        ResponseEntity<String> result = restTemplate.exchange(
+            getExportUri("/export/TEST?fromDate=2020-01-01&toDate=2022-01-01&exportType=CASE_DATA&compression=br"),
+            GET, HttpEntity.EMPTY, String.class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
     @Test
     public void exportTypeReportFailsIfFromDateNotSpecified() {
         ResponseEntity<String> result = restTemplate.exchange(
@@ -61,6 +146,29 @@ public class DataExportResourceTest extends BaseExportResourceTest {
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
     }
 
+    @Test
+    public void exportEstimate() {
+        ResponseEntity<Map> result = restTemplate.exchange(
+            getExportUri("/export/TEST/estimate?fromDate=2020-01-01&toDate=2022-01-01&exportType=CASE_DATA"), GET,
+            HttpEntity.EMPTY, Map.class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals("CASE_DATA", result.getBody().get("exportType"));
+        Assertions.assertTrue(((Number) result.getBody().get("rows")).longValue() > 0);
+        Assertions.assertTrue(((Number) result.getBody().get("bytes")).longValue() > 0);
+    }
+
+    @Test
+    public void exportEstimateFailsIfExportTypeIsInvalid() {
+        ResponseEntity<String> result = restTemplate.exchange(
+            getExportUri("/export/TEST/estimate?fromDate=2020-01-01&toDate=2022-01-01&exportType=TEST"), GET,
+            HttpEntity.EMPTY, String.class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
     @Test
     public void exportTypeReportFailsIfExportTypeIsInvalid() {
         ResponseEntity<String> result = restTemplate.exchange(
@@ -71,6 +179,73 @@ public class DataExportResourceTest extends BaseExportResourceTest {
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
     }
 
+    @Test
+    public void bundleExport() throws IOException {
+        ResponseEntity<byte[]> result = restTemplate.exchange(
+            getExportUri("/export/TEST/bundle?fromDate=2020-01-01&toDate=2022-01-01&exportTypes=ALLOCATIONS,DOCUMENTS"),
+            GET, HttpEntity.EMPTY, byte[].class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.OK, result.getStatusCode());
+        Assertions.assertEquals(String.format("test-bundle-%s.zip", LocalDate.now()),
+            result.getHeaders().getContentDisposition().getFilename());
+
+        Set<String> entries = new LinkedHashSet<>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(result.getBody()))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        Assertions.assertEquals(Set.of(getFileName("test", "allocations"), getFileName("test", "documents")), entries);
+    }
+
+    @Test
+    public void bundleExportFailsIfExportTypeCannotBeBundled() {
+        ResponseEntity<String> result = restTemplate.exchange(
+            getExportUri("/export/TEST/bundle?fromDate=2020-01-01&exportTypes=CASE_DATA"), GET, HttpEntity.EMPTY,
+            String.class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+    }
+
+    @Test
+    @Sql(scripts = "classpath:export/setup.sql", config = @SqlConfig(transactionMode = ISOLATED))
+    @Sql(scripts = "classpath:export/cleandown.sql",
+         config = @SqlConfig(transactionMode = ISOLATED),
+         executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    public void deltaExportStartsFromTheCommittedWatermark() throws IOException {
+        var uri = getExportUri("/export/TEST/delta?consumer=warehouse&exportType=ALLOCATIONS");
+
+        ResponseEntity<String> first = restTemplate.exchange(uri, GET, HttpEntity.EMPTY, String.class);
+
+        Assertions.assertEquals(HttpStatus.OK, first.getStatusCode());
+        Assertions.assertEquals(getFileName("test", "allocations-delta"),
+            first.getHeaders().getContentDisposition().getFilename());
+        Assertions.assertEquals(3, getCSVRows(first.getBody()).size());
+
+        // until the watermark is committed the same delta is exported again
+        ResponseEntity<String> second = restTemplate.exchange(uri, GET, HttpEntity.EMPTY, String.class);
+        Assertions.assertEquals(first.getBody(), second.getBody());
+
+        var watermark = first.getHeaders().getFirst(DataExportResource.WATERMARK_HEADER);
+        ResponseEntity<String> commit = restTemplate.exchange(uri + "&watermark=" + watermark, POST, HttpEntity.EMPTY,
+            String.class);
+        Assertions.assertEquals(HttpStatus.NO_CONTENT, commit.getStatusCode());
+
+        ResponseEntity<String> third = restTemplate.exchange(uri, GET, HttpEntity.EMPTY, String.class);
+        Assertions.assertEquals(1, getCSVRows(third.getBody()).size());
+    }
+
+    @Test
+    public void deltaExportFailsIfConsumerNotSpecified() {
+        ResponseEntity<String> result = restTemplate.exchange(
+            getExportUri("/export/TEST/delta?exportType=ALLOCATIONS"), GET, HttpEntity.EMPTY, String.class);
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
     @Test
     public void somuTypeExport() throws IOException {
         given(infoClient.getSomuType("TEST", "SOMU")).willReturn(
@@ -107,4 +282,70 @@ public class DataExportResourceTest extends BaseExportResourceTest {
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
     }
 
+    @Test
+    public void exportIsCancelledWhenTheClientDisconnects() throws Exception {
+        // the export's first query waits long enough for the client to go away while it runs
+        var query = new CompletableFuture<DataAccessException>();
+        given(infoClient.getCaseTypes()).willAnswer(invocation -> {
+            try {
+                jdbcTemplate.execute("SELECT pg_sleep(30)");
+                query.complete(null);
+            } catch (DataAccessException e) {
+                query.complete(e);
+                throw e;
+            }
+            return Set.of(new CaseTypeDto("Test", "a1", "TEST"));
+        });
+        double aborted = getAborted();
+        long start = System.nanoTime();
+
+        try (var socket = new Socket("localhost", URI.create(getExportUri("/")).getPort())) {
+            socket.getOutputStream().write(
+                "GET /export/TEST?fromDate=2020-01-01&exportType=ALLOCATIONS HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            Thread.sleep(500);
+            // resets the connection, as a client that is killed does, rather than half closing it
+            socket.setSoLinger(true, 0);
+        }
+
+        Assertions.assertNotNull(query.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 10);
+
+        // the abort is counted as the export returns, just after its query fails
+        for (int attempt = 0; attempt < 50 && getAborted() == aborted; attempt++) {
+            Thread.sleep(100);
+        }
+        Assertions.assertEquals(aborted + 1, getAborted());
+    }
+
+    @Test
+    public void exportCompletesForAHalfClosedClient() throws Exception {
+        // the export's first query outlasts a few polls of the connection
+        given(infoClient.getCaseTypes()).willAnswer(invocation -> {
+            jdbcTemplate.execute("SELECT pg_sleep(3)");
+            return Set.of(new CaseTypeDto("Test", "a1", "TEST"));
+        });
+        double aborted = getAborted();
+
+        try (var socket = new Socket("localhost", URI.create(getExportUri("/")).getPort())) {
+            socket.getOutputStream().write(
+                "GET /export/TEST?fromDate=2020-01-01&exportType=ALLOCATIONS HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            socket.shutdownOutput();
+            socket.setSoTimeout(10000);
+
+            var response = new String(socket.getInputStream().readNBytes(15), StandardCharsets.US_ASCII);
+            Assertions.assertEquals("HTTP/1.1 200 OK", response);
+        }
+
+        Assertions.assertEquals(aborted, getAborted());
+    }
+
+    private double getAborted() {
+        var counter = meterRegistry.find("audit.export.aborted").tag("exportType", "ALLOCATIONS").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
 }
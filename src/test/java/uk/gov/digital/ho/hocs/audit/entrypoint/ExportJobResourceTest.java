@@ -0,0 +1,156 @@
+package uk.gov.digital.ho.hocs.audit.entrypoint;
+
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.entrypoint.dto.ExportJobRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.http.HttpMethod.GET;
+
+@ActiveProfiles({"local", "extracts"})
+public class ExportJobResourceTest extends BaseExportResourceTest {
+
+    @BeforeEach
+    public void setup() {
+        given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
+    }
+
+    @Test
+    public void exportJobCompletesAndCanBeDownloaded() throws Exception {
+        var location = submit(caseDataRequest("gzip"), "user-1");
+
+        Assertions.assertEquals("COMPLETED", awaitCompletion(location, "user-1").get("status"));
+
+        ResponseEntity<byte[]> file = restTemplate.exchange(location + "/file", GET, withUser("user-1", null),
+            byte[].class);
+
+        Assertions.assertEquals(HttpStatus.OK, file.getStatusCode());
+        Assertions.assertEquals(getFileName("test", "case_data") + ".gz",
+            file.getHeaders().getContentDisposition().getFilename());
+
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(file.getBody()))) {
+            var body = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            var rows = getCSVRows(body).stream().map(CSVRecord::toList).collect(Collectors.toList());
+            Assertions.assertEquals(1, rows.size());
+        }
+    }
+
+    @Test
+    public void exportJobDownloadCanBeResumed() throws Exception {
+        var location = submit(caseDataRequest("gzip"), "user-1");
+        awaitCompletion(location, "user-1");
+
+        byte[] full = restTemplate.exchange(location + "/file", GET, withUser("user-1", null), byte[].class)
+            .getBody();
+
+        ResponseEntity<byte[]> partial = restTemplate.exchange(location + "/file", GET,
+            withUser("user-1", "bytes=10-"), byte[].class);
+
+        Assertions.assertEquals(HttpStatus.PARTIAL_CONTENT, partial.getStatusCode());
+        Assertions.assertEquals(full.length - 10, partial.getBody().length);
+        Assertions.assertEquals(full[10], partial.getBody()[0]);
+    }
+
+    @Test
+    public void exportJobIsNotVisibleToOtherUsers() throws Exception {
+        var location = submit(caseDataRequest(null), "user-1");
+
+        ResponseEntity<String> result = restTemplate.exchange(location, GET, withUser("user-2", null),
+            String.class);
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+    }
+
+    @Test
+    public void exportJobFailsIfExportTypeNotSpecified() {
+        var request = new ExportJobRequest("TEST", null, LocalDate.parse("2020-01-01"), null, false, false, null,
+            null, null, null, null, null, null, false, null, null);
+
+        ResponseEntity<String> result = restTemplate.postForEntity(getExportUri("/export/jobs"),
+            new HttpEntity<>(request, jsonHeaders("user-1")), String.class);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    public void exportJobFailsIfCompressionIsInvalid() {
+        ResponseEntity<String> result = restTemplate.postForEntity(getExportUri("/export/jobs"),
+            new HttpEntity<>(caseDataRequest("br"), jsonHeaders("user-1")), String.class);
+
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    public void unknownExportJobReturnsNotFound() {
+        ResponseEntity<String> result = restTemplate.exchange(
+            getExportUri("/export/jobs/7a5a6a0c-5b7a-4b43-9e59-0a4d6e6b54f1"), GET, withUser("user-1", null),
+            String.class);
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+    }
+
+    private ExportJobRequest caseDataRequest(String compression) {
+        return new ExportJobRequest("TEST", "case_data", LocalDate.parse("2020-01-01"),
+            LocalDate.parse("2022-01-01"), false, false, null, null, null, null, null, null, null, false, null,
+            compression);
+    }
+
+    private URI submit(ExportJobRequest request, String userId) {
+        ResponseEntity<Map> result = restTemplate.postForEntity(getExportUri("/export/jobs"),
+            new HttpEntity<>(request, jsonHeaders(userId)), Map.class);
+
+        Assertions.assertEquals(HttpStatus.ACCEPTED, result.getStatusCode());
+        Assertions.assertNotNull(result.getHeaders().getLocation());
+        return result.getHeaders().getLocation();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> awaitCompletion(URI location, String userId) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Map<String, Object> job = restTemplate.exchange(location, GET, withUser(userId, null), Map.class)
+                .getBody();
+
+            if ("COMPLETED".equals(job.get("status")) || "FAILED".equals(job.get("status"))) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        return Assertions.fail("Export job did not complete");
+    }
+
+    private HttpHeaders jsonHeaders(String userId) {
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Auth-UserId", userId);
+        return headers;
+    }
+
+    private HttpEntity<Void> withUser(String userId, String range) {
+        var headers = new HttpHeaders();
+        headers.set("X-Auth-UserId", userId);
+        if (range != null) {
+            headers.set(HttpHeaders.RANGE, range);
+        }
+        return new HttpEntity<>(headers);
+    }
+
+}
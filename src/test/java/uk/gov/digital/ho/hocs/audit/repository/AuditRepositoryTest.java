@@ -0,0 +1,168 @@
+package uk.gov.digital.ho.hocs.audit.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.SqlConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.springframework.test.context.jdbc.SqlConfig.TransactionMode.ISOLATED;
+
+@SpringBootTest(properties = "audit.export.chunk-size=2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Sql(scripts = "classpath:export/setup.sql", config = @SqlConfig(transactionMode = ISOLATED))
+@Sql(scripts = "classpath:export/cleandown.sql",
+     config = @SqlConfig(transactionMode = ISOLATED),
+     executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class AuditRepositoryTest {
+
+    private static final String[] EVENTS = { "CASE_CREATED", "CASE_UPDATED", "STAGE_ALLOCATED_TO_TEAM",
+        "DOCUMENT_CREATED" };
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private static final LocalDateTime TO = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void shouldReadEventsInKeysetOrderAcrossChunks() {
+        var events = auditRepository.findAuditDataByDateRangeAndEvents(FROM, TO, EVENTS, "a1").collect(
+            Collectors.toList());
+
+        Assertions.assertEquals(10, events.size());
+        Assertions.assertEquals(
+            events.stream().sorted(Comparator.comparing(AuditEvent::getAuditTimestamp).thenComparing(
+                AuditEvent::getUuid).thenComparing(AuditEvent::getType)).map(AuditEvent::getUuid).toList(),
+            events.stream().map(AuditEvent::getUuid).toList());
+        Assertions.assertEquals(events.size(), events.stream().map(
+            event -> event.getUuid() + event.getType() + event.getAuditTimestamp()).distinct().count());
+    }
+
+    @Test
+    public void shouldLeaveOutEventsAuditedAfterTheExportStarted() {
+        var iterator = auditRepository.findAuditDataByDateRangeAndEvents(FROM, TO, EVENTS, "a1").iterator();
+
+        List<AuditEvent> events = new ArrayList<>();
+        events.add(iterator.next());
+
+        var audited = auditRepository.save(
+            new AuditEvent(UUID.fromString("10000000-0000-0000-0000-0000000000a1"), null, "correlation", "service-1",
+                "{}", "env-1", LocalDateTime.of(2023, 6, 1, 0, 0), "CASE_UPDATED", "user"));
+
+        iterator.forEachRemaining(events::add);
+
+        Assertions.assertEquals(10, events.size());
+        Assertions.assertTrue(events.stream().noneMatch(event -> event.getUuid().equals(audited.getUuid())));
+    }
+
+    @Test
+    public void shouldProjectPayloadFieldsInPlaceOfThePayload() {
+        var events = auditRepository.findAuditDataByDateRangeAndEvents(FROM, TO,
+            new String[] { "STAGE_ALLOCATED_TO_TEAM", "CASE_UPDATED" }, "a1",
+            new String[] { "stage", "data.PreviousCaseReference", "missing" }).toList();
+
+        Assertions.assertEquals(6, events.size());
+        Assertions.assertTrue(events.stream().allMatch(event -> event.getAuditPayload() == null));
+        Assertions.assertTrue(events.stream().filter(event -> event.getType().equals("STAGE_ALLOCATED_TO_TEAM")).allMatch(
+            event -> Arrays.equals(new String[] { "TEST", null, null }, event.getPayloadFields())));
+        Assertions.assertTrue(events.stream().filter(event -> event.getType().equals("CASE_UPDATED")).allMatch(
+            event -> Arrays.equals(new String[] { null, "TEST-1", null }, event.getPayloadFields())));
+    }
+
+    @Test
+    public void shouldBoundTheCaseTypeByItsCommittedEvents() throws Exception {
+        Assertions.assertEquals(11, auditRepository.findCommittedAuditEventId("a1"));
+        Assertions.assertEquals(0, auditRepository.findCommittedAuditEventId("z9"));
+
+        try (var first = dataSource.getConnection(); var second = dataSource.getConnection()) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            audit(first);
+            long secondId = audit(second);
+            second.commit();
+
+            // the event audited first is still open below the one committed, so the bound waits for it
+            var bound = CompletableFuture.supplyAsync(() -> auditRepository.findCommittedAuditEventId("a1"));
+            Assertions.assertThrows(TimeoutException.class, () -> bound.get(1, TimeUnit.SECONDS));
+
+            first.commit();
+            Assertions.assertEquals(secondId, bound.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void shouldReadTheCaseReferencesChangedSinceAVersion() throws SQLException {
+        long loaded = auditRepository.findCommittedLatestEventVersion();
+        Assertions.assertEquals(List.of("10000000-0000-0000-0000-000000000000 TEST false",
+            "20000000-0000-0000-0000-000000000000 TEST false"), readCaseReferences(0, loaded));
+
+        try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+            statement.executeUpdate(
+                "UPDATE audit_event SET deleted = true WHERE case_uuid = '20000000-0000-0000-0000-000000000000'");
+        }
+
+        // the delete updates the case's row in place, which gives it a new version
+        long deleted = auditRepository.findCommittedLatestEventVersion();
+        Assertions.assertEquals(List.of("20000000-0000-0000-0000-000000000000 TEST true"),
+            readCaseReferences(loaded, deleted));
+        Assertions.assertEquals(List.of("10000000-0000-0000-0000-000000000000 TEST false"),
+            readCaseReferences(0, deleted));
+    }
+
+    private List<String> readCaseReferences(long afterVersion, long lastVersion) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            try (var references = auditRepository.getCaseReferencesForTypeChangedBetween("a1", afterVersion,
+                lastVersion)) {
+                return references.map(reference -> reference.getCaseUUID() + " " + reference.getCaseReference() + " "
+                    + reference.getDeleted()).sorted().toList();
+            }
+        });
+    }
+
+    // audits an event as the service does, holding the committed bound before drawing the event's id
+    private static long audit(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("SELECT 1 FROM pg_advisory_xact_lock_shared(hashtext('audit_event.id'))");
+            try (var result = statement.executeQuery("""
+                INSERT INTO audit_event (uuid, case_uuid, correlation_id, raising_service, audit_payload, namespace,
+                    audit_timestamp, type, user_id, case_type)
+                VALUES (gen_random_uuid(), '10000000-0000-0000-0000-000000000000', 'correlation', 'service-1', '{}',
+                    'env-1', now(), 'CASE_UPDATED', 'user', 'a1')
+                RETURNING id
+                """)) {
+                result.next();
+                return result.getLong(1);
+            }
+        }
+    }
+
+}
@@ -156,4 +156,20 @@ public class AuditEventServiceTest {
         Assertions.assertTrue(audits.get(0).getDeleted());
     }
 
+    @Test
+    public void shouldInvalidateExportSegmentsWhileTheCacheIsDisabled() {
+        var caseUuid = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+        var day = LocalDate.of(2023, 1, 1);
+
+        // the cache is read on other pods, so events audited here invalidate it even though it is disabled here
+        auditService.createAudit(caseUuid, null, correlationID, raisingService, auditPayload, namespace,
+            day.atStartOfDay(), auditType, userID);
+        var audited = auditRepository.findExportSegmentVersions("a1", day, day);
+        Assertions.assertEquals(1, audited.size());
+
+        auditService.deleteCaseAudit(caseUuid, true);
+        Assertions.assertTrue(auditRepository.findExportSegmentVersions("a1", day, day).get(0).getVersion()
+            > audited.get(0).getVersion());
+    }
+
 }
@@ -19,7 +19,8 @@ import java.util.List;
 
 import static org.springframework.test.context.jdbc.SqlConfig.TransactionMode.ISOLATED;
 
-@SpringBootTest
+// tests leave the info service unstubbed, which must not hide the case types of later tests
+@SpringBootTest(properties = "audit.export.case-data.projection-miss-timeout=PT0S")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 @Sql(scripts = "classpath:export/setup.sql", config = @SqlConfig(transactionMode = ISOLATED))
 @Sql(scripts = "classpath:export/cleandown.sql",
@@ -0,0 +1,134 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.config.CaseDataFieldReader;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+import uk.gov.digital.ho.hocs.audit.service.domain.CaseDataProjection;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ActiveProfiles({ "extracts", "local" })
+public class CaseDataProjectionServiceTest extends BaseExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 1);
+
+    private static final UUID CASE_UUID = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+
+    @Autowired
+    private CaseDataProjectionService caseDataProjectionService;
+
+    @Autowired
+    private CaseLatestStateService caseLatestStateService;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CaseDataFieldReader caseDataFieldReader;
+
+    @BeforeEach
+    public void setup() {
+        given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
+    }
+
+    @Test
+    public void shouldProjectTheConfiguredFieldsAsEventsAreAudited() throws JsonProcessingException {
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1",
+            "{ \"data\": { \"PreviousCaseReference\": \"TEST-2\", \"Unexported\": \"value\" }, \"reference\": \"TEST\" }",
+            "env-1", LocalDateTime.of(2023, 6, 1, 0, 0), "CASE_UPDATED", "user");
+
+        var auditEvent = auditRepository.findAuditDataByCaseUUID(CASE_UUID).get(0);
+        var projection = objectMapper.readValue(auditEvent.getCaseData(), CaseDataProjection.class);
+
+        Assertions.assertEquals("TEST", projection.getReference());
+        Assertions.assertEquals(Map.of("PreviousCaseReference", "TEST-2"), projection.getData());
+    }
+
+    @Test
+    public void shouldNotProjectOtherEvents() {
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 1, 0, 0), "CASE_NOTE_CREATED", "user");
+
+        Assertions.assertNull(auditRepository.findAuditDataByCaseUUID(CASE_UUID).get(0).getCaseData());
+    }
+
+    @Test
+    public void shouldReadTheProjectionOnlyWhenCurrent() throws JsonProcessingException {
+        var auditEvent = auditEvent("{ \"data\": {}, \"reference\": \"PAYLOAD\" }");
+        var projection = (ObjectNode) objectMapper.readTree(
+            caseDataProjectionService.project(auditEvent("{ \"data\": {}, \"reference\": \"PROJECTION\" }")));
+
+        auditEvent.setCaseData(projection.toString());
+        Assertions.assertEquals("PROJECTION", caseDataProjectionService.read(auditEvent).getReference());
+
+        auditEvent.setCaseData(projection.put("version", "stale").toString());
+        Assertions.assertEquals("PAYLOAD", caseDataProjectionService.read(auditEvent).getReference());
+    }
+
+    @Test
+    public void shouldReprojectEventsWithoutAProjection() {
+        caseLatestStateService.backfill("TEST", FROM);
+
+        Assertions.assertEquals(6, caseDataProjectionService.reproject("TEST", FROM));
+        Assertions.assertEquals(0, caseDataProjectionService.reproject("TEST", FROM));
+
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(
+            status -> Assertions.assertTrue(auditRepository.findCaseLatestStateByDateRangeAndEvents(
+                LocalDateTime.of(FROM, LocalTime.MIN), LocalDateTime.now(), CaseDataExportService.EVENTS,
+                "a1").map(AuditEvent::getCaseData).allMatch(Objects::nonNull)));
+    }
+
+    @Test
+    public void shouldNotAskAnUnavailableInfoServiceForEveryEvent() {
+        var unavailableInfoClient = mock(InfoClient.class);
+        given(unavailableInfoClient.getCaseTypes()).willThrow(new RuntimeException("Connection refused"));
+        var projectionService = new CaseDataProjectionService(objectMapper, auditRepository, unavailableInfoClient,
+            caseDataFieldReader, transactionManager, 1000, Duration.ofMinutes(1));
+
+        Assertions.assertNull(projectionService.project(auditEvent("{ \"data\": {}, \"reference\": \"TEST\" }")));
+        Assertions.assertNull(projectionService.project(auditEvent("{ \"data\": {}, \"reference\": \"TEST\" }")));
+
+        verify(unavailableInfoClient, times(1)).getCaseTypes();
+    }
+
+    private AuditEvent auditEvent(String auditPayload) {
+        return new AuditEvent(CASE_UUID, null, "correlation", "service-1", auditPayload, "env-1",
+            LocalDateTime.of(2023, 6, 1, 0, 0), "CASE_UPDATED", "user");
+    }
+
+}
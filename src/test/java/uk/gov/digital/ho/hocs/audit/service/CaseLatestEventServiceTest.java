@@ -0,0 +1,77 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@ActiveProfiles({ "extracts", "local" })
+public class CaseLatestEventServiceTest extends BaseExportServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    @Autowired
+    private CaseLatestEventService caseLatestEventService;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void shouldReadTheSameEventsAsTheLastEventQuery() {
+        var to = LocalDateTime.of(LocalDate.now(), LocalTime.MAX);
+
+        // a case updated twice on one day and once again later, out of the order it is audited in
+        var caseUUID = UUID.fromString("20000000-0000-0000-0000-0000000000a1");
+        auditEventService.createAudit(caseUUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 2, 0, 0), "CASE_UPDATED", "user");
+        auditEventService.createAudit(caseUUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 1, 0, 0), "CASE_UPDATED", "user");
+        auditEventService.createAudit(caseUUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 1, 12, 0), "CASE_UPDATED", "user");
+
+        var expected = read(() -> auditRepository.findLastAuditDataByDateRangeAndEvents(FROM, to,
+            CaseDataExportService.EVENTS, "a1"));
+
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertEquals(expected,
+            read(() -> caseLatestEventService.findLatestEvents(FROM, to, CaseDataExportService.EVENTS, "a1")));
+    }
+
+    @Test
+    public void shouldEstimateFromThePlanner() {
+        Assertions.assertTrue(auditRepository.estimateAuditDataByDateRangeAndEvents(FROM, LocalDateTime.now(),
+            CaseDataExportService.EVENTS, "a1").getRows() > 0);
+        Assertions.assertFalse(caseLatestEventService.isReducedInApplication(FROM, LocalDateTime.now(),
+            CaseDataExportService.EVENTS, "a1"));
+    }
+
+    private List<UUID> read(Supplier<Stream<AuditEvent>> events) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        return transactionTemplate.execute(status -> {
+            try (var stream = events.get()) {
+                return stream.map(AuditEvent::getUuid).toList();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,113 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.mockito.BDDMockito.given;
+
+@ActiveProfiles({ "extracts", "local" })
+public class CaseLatestStateServiceTest extends BaseExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 1);
+
+    private static final UUID CASE_UUID = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+
+    @Autowired
+    private CaseLatestStateService caseLatestStateService;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setup() {
+        given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
+    }
+
+    @Test
+    public void shouldMatchTheEventsOnceBackfilled() {
+        Assertions.assertTrue(caseLatestStateService.check("TEST", FROM) > 0);
+
+        // each case is created and updated in one month and updated again today
+        Assertions.assertEquals(6, caseLatestStateService.backfill("TEST", FROM));
+
+        Assertions.assertEquals(0, caseLatestStateService.check("TEST", FROM));
+        Assertions.assertEquals(0, caseLatestStateService.backfill("TEST", FROM));
+    }
+
+    @Test
+    public void shouldReadTheSameEventsAsTheEventQuery() {
+        caseLatestStateService.backfill("TEST", FROM);
+
+        // the first case was updated after January 2020, so its latest event in the range is read from the events
+        assertSameEvents(FROM, LocalDate.of(2020, 1, 31));
+        assertSameEvents(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 31));
+        assertSameEvents(FROM, LocalDate.now());
+        assertSameEvents(LocalDate.now(), LocalDate.now());
+    }
+
+    @Test
+    public void shouldRecordEventsAsTheyAreAudited() {
+        caseLatestStateService.backfill("TEST", FROM);
+
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 1, 0, 0), "CASE_CREATED", "user");
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 2, 0, 0), "CASE_UPDATED", "user");
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1", "{}", "env-1",
+            LocalDateTime.of(2023, 6, 1, 12, 0), "CASE_UPDATED", "user");
+
+        Assertions.assertEquals(0, caseLatestStateService.check("TEST", FROM));
+        assertSameEvents(FROM, LocalDate.now());
+        assertSameEvents(LocalDate.of(2023, 6, 1), LocalDate.of(2023, 6, 1));
+    }
+
+    @Test
+    public void shouldLeaveOutDeletedCases() {
+        caseLatestStateService.backfill("TEST", FROM);
+
+        auditEventService.deleteCaseAudit(UUID.fromString("10000000-0000-0000-0000-000000000000"), true);
+
+        Assertions.assertEquals(0, caseLatestStateService.check("TEST", FROM));
+        assertSameEvents(FROM, LocalDate.now());
+    }
+
+    private void assertSameEvents(LocalDate from, LocalDate to) {
+        var dateFrom = LocalDateTime.of(from, LocalTime.MIN);
+        var dateTo = LocalDateTime.of(to, LocalTime.MAX);
+
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        var expected = transactionTemplate.execute(
+            status -> auditRepository.findLastAuditDataByDateRangeAndEvents(dateFrom, dateTo,
+                CaseDataExportService.EVENTS, "a1").map(AuditEvent::getUuid).collect(Collectors.toSet()));
+        var actual = transactionTemplate.execute(
+            status -> auditRepository.findCaseLatestStateByDateRangeAndEvents(dateFrom, dateTo,
+                CaseDataExportService.EVENTS, "a1").map(AuditEvent::getUuid).collect(Collectors.toSet()));
+
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertEquals(expected, actual);
+    }
+
+}
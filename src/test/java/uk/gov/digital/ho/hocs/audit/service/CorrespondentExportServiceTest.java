@@ -5,12 +5,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.exception.AuditExportException;
 import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Set;
+import java.util.UUID;
 
 import static org.mockito.BDDMockito.given;
 
@@ -19,6 +24,9 @@ public class CorrespondentExportServiceTest extends BaseExportServiceTest {
     @Autowired
     private CorrespondentExportService correspondentExportService;
 
+    @Autowired
+    private AuditRepository auditRepository;
+
     private ZonedDateTimeConverter zonedDateTimeConverter;
 
     @BeforeEach
@@ -43,4 +51,18 @@ public class CorrespondentExportServiceTest extends BaseExportServiceTest {
         Assertions.assertEquals(1, rows.size());
     }
 
+    @Test
+    public void shouldFailTheExportOnAMalformedValue() {
+        var audit = auditRepository.save(
+            new AuditEvent(UUID.fromString("10000000-0000-0000-0000-0000000000a1"), null, "correlation", "service-1",
+                "{\"uuid\":\"not-a-uuid\"}", "env-1", LocalDateTime.of(2023, 6, 1, 0, 0), "CORRESPONDENT_CREATED",
+                "user"));
+
+        var exception = Assertions.assertThrows(AuditExportException.class,
+            () -> correspondentExportService.export(LocalDate.of(2020, 1, 1), LocalDate.now().plusDays(1),
+                outputStream, "TEST", false, false, zonedDateTimeConverter));
+
+        Assertions.assertTrue(exception.getMessage().contains(audit.getUuid().toString()));
+    }
+
 }
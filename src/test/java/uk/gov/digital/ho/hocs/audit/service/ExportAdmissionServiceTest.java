@@ -0,0 +1,160 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.core.RequestData;
+import uk.gov.digital.ho.hocs.audit.core.exception.ExportCapacityException;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ExportAdmissionServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ExportAdmissionService exportAdmissionService;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        exportAdmissionService = new ExportAdmissionService(new RequestData(), meterRegistry, 2, 1, 2,
+            Duration.ofSeconds(5));
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldAdmitUpToTheLimits() {
+        exportAdmissionService.acquire("user-1");
+        exportAdmissionService.acquire("user-2");
+
+        Assertions.assertEquals(2, exportAdmissionService.getActive());
+        Assertions.assertEquals(0, exportAdmissionService.getQueued());
+    }
+
+    @Test
+    public void shouldQueueSecondExportForSameUserUntilReleased() throws Exception {
+        var permit = exportAdmissionService.acquire("user-1");
+
+        var second = executor.submit(() -> exportAdmissionService.acquire("user-1"));
+        awaitQueued(1);
+        Assertions.assertFalse(second.isDone());
+
+        permit.close();
+
+        Assertions.assertNotNull(second.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, exportAdmissionService.getActive());
+    }
+
+    @Test
+    public void shouldNotHoldUpOtherUsersBehindAUserAtTheirLimit() throws Exception {
+        exportAdmissionService.acquire("user-1");
+        executor.submit(() -> exportAdmissionService.acquire("user-1"));
+        awaitQueued(1);
+
+        exportAdmissionService.acquire("user-2");
+
+        Assertions.assertEquals(2, exportAdmissionService.getActive());
+        Assertions.assertEquals(1, exportAdmissionService.getQueued());
+    }
+
+    @Test
+    public void shouldAdmitQueuedExportsInArrivalOrder() throws Exception {
+        var first = exportAdmissionService.acquire("user-1");
+        exportAdmissionService.acquire("user-2");
+
+        var third = executor.submit(() -> exportAdmissionService.acquire("user-3"));
+        awaitQueued(1);
+        var fourth = executor.submit(() -> exportAdmissionService.acquire("user-4"));
+        awaitQueued(2);
+
+        first.close();
+
+        Assertions.assertNotNull(third.get(1, TimeUnit.SECONDS));
+        Assertions.assertFalse(fourth.isDone());
+    }
+
+    @Test
+    public void shouldRejectWhenQueueIsFull() throws Exception {
+        exportAdmissionService.acquire("user-1");
+        exportAdmissionService.acquire("user-2");
+        executor.submit(() -> exportAdmissionService.acquire("user-3"));
+        executor.submit(() -> exportAdmissionService.acquire("user-4"));
+        awaitQueued(2);
+
+        var exception = Assertions.assertThrows(ExportCapacityException.class,
+            () -> exportAdmissionService.acquire("user-5"));
+
+        Assertions.assertEquals(Duration.ofSeconds(5), exception.getRetryAfter());
+        Assertions.assertEquals(1,
+            meterRegistry.counter("audit.export.admission.rejected", "reason", "queue_full").count());
+    }
+
+    @Test
+    public void shouldRejectWhenWaitExpires() {
+        exportAdmissionService = new ExportAdmissionService(new RequestData(), meterRegistry, 1, 1, 2,
+            Duration.ofMillis(50));
+        exportAdmissionService.acquire("user-1");
+
+        Assertions.assertThrows(ExportCapacityException.class, () -> exportAdmissionService.acquire("user-2"));
+        Assertions.assertEquals(0, exportAdmissionService.getQueued());
+        Assertions.assertEquals(1,
+            meterRegistry.counter("audit.export.admission.rejected", "reason", "timeout").count());
+    }
+
+    @Test
+    public void shouldQueueJobsBeyondTheQueueAndWaitExpiry() throws Exception {
+        exportAdmissionService = new ExportAdmissionService(new RequestData(), meterRegistry, 1, 1, 0,
+            Duration.ofMillis(50));
+        var permit = exportAdmissionService.acquire("user-1");
+
+        var job = executor.submit(() -> exportAdmissionService.acquireForJob("user-2"));
+        awaitQueued(1);
+        Thread.sleep(100);
+        Assertions.assertFalse(job.isDone());
+
+        permit.close();
+
+        Assertions.assertNotNull(job.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, exportAdmissionService.getActive());
+    }
+
+    @Test
+    public void shouldOnlyReleaseOncePerPermit() {
+        var permit = exportAdmissionService.acquire("user-1");
+
+        permit.close();
+        permit.close();
+
+        Assertions.assertEquals(0, exportAdmissionService.getActive());
+    }
+
+    @Test
+    public void shouldReportQueueDepthAsGauge() throws Exception {
+        exportAdmissionService.acquire("user-1");
+        executor.submit(() -> exportAdmissionService.acquire("user-1"));
+        awaitQueued(1);
+
+        Assertions.assertEquals(1, meterRegistry.get("audit.export.admission.queued").gauge().value());
+        Assertions.assertEquals(1, meterRegistry.get("audit.export.admission.active").gauge().value());
+    }
+
+    private void awaitQueued(int queued) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && exportAdmissionService.getQueued() < queued; attempt++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(queued, exportAdmissionService.getQueued());
+    }
+
+}
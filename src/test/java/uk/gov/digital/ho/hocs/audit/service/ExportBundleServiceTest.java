@@ -0,0 +1,96 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipInputStream;
+
+import static org.mockito.BDDMockito.given;
+
+public class ExportBundleServiceTest extends BaseExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 1);
+
+    @Autowired
+    private ExportBundleService exportBundleService;
+
+    @Autowired
+    private List<DynamicExportService> dynamicExportServices;
+
+    private ZonedDateTimeConverter zonedDateTimeConverter;
+
+    @BeforeEach
+    public void setup() {
+        zonedDateTimeConverter = new ZonedDateTimeConverter();
+
+        given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
+    }
+
+    @Test
+    public void shouldBundleTheSameExportsAsExportedAlone() throws IOException {
+        exportBundleService.export(FROM, LocalDate.now(), outputStream, "TEST", List.of(), false, false,
+            zonedDateTimeConverter);
+
+        var entries = readEntries();
+        Assertions.assertEquals(exportBundleService.getExportTypes().size(), entries.size());
+        Assertions.assertFalse(exportBundleService.getExportTypes().contains(ExportType.CASE_DATA));
+
+        for (DynamicExportService service : dynamicExportServices) {
+            if (!exportBundleService.getExportTypes().contains(service.getExportType())) {
+                continue;
+            }
+
+            var expected = new ByteArrayOutputStream();
+            service.export(FROM, LocalDate.now(), expected, "TEST", false, false, zonedDateTimeConverter);
+
+            Assertions.assertEquals(expected.toString(StandardCharsets.UTF_8),
+                entries.get(getFileName(service.getExportType())), service.getExportType().toString());
+        }
+    }
+
+    @Test
+    public void shouldBundleOnlyTheRequestedExports() throws IOException {
+        exportBundleService.export(FROM, LocalDate.now(), outputStream, "TEST",
+            List.of(ExportType.DOCUMENTS, ExportType.ALLOCATIONS), false, false, zonedDateTimeConverter);
+
+        Assertions.assertEquals(Set.of(getFileName(ExportType.ALLOCATIONS), getFileName(ExportType.DOCUMENTS)),
+            readEntries().keySet());
+    }
+
+    @Test
+    public void shouldRejectExportsThatCannotBeBundled() {
+        Assertions.assertThrows(InvalidExportTypeException.class,
+            () -> exportBundleService.export(FROM, LocalDate.now(), outputStream, "TEST",
+                List.of(ExportType.CASE_DATA), false, false, zonedDateTimeConverter));
+    }
+
+    private Map<String, String> readEntries() throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private static String getFileName(ExportType exportType) {
+        return String.format("test-%s-%s.csv", exportType.toString().toLowerCase(), LocalDate.now());
+    }
+
+}
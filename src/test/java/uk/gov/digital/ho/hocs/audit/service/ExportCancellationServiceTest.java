@@ -0,0 +1,65 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@ActiveProfiles({ "extracts", "local" })
+public class ExportCancellationServiceTest extends BaseExportServiceTest {
+
+    @Autowired
+    private ExportCancellationService exportCancellationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void shouldCancelTheRunningQueryOnDisconnect() {
+        double aborted = getAborted();
+        long start = System.nanoTime();
+
+        try (var watch = exportCancellationService.watch("CASE_DATA", "TEST")) {
+            CompletableFuture.runAsync(watch::disconnect, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+
+            Assertions.assertThrows(DataAccessException.class, () -> jdbcTemplate.execute("SELECT pg_sleep(30)"));
+            Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 10);
+
+            // the export is not left to start another query once it has been cancelled
+            Assertions.assertThrows(DataAccessException.class,
+                () -> jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+            Assertions.assertTrue(watch.isDisconnected());
+        }
+
+        Assertions.assertEquals(aborted + 1, getAborted());
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+    }
+
+    @Test
+    public void shouldNotCancelQueriesOfAConnectedExport() {
+        double aborted = getAborted();
+
+        try (var watch = exportCancellationService.watch("CASE_DATA", "TEST")) {
+            Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+            Assertions.assertFalse(watch.isDisconnected());
+        }
+
+        Assertions.assertEquals(aborted, getAborted());
+    }
+
+    private double getAborted() {
+        var counter = meterRegistry.find("audit.export.aborted").tag("exportType", "CASE_DATA").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+}
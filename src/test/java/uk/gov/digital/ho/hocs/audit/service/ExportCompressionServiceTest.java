@@ -0,0 +1,124 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportCompression;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+public class ExportCompressionServiceTest {
+
+    private static final String CSV = "header1,header2\r\nvalue1,value2\r\n".repeat(100);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ExportCompressionService exportCompressionService;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        exportCompressionService = new ExportCompressionService(meterRegistry, 6, 3, true);
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    public void shouldWriteUncompressedWithoutAcceptEncoding() throws IOException {
+        write(exportCompressionService.prepareResponse(request, response, null, "export.csv"));
+
+        Assertions.assertEquals("attachment; filename=export.csv",
+            response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        Assertions.assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(CSV, response.getContentAsString());
+    }
+
+    @Test
+    public void shouldNegotiateGzipContentEncoding() throws IOException {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        write(exportCompressionService.prepareResponse(request, response, null, "export.csv"));
+
+        Assertions.assertEquals("attachment; filename=export.csv",
+            response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        Assertions.assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(CSV, read(new GZIPInputStream(content())));
+    }
+
+    @Test
+    public void shouldNegotiateZstdContentEncoding() throws IOException {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, zstd");
+
+        write(exportCompressionService.prepareResponse(request, response, null, "export.csv"));
+
+        Assertions.assertEquals("zstd", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(CSV, read(new ZstdInputStream(content())));
+    }
+
+    @Test
+    public void shouldCompressFileWhenRequestedExplicitly() throws IOException {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "zstd");
+
+        write(exportCompressionService.prepareResponse(request, response, ExportCompression.GZIP, "export.csv"));
+
+        Assertions.assertEquals("attachment; filename=export.csv.gz",
+            response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        Assertions.assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(CSV, read(new GZIPInputStream(content())));
+    }
+
+    @Test
+    public void shouldNotNegotiateWhenDisabled() throws IOException {
+        exportCompressionService = new ExportCompressionService(meterRegistry, 6, 3, false);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        write(exportCompressionService.prepareResponse(request, response, null, "export.csv"));
+
+        Assertions.assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertNull(response.getHeader(HttpHeaders.VARY));
+        Assertions.assertEquals(CSV, response.getContentAsString());
+    }
+
+    @Test
+    public void shouldRecordRawAndCompressedBytes() throws IOException {
+        write(exportCompressionService.compress(response.getOutputStream(), ExportCompression.GZIP));
+
+        Assertions.assertEquals(CSV.length(),
+            meterRegistry.get("audit.export.bytes").tags("encoding", "gzip", "stage", "raw").counter().count());
+        Assertions.assertEquals(response.getContentAsByteArray().length,
+            meterRegistry.get("audit.export.bytes").tags("encoding", "gzip", "stage", "compressed").counter().count());
+    }
+
+    private void write(OutputStream outputStream) throws IOException {
+        try (outputStream) {
+            outputStream.write(CSV.getBytes(StandardCharsets.UTF_8));
+            outputStream.flush();
+        }
+    }
+
+    private InputStream content() {
+        return new ByteArrayInputStream(response.getContentAsByteArray());
+    }
+
+    private String read(InputStream inputStream) throws IOException {
+        try (inputStream) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
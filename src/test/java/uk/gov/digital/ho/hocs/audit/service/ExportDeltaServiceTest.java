@@ -0,0 +1,145 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportDelta;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportFormat;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportType;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.BDDMockito.given;
+
+public class ExportDeltaServiceTest extends BaseExportServiceTest {
+
+    private static final UUID CASE_UUID = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+
+    @Autowired
+    private ExportDeltaService exportDeltaService;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private ZonedDateTimeConverter zonedDateTimeConverter;
+
+    @BeforeEach
+    public void setup() {
+        zonedDateTimeConverter = new ZonedDateTimeConverter();
+
+        given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
+    }
+
+    @Test
+    public void shouldExportOnlyTheEventsAuditedSinceTheLastCommit() throws IOException {
+        var first = exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS);
+        Assertions.assertEquals(3, getCsvDataRows(export(first)).size());
+        Assertions.assertTrue(commit(first));
+
+        var second = exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS);
+        Assertions.assertEquals(first.getLastId(), second.getAfterId());
+        Assertions.assertEquals(1, getCsvDataRows(export(second)).size());
+        Assertions.assertTrue(commit(second));
+
+        // events are read by when they were audited, so one audited late for an earlier date is still exported
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1", "{ \"stage\": \"LATE\" }", "env-1",
+            LocalDateTime.of(2019, 6, 1, 0, 0), "STAGE_ALLOCATED_TO_TEAM", "user");
+
+        var rows = getCsvDataRows(export(exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS)));
+        Assertions.assertEquals(2, rows.size());
+        Assertions.assertEquals("LATE", rows.get(1).get(4));
+    }
+
+    @Test
+    public void shouldWaitForEventsStillBeingAudited() throws Exception {
+        try (var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (var statement = connection.createStatement()) {
+                statement.execute("SELECT 1 FROM pg_advisory_xact_lock_shared(hashtext('audit_event.id'))");
+                statement.executeUpdate("""
+                    INSERT INTO audit_event (uuid, case_uuid, correlation_id, raising_service, audit_payload,
+                        namespace, audit_timestamp, type, user_id, case_type)
+                    VALUES ('00000000-0000-0000-0000-000000000100', '10000000-0000-0000-0000-0000000000a1',
+                        'correlation', 'service-1', '{ "stage": "OPEN" }', 'env-1', now(),
+                        'STAGE_ALLOCATED_TO_TEAM', 'user', 'a1')
+                    """);
+            }
+
+            var delta = CompletableFuture.supplyAsync(
+                () -> exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS));
+            Assertions.assertThrows(TimeoutException.class, () -> delta.get(1, TimeUnit.SECONDS));
+
+            connection.commit();
+
+            var rows = getCsvDataRows(export(delta.get(10, TimeUnit.SECONDS)));
+            Assertions.assertEquals(4, rows.size());
+            Assertions.assertEquals("OPEN", rows.get(3).get(4));
+        }
+    }
+
+    @Test
+    public void shouldKeepTheWatermarksOfEachConsumerApart() throws IOException {
+        Assertions.assertTrue(commit(exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS)));
+
+        Assertions.assertEquals(3, getCsvDataRows(
+            export(exportDeltaService.start("dashboard", "TEST", ExportType.ALLOCATIONS))).size());
+        Assertions.assertEquals(3, getCsvDataRows(
+            export(exportDeltaService.start("warehouse", "TEST", ExportType.DOCUMENTS))).size());
+    }
+
+    @Test
+    public void shouldOnlyMoveTheWatermarkForward() {
+        var delta = exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS);
+
+        Assertions.assertTrue(commit(delta));
+        Assertions.assertTrue(commit(delta));
+        Assertions.assertFalse(
+            exportDeltaService.commit("warehouse", "TEST", ExportType.ALLOCATIONS, delta.getLastId() - 1));
+        Assertions.assertFalse(
+            exportDeltaService.commit("warehouse", "TEST", ExportType.ALLOCATIONS, delta.getLastId() + 1));
+    }
+
+    @Test
+    public void shouldExportEverythingOnceReset() throws IOException {
+        Assertions.assertTrue(commit(exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS)));
+
+        exportDeltaService.reset("warehouse", "TEST", ExportType.ALLOCATIONS);
+
+        Assertions.assertEquals(3, getCsvDataRows(
+            export(exportDeltaService.start("warehouse", "TEST", ExportType.ALLOCATIONS))).size());
+    }
+
+    @Test
+    public void shouldRejectExportsThatCannotBeDelta() {
+        Assertions.assertThrows(InvalidExportTypeException.class,
+            () -> exportDeltaService.start("warehouse", "TEST", ExportType.CASE_DATA));
+    }
+
+    private boolean commit(ExportDelta delta) {
+        return exportDeltaService.commit(delta.getConsumer(), delta.getCaseType(), delta.getExportType(),
+            delta.getLastId());
+    }
+
+    private String export(ExportDelta delta) throws IOException {
+        var output = new ByteArrayOutputStream();
+        exportDeltaService.export(delta, output, ExportFormat.CSV, false, false, zonedDateTimeConverter);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+}
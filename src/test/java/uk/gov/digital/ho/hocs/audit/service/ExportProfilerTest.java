@@ -0,0 +1,62 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class ExportProfilerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSendServerTimingTrailerWhenEnabled() {
+        var response = mock(HttpServletResponse.class);
+        var exportProfiler = new ExportProfiler(new SimpleMeterRegistry(), true);
+
+        try (var profile = exportProfiler.start("CASE_DATA", response)) {
+            ArgumentCaptor<Supplier<Map<String, String>>> trailer = ArgumentCaptor.forClass(Supplier.class);
+            verify(response).setTrailerFields(trailer.capture());
+            verify(response).setHeader("Trailer", ExportProfiler.SERVER_TIMING);
+
+            profile.recordRow();
+            Assertions.assertTrue(
+                trailer.getValue().get().get(ExportProfiler.SERVER_TIMING).startsWith("fetch;dur="));
+        }
+    }
+
+    @Test
+    public void shouldNotSendServerTimingTrailerByDefault() {
+        var response = mock(HttpServletResponse.class);
+        var exportProfiler = new ExportProfiler(new SimpleMeterRegistry(), false);
+
+        try (var ignored = exportProfiler.start("CASE_DATA", response)) {
+            verifyNoInteractions(response);
+        }
+    }
+
+    @Test
+    public void shouldStillProfileWhenTrailersAreUnsupported() {
+        var response = mock(HttpServletResponse.class);
+        willThrow(new IllegalStateException("Trailers not supported")).given(response).setTrailerFields(any());
+        var meterRegistry = new SimpleMeterRegistry();
+        var exportProfiler = new ExportProfiler(meterRegistry, true);
+
+        try (var profile = exportProfiler.start("CASE_DATA", response)) {
+            profile.recordRow();
+        }
+
+        Assertions.assertEquals(1,
+            meterRegistry.get("audit.export.rows").tag("exportType", "CASE_DATA").counter().count());
+    }
+
+}
@@ -0,0 +1,143 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.CaseTypeDto;
+import uk.gov.digital.ho.hocs.audit.core.exception.InvalidExportTypeException;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.BDDMockito.given;
+
+@ActiveProfiles({ "extracts", "local" })
+public class ExportSegmentServiceTest extends BaseExportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 1, 1);
+
+    @Autowired
+    private List<DynamicExportService> dynamicExportServices;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ExportSegmentCache exportSegmentCache;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private AllocationExportService allocationExportService;
+
+    @Autowired
+    private DocumentExportService documentExportService;
+
+    @Autowired
+    private CaseDataExportService caseDataExportService;
+
+    private ExportSegmentService exportSegmentService;
+
+    @BeforeEach
+    public void setup() {
+        // the cache is disabled for the application, so it is enabled for these tests alone
+        exportSegmentService = new ExportSegmentService(dynamicExportServices, auditRepository, exportSegmentCache, true,
+            Duration.ofHours(1));
+
+        given(infoClient.getCaseTypes()).willReturn(Set.of(new CaseTypeDto("Test", "a1", "TEST")));
+    }
+
+    @Test
+    public void shouldExportTheSameFromCachedSegments() throws IOException {
+        var expected = export(allocationExportService, false, new ZonedDateTimeConverter());
+
+        Assertions.assertEquals(expected, exportSegments(allocationExportService, false, new ZonedDateTimeConverter()));
+        var segments = exportSegmentCache.getSegmentCount();
+        Assertions.assertTrue(segments > 0);
+
+        Assertions.assertEquals(expected, exportSegments(allocationExportService, false, new ZonedDateTimeConverter()));
+        Assertions.assertEquals(segments, exportSegmentCache.getSegmentCount());
+        Assertions.assertEquals(3, getCsvDataRows(expected).size());
+    }
+
+    @Test
+    public void shouldKeepSegmentsForEachConversion() throws IOException {
+        var zonedDateTimeConverter = new ZonedDateTimeConverter("dd/MM/yyyy HH:mm", "UTC");
+
+        exportSegments(documentExportService, false, new ZonedDateTimeConverter());
+
+        Assertions.assertEquals(export(documentExportService, true, new ZonedDateTimeConverter()),
+            exportSegments(documentExportService, true, new ZonedDateTimeConverter()));
+        Assertions.assertEquals(export(documentExportService, false, zonedDateTimeConverter),
+            exportSegments(documentExportService, false, zonedDateTimeConverter));
+    }
+
+    @Test
+    public void shouldNotExportCaseDataFromSegments() {
+        Assertions.assertThrows(InvalidExportTypeException.class,
+            () -> exportSegments(caseDataExportService, false, new ZonedDateTimeConverter()));
+    }
+
+    @Test
+    public void shouldRecomputeDaysChangedSinceCached() throws IOException {
+        exportSegments(allocationExportService, false, new ZonedDateTimeConverter());
+
+        var caseUUID = UUID.fromString("10000000-0000-0000-0000-000000000000");
+        auditEventService.deleteCaseAudit(caseUUID, true);
+        invalidate(() -> exportSegmentService.invalidateCase(caseUUID));
+        var deleted = export(allocationExportService, false, new ZonedDateTimeConverter());
+        Assertions.assertEquals(2, getCsvDataRows(deleted).size());
+        Assertions.assertEquals(deleted, exportSegments(allocationExportService, false, new ZonedDateTimeConverter()));
+
+        var auditEvent = auditEventService.createAudit(UUID.fromString("10000000-0000-0000-0000-0000000000a1"), null,
+            "correlation", "service-1",
+            "{\"stage\": \"TEST\", \"allocatedToUUID\": \"40000000-0000-0000-0000-000000000000\"}", "env-1",
+            LocalDateTime.of(2023, 1, 1, 2, 0), "STAGE_ALLOCATED_TO_TEAM", "user");
+        invalidate(() -> exportSegmentService.invalidate(auditEvent));
+        var audited = export(allocationExportService, false, new ZonedDateTimeConverter());
+        Assertions.assertEquals(3, getCsvDataRows(audited).size());
+        Assertions.assertEquals(audited, exportSegments(allocationExportService, false, new ZonedDateTimeConverter()));
+    }
+
+    /**
+     * Invalidates segments as the audit service does, which only invalidates through the application's own cache.
+     */
+    private void invalidate(Runnable invalidation) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> invalidation.run());
+    }
+
+    private String export(DynamicExportService service,
+                          boolean convert,
+                          ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        var output = new ByteArrayOutputStream();
+        service.export(FROM, LocalDate.now(), output, "TEST", convert, false, zonedDateTimeConverter);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private String exportSegments(DynamicExportService service,
+                                  boolean convert,
+                                  ZonedDateTimeConverter zonedDateTimeConverter) throws IOException {
+        var output = new ByteArrayOutputStream();
+        exportSegmentService.exportSegments(service, FROM, LocalDate.now(), output, "TEST", convert, false,
+            zonedDateTimeConverter);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,176 @@
+package uk.gov.digital.ho.hocs.audit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@ActiveProfiles({ "extracts", "local" })
+public class ExportWindowServiceTest extends BaseExportServiceTest {
+
+    private static final UUID CASE_UUID = UUID.fromString("30000000-0000-0000-0000-0000000000a1");
+
+    private final LocalDateTime from = LocalDate.now().minusDays(1).atStartOfDay();
+
+    private final LocalDateTime to = LocalDate.now().atTime(LocalTime.MAX);
+
+    @Autowired
+    private CaseNoteExportService caseNoteExportService;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private AuditRepository auditRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private ExportWindowService exportWindowService;
+
+    @BeforeEach
+    public void setup() {
+        exportWindowService = new ExportWindowService(auditRepository, meterRegistry, true, 3, Duration.ofHours(1),
+            1000, DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    public void shutdown() {
+        exportWindowService.shutdown();
+    }
+
+    @Test
+    public void shouldReadTheSameEventsAsTheDatabaseOnceLoaded() throws InterruptedException {
+        createNote("first");
+        createNote("second");
+
+        // the first export of the case type is read from the database while the case type is loaded
+        Assertions.assertNull(find(from));
+        var expected = read(() -> auditRepository.findAuditDataByDateRangeAndEvents(from, to,
+            caseNoteExportService.getEvents(), "a1", caseNoteExportService.getPayloadFields()));
+
+        var events = awaitLoaded(from);
+        Assertions.assertEquals(2, expected.size());
+        Assertions.assertEquals(expected, read(() -> events));
+        Assertions.assertNull(find(from.minusDays(7)));
+    }
+
+    @Test
+    public void shouldReadTheEventsAuditedSinceLoading() throws InterruptedException {
+        createNote("first");
+        awaitLoaded(from).close();
+
+        createNote("second");
+
+        Assertions.assertEquals(List.of("MANUAL first", "MANUAL second"), readNotes());
+    }
+
+    @Test
+    public void shouldLeaveOutDeletedCasesOnceReloaded() throws InterruptedException {
+        createNote("first");
+        awaitLoaded(from).close();
+
+        // the segment cache is disabled, but the delete still moves the versions the window watches
+        auditEventService.deleteCaseAudit(CASE_UUID, true);
+
+        Assertions.assertNull(find(from));
+        var events = awaitLoaded(from);
+        Assertions.assertEquals(List.of(), read(() -> events));
+    }
+
+    @Test
+    public void shouldWaitForEventsStillBeingAudited() throws Exception {
+        createNote("first");
+        awaitLoaded(from).close();
+
+        try (var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (var statement = connection.createStatement()) {
+                statement.execute("SELECT 1 FROM pg_advisory_xact_lock_shared(hashtext('audit_event.id'))");
+            }
+            try (var statement = connection.prepareStatement("""
+                INSERT INTO audit_event (uuid, case_uuid, correlation_id, raising_service, audit_payload, namespace,
+                    audit_timestamp, type, user_id, case_type)
+                VALUES (gen_random_uuid(), ?, 'correlation', 'service-1',
+                    '{"caseNoteType":"MANUAL","text":"open"}', 'env-1', ?, 'CASE_NOTE_CREATED', 'user', 'a1')
+                """)) {
+                statement.setObject(1, CASE_UUID);
+                statement.setObject(2, LocalDateTime.now());
+                statement.executeUpdate();
+            }
+            createNote("second");
+
+            // the window waits for the open transaction, so the event it audits is not read past
+            var notes = CompletableFuture.supplyAsync(this::readNotes);
+            Assertions.assertThrows(TimeoutException.class, () -> notes.get(1, TimeUnit.SECONDS));
+
+            connection.commit();
+            Assertions.assertEquals(List.of("MANUAL first", "MANUAL open", "MANUAL second"),
+                notes.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private List<String> readNotes() {
+        return read(() -> find(from)).stream().map(event -> event.substring(event.indexOf(' ') + 1)).toList();
+    }
+
+    private void createNote(String text) {
+        auditEventService.createAudit(CASE_UUID, null, "correlation", "service-1",
+            String.format("{\"caseNoteType\":\"MANUAL\",\"text\":\"%s\"}", text), "env-1", LocalDateTime.now(),
+            "CASE_NOTE_CREATED", "user");
+    }
+
+    private Stream<AuditEvent> find(LocalDateTime dateFrom) {
+        return exportWindowService.find(caseNoteExportService, dateFrom, to, "a1", caseNoteExportService.getEvents());
+    }
+
+    private Stream<AuditEvent> awaitLoaded(LocalDateTime dateFrom) throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            var events = find(dateFrom);
+            if (events != null) {
+                return events;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Export window was not loaded");
+    }
+
+    private List<String> read(Supplier<Stream<AuditEvent>> events) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        return transactionTemplate.execute(status -> {
+            try (var stream = events.get()) {
+                return stream.map(event -> event.getUuid() + " " + String.join(" ", event.getPayloadFields())).toList();
+            }
+        });
+    }
+
+}
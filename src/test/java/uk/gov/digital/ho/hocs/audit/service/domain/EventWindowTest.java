@@ -0,0 +1,111 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public class EventWindowTest {
+
+    private static final UUID CASE = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+
+    private static final UUID OTHER_CASE = UUID.fromString("20000000-0000-0000-0000-0000000000b2");
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2023, 1, 1, 0, 0, 0, 123_456_000);
+
+    private static final String[] TYPES = { "CASE_NOTE_CREATED", "CASE_NOTE_UPDATED" };
+
+    private final AuditEvent created = event(1, CASE, "a1", "CASE_NOTE_CREATED", 0, "user");
+
+    private final AuditEvent updated = event(2, CASE, "a1", "CASE_NOTE_UPDATED", 1, null);
+
+    private final AuditEvent otherCaseType = event(3, OTHER_CASE, "b2", "CASE_NOTE_CREATED", 1, "user");
+
+    private final AuditEvent late = event(4, CASE, "a1", "CASE_NOTE_UPDATED", -1, "other");
+
+    @Test
+    public void shouldReadTheEventsOfTheCaseTypeInOrder() {
+        var window = new EventWindow(1);
+        window.add(List.of(updated, otherCaseType, created));
+        window.add(List.of(late));
+
+        var events = window.read(TIMESTAMP.minusDays(1), TIMESTAMP.plusDays(1), "a1", TYPES).toList();
+
+        Assertions.assertEquals(4, window.size());
+        Assertions.assertEquals(List.of(late.getUuid(), created.getUuid(), updated.getUuid()),
+            events.stream().map(AuditEvent::getUuid).toList());
+
+        var read = events.get(1);
+        Assertions.assertEquals(created.getId(), read.getId());
+        Assertions.assertEquals(CASE, read.getCaseUUID());
+        Assertions.assertEquals(created.getAuditTimestamp(), read.getAuditTimestamp());
+        Assertions.assertEquals("CASE_NOTE_CREATED", read.getType());
+        Assertions.assertEquals("user", read.getUserID());
+        Assertions.assertEquals("a1", read.getCaseType());
+        Assertions.assertArrayEquals(created.getPayloadFields(), read.getPayloadFields());
+        Assertions.assertNull(events.get(2).getUserID());
+    }
+
+    @Test
+    public void shouldReadTheRangeAndTypesAsked() {
+        var window = new EventWindow(1);
+        window.add(List.of(late, created, updated));
+
+        Assertions.assertEquals(List.of(created.getUuid()),
+            window.read(TIMESTAMP, TIMESTAMP, "a1", TYPES).map(AuditEvent::getUuid).toList());
+        Assertions.assertEquals(List.of(late.getUuid(), updated.getUuid()),
+            window.read(TIMESTAMP.minusDays(1), TIMESTAMP.plusDays(1), "a1",
+                new String[] { "CASE_NOTE_UPDATED" }).map(AuditEvent::getUuid).toList());
+        Assertions.assertEquals(0, window.read(TIMESTAMP.minusDays(1), TIMESTAMP.plusDays(1), "c3", TYPES).count());
+    }
+
+    @Test
+    public void shouldRemoveEventsLeavingTheWindow() {
+        var window = new EventWindow(1);
+        window.add(List.of(late, created, updated, otherCaseType));
+
+        window.removeBefore(TIMESTAMP);
+        Assertions.assertEquals(3, window.size());
+
+        // the events audited at the same time as the last one removed are removed with it
+        Assertions.assertEquals(TIMESTAMP.plusSeconds(1).plusNanos(1000), window.trimTo(1, Long.MAX_VALUE));
+        Assertions.assertEquals(0, window.size());
+        Assertions.assertNull(window.trimTo(1, Long.MAX_VALUE));
+
+        window.add(List.of(created, otherCaseType));
+        window.removeCaseType("b2");
+        Assertions.assertEquals(List.of(created.getUuid()),
+            window.read(TIMESTAMP.minusDays(1), TIMESTAMP.plusDays(1), "a1", TYPES).map(AuditEvent::getUuid).toList());
+    }
+
+    @Test
+    public void shouldRemoveEventsUntilTheWindowFitsItsSize() {
+        var window = new EventWindow(1);
+        window.add(List.of(late, created, updated, otherCaseType));
+
+        long eventBytes = window.bytes() / 4;
+        Assertions.assertNull(window.trimTo(4, eventBytes * 4));
+
+        Assertions.assertEquals(TIMESTAMP.minusSeconds(1).plusNanos(1000), window.trimTo(4, eventBytes * 3));
+        Assertions.assertEquals(3, window.size());
+        Assertions.assertEquals(eventBytes * 3, window.bytes());
+
+        // the events audited at the same time are removed together, even though one of them would fit
+        Assertions.assertEquals(TIMESTAMP.plusSeconds(1).plusNanos(1000), window.trimTo(4, eventBytes));
+        Assertions.assertEquals(0, window.size());
+        Assertions.assertEquals(0, window.bytes());
+
+        window.add(List.of(created, otherCaseType));
+        window.removeCaseType("b2");
+        Assertions.assertEquals(eventBytes, window.bytes());
+    }
+
+    private static AuditEvent event(long id, UUID caseUUID, String caseType, String type, int seconds, String userID) {
+        return new AuditEvent(id, UUID.randomUUID(), caseUUID, TIMESTAMP.plusSeconds(seconds), type, userID, caseType,
+            new String[] { "field-" + id });
+    }
+
+}
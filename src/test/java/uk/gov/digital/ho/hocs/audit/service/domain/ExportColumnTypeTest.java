@@ -0,0 +1,33 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExportColumnTypeTest {
+
+    @Test
+    public void shouldTypeConvertibleUuidsAsTextWhenConverted() {
+        var columns = new ExportColumn[] { ExportColumn.timestamp("timestamp"), ExportColumn.date("deadline"),
+            ExportColumn.uuid("uuid"), ExportColumn.convertibleUuid("caseUuid"), ExportColumn.string("event") };
+
+        Assertions.assertArrayEquals(new String[] { "timestamp", "deadline", "uuid", "caseUuid", "event" },
+            ExportColumn.getHeaders(columns));
+        Assertions.assertArrayEquals(new ExportColumnType[] { ExportColumnType.TIMESTAMP, ExportColumnType.DATE,
+            ExportColumnType.UUID, ExportColumnType.UUID, ExportColumnType.STRING }, ExportColumn.getTypes(columns,
+            false));
+        Assertions.assertArrayEquals(new ExportColumnType[] { ExportColumnType.TIMESTAMP, ExportColumnType.DATE,
+            ExportColumnType.UUID, ExportColumnType.STRING, ExportColumnType.STRING }, ExportColumn.getTypes(columns,
+            true));
+    }
+
+    @Test
+    public void shouldTypeDatabaseColumns() {
+        Assertions.assertEquals(ExportColumnType.TIMESTAMP,
+            ExportColumnType.forDatabaseType("timestamp without time zone"));
+        Assertions.assertEquals(ExportColumnType.DATE, ExportColumnType.forDatabaseType("date"));
+        Assertions.assertEquals(ExportColumnType.UUID, ExportColumnType.forDatabaseType("uuid"));
+        Assertions.assertEquals(ExportColumnType.STRING, ExportColumnType.forDatabaseType("text"));
+        Assertions.assertEquals(ExportColumnType.STRING, ExportColumnType.forDatabaseType(null));
+    }
+
+}
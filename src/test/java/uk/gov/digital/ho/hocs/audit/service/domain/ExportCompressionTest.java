@@ -0,0 +1,51 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+public class ExportCompressionTest {
+
+    @Test
+    public void shouldParseEncodingIgnoringCase() {
+        Assertions.assertEquals(ExportCompression.GZIP, ExportCompression.fromEncoding("GZip"));
+        Assertions.assertEquals(ExportCompression.ZSTD, ExportCompression.fromEncoding("zstd"));
+    }
+
+    @Test
+    public void shouldRejectUnsupportedEncoding() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExportCompression.fromEncoding("br"));
+    }
+
+    @Test
+    public void shouldNotNegotiateWithoutHeader() {
+        Assertions.assertEquals(Optional.empty(), ExportCompression.fromAcceptEncoding(null));
+        Assertions.assertEquals(Optional.empty(), ExportCompression.fromAcceptEncoding(""));
+    }
+
+    @Test
+    public void shouldIgnoreUnsupportedAndWildcardEncodings() {
+        Assertions.assertEquals(Optional.empty(), ExportCompression.fromAcceptEncoding("br, deflate, *"));
+    }
+
+    @Test
+    public void shouldPreferZstdWhenQualitiesAreEqual() {
+        Assertions.assertEquals(Optional.of(ExportCompression.ZSTD),
+            ExportCompression.fromAcceptEncoding("gzip, deflate, br, zstd"));
+    }
+
+    @Test
+    public void shouldPreferHighestQuality() {
+        Assertions.assertEquals(Optional.of(ExportCompression.GZIP),
+            ExportCompression.fromAcceptEncoding("zstd;q=0.5, gzip;q=0.8"));
+    }
+
+    @Test
+    public void shouldSkipEncodingsWithZeroQuality() {
+        Assertions.assertEquals(Optional.of(ExportCompression.GZIP),
+            ExportCompression.fromAcceptEncoding("zstd;q=0, gzip"));
+        Assertions.assertEquals(Optional.empty(), ExportCompression.fromAcceptEncoding("gzip;q=0"));
+    }
+
+}
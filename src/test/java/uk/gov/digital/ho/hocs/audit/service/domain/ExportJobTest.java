@@ -0,0 +1,37 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+public class ExportJobTest {
+
+    private final ExportJob job = new ExportJob(UUID.randomUUID(), "user-1", "export.csv.gz",
+        ExportCompression.GZIP);
+
+    @Test
+    public void shouldRemoveTheFileOfAnUnreadJobOnExpiry() {
+        Assertions.assertTrue(job.expire());
+        Assertions.assertFalse(job.lease());
+    }
+
+    @Test
+    public void shouldRemoveTheFileOnceTheLastDownloadOfAnExpiredJobFinishes() {
+        Assertions.assertTrue(job.lease());
+        Assertions.assertTrue(job.lease());
+
+        Assertions.assertFalse(job.expire());
+        Assertions.assertFalse(job.lease());
+
+        Assertions.assertFalse(job.release());
+        Assertions.assertTrue(job.release());
+    }
+
+    @Test
+    public void shouldKeepTheFileOfAJobThatHasNotExpired() {
+        Assertions.assertTrue(job.lease());
+        Assertions.assertFalse(job.release());
+    }
+
+}
@@ -0,0 +1,115 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ExportProfileTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void shouldBindProfileToThreadUntilClosed() {
+        var detached = ExportProfile.current();
+
+        try (var outer = ExportProfile.start(meterRegistry, "CASE_DATA")) {
+            Assertions.assertSame(outer, ExportProfile.current());
+
+            try (var inner = ExportProfile.start(meterRegistry, "SOMU")) {
+                Assertions.assertSame(inner, ExportProfile.current());
+            }
+
+            Assertions.assertSame(outer, ExportProfile.current());
+        }
+
+        Assertions.assertSame(detached, ExportProfile.current());
+    }
+
+    @Test
+    public void shouldLeaveDecodingOutOfConversion() {
+        try (var profile = ExportProfile.start(meterRegistry, "CASE_DATA")) {
+            long mark = profile.startConvert();
+
+            long decodeStart = System.nanoTime();
+            sleep(20);
+            profile.record(ExportProfile.Phase.DECODE, decodeStart);
+
+            profile.endConvert(mark);
+
+            Assertions.assertTrue(profile.getNanos(ExportProfile.Phase.DECODE) >= TimeUnit.MILLISECONDS.toNanos(20));
+            Assertions.assertTrue(profile.getNanos(ExportProfile.Phase.CONVERT) < TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    @Test
+    public void shouldTimeFetchAndCloseTheData() {
+        var closed = new AtomicBoolean();
+        Stream<String> data = Stream.of("a", "b", "c").peek(value -> sleep(5)).onClose(() -> closed.set(true));
+
+        try (var profile = ExportProfile.start(meterRegistry, "CASE_DATA")) {
+            List<String> fetched;
+            try (var timed = profile.timeFetch(data)) {
+                fetched = timed.parallel().collect(Collectors.toList());
+            }
+
+            Assertions.assertEquals(List.of("a", "b", "c"), fetched);
+            Assertions.assertTrue(closed.get());
+            Assertions.assertTrue(profile.getNanos(ExportProfile.Phase.FETCH) >= TimeUnit.MILLISECONDS.toNanos(15));
+        }
+    }
+
+    @Test
+    public void shouldRecordTimersAndRowsWhenClosed() {
+        try (var profile = ExportProfile.start(meterRegistry, "CASE_DATA")) {
+            profile.record(ExportProfile.Phase.WRITE, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+            profile.recordRow();
+            profile.recordRow();
+        }
+
+        var write = meterRegistry.get("audit.export.phase").tag("exportType", "CASE_DATA").tag("phase", "write")
+            .timer();
+        Assertions.assertEquals(1, write.count());
+        Assertions.assertTrue(write.totalTime(TimeUnit.MILLISECONDS) >= 5);
+        Assertions.assertEquals(1, meterRegistry.get("audit.export.phase").tag("phase", "fetch").timer().count());
+        Assertions.assertEquals(2,
+            meterRegistry.get("audit.export.rows").tag("exportType", "CASE_DATA").counter().count());
+    }
+
+    @Test
+    public void shouldFormatServerTimingAndSummary() {
+        try (var profile = ExportProfile.start(meterRegistry, "CASE_DATA")) {
+            profile.record(ExportProfile.Phase.DECODE, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(12));
+            profile.recordRow();
+
+            Assertions.assertTrue(profile.toServerTiming().matches(
+                "fetch;dur=0\\.\\d, decode;dur=1\\d\\.\\d, convert;dur=0\\.0, write;dur=0\\.0, total;dur=\\d+\\.\\d"),
+                profile.toServerTiming());
+
+            var summary = profile.getSummary();
+            Assertions.assertEquals(List.of("export_rows", "export_fetch_ms", "export_decode_ms", "export_convert_ms",
+                "export_write_ms", "export_total_ms"), List.copyOf(summary.keySet()));
+            Assertions.assertEquals(1L, summary.get("export_rows"));
+        }
+    }
+
+    private static void sleep(long millis) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < end) {
+            LockSupport.parkNanos(end - System.nanoTime());
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package uk.gov.digital.ho.hocs.audit.service.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.digital.ho.hocs.audit.repository.entity.AuditEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public class LatestEventReducerTest {
+
+    private static final UUID FIRST_CASE = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+
+    private static final UUID SECOND_CASE = UUID.fromString("f0000000-0000-0000-0000-0000000000a1");
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    @TempDir
+    private Path directory;
+
+    private final AuditEvent secondCreated = event(SECOND_CASE, "CASE_CREATED", 0);
+
+    private final AuditEvent firstCreated = event(FIRST_CASE, "CASE_CREATED", 1);
+
+    private final AuditEvent firstUpdated = event(FIRST_CASE, "CASE_UPDATED", 2);
+
+    private final AuditEvent secondUpdated = event(SECOND_CASE, "CASE_UPDATED", 3);
+
+    private final AuditEvent firstUpdatedAgain = event(FIRST_CASE, "CASE_UPDATED", 4);
+
+    @Test
+    public void shouldKeepTheLatestEventOfEachCaseAndTypeInCaseOrder() throws IOException {
+        var reducer = new LatestEventReducer(directory, Long.MAX_VALUE);
+
+        try (var latest = reducer.reduce(events())) {
+            Assertions.assertEquals(
+                List.of(firstCreated.getUuid(), firstUpdatedAgain.getUuid(), secondCreated.getUuid(),
+                    secondUpdated.getUuid()), latest.map(AuditEvent::getUuid).toList());
+        }
+        Assertions.assertEquals(0, countRuns());
+    }
+
+    @Test
+    public void shouldMergeRunsSpilledBeyondTheBudget() throws IOException {
+        var reducer = new LatestEventReducer(directory, 0);
+
+        try (var latest = reducer.reduce(events())) {
+            Assertions.assertEquals(5, countRuns());
+            Assertions.assertEquals(
+                List.of(firstCreated.getUuid(), firstUpdatedAgain.getUuid(), secondCreated.getUuid(),
+                    secondUpdated.getUuid()), latest.map(AuditEvent::getUuid).toList());
+        }
+        Assertions.assertEquals(0, countRuns());
+    }
+
+    @Test
+    public void shouldRemoveRunsWhenClosedEarly() throws IOException {
+        var reducer = new LatestEventReducer(directory, 0);
+
+        try (var latest = reducer.reduce(events())) {
+            Assertions.assertEquals(firstCreated.getUuid(), latest.findFirst().orElseThrow().getUuid());
+        }
+        Assertions.assertEquals(0, countRuns());
+    }
+
+    private Stream<AuditEvent> events() {
+        return Stream.of(secondCreated, firstCreated, firstUpdated, secondUpdated, firstUpdatedAgain);
+    }
+
+    private long countRuns() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static AuditEvent event(UUID caseUUID, String type, int minutes) {
+        return new AuditEvent(caseUUID, null, "correlation", "service-1", "{}", "env-1", TIMESTAMP.plusMinutes(minutes),
+            type, "user");
+    }
+
+}
@@ -2,6 +2,9 @@ package uk.gov.digital.ho.hocs.audit.service.domain.adapter;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.regex.Pattern;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -74,4 +77,24 @@ public class DateAdapterTest {
         }
     }
 
+    @Test
+    public void shouldConvertEdgeCasesAsTheRegexDoes() {
+        DateAdapter dateAdapter = new DateAdapter();
+        Pattern pattern = Pattern.compile(GROUPED_DATE_REGEX);
+
+        List<String> values = List.of("", "-", "--", "2021-02-28\n", "2021-02-28\r\n", "2021-02-28\r",
+            "2021-02-28\u2028", "2021-02-28\n\n", "2021-02-28 ", " 2021-02-28", "000002021-0000012-00031",
+            "00000-01-01", "2021-00-01", "2021-13-01", "2021-12-32", "2021-12-00", "2021-1-01", "2021-01-1",
+            "202-01-01", "12021-01-01", "2021-01-01-01", "2021-01-01x", "2021-010-010", "2021-02-2\u0668",
+            "2021-02-28\n2021-02-28");
+
+        for (String value : values) {
+            var matcher = pattern.matcher(value);
+            String expected = matcher.find()
+                ? matcher.group(1) + "-" + matcher.group(2) + "-" + matcher.group(3)
+                : value;
+            assertEquals(expected, dateAdapter.convert(value), value);
+        }
+    }
+
 }
@@ -0,0 +1,109 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
+import uk.gov.digital.ho.hocs.audit.repository.entity.CaseReference;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CaseReferenceCacheTest {
+
+    private AuditRepository auditRepository;
+
+    private CaseReferenceCache caseReferenceCache;
+
+    @BeforeEach
+    public void setup() {
+        auditRepository = mock(AuditRepository.class);
+        caseReferenceCache = new CaseReferenceCache(auditRepository);
+    }
+
+    @Test
+    public void whenIndexIsFirstRequested_thenAllReferencesAreLoaded() {
+        var caseUuid = UUID.randomUUID();
+        when(auditRepository.findCommittedLatestEventVersion()).thenReturn(5L);
+        when(auditRepository.getCaseReferencesForTypeChangedBetween("TEST", 0, 5)).thenReturn(
+            Stream.of(caseReference(3L, caseUuid, "TEST/1", false)));
+
+        var index = caseReferenceCache.getIndex("TEST");
+
+        assertEquals("TEST/1", index.get(caseUuid));
+        assertEquals(5, index.getWatermark());
+    }
+
+    @Test
+    public void whenIndexIsRequestedAgain_thenOnlyRowsChangedSinceAreRead() {
+        var firstCase = UUID.randomUUID();
+        var secondCase = UUID.randomUUID();
+        when(auditRepository.findCommittedLatestEventVersion()).thenReturn(20L, 25L);
+        when(auditRepository.getCaseReferencesForTypeChangedBetween("TEST", 0, 20)).thenReturn(
+            Stream.of(caseReference(20L, firstCase, "TEST/1", false)));
+        // a row updated in place takes a new version, so a changed reference is read again
+        when(auditRepository.getCaseReferencesForTypeChangedBetween("TEST", 20, 25)).thenReturn(
+            Stream.of(caseReference(22L, firstCase, "TEST/1A", false), caseReference(24L, secondCase, "TEST/2", false)));
+
+        var first = caseReferenceCache.getIndex("TEST");
+        var second = caseReferenceCache.getIndex("TEST");
+
+        assertSame(first, second);
+        assertEquals("TEST/1A", second.get(firstCase));
+        assertEquals("TEST/2", second.get(secondCase));
+        assertEquals(25, second.getWatermark());
+        verify(auditRepository).getCaseReferencesForTypeChangedBetween("TEST", 20, 25);
+    }
+
+    @Test
+    public void whenCaseIsDeleted_thenItIsEvictedAndReadAgainOnceRestored() {
+        var caseUuid = UUID.randomUUID();
+        var otherCase = UUID.randomUUID();
+        when(auditRepository.findCommittedLatestEventVersion()).thenReturn(4L, 5L, 6L);
+        when(auditRepository.getCaseReferencesForTypeChangedBetween("TEST", 0, 4)).thenReturn(
+            Stream.of(caseReference(3L, caseUuid, "TEST/1", false), caseReference(4L, otherCase, "TEST/2", false)));
+        when(auditRepository.getCaseReferencesForTypeChangedBetween("TEST", 4, 5)).thenReturn(
+            Stream.of(caseReference(5L, caseUuid, "TEST/1", true)));
+        when(auditRepository.getCaseReferencesForTypeChangedBetween("TEST", 5, 6)).thenReturn(
+            Stream.of(caseReference(6L, caseUuid, "TEST/1", false)));
+
+        var index = caseReferenceCache.getIndex("TEST");
+        caseReferenceCache.getIndex("TEST");
+        assertNull(index.get(caseUuid));
+        assertEquals("TEST/2", index.get(otherCase));
+
+        caseReferenceCache.getIndex("TEST");
+        assertEquals("TEST/1", index.get(caseUuid));
+    }
+
+    private static CaseReference caseReference(Long version, UUID caseUuid, String reference, boolean deleted) {
+        return new CaseReference() {
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+
+            @Override
+            public String getCaseReference() {
+                return reference;
+            }
+
+            @Override
+            public String getCaseUUID() {
+                return caseUuid.toString();
+            }
+
+            @Override
+            public Boolean getDeleted() {
+                return deleted;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,113 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CaseReferenceIndexTest {
+
+    @Test
+    public void whenReferencesAreAddedPastCapacity_thenAllRemainReadable() {
+        var index = new CaseReferenceIndex();
+        Map<UUID, String> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            var caseUuid = UUID.randomUUID();
+            expected.put(caseUuid, "REF/" + i);
+            index.put(caseUuid, "REF/" + i);
+        }
+
+        assertEquals(10_000, index.size());
+        expected.forEach((caseUuid, reference) -> assertEquals(reference, index.get(caseUuid)));
+        assertNull(index.get(UUID.randomUUID()));
+    }
+
+    @Test
+    public void whenCaseIsAddedAgain_thenReferenceIsReplaced() {
+        var index = new CaseReferenceIndex();
+        var caseUuid = UUID.randomUUID();
+
+        index.put(caseUuid, "OLD");
+        index.put(caseUuid, "NEW");
+
+        assertEquals(1, index.size());
+        assertEquals("NEW", index.get(caseUuid));
+    }
+
+    @Test
+    public void whenCaseIsRemoved_thenOtherCasesRemainReadable() {
+        var index = new CaseReferenceIndex();
+        Map<UUID, String> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            var caseUuid = UUID.randomUUID();
+            expected.put(caseUuid, "REF/" + i);
+            index.put(caseUuid, "REF/" + i);
+        }
+        var removed = expected.keySet().iterator().next();
+
+        index.remove(removed);
+        index.remove(removed);
+        expected.remove(removed);
+
+        assertEquals(99, index.size());
+        assertNull(index.get(removed));
+        expected.forEach((caseUuid, reference) -> assertEquals(reference, index.get(caseUuid)));
+    }
+
+    @Test
+    public void whenManyCasesAreRemoved_thenTheRestRemainReadable() {
+        var index = new CaseReferenceIndex();
+        Map<UUID, String> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            var caseUuid = UUID.randomUUID();
+            expected.put(caseUuid, "REF/" + i);
+            index.put(caseUuid, "REF/" + i);
+        }
+
+        var removed = expected.keySet().stream().filter(caseUuid -> caseUuid.hashCode() % 2 == 0).toList();
+        removed.forEach(index::remove);
+        removed.forEach(expected::remove);
+
+        assertEquals(expected.size(), index.size());
+        removed.forEach(caseUuid -> assertNull(index.get(caseUuid)));
+        expected.forEach((caseUuid, reference) -> assertEquals(reference, index.get(caseUuid)));
+    }
+
+    @Test
+    public void whenReadDuringResizes_thenLookupsDoNotFail() throws Exception {
+        var index = new CaseReferenceIndex();
+        var caseUuid = UUID.randomUUID();
+        index.put(caseUuid, "REF");
+
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var reader = executor.submit(() -> {
+                for (int i = 0; i < 1_000_000; i++) {
+                    assertEquals("REF", index.get(caseUuid));
+                }
+            });
+            while (!reader.isDone()) {
+                index.put(UUID.randomUUID(), "OTHER");
+            }
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenWatermarkIsAdvanced_thenItNeverMovesBack() {
+        var index = new CaseReferenceIndex();
+
+        index.advanceWatermark(10);
+        index.advanceWatermark(5);
+
+        assertEquals(10, index.getWatermark());
+    }
+
+}
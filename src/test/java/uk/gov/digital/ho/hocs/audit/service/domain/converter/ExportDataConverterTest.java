@@ -2,55 +2,21 @@ package uk.gov.digital.ho.hocs.audit.service.domain.converter;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
-import uk.gov.digital.ho.hocs.audit.repository.AuditRepository;
-import uk.gov.digital.ho.hocs.audit.repository.entity.CaseReference;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Stream;
 
-import static org.mockito.BDDMockito.given;
-
-@SpringBootTest
 public class ExportDataConverterTest {
 
-    @MockBean
-    private AuditRepository auditRepository;
-
-    @Test
-    public void convertConstructorCallsForCaseReferences() {
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
-
-        Mockito.verify(auditRepository).getCaseReferencesForType("TEST");
-        Assertions.assertNotNull(converter);
-    }
-
     @Test
     public void convertCaseUuidReturnsReference() {
         UUID caseUuid = UUID.randomUUID();
 
-        CaseReference caseReference = new CaseReference() {
-            @Override
-            public String getCaseReference() {
-                return "TEST_REF";
-            }
-
-            @Override
-            public String getCaseUUID() {
-                return caseUuid.toString();
-            }
-        };
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of(caseReference));
+        var caseReferences = new CaseReferenceIndex();
+        caseReferences.put(caseUuid, "TEST_REF");
 
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), caseReferences);
 
         Assertions.assertNotNull(converter);
         Assertions.assertEquals("TEST_REF", converter.convertCaseUuid(caseUuid));
@@ -58,10 +24,8 @@ public class ExportDataConverterTest {
 
     @Test
     public void convertCaseUuidWithNonExistentReturnsUuid() {
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(),
+            new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
 
@@ -74,21 +38,28 @@ public class ExportDataConverterTest {
         UUID randomUuid = UUID.randomUUID();
         Map<String, String> uuidMap = Map.of(randomUuid.toString(), "TEST");
 
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(uuidMap, Collections.emptyMap(), "TEST", auditRepository);
+        var converter = new ExportDataConverter(uuidMap, Collections.emptyMap(), new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
         Assertions.assertEquals("TEST", converter.convertValue(randomUuid.toString()));
     }
 
+    @Test
+    public void convertValueReturnsUuidMissingFromUuidMap() {
+        Map<String, String> uuidMap = Map.of(UUID.randomUUID().toString(), "TEST", "NOT_A_UUID", "IGNORED");
+        var queryUuid = UUID.randomUUID().toString();
+
+        var converter = new ExportDataConverter(uuidMap, Collections.emptyMap(), new CaseReferenceIndex());
+
+        Assertions.assertEquals(queryUuid, converter.convertValue(queryUuid));
+        Assertions.assertEquals("NOT_A_UUID", converter.convertValue("NOT_A_UUID"));
+    }
+
     @Test
     public void convertValueReturnsFromNormalMap() {
         Map<String, String> entityMap = Map.of("TEST", "This,Test");
 
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), entityMap, "TEST", auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), entityMap, new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
         Assertions.assertEquals("ThisTest", converter.convertValue("TEST"));
@@ -96,10 +67,8 @@ public class ExportDataConverterTest {
 
     @Test
     public void convertValueReturnsInputWithNonExistantValue() {
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(),
+            new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
         Assertions.assertEquals("This,Test", converter.convertValue("This,Test"));
@@ -107,10 +76,8 @@ public class ExportDataConverterTest {
 
     @Test
     public void convertCaseUuidWithNonExistentReturnsReturnsUuid() {
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(),
+            new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
 
@@ -120,10 +87,8 @@ public class ExportDataConverterTest {
 
     @Test
     public void convertCaseUuidWithNullReturnsUuid() {
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(),
+            new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
         Assertions.assertNull(converter.convertCaseUuid(null));
@@ -131,10 +96,8 @@ public class ExportDataConverterTest {
 
     @Test
     public void convertValueWithNullReturnsUuid() {
-        given(auditRepository.getCaseReferencesForType("TEST")).willReturn(Stream.of());
-
-        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(), "TEST",
-            auditRepository);
+        var converter = new ExportDataConverter(Collections.emptyMap(), Collections.emptyMap(),
+            new CaseReferenceIndex());
 
         Assertions.assertNotNull(converter);
         Assertions.assertNull(converter.convertValue(null));
@@ -157,4 +120,18 @@ public class ExportDataConverterTest {
         Assertions.assertEquals(queryUuid.toString(), converter.convertCaseUuid(queryUuid));
     }
 
+    @Test
+    public void fingerprintDiffersOnlyWithTheNames() {
+        var fingerprint = new ExportDataConverter(Map.of("a", "A", "b", "B"), Map.of("c", "C"),
+            new CaseReferenceIndex()).getFingerprint();
+
+        Assertions.assertEquals(64, fingerprint.length());
+        Assertions.assertEquals(fingerprint, new ExportDataConverter(Map.of("b", "B", "a", "A"), Map.of("c", "C"),
+            new CaseReferenceIndex()).getFingerprint());
+        Assertions.assertNotEquals(fingerprint, new ExportDataConverter(Map.of("a", "A", "b", "B2"), Map.of("c", "C"),
+            new CaseReferenceIndex()).getFingerprint());
+        Assertions.assertNotEquals(fingerprint, new ExportDataConverter(Map.of("a", "A"), Map.of("b", "B", "c", "C"),
+            new CaseReferenceIndex()).getFingerprint());
+    }
+
 }
@@ -0,0 +1,50 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.writer.CsvExportWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class MalformedDateConverterTest {
+
+    private final MalformedDateConverter malformedDateConverter = new MalformedDateConverter();
+
+    @Test
+    public void shouldCorrectEveryField() {
+        String[] data = { "02021-01-01", "text", "2021-001-01" };
+
+        var corrected = malformedDateConverter.correctDateFields(data);
+
+        Assertions.assertArrayEquals(new String[] { "2021-01-01", "text", "2021-01-01" }, corrected);
+    }
+
+    @Test
+    public void shouldCorrectTextAndTimestampsInACustomFormat() throws IOException {
+        var zonedDateTimeConverter = new ZonedDateTimeConverter("yyyyy-MM-dd", null);
+        var outputStream = new ByteArrayOutputStream();
+
+        try (var writer = malformedDateConverter.correcting(
+            new CsvExportWriter(outputStream, null, zonedDateTimeConverter), zonedDateTimeConverter)) {
+            writer.startRecord();
+            writer.writeTimestamp(LocalDateTime.of(2021, 1, 1, 12, 0));
+            writer.writeString("02021-01-02");
+            writer.writeDate(LocalDate.of(2021, 1, 3));
+            writer.endRecord();
+        }
+
+        Assertions.assertEquals("2021-01-01,2021-01-02,2021-01-03",
+            outputStream.toString(StandardCharsets.UTF_8).trim());
+    }
+
+    @Test
+    public void shouldReturnNullForNullData() {
+        Assertions.assertNull(malformedDateConverter.correctDateFields(null));
+    }
+
+}
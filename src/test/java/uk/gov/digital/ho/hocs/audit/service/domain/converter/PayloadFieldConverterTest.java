@@ -0,0 +1,48 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.core.config.SpringConfiguration;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+public class PayloadFieldConverterTest {
+
+    private final ObjectMapper objectMapper = new SpringConfiguration().initialiseObjectMapper();
+
+    @Test
+    public void shouldConvertUuidsAsTheyAreDecoded() throws JsonProcessingException {
+        for (String value : new String[] { "40000000-0000-0000-0000-00000000000A", "" }) {
+            Assertions.assertEquals(decode(value, UUID.class), PayloadFieldConverter.convertUuid(value));
+        }
+        Assertions.assertEquals("", PayloadFieldConverter.convertUuid(null));
+    }
+
+    @Test
+    public void shouldParseDatesAsTheyAreDecoded() throws JsonProcessingException {
+        for (String value : new String[] { "2020-01-31", "2020-01-31T10:15:00", "2020-01-31T23:15:00Z", "" }) {
+            Assertions.assertEquals(objectMapper.readValue(objectMapper.writeValueAsString(value), LocalDate.class),
+                PayloadFieldConverter.parseDate(value));
+        }
+        Assertions.assertNull(PayloadFieldConverter.parseDate(null));
+    }
+
+    @Test
+    public void shouldConvertDateTimesAsTheyAreDecoded() throws JsonProcessingException {
+        for (String value : new String[] { "2020-01-31T10:15:00", "2020-01-31T10:15:30.123456", "2020-01-31T10:15",
+            "" }) {
+            Assertions.assertEquals(decode(value, LocalDateTime.class), PayloadFieldConverter.convertDateTime(value));
+        }
+        Assertions.assertEquals("", PayloadFieldConverter.convertDateTime(null));
+    }
+
+    private String decode(String value, Class<?> type) throws JsonProcessingException {
+        return Objects.toString(objectMapper.readValue(objectMapper.writeValueAsString(value), type), "");
+    }
+
+}
@@ -0,0 +1,152 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.converter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.client.casework.CaseworkClient;
+import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetCorrespondentOutlineResponse;
+import uk.gov.digital.ho.hocs.audit.client.casework.dto.GetTopicResponse;
+import uk.gov.digital.ho.hocs.audit.client.info.InfoClient;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDataDto;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.EntityDto;
+import uk.gov.digital.ho.hocs.audit.client.info.dto.UserDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReferenceDataCacheTest {
+
+    private InfoClient infoClient;
+
+    private CaseworkClient caseworkClient;
+
+    private ReferenceDataCache referenceDataCache;
+
+    @BeforeEach
+    public void setup() {
+        infoClient = mock(InfoClient.class);
+        caseworkClient = mock(CaseworkClient.class);
+        referenceDataCache = new ReferenceDataCache(infoClient, caseworkClient, Duration.ofHours(1),
+            Duration.ofHours(1));
+
+        when(infoClient.getUsers()).thenReturn(Set.of(new UserDto("user-1", "user.one", "User", "One", "one@test")));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        referenceDataCache.shutdown();
+    }
+
+    @Test
+    public void whenSnapshotIsRequested_thenItIsLoadedOnceAndShared() {
+        var first = referenceDataCache.getSnapshot();
+        var second = referenceDataCache.getSnapshot();
+
+        assertSame(first, second);
+        assertEquals(Map.of("user-1", "user.one"), first.getUserNames());
+        verify(infoClient, times(1)).getUsers();
+        verify(caseworkClient, times(1)).getAllCaseTopics();
+        verify(caseworkClient, never()).getAllCorrespondents();
+    }
+
+    @Test
+    public void whenCorrespondentsAreRequested_thenTheyAreLoadedOnceAndRefreshedWithSnapshot() {
+        var correspondentUuid = UUID.randomUUID();
+        when(caseworkClient.getAllCorrespondents()).thenReturn(
+            Set.of(new GetCorrespondentOutlineResponse(correspondentUuid, "Correspondent")));
+
+        assertEquals(Map.of(correspondentUuid.toString(), "Correspondent"),
+            referenceDataCache.getCorrespondentNames());
+        referenceDataCache.getCorrespondentNames();
+        verify(caseworkClient, times(1)).getAllCorrespondents();
+
+        referenceDataCache.refresh();
+
+        assertEquals(Map.of(correspondentUuid.toString(), "Correspondent"),
+            referenceDataCache.getCorrespondentNames());
+        verify(caseworkClient, times(2)).getAllCorrespondents();
+    }
+
+    @Test
+    public void whenSnapshotIsIdle_thenItIsDroppedAndLoadedAgainOnNextRead() {
+        referenceDataCache.shutdown();
+        referenceDataCache = new ReferenceDataCache(infoClient, caseworkClient, Duration.ofHours(1),
+            Duration.ZERO);
+        var snapshot = referenceDataCache.getSnapshot();
+
+        referenceDataCache.refresh();
+        verify(infoClient, times(1)).getUsers();
+
+        assertNotSame(snapshot, referenceDataCache.getSnapshot());
+        verify(infoClient, times(2)).getUsers();
+    }
+
+    @Test
+    public void whenSnapshotWasDropped_thenRefreshDoesNothing() {
+        referenceDataCache.shutdown();
+        referenceDataCache = new ReferenceDataCache(infoClient, caseworkClient, Duration.ofHours(1),
+            Duration.ZERO);
+        referenceDataCache.getSnapshot();
+
+        referenceDataCache.refresh();
+        referenceDataCache.refresh();
+
+        verify(infoClient, times(1)).getUsers();
+    }
+
+    @Test
+    public void whenTopicsShareUuids_thenFirstTopicNameIsKept() {
+        var topicUuid = UUID.randomUUID();
+        var caseTopicUuid = UUID.randomUUID();
+        when(caseworkClient.getAllCaseTopics()).thenReturn(
+            Set.of(new GetTopicResponse(caseTopicUuid, LocalDateTime.now(), UUID.randomUUID(), "Topic", topicUuid)));
+
+        var snapshot = referenceDataCache.getSnapshot();
+
+        assertEquals(Map.of(topicUuid.toString(), "Topic"), snapshot.getTopicNames());
+        assertEquals(Map.of(topicUuid.toString(), "Topic", caseTopicUuid.toString(), "Topic"),
+            snapshot.getCaseTopicNames());
+    }
+
+    @Test
+    public void whenEntityListIsRequested_thenItIsLoadedOnceAndRefreshedWithSnapshot() {
+        when(infoClient.getEntitiesForList("LIST")).thenReturn(Set.of(entity("ITEM", "Item")));
+
+        assertEquals(Map.of("ITEM", "Item"), referenceDataCache.getEntityListTitles("LIST"));
+        assertEquals(Map.of("ITEM", "Item"), referenceDataCache.getEntityListTitles("LIST"));
+        verify(infoClient, times(1)).getEntitiesForList("LIST");
+
+        when(infoClient.getEntitiesForList("LIST")).thenReturn(Set.of(entity("ITEM", "Renamed")));
+        referenceDataCache.refresh();
+
+        assertEquals(Map.of("ITEM", "Renamed"), referenceDataCache.getEntityListTitles("LIST"));
+        verify(infoClient, times(2)).getUsers();
+    }
+
+    @Test
+    public void whenRefreshFails_thenPreviousSnapshotIsKept() {
+        var snapshot = referenceDataCache.getSnapshot();
+        when(infoClient.getUsers()).thenThrow(new IllegalStateException("unavailable"));
+
+        referenceDataCache.refresh();
+
+        assertSame(snapshot, referenceDataCache.getSnapshot());
+    }
+
+    private static EntityDto entity(String simpleName, String title) {
+        return new EntityDto(1L, UUID.randomUUID(), simpleName, new EntityDataDto(title), UUID.randomUUID(), true);
+    }
+
+}
@@ -0,0 +1,84 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CsvExportWriterTest {
+
+    private static final String[] HEADERS = { "timestamp", "event", "note" };
+
+    // chars that change how commons-csv quotes a field, along with multi-byte and surrogate chars
+    private static final char[] CHARS = { 'a', 'Z', '0', ' ', '\t', '\0', '!', '"', '#', '$', ',', ';', '\r', '\n',
+        '\\', '\'', 'é', '€', ' ', '\uD83D', '\uDE00', '\uDC00' };
+
+    @Test
+    public void shouldQuoteOnlyWhereNeeded() throws IOException {
+        var output = write(new String[] { "2023-01-01", "CASE_CREATED", "a \"quoted\", note" },
+            new String[] { "", null, "" }, new String[] { null, "#tag", "trailing " });
+
+        Assertions.assertEquals("""
+            timestamp,event,note\r
+            2023-01-01,CASE_CREATED,"a ""quoted"", note"\r
+            "",,\r
+            ,"#tag","trailing "\r
+            """, new String(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldWriteSameBytesAsCommonsCsv() throws IOException {
+        var random = new Random(7);
+        List<String[]> records = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String[] record = new String[1 + random.nextInt(4)];
+            for (int j = 0; j < record.length; j++) {
+                record[j] = randomField(random);
+            }
+            records.add(record);
+        }
+        // enough to fill the buffer several times
+        records.add(new String[] { "x".repeat(200_000), "€".repeat(100_000) });
+
+        var expected = new ByteArrayOutputStream();
+        try (var printer = new CSVPrinter(new OutputStreamWriter(expected, StandardCharsets.UTF_8),
+            CSVFormat.Builder.create().setHeader(HEADERS).setAutoFlush(true).setNullString("").build())) {
+            for (String[] record : records) {
+                printer.printRecord((Object[]) record);
+            }
+        }
+
+        Assertions.assertArrayEquals(expected.toByteArray(), write(records.toArray(String[][]::new)));
+    }
+
+    private static String randomField(Random random) {
+        if (random.nextInt(10) == 0) {
+            return null;
+        }
+        var field = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            field.append(CHARS[random.nextInt(CHARS.length)]);
+        }
+        return field.toString();
+    }
+
+    private byte[] write(String[]... records) throws IOException {
+        var output = new ByteArrayOutputStream();
+        try (var writer = new CsvExportWriter(output, HEADERS)) {
+            for (String[] record : records) {
+                writer.writeRecord(record);
+            }
+        }
+        return output.toByteArray();
+    }
+
+}
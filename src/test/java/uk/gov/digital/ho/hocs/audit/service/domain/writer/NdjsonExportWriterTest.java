@@ -0,0 +1,84 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public class NdjsonExportWriterTest {
+
+    private static final String[] HEADERS = { "timestamp", "event", "note" };
+
+    private static final ExportColumnType[] COLUMN_TYPES = { ExportColumnType.TIMESTAMP, ExportColumnType.STRING,
+        ExportColumnType.STRING };
+
+    @Test
+    public void shouldWriteOneObjectPerLine() throws IOException {
+        var output = write(new String[] { "2023-01-01T00:00:00.000000", "CASE_CREATED", "a \"quoted\"\nnote" },
+            new String[] { "2023-01-02T00:00:00.000000", "CASE_UPDATED", "" });
+
+        Assertions.assertEquals("""
+            {"timestamp":"2023-01-01T00:00:00.000000","event":"CASE_CREATED","note":"a \\"quoted\\"\\nnote"}
+            {"timestamp":"2023-01-02T00:00:00.000000","event":"CASE_UPDATED","note":""}
+            """, output);
+    }
+
+    @Test
+    public void shouldWriteNullForMissingValues() throws IOException {
+        var output = write(new String[] { "2023-01-01T00:00:00.000000", null });
+
+        Assertions.assertEquals("""
+            {"timestamp":"2023-01-01T00:00:00.000000","event":null,"note":null}
+            """, output);
+    }
+
+    @Test
+    public void shouldWriteTypedValues() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        var uuid = UUID.fromString("10000000-0000-0000-0000-0000000000a1");
+
+        try (var writer = new NdjsonExportWriter(new ObjectMapper().getFactory(), outputStream,
+            new String[] { "timestamp", "deadline", "uuid", "caseUuid" },
+            new ExportColumnType[] { ExportColumnType.TIMESTAMP, ExportColumnType.DATE, ExportColumnType.UUID,
+                ExportColumnType.UUID }, new ZonedDateTimeConverter("", "UTC"))) {
+            writer.startRecord();
+            writer.writeTimestamp(LocalDateTime.of(2023, 1, 1, 10, 0));
+            writer.writeDate(LocalDate.of(2023, 2, 1));
+            writer.writeUuid(uuid);
+            writer.writeString("");
+            writer.endRecord();
+        }
+
+        Assertions.assertEquals("""
+                {"timestamp":"%s","deadline":"2023-02-01","uuid":"10000000-0000-0000-0000-0000000000a1","caseUuid":null}
+                """.formatted(new ZonedDateTimeConverter("", "UTC").convert(LocalDateTime.of(2023, 1, 1, 10, 0))),
+            outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldWriteNothingWithoutRecords() throws IOException {
+        Assertions.assertEquals("", write());
+    }
+
+    private String write(String[]... records) throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        try (var writer = new NdjsonExportWriter(new ObjectMapper().getFactory(), outputStream, HEADERS,
+            COLUMN_TYPES, new ZonedDateTimeConverter())) {
+            for (String[] record : records) {
+                writer.writeRecord(record);
+            }
+        }
+
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,218 @@
+package uk.gov.digital.ho.hocs.audit.service.domain.writer;
+
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.api.ReadSupport;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.DelegatingSeekableInputStream;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.gov.digital.ho.hocs.audit.core.utils.ZonedDateTimeConverter;
+import uk.gov.digital.ho.hocs.audit.service.domain.ExportColumnType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class ParquetExportWriterTest {
+
+    private static final String[] HEADERS = { "timestamp", "deadline", "caseUuid", "event" };
+
+    private static final ExportColumnType[] COLUMN_TYPES = { ExportColumnType.TIMESTAMP, ExportColumnType.DATE,
+        ExportColumnType.UUID, ExportColumnType.STRING };
+
+    @Test
+    public void shouldWriteTypedSchema() throws IOException {
+        var output = write(new String[0][]);
+
+        try (var reader = ParquetFileReader.open(new ByteArrayInputFile(output))) {
+            var schema = reader.getFileMetaData().getSchema();
+
+            Assertions.assertEquals(LogicalTypeAnnotation.timestampType(false, LogicalTypeAnnotation.TimeUnit.MICROS),
+                schema.getType("timestamp").getLogicalTypeAnnotation());
+            Assertions.assertEquals(LogicalTypeAnnotation.dateType(),
+                schema.getType("deadline").getLogicalTypeAnnotation());
+            Assertions.assertEquals(LogicalTypeAnnotation.uuidType(),
+                schema.getType("caseUuid").getLogicalTypeAnnotation());
+            Assertions.assertEquals(LogicalTypeAnnotation.stringType(),
+                schema.getType("event").getLogicalTypeAnnotation());
+            Assertions.assertEquals(0, reader.getRecordCount());
+        }
+    }
+
+    @Test
+    public void shouldWriteTypedValues() throws IOException {
+        var caseUuid = UUID.randomUUID();
+
+        var rows = read(write(new String[][] {
+            { "2023-03-26T01:30:00.123456", "2023-04-01", caseUuid.toString(), "CASE_CREATED" } }));
+
+        Assertions.assertEquals(1, rows.size());
+        var row = rows.get(0);
+
+        var timestamp = LocalDateTime.of(2023, 3, 26, 1, 30, 0, 123456000);
+        Assertions.assertEquals(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + 123456, row.getLong(0, 0));
+        Assertions.assertEquals(LocalDate.of(2023, 4, 1).toEpochDay(), row.getInteger(1, 0));
+
+        var uuidBytes = ByteBuffer.wrap(row.getBinary(2, 0).getBytes());
+        Assertions.assertEquals(caseUuid, new UUID(uuidBytes.getLong(), uuidBytes.getLong()));
+        Assertions.assertEquals("CASE_CREATED", row.getString(3, 0));
+    }
+
+    @Test
+    public void shouldWriteTypedValuesAsGiven() throws IOException {
+        var caseUuid = UUID.randomUUID();
+        var outputStream = new ByteArrayOutputStream();
+
+        try (var writer = new ParquetExportWriter(outputStream, HEADERS, COLUMN_TYPES,
+            new ZonedDateTimeConverter("", "UTC"), 8 * 1024 * 1024, 4 * 1024, CompressionCodecName.SNAPPY)) {
+            writer.startRecord();
+            writer.writeTimestamp(LocalDateTime.of(2023, 7, 1, 10, 0));
+            writer.writeDate(LocalDate.of(2023, 4, 1));
+            writer.writeUuid(caseUuid);
+            writer.endRecord();
+        }
+
+        var row = read(outputStream.toByteArray()).get(0);
+        var timestamp = new ZonedDateTimeConverter("", "UTC").toLocalDateTime(LocalDateTime.of(2023, 7, 1, 10, 0));
+        Assertions.assertEquals(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L, row.getLong(0, 0));
+        Assertions.assertEquals(LocalDate.of(2023, 4, 1).toEpochDay(), row.getInteger(1, 0));
+
+        var uuidBytes = ByteBuffer.wrap(row.getBinary(2, 0).getBytes());
+        Assertions.assertEquals(caseUuid, new UUID(uuidBytes.getLong(), uuidBytes.getLong()));
+        Assertions.assertEquals(0, row.getFieldRepetitionCount(3));
+    }
+
+    @Test
+    public void shouldAcceptDatabaseTimestampText() throws IOException {
+        var rows = read(write(new String[][] { { "2023-01-02 03:04:05.0", null, null, null } }));
+
+        var timestamp = LocalDateTime.of(2023, 1, 2, 3, 4, 5);
+        Assertions.assertEquals(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L, rows.get(0).getLong(0, 0));
+    }
+
+    @Test
+    public void shouldWriteNullForEmptyValues() throws IOException {
+        var rows = read(write(new String[][] { { "", "", "", "" } }));
+
+        var row = rows.get(0);
+        Assertions.assertEquals(0, row.getFieldRepetitionCount(0));
+        Assertions.assertEquals(0, row.getFieldRepetitionCount(1));
+        Assertions.assertEquals(0, row.getFieldRepetitionCount(2));
+        Assertions.assertEquals("", row.getString(3, 0));
+    }
+
+    @Test
+    public void shouldFailOnUnparseableValues() {
+        var exception = Assertions.assertThrows(IllegalArgumentException.class,
+            () -> write(new String[][] { { "", "not a date", "", "" } }));
+
+        Assertions.assertEquals("Unable to write value not a date to DATE column deadline", exception.getMessage());
+    }
+
+    @Test
+    public void shouldWriteShortRecords() throws IOException {
+        var rows = read(write(new String[][] { { "2023-01-02T03:04:05.000000", "2023-01-02" } }));
+
+        Assertions.assertEquals(0, rows.get(0).getFieldRepetitionCount(2));
+        Assertions.assertEquals(0, rows.get(0).getFieldRepetitionCount(3));
+    }
+
+    @Test
+    public void shouldWriteMultipleRowGroups() throws IOException {
+        var records = new String[5000][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new String[] { "2023-01-02T03:04:05.000000", "2023-01-02", UUID.randomUUID().toString(),
+                "EVENT_" + i };
+        }
+
+        var output = write(records, 16 * 1024);
+
+        try (var reader = ParquetFileReader.open(new ByteArrayInputFile(output))) {
+            Assertions.assertTrue(reader.getRowGroups().size() > 1);
+            Assertions.assertEquals(records.length, reader.getRecordCount());
+        }
+        Assertions.assertEquals("EVENT_4999", read(output).get(4999).getString(3, 0));
+    }
+
+    private byte[] write(String[][] records) throws IOException {
+        return write(records, 8 * 1024 * 1024);
+    }
+
+    private byte[] write(String[][] records, long rowGroupSize) throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        try (var writer = new ParquetExportWriter(outputStream, HEADERS, COLUMN_TYPES, new ZonedDateTimeConverter(),
+            rowGroupSize, 4 * 1024, CompressionCodecName.SNAPPY)) {
+            for (String[] record : records) {
+                writer.writeRecord(record);
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private List<Group> read(byte[] output) throws IOException {
+        List<Group> rows = new ArrayList<>();
+
+        try (var reader = new ParquetReader.Builder<Group>(new ByteArrayInputFile(output)) {
+            @Override
+            protected ReadSupport<Group> getReadSupport() {
+                return new GroupReadSupport();
+            }
+        }.build()) {
+            Group row;
+            while ((row = reader.read()) != null) {
+                rows.add(row);
+            }
+        }
+
+        return rows;
+    }
+
+    private static class ByteArrayInputFile implements InputFile {
+
+        private final byte[] data;
+
+        ByteArrayInputFile(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public long getLength() {
+            return data.length;
+        }
+
+        @Override
+        public SeekableInputStream newStream() {
+            var inputStream = new ByteArrayInputStream(data);
+
+            return new DelegatingSeekableInputStream(inputStream) {
+                @Override
+                public long getPos() {
+                    return data.length - inputStream.available();
+                }
+
+                @Override
+                public void seek(long newPos) {
+                    inputStream.reset();
+                    inputStream.skip(newPos);
+                }
+            };
+        }
+
+    }
+
+}
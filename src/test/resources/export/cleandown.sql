@@ -1,3 +1,9 @@
 DELETE FROM audit.audit_event;
 
 DELETE FROM audit.audit_event_latest_events;
+
+DELETE FROM audit.case_latest_state;
+
+DELETE FROM audit.export_watermark;
+
+DELETE FROM audit.export_segment_invalidation;
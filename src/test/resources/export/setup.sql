@@ -53,3 +53,6 @@ VALUES (0, '00000000-0000-0000-0000-000000000000', '10000000-0000-0000-0000-0000
        '{ "documentTitle": "title", "documentType": "type" }', 'env-1', '2023-01-01 00:00:00.000000', 'DOCUMENT_CREATED',
        '40000000-0000-0000-0000-000000000001', 'a1')
 ;
+
+-- the events above are given ids, so move the sequence on as if they had been audited
+SELECT setval(pg_get_serial_sequence('audit_event', 'id'), (SELECT MAX(id) FROM audit_event));